@@ -38,12 +38,69 @@ dependencies {
     // ТЕСТИРОВАНИЕ - МИНИМУМ
     testImplementation("org.springframework.boot:spring-boot-starter-test")
     testImplementation("org.springframework.security:spring-security-test")
+
+    // НАГРУЗОЧНЫЕ ТЕСТЫ - встроенная БД вместо PostgreSQL
+    testRuntimeOnly("com.h2database:h2")
+}
+
+// Сжатые варианты CSS и JS рядом с оригиналами: EncodedResourceResolver отдает
+// style.css.gz клиентам с Accept-Encoding: gzip, не сжимая ответ на каждом запросе
+tasks.processResources {
+    doLast {
+        destinationDir.resolve("static").walkTopDown()
+            .filter { it.isFile && it.extension in setOf("css", "js") }
+            .forEach { asset ->
+                val gzip = asset.resolveSibling(asset.name + ".gz")
+                object : java.util.zip.GZIPOutputStream(gzip.outputStream()) {
+                    init {
+                        def.setLevel(java.util.zip.Deflater.BEST_COMPRESSION)
+                    }
+                }.use { out -> asset.inputStream().use { it.copyTo(out) } }
+            }
+    }
 }
 
 tasks.withType<Test> {
     useJUnitPlatform()
 }
 
+tasks.test {
+    useJUnitPlatform {
+        excludeTags("load", "allocation")
+    }
+}
+
+// Нагрузочные тесты: ./gradlew loadTest -Dloadtest.concurrency=16 -Dloadtest.requests=500
+tasks.register<Test>("loadTest") {
+    description = "Runs HTTP load tests against an embedded application instance."
+    group = "verification"
+    testClassesDirs = sourceSets["test"].output.classesDirs
+    classpath = sourceSets["test"].runtimeClasspath
+    useJUnitPlatform {
+        includeTags("load")
+    }
+    systemProperties(System.getProperties()
+        .filterKeys { it.toString().startsWith("loadtest.") }
+        .mapKeys { it.key.toString() })
+    testLogging {
+        showStandardStreams = true
+    }
+}
+
+// Регрессия выделения памяти: ./gradlew allocationTest -Dallocation.jfr=build/allocation.jfr
+tasks.register<Test>("allocationTest") {
+    description = "Checks per-request allocation against the budgets in allocation-budgets.properties."
+    group = "verification"
+    testClassesDirs = sourceSets["test"].output.classesDirs
+    classpath = sourceSets["test"].runtimeClasspath
+    useJUnitPlatform {
+        includeTags("allocation")
+    }
+    systemProperties(System.getProperties()
+        .filterKeys { it.toString().startsWith("allocation.") }
+        .mapKeys { it.key.toString() })
+}
+
 tasks.bootJar {
     archiveFileName.set("encrypt-it.jar")
     duplicatesStrategy = DuplicatesStrategy.EXCLUDE
@@ -3,11 +3,20 @@ package projects.encryptit;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import projects.encryptit.batch.BatchEncryptionApplication;
+
+import java.util.Arrays;
 
 @SpringBootApplication
 @EnableAsync
+@EnableScheduling
 public class EncryptItApplication {
     public static void main(String[] args) {
+        // "batch" первым аргументом запускает консольную пакетную обработку вместо веб-сервера
+        if (args.length > 0 && "batch".equals(args[0])) {
+            System.exit(BatchEncryptionApplication.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
         SpringApplication.run(EncryptItApplication.class, args);
     }
 }
\ No newline at end of file
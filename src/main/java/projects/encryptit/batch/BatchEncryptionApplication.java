@@ -0,0 +1,90 @@
+package projects.encryptit.batch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.Banner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+import projects.encryptit.service.EncryptionService;
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+import projects.encryptit.util.encryption.EncryptionAlgorithm;
+
+/**
+ * Консольный режим без веб-сервера: {@code java -jar encrypt-it.jar batch --batch.input=... --batch.output=...}.
+ * Контекст содержит только бины алгоритмов и {@link EncryptionService} - без базы данных,
+ * безопасности и автоконфигурации веб-приложения, поэтому запускается быстро.
+ * Класс намеренно не помечен {@code @Configuration}: сканирование основного приложения его не подхватывает.
+ * Код завершения 0 - все файлы обработаны, 1 - были ошибки, 2 - некорректные настройки.
+ */
+@EnableConfigurationProperties(BatchProperties.class)
+@ComponentScan(basePackageClasses = EncryptionAlgorithm.class)
+@Import(EncryptionService.class)
+public class BatchEncryptionApplication {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchEncryptionApplication.class);
+
+    private static final int EXIT_FAILED_FILES = 1;
+    private static final int EXIT_INVALID_SETTINGS = 2;
+
+    /**
+     * Запускает пакетную обработку.
+     * @param args аргументы командной строки (свойства {@code --batch.*})
+     * @return код завершения процесса
+     */
+    public static int run(String[] args) {
+        SpringApplication application = new SpringApplication(BatchEncryptionApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        application.setBannerMode(Banner.Mode.OFF);
+        ConfigurableApplicationContext context = application.run(args);
+        return SpringApplication.exit(context);
+    }
+
+    @Bean
+    public DirectoryEncryptor directoryEncryptor(EncryptionService encryptionService, AlgorithmRegistry registry) {
+        return new DirectoryEncryptor(encryptionService, registry);
+    }
+
+    @Bean
+    public BatchRunner batchRunner(DirectoryEncryptor encryptor, BatchProperties properties) {
+        return new BatchRunner(encryptor, properties);
+    }
+
+    /**
+     * Выполняет пакет при старте контекста и сообщает код завершения.
+     */
+    static final class BatchRunner implements ApplicationRunner, ExitCodeGenerator {
+        private final DirectoryEncryptor encryptor;
+        private final BatchProperties properties;
+        private int exitCode;
+
+        BatchRunner(DirectoryEncryptor encryptor, BatchProperties properties) {
+            this.encryptor = encryptor;
+            this.properties = properties;
+        }
+
+        @Override
+        public void run(ApplicationArguments args) throws Exception {
+            try {
+                DirectoryEncryptor.Report report = encryptor.run(properties);
+                log.info("Пакет завершен: {}", report);
+                exitCode = report.failed() > 0 ? EXIT_FAILED_FILES : 0;
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                log.error("Пакет не запущен: {}", e.getMessage());
+                exitCode = EXIT_INVALID_SETTINGS;
+            }
+        }
+
+        @Override
+        public int getExitCode() {
+            return exitCode;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package projects.encryptit.batch;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Настройки пакетной обработки (префикс {@code batch}).
+ * Ключ не передается в командной строке, где его видно в списке процессов:
+ * он берется из переменной окружения {@code BATCH_KEY} или из файла {@code batch.key-file}.
+ */
+@ConfigurationProperties(prefix = "batch")
+public class BatchProperties {
+
+    /**
+     * Операция над файлами.
+     */
+    public enum Operation {
+        ENCRYPT, DECRYPT
+    }
+
+    private Path input;
+    private Path output;
+    private String algorithm = "AES";
+    private Operation operation = Operation.ENCRYPT;
+    private String key;
+    private Path keyFile;
+    private int threads;
+    private Path manifest;
+
+    /**
+     * Возвращает ключ из {@code batch.key} (переменная {@code BATCH_KEY}) или из файла ключа.
+     * @return ключ
+     * @throws IOException если файл ключа не читается
+     * @throws IllegalArgumentException если ключ не задан
+     */
+    public String resolveKey() throws IOException {
+        if (key != null && !key.isEmpty()) {
+            return key;
+        }
+        if (keyFile != null) {
+            String fromFile = Files.readString(keyFile, StandardCharsets.UTF_8).strip();
+            if (!fromFile.isEmpty()) {
+                return fromFile;
+            }
+        }
+        throw new IllegalArgumentException("Ключ не задан: укажите переменную BATCH_KEY или --batch.key-file");
+    }
+
+    /**
+     * @return число потоков обработки (по умолчанию по числу ядер)
+     */
+    public int effectiveThreads() {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    public Path getInput() {
+        return input;
+    }
+
+    public void setInput(Path input) {
+        this.input = input;
+    }
+
+    public Path getOutput() {
+        return output;
+    }
+
+    public void setOutput(Path output) {
+        this.output = output;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public void setOperation(Operation operation) {
+        this.operation = operation;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public Path getKeyFile() {
+        return keyFile;
+    }
+
+    public void setKeyFile(Path keyFile) {
+        this.keyFile = keyFile;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public Path getManifest() {
+        return manifest;
+    }
+
+    public void setManifest(Path manifest) {
+        this.manifest = manifest;
+    }
+}
@@ -0,0 +1,114 @@
+package projects.encryptit.batch;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Журнал обработанных файлов для продолжения пакета после сбоя.
+ * Файл дописывается строками {@code размер\tвремя изменения\tSHA-256 результата\tпуть}
+ * после того, как результат файла атомарно переименован на место, поэтому каждая
+ * запись соответствует готовому файлу. Оборванная последняя строка при чтении
+ * пропускается, и этот файл обрабатывается заново. Первая строка фиксирует
+ * алгоритм и операцию: журнал другого пакета не применяется.
+ */
+final class CheckpointManifest implements Closeable {
+
+    private static final String HEADER_PREFIX = "# encrypt-it batch manifest v1 ";
+    private static final String SEPARATOR = "\t";
+
+    private record Entry(long size, long modified) {
+    }
+
+    private final Map<String, Entry> completed = new HashMap<>();
+    private final BufferedWriter writer;
+
+    private CheckpointManifest(BufferedWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Открывает журнал, загружая записи прошлых запусков.
+     * @param path файл журнала
+     * @param algorithm алгоритм пакета
+     * @param operation операция пакета
+     * @return журнал
+     * @throws IOException при ошибке чтения или записи
+     * @throws IllegalStateException если журнал создан для другого алгоритма или операции
+     */
+    static CheckpointManifest open(Path path, String algorithm, BatchProperties.Operation operation)
+            throws IOException {
+        String header = HEADER_PREFIX + "algorithm=" + algorithm + " operation=" + operation;
+        boolean exists = Files.exists(path) && Files.size(path) > 0;
+        Map<String, Entry> entries = new HashMap<>();
+        if (exists) {
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            if (!lines.get(0).equals(header)) {
+                throw new IllegalStateException("Журнал " + path + " создан для другого пакета (" + lines.get(0)
+                        + "); удалите его или укажите --batch.manifest");
+            }
+            for (String line : lines.subList(1, lines.size())) {
+                String[] fields = line.split(SEPARATOR, 4);
+                if (fields.length == 4) {
+                    try {
+                        entries.put(fields[3], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1])));
+                    } catch (NumberFormatException e) {
+                        // Оборванная строка: файл будет обработан заново
+                    }
+                }
+            }
+        } else if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        // Начинаем с новой строки на случай оборванной последней записи
+        writer.write(exists ? System.lineSeparator() : header + System.lineSeparator());
+        writer.flush();
+        CheckpointManifest manifest = new CheckpointManifest(writer);
+        manifest.completed.putAll(entries);
+        return manifest;
+    }
+
+    /**
+     * Проверяет, обработан ли файл в неизменном виде.
+     * @param relativePath путь относительно входного каталога
+     * @param size размер файла
+     * @param modified время изменения в миллисекундах
+     * @return true если файл можно пропустить
+     */
+    synchronized boolean isCompleted(String relativePath, long size, long modified) {
+        Entry entry = completed.get(relativePath);
+        return entry != null && entry.size() == size && entry.modified() == modified;
+    }
+
+    /**
+     * Записывает готовый файл. Строка сбрасывается в ОС сразу, чтобы пережить
+     * аварийное завершение процесса.
+     * @param relativePath путь относительно входного каталога
+     * @param size размер исходного файла
+     * @param modified время изменения исходного файла в миллисекундах
+     * @param digest SHA-256 результата
+     * @throws IOException при ошибке записи
+     */
+    synchronized void record(String relativePath, long size, long modified, byte[] digest) throws IOException {
+        completed.put(relativePath, new Entry(size, modified));
+        writer.write(size + SEPARATOR + modified + SEPARATOR + HexFormat.of().formatHex(digest)
+                + SEPARATOR + relativePath + System.lineSeparator());
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,209 @@
+package projects.encryptit.batch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import projects.encryptit.service.EncryptionService;
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Шифрует дерево каталогов в выходное дерево с той же структурой.
+ * Файлы обрабатываются параллельно потоковым путем {@link EncryptionService}
+ * (через каналы, без загрузки файла в память). Результат пишется во временный
+ * файл {@code .part} и переименовывается атомарно, после чего файл заносится
+ * в {@link CheckpointManifest}: при повторном запуске после сбоя готовые файлы
+ * с неизменными размером и временем изменения пропускаются.
+ */
+public class DirectoryEncryptor {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectoryEncryptor.class);
+
+    private static final String TEMP_SUFFIX = ".part";
+    private static final String MANIFEST_NAME = ".encrypt-it-manifest";
+    private static final String ENCRYPTED_SUFFIX = ".enc";
+    private static final int BACKLOG_PER_THREAD = 4;
+
+    /**
+     * Итог пакетной обработки.
+     * @param processed обработано файлов
+     * @param skipped пропущено файлов, уже обработанных прошлым запуском
+     * @param failed файлов с ошибкой
+     * @param bytes прочитано байт входных данных
+     * @param elapsed длительность обработки
+     */
+    public record Report(int processed, int skipped, int failed, long bytes, Duration elapsed) {
+
+        /**
+         * @return средняя скорость обработки, МБ/с
+         */
+        public double megabytesPerSecond() {
+            long nanos = Math.max(1, elapsed.toNanos());
+            return bytes / (1024.0 * 1024.0) / (nanos / 1_000_000_000.0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("обработано %d, пропущено %d, ошибок %d, %d байт за %d мс (%.1f МБ/с)",
+                    processed, skipped, failed, bytes, elapsed.toMillis(), megabytesPerSecond());
+        }
+    }
+
+    private final EncryptionService encryptionService;
+    private final AlgorithmRegistry registry;
+
+    public DirectoryEncryptor(EncryptionService encryptionService, AlgorithmRegistry registry) {
+        this.encryptionService = encryptionService;
+        this.registry = registry;
+    }
+
+    /**
+     * Обрабатывает все обычные файлы входного каталога.
+     * Ошибка отдельного файла не прерывает пакет: она записывается в журнал и учитывается в отчете.
+     * @param properties настройки пакета
+     * @return итог обработки
+     * @throws IOException если каталоги или журнал недоступны
+     * @throws InterruptedException если ожидание обработки прервано
+     * @throws IllegalArgumentException если настройки некорректны
+     */
+    public Report run(BatchProperties properties) throws IOException, InterruptedException {
+        Path input = requireDirectory(properties.getInput(), "batch.input");
+        if (properties.getOutput() == null) {
+            throw new IllegalArgumentException("Не задан выходной каталог batch.output");
+        }
+        Path output = properties.getOutput().toAbsolutePath().normalize();
+        if (output.startsWith(input)) {
+            throw new IllegalArgumentException("Выходной каталог не может находиться внутри входного");
+        }
+        // Каноническое название, чтобы заголовок журнала не зависел от регистра в аргументах
+        String algorithm = registry.require(properties.getAlgorithm()).getName();
+        String key = properties.resolveKey();
+        Files.createDirectories(output);
+        Path manifestPath = properties.getManifest() != null ? properties.getManifest()
+                : output.resolve(MANIFEST_NAME);
+
+        int threads = properties.effectiveThreads();
+        AtomicInteger processed = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        long started = System.nanoTime();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "batch-encrypt");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Ограничиваем очередь, чтобы обход большого дерева не держал в памяти все пути
+        Semaphore backlog = new Semaphore(threads * BACKLOG_PER_THREAD);
+        try (CheckpointManifest manifest = CheckpointManifest.open(manifestPath, algorithm,
+                properties.getOperation());
+             Stream<Path> files = Files.walk(input)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (!attributes.isRegularFile() || isServiceFile(file)) {
+                    continue;
+                }
+                String relative = input.relativize(file).toString();
+                long size = attributes.size();
+                long modified = attributes.lastModifiedTime().toMillis();
+                Path target = targetPath(output, relative, properties.getOperation());
+                if (manifest.isCompleted(relative, size, modified) && Files.exists(target)) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                backlog.acquire();
+                pool.execute(() -> {
+                    try {
+                        processFile(file, target, size, algorithm, key, properties.getOperation(),
+                                manifest, relative, modified);
+                        processed.incrementAndGet();
+                        bytes.addAndGet(size);
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        log.warn("Не удалось обработать {}: {}", relative, e.getMessage());
+                    } finally {
+                        backlog.release();
+                    }
+                });
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.info("Пакет выполняется: обработано {}, ошибок {}", processed.get(), failed.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return new Report(processed.get(), skipped.get(), failed.get(), bytes.get(),
+                Duration.ofNanos(System.nanoTime() - started));
+    }
+
+    private void processFile(Path file, Path target, long size, String algorithm, String key,
+                             BatchProperties.Operation operation, CheckpointManifest manifest,
+                             String relative, long modified) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+             FileChannel sink = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            byte[] digest;
+            if (operation == BatchProperties.Operation.ENCRYPT) {
+                digest = encryptionService.encryptSealed(source, sink, algorithm, key, size);
+            } else {
+                EncryptionService.Verification verification =
+                        encryptionService.decryptVerified(source, sink, algorithm, key, size);
+                if (!verification.verified()) {
+                    log.warn("{} расшифрован без проверки: блока целостности нет", relative);
+                }
+                digest = verification.digest();
+            }
+            // Данные должны оказаться на диске раньше записи в журнале
+            sink.force(false);
+            sink.close();
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            manifest.record(relative, size, modified, digest);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Журнал и недописанные файлы прошлого запуска, если входной каталог - результат другого пакета.
+     */
+    private static boolean isServiceFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.equals(MANIFEST_NAME) || name.endsWith(TEMP_SUFFIX);
+    }
+
+    private static Path targetPath(Path output, String relative, BatchProperties.Operation operation) {
+        Path target = output.resolve(relative);
+        String name = target.getFileName().toString();
+        if (operation == BatchProperties.Operation.ENCRYPT) {
+            return target.resolveSibling(name + ENCRYPTED_SUFFIX);
+        }
+        return name.endsWith(ENCRYPTED_SUFFIX) && name.length() > ENCRYPTED_SUFFIX.length()
+                ? target.resolveSibling(name.substring(0, name.length() - ENCRYPTED_SUFFIX.length()))
+                : target;
+    }
+
+    private static Path requireDirectory(Path path, String property) {
+        if (path == null || !Files.isDirectory(path)) {
+            throw new IllegalArgumentException("Входной каталог " + property + " не задан или не существует: " + path);
+        }
+        return path.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,52 @@
+package projects.encryptit.config;
+
+import projects.encryptit.service.AuditService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.security.Principal;
+
+/**
+ * Перехватчик, записывающий операции пользователей в журнал действий.
+ * Запись ставится в очередь после завершения запроса и не задерживает ответ.
+ */
+@Component
+public class AuditInterceptor implements HandlerInterceptor {
+
+    private final AuditService auditService;
+
+    public AuditInterceptor(AuditService auditService) {
+        this.auditService = auditService;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        Principal principal = request.getUserPrincipal();
+        if (principal == null || "GET".equals(request.getMethod()) && "/files".equals(request.getServletPath())) {
+            return;
+        }
+        StringBuilder description = new StringBuilder();
+        String algorithm = request.getParameter("algorithm");
+        if (algorithm != null) {
+            description.append("algorithm=").append(algorithm).append(", ");
+        }
+        description.append("status=").append(response.getStatus());
+        long bytes = request.getContentLengthLong();
+        if (bytes > 0) {
+            description.append(", bytes=").append(bytes);
+        }
+        auditService.record(principal.getName(), actionName(request), description.toString(),
+                request.getRemoteAddr());
+    }
+
+    private static String actionName(HttpServletRequest request) {
+        String path = request.getServletPath();
+        String trimmed = path.startsWith("/") ? path.substring(1) : path;
+        String action = request.getMethod() + " " + trimmed.replace('/', '-');
+        // Колонка action ограничена 50 символами
+        return action.length() > 50 ? action.substring(0, 50) : action;
+    }
+}
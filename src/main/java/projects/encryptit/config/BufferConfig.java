@@ -0,0 +1,28 @@
+package projects.encryptit.config;
+
+import projects.encryptit.util.buffer.BufferArena;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Конфигурация пула буферов для тел запросов и ответов.
+ */
+@Configuration
+public class BufferConfig {
+
+    /**
+     * Пул direct-буферов; он же становится общим пулом потоковой обработки.
+     * @param maxRetained максимальный объем свободных буферов в пуле
+     * @param leakDetection отслеживать незакрытые аренды
+     * @return пул буферов
+     */
+    @Bean
+    public BufferArena bufferArena(@Value("${buffers.max-retained:64MB}") DataSize maxRetained,
+                                   @Value("${buffers.leak-detection:false}") boolean leakDetection) {
+        BufferArena arena = new BufferArena(maxRetained.toBytes(), leakDetection);
+        BufferArena.installShared(arena);
+        return arena;
+    }
+}
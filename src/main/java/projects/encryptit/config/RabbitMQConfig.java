@@ -1,12 +1,23 @@
 package projects.encryptit.config;
 
+import projects.encryptit.distributed.BinaryMessageConverter;
+import projects.encryptit.distributed.HeaderBatchingStrategy;
+import org.springframework.amqp.core.AnonymousQueue;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.BatchingRabbitTemplate;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
 
 @Configuration
 public class RabbitMQConfig {
@@ -21,24 +32,91 @@ public class RabbitMQConfig {
         return new Queue("decryption.queue", true, false, false);
     }
 
+    /**
+     * Общая очередь фрагментов распределенной обработки, ее слушают все узлы.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "distributed", name = "enabled", havingValue = "true")
+    public Queue chunkWorkQueue(@Value("${distributed.work-queue:encryption.chunks}") String name) {
+        return new Queue(name, true, false, false);
+    }
+
+    /**
+     * Очередь ответов этого узла: уникальное имя, удаляется при отключении.
+     */
     @Bean
-    public Jackson2JsonMessageConverter messageConverter() {
-        return new Jackson2JsonMessageConverter();
+    @ConditionalOnProperty(prefix = "distributed", name = "enabled", havingValue = "true")
+    public Queue chunkReplyQueue() {
+        return new AnonymousQueue();
     }
 
+    /**
+     * Двоичные данные и фрагменты передаются телом как есть, остальное - в JSON.
+     */
     @Bean
+    public BinaryMessageConverter messageConverter() {
+        return new BinaryMessageConverter(new Jackson2JsonMessageConverter());
+    }
+
+    /**
+     * Упаковка мелких сообщений в пакеты; та же стратегия распаковывает их у слушателей.
+     */
+    @Bean
+    public HeaderBatchingStrategy batchingStrategy(
+            @Value("${messaging.batch.size:100}") int batchSize,
+            @Value("${messaging.batch.buffer-limit:256KB}") DataSize bufferLimit,
+            @Value("${messaging.batch.timeout:5ms}") Duration timeout) {
+        return new HeaderBatchingStrategy(batchSize, (int) bufferLimit.toBytes(), timeout.toMillis());
+    }
+
+    @Bean
+    @Primary
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
         template.setMessageConverter(messageConverter());
         return template;
     }
 
+    /**
+     * Шаблон для потока мелких сообщений: несколько сообщений уходят одним кадром.
+     * Нужен только распределенной обработке.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "distributed", name = "enabled", havingValue = "true")
+    public BatchingRabbitTemplate batchingRabbitTemplate(ConnectionFactory connectionFactory,
+                                                         HeaderBatchingStrategy batchingStrategy) {
+        // Отдельный планировщик: общий планировщик @Scheduled может быть занят долгими задачами.
+        // Бином его не объявляем - иначе он заменит планировщик @Scheduled; останавливается вместе с шаблоном
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("amqp-batch-");
+        scheduler.setDaemon(true);
+        scheduler.initialize();
+        BatchingRabbitTemplate template = new BatchingRabbitTemplate(connectionFactory, batchingStrategy, scheduler) {
+            @Override
+            public void destroy() {
+                try {
+                    flush(); // Недоотправленный пакет
+                    super.destroy();
+                } finally {
+                    scheduler.shutdown();
+                }
+            }
+        };
+        template.setMessageConverter(messageConverter());
+        return template;
+    }
+
     @Bean
     public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
-            ConnectionFactory connectionFactory) {
+            ConnectionFactory connectionFactory,
+            HeaderBatchingStrategy batchingStrategy,
+            @Value("${spring.rabbitmq.listener.simple.auto-startup:true}") boolean autoStartup) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
+        factory.setAutoStartup(autoStartup); // false - слушатели не подключаются к брокеру
         factory.setMessageConverter(messageConverter());
+        factory.setBatchingStrategy(batchingStrategy); // Распаковка пакетов BatchingRabbitTemplate
         factory.setConcurrentConsumers(10); // Многопоточная обработка
         factory.setMaxConcurrentConsumers(20);
         return factory;
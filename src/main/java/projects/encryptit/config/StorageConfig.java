@@ -0,0 +1,25 @@
+package projects.encryptit.config;
+
+import projects.encryptit.util.storage.ChunkDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Конфигурация серверного хранилища зашифрованных файлов.
+ */
+@Configuration
+public class StorageConfig {
+
+    /**
+     * Каталог фрагментов на локальном диске.
+     * @param chunkDir путь к каталогу
+     * @return каталог фрагментов
+     */
+    @Bean
+    public ChunkDirectory chunkDirectory(@Value("${storage.chunk-dir:./data/chunks}") String chunkDir) {
+        return new ChunkDirectory(Path.of(chunkDir));
+    }
+}
@@ -1,10 +1,27 @@
 package projects.encryptit.config;
 
+import projects.encryptit.ratelimit.RateLimitFilter;
+import projects.encryptit.ratelimit.RateLimitProperties;
+import projects.encryptit.ratelimit.RateLimiter;
+import projects.encryptit.util.jfr.EncryptionStageEvent;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+
+import java.time.Duration;
 
 /**
  * Конфигурация веб-приложения.
@@ -13,6 +30,14 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    private static final Duration STATIC_MAX_AGE = Duration.ofDays(365);
+
+    private final AuditInterceptor auditInterceptor;
+
+    public WebConfig(AuditInterceptor auditInterceptor) {
+        this.auditInterceptor = auditInterceptor;
+    }
+
     /**
      * Бин RestTemplate для синхронных HTTP запросов.
      * @return RestTemplate
@@ -22,15 +47,83 @@ public class WebConfig implements WebMvcConfigurer {
         return new RestTemplate();
     }
 
+    /**
+     * Стандартный разбор multipart, отмеченный событием JFR
+     * {@link EncryptionStageEvent.Stage#MULTIPART_PARSE}: контейнер читает
+     * тело запроса до вызова контроллера, и без события это время не видно.
+     * @return обработчик multipart-запросов
+     */
+    @Bean
+    public MultipartResolver multipartResolver() {
+        return new StandardServletMultipartResolver() {
+            @Override
+            public MultipartHttpServletRequest resolveMultipart(HttpServletRequest request) {
+                EncryptionStageEvent event = EncryptionStageEvent.begin(EncryptionStageEvent.Stage.MULTIPART_PARSE,
+                        null, request.getContentLengthLong());
+                try {
+                    return super.resolveMultipart(request);
+                } finally {
+                    event.commit();
+                }
+            }
+        };
+    }
+
+    /**
+     * Ограничение частоты запросов к шифрованию и анализу.
+     * Фильтр идет сразу за Spring Security (нужен пользователь), но до DispatcherServlet,
+     * чтобы отклонить запрос до разбора multipart-тела.
+     * @param rateLimiter ограничитель частоты запросов
+     * @param properties настройки ограничения
+     * @return регистрация фильтра
+     */
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RateLimiter rateLimiter,
+                                                                   RateLimitProperties properties) {
+        FilterRegistrationBean<RateLimitFilter> registration =
+                new FilterRegistrationBean<>(new RateLimitFilter(rateLimiter, properties));
+        registration.addUrlPatterns("/encrypt/*", "/decrypt/*", "/analysis/*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registration;
+    }
+
+    /**
+     * Регистрация перехватчика журнала действий пользователей.
+     * @param registry реестр перехватчиков
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(auditInterceptor)
+                .addPathPatterns("/encrypt/**", "/decrypt/**", "/files/**", "/analysis/**");
+    }
+
+    /**
+     * Переписывает ссылки на ресурсы в шаблонах ({@code @{/css/style.css}})
+     * на версионированные ({@code /css/style-<md5>.css}).
+     * @return фильтр кодирования URL ресурсов
+     */
+    @Bean
+    public ResourceUrlEncodingFilter resourceUrlEncodingFilter() {
+        return new ResourceUrlEncodingFilter();
+    }
+
     /**
      * Настройка обработчиков ресурсов.
+     * CSS, JS и изображения отдаются по URL с хешем содержимого, поэтому
+     * кэшируются браузером на год без повторной проверки: изменение файла
+     * меняет его URL. Если клиент принимает gzip, отдается вариант {@code .gz},
+     * сжатый при сборке (задача processResources).
      * @param registry реестр обработчиков ресурсов
      */
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         // Стандартные пути Spring Boot (без /static/)
         registry.addResourceHandler("/css/**", "/js/**", "/images/**")
-                .addResourceLocations("classpath:/static/css/", "classpath:/static/js/", "classpath:/static/images/");
+                .addResourceLocations("classpath:/static/css/", "classpath:/static/js/", "classpath:/static/images/")
+                .setCacheControl(CacheControl.maxAge(STATIC_MAX_AGE).cachePublic().immutable())
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver())
+                .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
         // Альтернативный путь с /static/ для совместимости
         registry.addResourceHandler("/static/**")
                 .addResourceLocations("classpath:/static/");
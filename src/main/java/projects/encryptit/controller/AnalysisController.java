@@ -0,0 +1,41 @@
+package projects.encryptit.controller;
+
+import projects.encryptit.service.KeyRecoveryService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+/**
+ * Контроллер криптоанализа: подбор ключа по шифротексту для учебных целей.
+ */
+@Controller
+public class AnalysisController {
+
+    private final KeyRecoveryService keyRecoveryService;
+
+    public AnalysisController(KeyRecoveryService keyRecoveryService) {
+        this.keyRecoveryService = keyRecoveryService;
+    }
+
+    /**
+     * Подбирает ключ шифротекста, полученного шифром Цезаря или Виженера.
+     * @param file файл с шифротекстом
+     * @param algorithm CAESAR или VIGENERE
+     * @return лучшие кандидаты ключа или 400 для неподдерживаемого алгоритма
+     */
+    @PostMapping("/analysis/key-recovery")
+    public ResponseEntity<KeyRecoveryService.KeyRecoveryReport> recoverKey(@RequestParam("file") MultipartFile file,
+                                                                           @RequestParam String algorithm) {
+        try {
+            return ResponseEntity.ok(keyRecoveryService.recover(file.getBytes(), algorithm));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при чтении файла", e);
+        }
+    }
+}
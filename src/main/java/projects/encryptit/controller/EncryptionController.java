@@ -1,23 +1,57 @@
 package projects.encryptit.controller;
 
+import projects.encryptit.service.AlgorithmCalibrationService;
 import projects.encryptit.service.EncryptionService;
+import projects.encryptit.service.FileStorageService;
+import projects.encryptit.service.ProcessingLanes;
+import projects.encryptit.service.ProgressService;
+import projects.encryptit.service.TextBatchService;
+import projects.encryptit.service.UsageMeterService;
 import projects.encryptit.util.FileUtil;
+import projects.encryptit.util.encryption.AlgorithmCapability;
+import projects.encryptit.util.encryption.CancellationToken;
+import projects.encryptit.util.encryption.IntegrityCheckException;
+import projects.encryptit.util.encryption.IntegrityTrailer;
+import projects.encryptit.util.encryption.OperationCancelledException;
+import projects.encryptit.util.encryption.ProgressTracker;
+import projects.encryptit.util.encryption.RangeSource;
+import projects.encryptit.util.jfr.EncryptionStageEvent;
+import projects.encryptit.util.jfr.EncryptionStageEvent.Stage;
+import projects.encryptit.util.buffer.ArenaByteChannel;
+import projects.encryptit.util.buffer.BufferArena;
+import projects.encryptit.util.buffer.BufferLease;
+import projects.encryptit.util.buffer.LeasedBufferResource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Контроллер для шифрования и дешифрования.
@@ -25,10 +59,39 @@ import java.nio.charset.StandardCharsets;
 @Controller
 public class EncryptionController {
 
+    private static final String REPR_DIGEST = "Repr-Digest";
+    private static final String LEGACY_DIGEST = "Digest";
+    private static final String INTEGRITY = "X-Integrity";
+    private static final String UNVERIFIED = "unverified";
+
     private final EncryptionService encryptionService;
+    private final AlgorithmCalibrationService calibrationService;
+    private final BufferArena bufferArena;
+    private final FileStorageService fileStorageService;
+    private final UsageMeterService usageMeterService;
+    private final ProcessingLanes processingLanes;
+    private final ProgressService progressService;
+    private final TextBatchService textBatchService;
+    private final Duration requestDeadline;
 
-    public EncryptionController(EncryptionService encryptionService) {
+    public EncryptionController(EncryptionService encryptionService,
+                                AlgorithmCalibrationService calibrationService,
+                                BufferArena bufferArena,
+                                FileStorageService fileStorageService,
+                                UsageMeterService usageMeterService,
+                                ProcessingLanes processingLanes,
+                                ProgressService progressService,
+                                TextBatchService textBatchService,
+                                @Value("${encryption.request-deadline:5m}") Duration requestDeadline) {
         this.encryptionService = encryptionService;
+        this.calibrationService = calibrationService;
+        this.bufferArena = bufferArena;
+        this.fileStorageService = fileStorageService;
+        this.usageMeterService = usageMeterService;
+        this.processingLanes = processingLanes;
+        this.progressService = progressService;
+        this.textBatchService = textBatchService;
+        this.requestDeadline = requestDeadline;
     }
 
     /**
@@ -42,6 +105,8 @@ public class EncryptionController {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth != null && auth.isAuthenticated() && !auth.getName().equals("anonymousUser")) {
             model.addAttribute("username", auth.getName());
+            model.addAttribute("storedFiles", fileStorageService.listFiles(auth.getName()));
+            model.addAttribute("usage", usageMeterService.usage(auth.getName()));
         }
         return "dashboard";
     }
@@ -54,6 +119,7 @@ public class EncryptionController {
     @GetMapping("/encrypt")
     public String showEncryptPage(Model model) {
         model.addAttribute("algorithms", encryptionService.getAvailableAlgorithms());
+        model.addAttribute("defaultAlgorithm", calibrationService.getDefaultAlgorithm());
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth != null && auth.isAuthenticated() && !auth.getName().equals("anonymousUser")) {
             model.addAttribute("username", auth.getName());
@@ -76,28 +142,73 @@ public class EncryptionController {
         return "decrypt";
     }
 
+    /**
+     * Возвращает результаты калибровки алгоритма по умолчанию.
+     * @return отчет о выборе алгоритма
+     */
+    @GetMapping("/algorithms/calibration")
+    @ResponseBody
+    public AlgorithmCalibrationService.CalibrationReport getCalibrationReport() {
+        return calibrationService.getReport();
+    }
+
     /**
      * Обрабатывает шифрование текста.
      * @param text текст для шифрования
      * @param algorithm алгоритм шифрования
      * @param key ключ шифрования
-     * @return ResponseEntity с зашифрованным файлом
+     * @return ResponseEntity с зашифрованным файлом; шифрование выполняется в полосе по размеру
      */
     @PostMapping("/encrypt/text")
-    public ResponseEntity<Resource> encryptText(@RequestParam String text,
-                                                @RequestParam String algorithm,
-                                                @RequestParam String key) {
+    public WebAsyncTask<ResponseEntity<Resource>> encryptText(@RequestParam String text,
+                                                              @RequestParam String algorithm,
+                                                              @RequestParam String key) {
         byte[] data = text.getBytes(StandardCharsets.UTF_8);
-        byte[] encrypted = encryptionService.encrypt(data, algorithm, key);
+        return cancellable(data.length, null, () -> {
+            long started = System.nanoTime();
+            EncryptionService.DigestedData encrypted = encryptionService.encryptSealed(data, algorithm, key);
+            recordUsage(algorithm, true, data.length, started);
 
-        ByteArrayResource resource = new ByteArrayResource(encrypted);
+            ByteArrayResource resource = new ByteArrayResource(encrypted.data());
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION,
-                        "attachment; filename=\"text_encrypted.txt\"")
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .contentLength(encrypted.length)
-                .body(resource);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"text_encrypted.txt\"")
+                    .header(REPR_DIGEST, IntegrityTrailer.reprDigest(encrypted.digest()))
+                    .header(LEGACY_DIGEST, IntegrityTrailer.legacyDigest(encrypted.digest()))
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .contentLength(encrypted.data().length)
+                    .body(resource);
+        });
+    }
+
+    /**
+     * Шифрует пакет коротких строк одним запросом.
+     * Элементы с одинаковыми алгоритмом и ключом шифруются одной группой с однократной
+     * подготовкой ключа; шифротекст каждого элемента совпадает с телом ответа {@code /encrypt/text}.
+     * @param items элементы {@code [{"id", "text", "algorithm", "key"}, ...]}
+     * @return результаты {@code [{"id", "data", "error"}, ...]} в порядке элементов
+     *         или 400, если пакет пуст или превышает ограничения; ответ отправляется,
+     *         когда полосы обработают все группы
+     */
+    @PostMapping(value = "/encrypt/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<List<TextBatchService.Result>>> encryptBatch(
+            @RequestBody List<TextBatchService.Item> items) {
+        // Итог собирается в потоке полосы, где контекста безопасности запроса нет
+        String username = currentUsername();
+        try {
+            return textBatchService.encrypt(items).thenApply(outcome -> {
+                if (username != null) {
+                    // Время каждого алгоритма - время его групп: пакет из N алгоритмов не умножает его на N
+                    outcome.usageByAlgorithm().forEach((algorithm, usage) ->
+                            usageMeterService.record(username, algorithm, true, usage.bytes(), usage.nanos()));
+                }
+                return ResponseEntity.ok(outcome.results());
+            });
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
     }
 
     /**
@@ -105,31 +216,32 @@ public class EncryptionController {
      * @param file файл для шифрования
      * @param algorithm алгоритм шифрования
      * @param key ключ шифрования
-     * @return ResponseEntity с зашифрованным файлом
+     * @param progressId идентификатор потока хода обработки (см. /progress/{id})
+     * @return ResponseEntity с зашифрованным файлом; обработка отменяется,
+     *         если клиент отключился или истек срок запроса
      */
     @PostMapping("/encrypt/file")
-    public ResponseEntity<Resource> encryptFile(@RequestParam("file") MultipartFile file,
-                                                @RequestParam String algorithm,
-                                                @RequestParam String key) {
-        try {
-            byte[] data = file.getBytes();
-            byte[] encrypted = encryptionService.encrypt(data, algorithm, key);
-
-            String originalFilename = file.getOriginalFilename();
-            String encryptedFilename = originalFilename.substring(0,
-                    originalFilename.lastIndexOf('.')) + "_encrypted.txt";
-
-            ByteArrayResource resource = new ByteArrayResource(encrypted);
+    public WebAsyncTask<ResponseEntity<Resource>> encryptFile(@RequestParam("file") MultipartFile file,
+                                                              @RequestParam String algorithm,
+                                                              @RequestParam String key,
+                                                              @RequestParam(required = false) String progressId) {
+        // Имя считается до обработки: после нее буфер из пула уже занят
+        String encryptedFilename = FileUtil.getBaseName(file.getOriginalFilename()) + "_encrypted.txt";
+        return cancellable(file.getSize(), progressId, () -> {
+            long started = System.nanoTime();
+            Transformed encrypted = transformFile(file, algorithm, key, true);
+            LeasedBufferResource resource = responseBody(encrypted.lease(), algorithm);
+            recordUsage(algorithm, true, file.getSize(), started);
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION,
                             "attachment; filename=\"" + encryptedFilename + "\"")
+                    .header(REPR_DIGEST, IntegrityTrailer.reprDigest(encrypted.digest()))
+                    .header(LEGACY_DIGEST, IntegrityTrailer.legacyDigest(encrypted.digest()))
                     .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .contentLength(encrypted.length)
+                    .contentLength(resource.contentLength())
                     .body(resource);
-        } catch (IOException e) {
-            throw new RuntimeException("Ошибка при чтении файла", e);
-        }
+        });
     }
 
     /**
@@ -137,32 +249,35 @@ public class EncryptionController {
      * @param file файл с зашифрованным текстом
      * @param algorithm алгоритм дешифрования
      * @param key ключ дешифрования
-     * @return ResponseEntity с расшифрованным текстом
+     * @return ResponseEntity с расшифрованным текстом; дешифрование выполняется в полосе по размеру
      */
     @PostMapping("/decrypt/text")
-    public ResponseEntity<Resource> decryptText(@RequestParam("file") MultipartFile file,
-                                                @RequestParam String algorithm,
-                                                @RequestParam String key) {
-        try {
+    public WebAsyncTask<ResponseEntity<Resource>> decryptText(@RequestParam("file") MultipartFile file,
+                                                              @RequestParam String algorithm,
+                                                              @RequestParam String key) {
+        String decryptedFilename = FileUtil.getBaseName(file.getOriginalFilename()) + "_decrypted.txt";
+        return cancellable(file.getSize(), null, () -> {
+            EncryptionStageEvent readEvent = EncryptionStageEvent.begin(Stage.READ_INPUT, algorithm, file.getSize());
             byte[] encryptedData = file.getBytes();
-            byte[] decrypted = encryptionService.decrypt(encryptedData, algorithm, key);
-            String decryptedText = new String(decrypted, StandardCharsets.UTF_8);
-
-            String originalFilename = file.getOriginalFilename();
-            String decryptedFilename = originalFilename.substring(0,
-                    originalFilename.lastIndexOf('.')) + "_decrypted.txt";
+            readEvent.commit();
+            long started = System.nanoTime();
+            EncryptionService.DigestedData decrypted = encryptionService.decryptVerified(encryptedData,
+                    algorithm, key);
+            recordUsage(algorithm, false, encryptedData.length, started);
 
-            ByteArrayResource resource = new ByteArrayResource(decryptedText.getBytes(StandardCharsets.UTF_8));
+            // Отдаем байты как есть: дайджест и длина должны соответствовать телу ответа
+            ByteArrayResource resource = new ByteArrayResource(decrypted.data());
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION,
                             "attachment; filename=\"" + decryptedFilename + "\"")
+                    .header(REPR_DIGEST, IntegrityTrailer.reprDigest(decrypted.digest()))
+                    .header(LEGACY_DIGEST, IntegrityTrailer.legacyDigest(decrypted.digest()))
+                    .headers(headers -> markUnverified(headers, decrypted.verified()))
                     .contentType(MediaType.TEXT_PLAIN)
-                    .contentLength(decryptedText.length())
+                    .contentLength(decrypted.data().length)
                     .body(resource);
-        } catch (IOException e) {
-            throw new RuntimeException("Ошибка при чтении файла", e);
-        }
+        });
     }
 
     /**
@@ -170,47 +285,316 @@ public class EncryptionController {
      * @param file файл с зашифрованными данными
      * @param algorithm алгоритм дешифрования
      * @param key ключ дешифрования
-     * @return ResponseEntity с расшифрованным файлом
+     * @param progressId идентификатор потока хода обработки (см. /progress/{id})
+     * @return ResponseEntity с расшифрованным файлом; обработка отменяется,
+     *         если клиент отключился или истек срок запроса
      */
     @PostMapping("/decrypt/file")
-    public ResponseEntity<Resource> decryptFile(@RequestParam("file") MultipartFile file,
-                                                @RequestParam String algorithm,
-                                                @RequestParam String key) {
-        try {
-            byte[] encryptedData = file.getBytes();
-            byte[] decrypted = encryptionService.decrypt(encryptedData, algorithm, key);
-
-            String originalFilename = file.getOriginalFilename();
+    public WebAsyncTask<ResponseEntity<Resource>> decryptFile(@RequestParam("file") MultipartFile file,
+                                                              @RequestParam String algorithm,
+                                                              @RequestParam String key,
+                                                              @RequestParam(required = false) String progressId) {
+        // Имя считается до обработки: после нее буфер из пула уже занят
+        String originalFilename = file.getOriginalFilename();
+        String baseName = (originalFilename == null || originalFilename.isBlank() ? "file" : originalFilename)
+                .replace("_encrypted.txt", "")
+                .replace(".txt", "")
+                .replace("_encrypted", "");
+        return cancellable(file.getSize(), progressId, () -> {
+            long started = System.nanoTime();
+            Transformed decrypted = transformFile(file, algorithm, key, false);
+            String decryptedFilename;
+            MediaType mediaType;
+            try {
+                // Определяем расширение файла на основе сигнатур (достаточно начала файла)
+                ByteBuffer content = decrypted.lease().buffer().duplicate();
+                byte[] prefix = new byte[Math.min(content.remaining(), FileUtil.SIGNATURE_PROBE_LENGTH)];
+                content.get(prefix);
+                EncryptionStageEvent signatureEvent = EncryptionStageEvent.begin(Stage.SIGNATURE_DETECTION,
+                        algorithm, prefix.length);
+                String extension = FileUtil.determineFileExtension(prefix);
+                signatureEvent.commit();
+                if (extension.isEmpty()) {
+                    // Если не удалось определить, используем .txt
+                    extension = ".txt";
+                }
+                decryptedFilename = baseName + "_decrypted" + extension;
 
-            // Определяем расширение файла на основе сигнатур
-            String extension = FileUtil.determineFileExtension(decrypted);
-            if (extension.isEmpty()) {
-                // Если не удалось определить, используем .txt
-                extension = ".txt";
+                // Определяем content-type
+                mediaType = MediaType.parseMediaType(FileUtil.getMediaType(extension));
+            } catch (RuntimeException e) {
+                // Буфер еще не передан в ответ - возвращаем его в пул сами
+                decrypted.lease().close();
+                throw e;
             }
 
-            // Убираем суффиксы из оригинального имени
-            String baseName = originalFilename
-                    .replace("_encrypted.txt", "")
-                    .replace(".txt", "")
-                    .replace("_encrypted", "");
-
-            String decryptedFilename = baseName + "_decrypted" + extension;
-
-            // Определяем content-type
-            String mediaTypeStr = FileUtil.getMediaType(extension);
-            MediaType mediaType = MediaType.parseMediaType(mediaTypeStr);
-
-            ByteArrayResource resource = new ByteArrayResource(decrypted);
+            LeasedBufferResource resource = responseBody(decrypted.lease(), algorithm);
+            recordUsage(algorithm, false, file.getSize(), started);
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION,
                             "attachment; filename=\"" + decryptedFilename + "\"")
+                    .header(REPR_DIGEST, IntegrityTrailer.reprDigest(decrypted.digest()))
+                    .header(LEGACY_DIGEST, IntegrityTrailer.legacyDigest(decrypted.digest()))
+                    .headers(headers -> markUnverified(headers, decrypted.verified()))
                     .contentType(mediaType)
-                    .contentLength(decrypted.length)
+                    .contentLength(resource.contentLength())
                     .body(resource);
-        } catch (IOException e) {
-            throw new RuntimeException("Ошибка при чтении файла", e);
+        });
+    }
+
+    /**
+     * Дешифрует диапазон загруженного шифротекста для предпросмотра большого файла.
+     * Читаются и дешифруются только байты, покрывающие диапазон; для AES-CTR счетчик
+     * вычисляется по смещению, для побайтовых шифров - позиция ключа.
+     * Целостность файла при этом не проверяется.
+     * @param file файл с зашифрованными данными
+     * @param algorithm алгоритм с {@link AlgorithmCapability#SEEKABLE}
+     * @param key ключ дешифрования
+     * @param offset смещение начала диапазона в открытом тексте
+     * @param length длина диапазона
+     * @return расшифрованный диапазон или 400, если диапазон или алгоритм не подходят;
+     *         дешифрование выполняется в полосе по длине диапазона
+     */
+    @PostMapping("/decrypt/range")
+    public WebAsyncTask<ResponseEntity<Resource>> decryptRange(@RequestParam("file") MultipartFile file,
+                                                               @RequestParam String algorithm,
+                                                               @RequestParam String key,
+                                                               @RequestParam long offset,
+                                                               @RequestParam int length) {
+        return cancellable(length, null, () -> {
+            try {
+                long started = System.nanoTime();
+                // Учитывается прочитанный шифротекст, как и в остальных путях, а не длина результата
+                LongAdder consumed = new LongAdder();
+                byte[] decrypted = encryptionService.decryptRange(uploadedRange(file, consumed), algorithm, key,
+                        offset, length);
+                recordUsage(algorithm, false, consumed.sum(), started);
+
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .contentLength(decrypted.length)
+                        .body(new ByteArrayResource(decrypted));
+            } catch (IllegalArgumentException e) {
+                return badRequest(e);
+            }
+        });
+    }
+
+    /**
+     * Выполняет обработку асинхронно в полосе по размеру с токеном отмены:
+     * поток контейнера освобождается сразу и не ждет очереди полосы.
+     * Токен отменяется, когда клиент отключается (ошибка асинхронного запроса)
+     * или истекает {@code encryption.request-deadline}; цикл обработки замечает
+     * это на границе ближайшего фрагмента и освобождает буферы.
+     * Если форма передала {@code progressId}, ход обработки публикуется через {@link ProgressService}.
+     * @param size размер данных
+     * @param progressId идентификатор для потока хода обработки (может быть null)
+     * @param work обработка, формирующая ответ
+     * @return асинхронная задача Spring MVC
+     */
+    private WebAsyncTask<ResponseEntity<Resource>> cancellable(long size, String progressId,
+                                                               Callable<ResponseEntity<Resource>> work) {
+        CancellationToken token = CancellationToken.withDeadline(requestDeadline);
+        ProgressTracker progress = progressService.start(progressId, currentUsername(), size);
+        WebAsyncTask<ResponseEntity<Resource>> task = new WebAsyncTask<>(requestDeadline.toMillis(),
+                processingLanes.executorFor(size), () -> {
+            ResponseEntity<Resource> response;
+            try {
+                response = token.call(() -> progress.call(work));
+            } catch (OperationCancelledException e) {
+                return cancelled(e.getMessage());
+            } catch (IntegrityCheckException e) {
+                return integrityFailure(e);
+            } catch (IOException e) {
+                throw new RuntimeException("Ошибка при чтении файла", e);
+            }
+            if (!token.complete() && response.getBody() instanceof LeasedBufferResource resource) {
+                // Ответ уже не будет отправлен: возвращаем буфер в пул
+                resource.release();
+            }
+            return response;
+        });
+        task.onTimeout(() -> {
+            token.cancel("Истек срок обработки запроса");
+            return cancelled("Истек срок обработки запроса");
+        });
+        task.onError(() -> {
+            token.cancel("Клиент отключился");
+            return cancelled("Клиент отключился");
+        });
+        task.onCompletion(() -> token.cancel("Запрос завершен"));
+        return task;
+    }
+
+    /**
+     * Ответ на недопустимые параметры запроса.
+     * @param e причина отказа
+     * @return 400 с текстом ошибки
+     */
+    private static ResponseEntity<Resource> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest()
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(new ByteArrayResource(e.getMessage().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Ответ на отмененную обработку.
+     * @param reason причина отмены
+     * @return 503 с текстом причины
+     */
+    private static ResponseEntity<Resource> cancelled(String reason) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(new ByteArrayResource(reason.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Учитывает успешно обработанный запрос в статистике текущего пользователя.
+     * @param algorithm алгоритм
+     * @param encrypt шифрование или дешифрование
+     * @param bytes объем входных данных
+     * @param started момент начала обработки по {@link System#nanoTime()}
+     */
+    private void recordUsage(String algorithm, boolean encrypt, long bytes, long started) {
+        String username = currentUsername();
+        long elapsed = System.nanoTime() - started;
+        if (username != null) {
+            usageMeterService.record(username, algorithm, encrypt, bytes, elapsed);
+        }
+    }
+
+    private static String currentUsername() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.isAuthenticated() && !auth.getName().equals("anonymousUser")) {
+            return auth.getName();
+        }
+        return null;
+    }
+
+    /**
+     * Произвольный доступ к загруженному файлу. Каждое чтение открывает файл заново
+     * и пропускает байты до смещения; у файла, сохраненного контейнером на диск,
+     * пропуск выполняется перемещением позиции без чтения.
+     * @param file загруженный файл
+     * @param consumed счетчик прочитанных байт
+     * @return источник с произвольным доступом
+     */
+    private static RangeSource uploadedRange(MultipartFile file, LongAdder consumed) {
+        return new RangeSource() {
+            @Override
+            public long size() {
+                return file.getSize();
+            }
+
+            @Override
+            public int read(long position, ByteBuffer target) throws IOException {
+                if (position >= file.getSize()) {
+                    return 0;
+                }
+                try (InputStream input = file.getInputStream()) {
+                    input.skipNBytes(position);
+                    ReadableByteChannel channel = Channels.newChannel(input);
+                    int total = 0;
+                    while (target.hasRemaining()) {
+                        int read = channel.read(target);
+                        if (read < 0) {
+                            break;
+                        }
+                        total += read;
+                    }
+                    consumed.add(total);
+                    return total;
+                }
+            }
+        };
+    }
+
+    /**
+     * Тело ответа из арендованного буфера. Событие JFR {@link Stage#RESPONSE_WRITE}
+     * охватывает время от готовности результата до закрытия потока чтения,
+     * то есть передачу ответа и запись тела клиенту.
+     * @param lease аренда с результатом
+     * @param algorithm алгоритм
+     * @return ресурс для тела ответа
+     */
+    private static LeasedBufferResource responseBody(BufferLease lease, String algorithm) {
+        EncryptionStageEvent event = EncryptionStageEvent.begin(Stage.RESPONSE_WRITE, algorithm,
+                lease.buffer().remaining());
+        return new LeasedBufferResource(lease) {
+            @Override
+            public InputStream getInputStream() {
+                return new FilterInputStream(super.getInputStream()) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            event.commit();
+                        }
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Ответ на шифротекст, не прошедший проверку целостности.
+     * @param e причина отказа
+     * @return 422 с текстом ошибки
+     */
+    private static ResponseEntity<Resource> integrityFailure(IntegrityCheckException e) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(new ByteArrayResource(e.getMessage().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Помечает ответ, блок целостности которого не проверялся
+     * (шифротекст без блока при {@code encryption.integrity.allow-unsealed}).
+     */
+    private static void markUnverified(HttpHeaders headers, boolean verified) {
+        if (!verified) {
+            headers.set(INTEGRITY, UNVERIFIED);
+        }
+    }
+
+    /**
+     * Результат потоковой обработки файла.
+     * @param lease аренда с результатом
+     * @param digest SHA-256 результата
+     * @param verified проверен ли блок целостности (для шифрования всегда true)
+     */
+    private record Transformed(BufferLease lease, byte[] digest, boolean verified) {
+    }
+
+    /**
+     * Прогоняет загруженный файл через алгоритм потоком в арендованный буфер,
+     * не материализуя его в куче. Обработка идет в полосе по размеру файла. Буфер освобождается при закрытии потока ответа.
+     * Дайджест результата и проверка блока целостности делаются в том же проходе.
+     * @param file загруженный файл
+     * @param algorithm алгоритм
+     * @param key ключ
+     * @param encrypt шифровать или расшифровывать
+     * @return аренда с результатом, готовым к чтению, и его дайджест
+     * @throws IOException при ошибке чтения файла
+     * @throws IntegrityCheckException если шифротекст не прошел проверку
+     */
+    private Transformed transformFile(MultipartFile file, String algorithm, String key,
+                                      boolean encrypt) throws IOException {
+        // Запас под nonce/IV, тег аутентификации и блок целостности
+        int initialCapacity = (int) Math.min(Integer.MAX_VALUE - 256, file.getSize()) + 64
+                + IntegrityTrailer.LENGTH;
+        ArenaByteChannel output = new ArenaByteChannel(bufferArena, initialCapacity);
+        try (ReadableByteChannel input = Channels.newChannel(file.getInputStream())) {
+            EncryptionService.Verification result = processingLanes.execute(file.getSize(), () -> encrypt
+                    ? new EncryptionService.Verification(
+                            encryptionService.encryptSealed(input, output, algorithm, key, file.getSize()), true)
+                    : encryptionService.decryptVerified(input, output, algorithm, key, file.getSize()));
+            return new Transformed(output.detach(), result.digest(), result.verified());
+        } catch (IOException | RuntimeException e) {
+            output.close();
+            throw e;
         }
     }
 }
\ No newline at end of file
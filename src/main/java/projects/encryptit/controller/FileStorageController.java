@@ -0,0 +1,195 @@
+package projects.encryptit.controller;
+
+import projects.encryptit.service.EncryptionService;
+import projects.encryptit.service.FileStorageService;
+import projects.encryptit.service.ProcessingLanes;
+import projects.encryptit.service.UsageMeterService;
+import projects.encryptit.util.FileUtil;
+import projects.encryptit.util.encryption.CancellationToken;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+/**
+ * Контроллер серверного хранилища зашифрованных файлов.
+ * Шифрование и дешифрование выполняются асинхронно в полосах {@link ProcessingLanes},
+ * поток контейнера не ждет их завершения.
+ */
+@Controller
+public class FileStorageController {
+
+    private final FileStorageService fileStorageService;
+    private final EncryptionService encryptionService;
+    private final UsageMeterService usageMeterService;
+    private final ProcessingLanes processingLanes;
+    private final Duration requestDeadline;
+
+    public FileStorageController(FileStorageService fileStorageService,
+                                 EncryptionService encryptionService,
+                                 UsageMeterService usageMeterService,
+                                 ProcessingLanes processingLanes,
+                                 @Value("${encryption.request-deadline:5m}") Duration requestDeadline) {
+        this.fileStorageService = fileStorageService;
+        this.encryptionService = encryptionService;
+        this.usageMeterService = usageMeterService;
+        this.processingLanes = processingLanes;
+        this.requestDeadline = requestDeadline;
+    }
+
+    /**
+     * Возвращает каталог сохраненных файлов пользователя.
+     * @param principal текущий пользователь
+     * @return список файлов
+     */
+    @GetMapping("/files")
+    @ResponseBody
+    public List<FileStorageService.StoredFileInfo> listFiles(Principal principal) {
+        return fileStorageService.listFiles(principal.getName());
+    }
+
+    /**
+     * Шифрует файл и сохраняет шифротекст на сервере.
+     * Шифротекст хранится с блоком целостности, как и результат {@code /encrypt/file}.
+     * @param file файл для шифрования
+     * @param algorithm алгоритм шифрования
+     * @param key ключ шифрования (на сервере не сохраняется)
+     * @param principal текущий пользователь
+     * @return перенаправление на главную страницу
+     */
+    @PostMapping("/files")
+    public WebAsyncTask<String> storeFile(@RequestParam("file") MultipartFile file,
+                                          @RequestParam String algorithm,
+                                          @RequestParam String key,
+                                          Principal principal) {
+        String encryptedFilename = FileUtil.getBaseName(file.getOriginalFilename()) + "_encrypted.txt";
+        return onLane(file.getSize(), () -> {
+            try (ReadableByteChannel input = Channels.newChannel(file.getInputStream())) {
+                long started = System.nanoTime();
+                fileStorageService.store(principal.getName(), encryptedFilename, algorithm,
+                        target -> encryptionService.encryptSealed(input, target, algorithm, key, file.getSize()));
+                usageMeterService.record(principal.getName(), algorithm, true, file.getSize(),
+                        System.nanoTime() - started);
+            } catch (IOException e) {
+                throw new RuntimeException("Ошибка при сохранении файла", e);
+            }
+            return "redirect:/dashboard";
+        });
+    }
+
+    /**
+     * Отдает сохраненный шифротекст, собирая его из фрагментов.
+     * @param id идентификатор файла
+     * @param principal текущий пользователь
+     * @return поток содержимого файла
+     */
+    @GetMapping("/files/{id}")
+    public ResponseEntity<StreamingResponseBody> downloadFile(@PathVariable Long id, Principal principal) {
+        Optional<FileStorageService.StoredFileContent> found = fileStorageService.open(principal.getName(), id);
+        if (found.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        FileStorageService.StoredFileContent content = found.get();
+        StreamingResponseBody body = out -> fileStorageService.copyTo(content, Channels.newChannel(out));
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + content.filename() + "\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(content.size())
+                .body(body);
+    }
+
+    /**
+     * Дешифрует диапазон сохраненного файла, читая только покрывающие его фрагменты.
+     * Файл дешифруется алгоритмом, которым он был зашифрован.
+     * @param id идентификатор файла
+     * @param key ключ дешифрования
+     * @param offset смещение начала диапазона в открытом тексте
+     * @param length длина диапазона
+     * @param principal текущий пользователь
+     * @return расшифрованный диапазон, 404 если файла нет, или 400, если диапазон или алгоритм не подходят
+     */
+    @PostMapping("/files/{id}/range")
+    public WebAsyncTask<ResponseEntity<Resource>> decryptRange(@PathVariable Long id,
+                                                               @RequestParam String key,
+                                                               @RequestParam long offset,
+                                                               @RequestParam int length,
+                                                               Principal principal) {
+        return onLane(length, () -> {
+            Optional<FileStorageService.StoredFileContent> found = fileStorageService.open(principal.getName(), id);
+            if (found.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            FileStorageService.StoredFileContent content = found.get();
+            try {
+                long started = System.nanoTime();
+                byte[] decrypted = encryptionService.decryptRange(fileStorageService.rangeSource(content),
+                        content.algorithm(), key, offset, length);
+                usageMeterService.record(principal.getName(), content.algorithm(), false, decrypted.length,
+                        System.nanoTime() - started);
+
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .contentLength(decrypted.length)
+                        .body(new ByteArrayResource(decrypted));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .body(new ByteArrayResource(e.getMessage().getBytes(StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                throw new RuntimeException("Ошибка при чтении файла", e);
+            }
+        });
+    }
+
+    /**
+     * Удаляет файл из каталога пользователя.
+     * @param id идентификатор файла
+     * @param principal текущий пользователь
+     * @return перенаправление на главную страницу
+     */
+    @PostMapping("/files/{id}/delete")
+    public String deleteFile(@PathVariable Long id, Principal principal) {
+        fileStorageService.delete(principal.getName(), id);
+        return "redirect:/dashboard";
+    }
+
+    /**
+     * Выполняет обработку асинхронно в полосе по размеру данных.
+     * Срок запроса - {@code encryption.request-deadline}; по его истечении или при отключении
+     * клиента токен отмены останавливает обработку на границе ближайшего фрагмента.
+     * @param size размер данных
+     * @param work обработка, формирующая ответ
+     * @param <T> тип ответа
+     * @return асинхронная задача Spring MVC
+     */
+    private <T> WebAsyncTask<T> onLane(long size, Callable<T> work) {
+        CancellationToken token = CancellationToken.withDeadline(requestDeadline);
+        WebAsyncTask<T> task = new WebAsyncTask<>(requestDeadline.toMillis(), processingLanes.executorFor(size),
+                () -> token.call(work));
+        task.onCompletion(() -> token.cancel("Запрос завершен"));
+        return task;
+    }
+}
@@ -0,0 +1,115 @@
+package projects.encryptit.controller;
+
+import projects.encryptit.service.FlightRecorderService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Управление записью JDK Flight Recorder. Включается {@code diagnostics.jfr.endpoint-enabled}:
+ * запись содержит имена пользователей и параметры запросов.
+ */
+@Controller
+@ConditionalOnProperty(prefix = "diagnostics.jfr", name = "endpoint-enabled", havingValue = "true")
+public class FlightRecorderController {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final FlightRecorderService flightRecorderService;
+
+    public FlightRecorderController(FlightRecorderService flightRecorderService) {
+        this.flightRecorderService = flightRecorderService;
+    }
+
+    /**
+     * Запускает запись, если она еще не идет.
+     * @param thresholdMillis порог длительности событий этапов в миллисекундах (0 - все события)
+     * @return состояние записи
+     * @throws IOException если настройки JFR не удалось прочитать
+     */
+    @PostMapping("/diagnostics/jfr/start")
+    @ResponseBody
+    public FlightRecorderService.Status start(@RequestParam(required = false) Long thresholdMillis)
+            throws IOException {
+        return flightRecorderService.start(thresholdMillis != null ? Duration.ofMillis(thresholdMillis) : null);
+    }
+
+    /**
+     * Возвращает состояние записи.
+     * @return состояние записи
+     */
+    @GetMapping("/diagnostics/jfr")
+    @ResponseBody
+    public FlightRecorderService.Status status() {
+        return flightRecorderService.status();
+    }
+
+    /**
+     * Отдает снимок записи для JDK Mission Control или {@code jfr print}; запись продолжается.
+     * @return файл {@code .jfr} или 409, если запись не запущена
+     */
+    @GetMapping("/diagnostics/jfr/dump")
+    public ResponseEntity<StreamingResponseBody> dump() {
+        Path file;
+        try {
+            file = flightRecorderService.dump();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось сохранить запись JFR", e);
+        }
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (IOException e) {
+            deleteQuietly(file);
+            throw new RuntimeException("Не удалось прочитать запись JFR", e);
+        }
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                deleteQuietly(file);
+            }
+        };
+        String filename = "encrypt-it-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".jfr";
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(size)
+                .body(body);
+    }
+
+    /**
+     * Останавливает запись и удаляет ее данные.
+     * @return состояние записи
+     */
+    @PostMapping("/diagnostics/jfr/stop")
+    @ResponseBody
+    public FlightRecorderService.Status stop() {
+        return flightRecorderService.stop();
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Временный файл удалит ОС
+        }
+    }
+}
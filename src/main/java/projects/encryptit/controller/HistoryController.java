@@ -0,0 +1,40 @@
+package projects.encryptit.controller;
+
+import projects.encryptit.service.AuditService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.security.Principal;
+
+/**
+ * Контроллер истории действий пользователя.
+ */
+@Controller
+public class HistoryController {
+
+    private final AuditService auditService;
+
+    public HistoryController(AuditService auditService) {
+        this.auditService = auditService;
+    }
+
+    /**
+     * Страница истории текущего пользователя, новые записи первыми.
+     * @param principal текущий пользователь
+     * @param cursor курсор из предыдущей страницы
+     * @param limit размер страницы
+     * @return страница истории или 400 для поврежденного курсора
+     */
+    @GetMapping("/history")
+    public ResponseEntity<AuditService.HistoryPage> history(Principal principal,
+                                                            @RequestParam(required = false) String cursor,
+                                                            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(auditService.history(principal.getName(), cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package projects.encryptit.controller;
+
+import projects.encryptit.ingest.DirectoryIngestionService;
+import projects.encryptit.service.ProcessingLanes;
+import projects.encryptit.util.buffer.BufferArena;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Контроллер внутренних метрик сервиса.
+ */
+@Controller
+public class MetricsController {
+
+    private final BufferArena bufferArena;
+    private final ProcessingLanes processingLanes;
+    private final Optional<DirectoryIngestionService> ingestionService;
+
+    public MetricsController(BufferArena bufferArena, ProcessingLanes processingLanes,
+                             Optional<DirectoryIngestionService> ingestionService) {
+        this.bufferArena = bufferArena;
+        this.processingLanes = processingLanes;
+        this.ingestionService = ingestionService;
+    }
+
+    /**
+     * Возвращает метрики пула буферов.
+     * @return арендованные байты, доля попаданий в пул, fallback-выдачи и т.д.
+     */
+    @GetMapping("/metrics/buffers")
+    @ResponseBody
+    public BufferArena.Metrics getBufferMetrics() {
+        return bufferArena.metrics();
+    }
+
+    /**
+     * Возвращает состояние полос обработки.
+     * @return потоки, активные и ожидающие задачи, среднее ожидание по полосам
+     */
+    @GetMapping("/metrics/lanes")
+    @ResponseBody
+    public List<ProcessingLanes.LaneStats> getLaneMetrics() {
+        return processingLanes.stats();
+    }
+
+    /**
+     * Возвращает метрики наблюдения за каталогами.
+     * @return глубина очереди и отставание или 404, если наблюдение выключено
+     */
+    @GetMapping("/metrics/ingest")
+    @ResponseBody
+    public ResponseEntity<DirectoryIngestionService.Metrics> getIngestMetrics() {
+        return ingestionService.map(service -> ResponseEntity.ok(service.metrics()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,40 @@
+package projects.encryptit.controller;
+
+import projects.encryptit.service.ProgressService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.security.Principal;
+
+/**
+ * Контроллер хода обработки файлов.
+ */
+@Controller
+public class ProgressController {
+
+    private final ProgressService progressService;
+
+    public ProgressController(ProgressService progressService) {
+        this.progressService = progressService;
+    }
+
+    /**
+     * Поток событий {@code progress} с объемом обработанных данных, скоростью и оценкой времени.
+     * Подключаться можно до отправки файла: до начала обработки приходит состояние WAITING.
+     * @param id идентификатор обработки, переданный в форме как {@code progressId}
+     * @param principal текущий пользователь
+     * @return поток событий или 404 для чужого или некорректного идентификатора
+     */
+    @GetMapping(value = "/progress/{id}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> progress(@PathVariable String id, Principal principal) {
+        try {
+            return ResponseEntity.ok(progressService.subscribe(id, principal.getName()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
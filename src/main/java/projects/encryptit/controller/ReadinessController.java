@@ -0,0 +1,47 @@
+package projects.encryptit.controller;
+
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import projects.encryptit.warmup.JitWarmupRunner;
+
+/**
+ * Проверка готовности для балансировщика нагрузки.
+ * Экземпляр становится готовым после запуска всех раннеров, в том числе прогрева JIT.
+ */
+@Controller
+public class ReadinessController {
+
+    /**
+     * Состояние готовности.
+     * @param state готовность к приему трафика
+     * @param warmup отчет о прогреве
+     */
+    public record Readiness(ReadinessState state, JitWarmupRunner.WarmupReport warmup) {
+    }
+
+    private final ApplicationAvailability availability;
+    private final JitWarmupRunner warmupRunner;
+
+    public ReadinessController(ApplicationAvailability availability, JitWarmupRunner warmupRunner) {
+        this.availability = availability;
+        this.warmupRunner = warmupRunner;
+    }
+
+    /**
+     * Возвращает готовность экземпляра и отчет о прогреве.
+     * @return 200, если экземпляр принимает трафик, иначе 503
+     */
+    @GetMapping("/health/readiness")
+    @ResponseBody
+    public ResponseEntity<Readiness> readiness() {
+        ReadinessState state = availability.getReadinessState();
+        Readiness body = new Readiness(state, warmupRunner.getReport());
+        return state == ReadinessState.ACCEPTING_TRAFFIC ? ResponseEntity.ok(body)
+                : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(body);
+    }
+}
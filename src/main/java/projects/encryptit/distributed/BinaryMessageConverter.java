@@ -0,0 +1,140 @@
+package projects.encryptit.distributed;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Преобразователь сообщений AMQP с двоичным телом.
+ * Данные фрагментов и массивы байт передаются в теле как есть, а описание
+ * задания - в заголовках сообщения, без Base64 и разбора JSON.
+ * Ключ в заголовки не попадает: заголовки видны в панели управления RabbitMQ
+ * и в журналах трассировки, поэтому ключ идет в начале тела задания
+ * (длина int и байты UTF-8), перед данными фрагмента.
+ * Остальные объекты передаются преобразователю-делегату (JSON).
+ */
+public class BinaryMessageConverter implements MessageConverter {
+
+    static final String TYPE = "x-encryptit-type";
+    static final String JOB_ID = "x-job-id";
+    static final String SEQ = "x-seq";
+    static final String OFFSET = "x-offset";
+    static final String ALGORITHM = "x-algorithm";
+    static final String ENCRYPT = "x-encrypt";
+    static final String ATTEMPT = "x-attempt";
+    static final String ERROR = "x-error";
+
+    private static final String TYPE_TASK = "chunk-task";
+    private static final String TYPE_RESULT = "chunk-result";
+    private static final byte[] EMPTY = new byte[0];
+
+    private final MessageConverter delegate;
+
+    /**
+     * @param delegate преобразователь для остальных типов
+     */
+    public BinaryMessageConverter(MessageConverter delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties properties) throws MessageConversionException {
+        if (object instanceof ChunkTask task) {
+            properties.setHeader(TYPE, TYPE_TASK);
+            properties.setHeader(JOB_ID, task.jobId());
+            properties.setHeader(SEQ, task.seq());
+            properties.setHeader(OFFSET, task.offset());
+            properties.setHeader(ALGORITHM, task.algorithm());
+            properties.setHeader(ENCRYPT, task.encrypt());
+            properties.setHeader(ATTEMPT, task.attempt());
+            properties.setReplyTo(task.replyTo());
+            return binary(withKey(task.key(), task.data()), properties);
+        }
+        if (object instanceof ChunkResult result) {
+            properties.setHeader(TYPE, TYPE_RESULT);
+            properties.setHeader(JOB_ID, result.jobId());
+            properties.setHeader(SEQ, result.seq());
+            properties.setHeader(ATTEMPT, result.attempt());
+            if (result.error() != null) {
+                properties.setHeader(ERROR, result.error());
+            }
+            return binary(result.data() != null ? result.data() : EMPTY, properties);
+        }
+        if (object instanceof byte[] bytes) {
+            return binary(bytes, properties);
+        }
+        return delegate.toMessage(object, properties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        MessageProperties properties = message.getMessageProperties();
+        Map<String, Object> headers = properties.getHeaders();
+        Object type = headers.get(TYPE);
+        if (TYPE_TASK.equals(type)) {
+            byte[] body = message.getBody();
+            int keyLength = keyLength(body);
+            String key = new String(body, Integer.BYTES, keyLength, StandardCharsets.UTF_8);
+            byte[] data = Arrays.copyOfRange(body, Integer.BYTES + keyLength, body.length);
+            return new ChunkTask(string(headers, JOB_ID), number(headers, SEQ).intValue(),
+                    number(headers, OFFSET).longValue(), string(headers, ALGORITHM), key,
+                    Boolean.TRUE.equals(headers.get(ENCRYPT)), data, properties.getReplyTo(),
+                    number(headers, ATTEMPT).intValue());
+        }
+        if (TYPE_RESULT.equals(type)) {
+            Object error = headers.get(ERROR);
+            return new ChunkResult(string(headers, JOB_ID), number(headers, SEQ).intValue(),
+                    number(headers, ATTEMPT).intValue(), error == null ? message.getBody() : null,
+                    error == null ? null : error.toString());
+        }
+        if (MessageProperties.CONTENT_TYPE_BYTES.equals(properties.getContentType())) {
+            return message.getBody();
+        }
+        return delegate.fromMessage(message);
+    }
+
+    private static Message binary(byte[] body, MessageProperties properties) {
+        properties.setContentType(MessageProperties.CONTENT_TYPE_BYTES);
+        properties.setContentLength(body.length);
+        return new Message(body, properties);
+    }
+
+    private static byte[] withKey(String key, byte[] data) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(Integer.BYTES + keyBytes.length + data.length)
+                .putInt(keyBytes.length)
+                .put(keyBytes)
+                .put(data)
+                .array();
+    }
+
+    private static int keyLength(byte[] body) {
+        int length = body.length < Integer.BYTES ? -1 : ByteBuffer.wrap(body).getInt();
+        if (length < 0 || length > body.length - Integer.BYTES) {
+            throw new MessageConversionException("В задании нет ключа");
+        }
+        return length;
+    }
+
+    private static String string(Map<String, Object> headers, String name) {
+        Object value = headers.get(name);
+        if (value == null) {
+            throw new MessageConversionException("В сообщении нет заголовка " + name);
+        }
+        // Строковые заголовки приходят от клиента RabbitMQ как LongString
+        return value.toString();
+    }
+
+    private static Number number(Map<String, Object> headers, String name) {
+        if (!(headers.get(name) instanceof Number value)) {
+            throw new MessageConversionException("В сообщении нет числового заголовка " + name);
+        }
+        return value;
+    }
+}
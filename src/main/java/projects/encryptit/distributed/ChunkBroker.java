@@ -0,0 +1,28 @@
+package projects.encryptit.distributed;
+
+import java.util.function.Consumer;
+
+/**
+ * Транспорт заданий и результатов между координатором и узлами.
+ * В приложении это RabbitMQ ({@link RabbitChunkBroker}); в тестах его заменяет брокер в памяти.
+ */
+public interface ChunkBroker {
+
+    /**
+     * Публикует задание в общую очередь, откуда его заберет любой узел.
+     * @param task задание
+     */
+    void publish(ChunkTask task);
+
+    /**
+     * Адрес, на который узлы отправляют результаты для этого координатора.
+     * @return имя очереди ответов
+     */
+    String replyAddress();
+
+    /**
+     * Подписывает обработчик на результаты, пришедшие в очередь ответов.
+     * @param handler обработчик результатов
+     */
+    void subscribeResults(Consumer<ChunkResult> handler);
+}
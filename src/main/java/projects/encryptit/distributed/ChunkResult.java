@@ -0,0 +1,32 @@
+package projects.encryptit.distributed;
+
+/**
+ * Результат обработки фрагмента.
+ * @param jobId идентификатор задания координатора
+ * @param seq порядковый номер фрагмента
+ * @param attempt номер попытки, на которую получен ответ
+ * @param data обработанный фрагмент или null при ошибке
+ * @param error текст ошибки или null
+ */
+public record ChunkResult(String jobId, int seq, int attempt, byte[] data, String error) {
+
+    /**
+     * Успешный результат.
+     * @param task задание
+     * @param data обработанный фрагмент
+     * @return результат
+     */
+    public static ChunkResult success(ChunkTask task, byte[] data) {
+        return new ChunkResult(task.jobId(), task.seq(), task.attempt(), data, null);
+    }
+
+    /**
+     * Результат с ошибкой.
+     * @param task задание
+     * @param error текст ошибки
+     * @return результат
+     */
+    public static ChunkResult failure(ChunkTask task, String error) {
+        return new ChunkResult(task.jobId(), task.seq(), task.attempt(), null, error);
+    }
+}
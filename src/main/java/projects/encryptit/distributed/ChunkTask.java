@@ -0,0 +1,25 @@
+package projects.encryptit.distributed;
+
+/**
+ * Задание на обработку одного фрагмента файла.
+ * @param jobId идентификатор задания координатора
+ * @param seq порядковый номер фрагмента
+ * @param offset смещение фрагмента от начала файла
+ * @param algorithm алгоритм
+ * @param key ключ
+ * @param encrypt шифровать или расшифровывать
+ * @param data содержимое фрагмента
+ * @param replyTo очередь для результата
+ * @param attempt номер попытки, начиная с 1
+ */
+public record ChunkTask(String jobId, int seq, long offset, String algorithm, String key,
+                        boolean encrypt, byte[] data, String replyTo, int attempt) {
+
+    /**
+     * То же задание для следующей попытки.
+     * @return задание с увеличенным номером попытки
+     */
+    public ChunkTask retry() {
+        return new ChunkTask(jobId, seq, offset, algorithm, key, encrypt, data, replyTo, attempt + 1);
+    }
+}
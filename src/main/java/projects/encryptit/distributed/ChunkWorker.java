@@ -0,0 +1,47 @@
+package projects.encryptit.distributed;
+
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+import projects.encryptit.util.encryption.EncryptionAlgorithm;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Обработчик фрагментов на узле.
+ * Фрагмент преобразуется на месте с учетом его смещения в файле,
+ * поэтому результат совпадает с обработкой файла целиком.
+ */
+@Component
+public class ChunkWorker {
+
+    private final AlgorithmRegistry registry;
+
+    public ChunkWorker(AlgorithmRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Обрабатывает задание.
+     * @param task задание
+     * @return результат или описание ошибки
+     */
+    public ChunkResult process(ChunkTask task) {
+        try {
+            EncryptionAlgorithm algorithm = registry.require(task.algorithm());
+            if (!DistributedChunkCoordinator.isChunkable(algorithm)) {
+                return ChunkResult.failure(task, "Алгоритм " + algorithm.getName()
+                        + " не поддерживает обработку фрагментами");
+            }
+            byte[] data = task.data();
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            if (task.encrypt()) {
+                algorithm.encryptInPlace(buffer, task.offset(), task.key());
+            } else {
+                algorithm.decryptInPlace(buffer, task.offset(), task.key());
+            }
+            return ChunkResult.success(task, data);
+        } catch (RuntimeException e) {
+            return ChunkResult.failure(task, e.getMessage());
+        }
+    }
+}
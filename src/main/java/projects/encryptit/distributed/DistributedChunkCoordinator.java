@@ -0,0 +1,210 @@
+package projects.encryptit.distributed;
+
+import projects.encryptit.util.encryption.AlgorithmCapability;
+import projects.encryptit.util.encryption.CancellationToken;
+import projects.encryptit.util.encryption.ChunkPump;
+import projects.encryptit.util.encryption.EncryptionAlgorithm;
+import projects.encryptit.util.encryption.OperationCancelledException;
+import projects.encryptit.util.encryption.ProgressTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Координатор распределенной обработки.
+ * Режет поток на фрагменты, публикует их в общую очередь заданий и
+ * записывает результаты по порядку по мере готовности. В работе одновременно
+ * не больше {@code distributed.max-in-flight} фрагментов; фрагмент без ответа
+ * за {@code distributed.chunk-timeout} публикуется заново.
+ */
+@Component
+@ConditionalOnProperty(prefix = "distributed", name = "enabled", havingValue = "true")
+public class DistributedChunkCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(DistributedChunkCoordinator.class);
+    private static final long CANCEL_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final ChunkBroker broker;
+    private final DistributedProperties properties;
+    private final Map<String, Map<Integer, CompletableFuture<byte[]>>> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Фрагмент, ожидающий результата.
+     */
+    private static final class Pending {
+        ChunkTask task;
+        long deadline;
+        final CompletableFuture<byte[]> result;
+
+        Pending(ChunkTask task, CompletableFuture<byte[]> result) {
+            this.task = task;
+            this.result = result;
+        }
+    }
+
+    public DistributedChunkCoordinator(ChunkBroker broker, DistributedProperties properties) {
+        this.broker = broker;
+        this.properties = properties;
+        broker.subscribeResults(this::onResult);
+    }
+
+    /**
+     * Проверяет, что фрагменты алгоритма можно обрабатывать независимо.
+     * @param algorithm алгоритм
+     * @return true для алгоритмов, сохраняющих длину и допускающих параллельную обработку
+     */
+    public static boolean isChunkable(EncryptionAlgorithm algorithm) {
+        return algorithm.supports(AlgorithmCapability.PARALLELIZABLE)
+                && algorithm.supports(AlgorithmCapability.LENGTH_PRESERVING);
+    }
+
+    /**
+     * Решает, стоит ли раздавать данные по узлам.
+     * @param algorithm алгоритм
+     * @param length размер данных или -1, если неизвестен
+     * @return true для больших данных и подходящего алгоритма
+     */
+    public boolean accepts(EncryptionAlgorithm algorithm, long length) {
+        return length >= properties.getThreshold().toBytes() && isChunkable(algorithm);
+    }
+
+    /**
+     * Обрабатывает поток силами всех узлов.
+     * @param source источник данных
+     * @param target приемник результата
+     * @param algorithm алгоритм
+     * @param key ключ
+     * @param encrypt шифровать или расшифровывать
+     * @throws IOException при ошибке ввода-вывода или если фрагмент не обработан за все попытки
+     * @throws IllegalArgumentException если узел отклонил фрагмент
+     * @throws OperationCancelledException если запрос отменен
+     */
+    public void transform(ReadableByteChannel source, WritableByteChannel target,
+                          EncryptionAlgorithm algorithm, String key, boolean encrypt) throws IOException {
+        String jobId = UUID.randomUUID().toString();
+        Map<Integer, CompletableFuture<byte[]>> results = new ConcurrentHashMap<>();
+        jobs.put(jobId, results);
+        try {
+            int chunkSize = (int) properties.getChunkSize().toBytes();
+            ArrayDeque<Pending> window = new ArrayDeque<>();
+            long offset = 0;
+            int seq = 0;
+            boolean eof = false;
+            CancellationToken token = CancellationToken.current();
+            ProgressTracker progress = ProgressTracker.current();
+            while (!eof || !window.isEmpty()) {
+                token.throwIfCancelled();
+                while (!eof && window.size() < properties.getMaxInFlight()) {
+                    byte[] chunk = readChunk(source, chunkSize);
+                    if (chunk == null) {
+                        eof = true;
+                        break;
+                    }
+                    CompletableFuture<byte[]> result = new CompletableFuture<>();
+                    results.put(seq, result);
+                    Pending pending = new Pending(new ChunkTask(jobId, seq, offset, algorithm.getName(), key,
+                            encrypt, chunk, broker.replyAddress(), 1), result);
+                    publish(pending);
+                    window.addLast(pending);
+                    offset += chunk.length;
+                    seq++;
+                }
+                if (!window.isEmpty()) {
+                    Pending head = window.removeFirst();
+                    byte[] data = await(head, token);
+                    results.remove(head.task.seq());
+                    ChunkPump.writeFully(target, ByteBuffer.wrap(data));
+                    progress.advance(data.length);
+                }
+            }
+        } finally {
+            jobs.remove(jobId);
+        }
+    }
+
+    /**
+     * Принимает результат от любого узла. Повторные и опоздавшие ответы игнорируются.
+     * @param result результат
+     */
+    public void onResult(ChunkResult result) {
+        Map<Integer, CompletableFuture<byte[]>> results = jobs.get(result.jobId());
+        if (results == null) {
+            return;
+        }
+        CompletableFuture<byte[]> future = results.get(result.seq());
+        if (future == null) {
+            return;
+        }
+        if (result.error() != null) {
+            future.completeExceptionally(new IllegalArgumentException(result.error()));
+        } else {
+            future.complete(result.data());
+        }
+    }
+
+    private void publish(Pending pending) {
+        pending.deadline = System.nanoTime() + properties.getChunkTimeout().toNanos();
+        broker.publish(pending.task);
+    }
+
+    private byte[] await(Pending pending, CancellationToken token) throws IOException {
+        while (true) {
+            // Ожидание идет короткими отрезками, чтобы вовремя заметить отмену запроса
+            long wait = Math.max(0, Math.min(pending.deadline - System.nanoTime(), CANCEL_POLL_NANOS));
+            try {
+                return pending.result.get(wait, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                token.throwIfCancelled();
+                if (pending.deadline - System.nanoTime() > 0) {
+                    continue;
+                }
+                if (pending.task.attempt() >= properties.getMaxAttempts()) {
+                    throw new IOException("Фрагмент " + pending.task.seq() + " не обработан за "
+                            + pending.task.attempt() + " попыток");
+                }
+                log.debug("Фрагмент {} задания {} потерян, повторная публикация",
+                        pending.task.seq(), pending.task.jobId());
+                pending.task = pending.task.retry();
+                publish(pending);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new IOException("Ошибка обработки фрагмента " + pending.task.seq(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Ожидание фрагмента прервано");
+            }
+        }
+    }
+
+    private static byte[] readChunk(ReadableByteChannel source, int chunkSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer) < 0) {
+                break;
+            }
+        }
+        if (buffer.position() == 0) {
+            return null;
+        }
+        return buffer.position() == chunkSize ? buffer.array()
+                : Arrays.copyOf(buffer.array(), buffer.position());
+    }
+}
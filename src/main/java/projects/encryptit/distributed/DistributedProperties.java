@@ -0,0 +1,91 @@
+package projects.encryptit.distributed;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Настройки распределенной обработки больших файлов (префикс {@code distributed}).
+ * Координатор режет файл на фрагменты и раздает их всем узлам через очередь RabbitMQ.
+ * Задание несет ключ пользователя открытым текстом, поэтому брокер должен быть доверенным,
+ * а соединение с ним по умолчанию обязано использовать TLS ({@code require-tls}).
+ */
+@Component
+@ConfigurationProperties(prefix = "distributed")
+public class DistributedProperties {
+
+    private boolean enabled = false;
+    private DataSize threshold = DataSize.ofMegabytes(8);
+    private DataSize chunkSize = DataSize.ofMegabytes(1);
+    private int maxInFlight = 16;
+    private Duration chunkTimeout = Duration.ofSeconds(10);
+    private int maxAttempts = 3;
+    private String workQueue = "encryption.chunks";
+    private boolean requireTls = true;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public DataSize getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(DataSize threshold) {
+        this.threshold = threshold;
+    }
+
+    public DataSize getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(DataSize chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public Duration getChunkTimeout() {
+        return chunkTimeout;
+    }
+
+    public void setChunkTimeout(Duration chunkTimeout) {
+        this.chunkTimeout = chunkTimeout;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public String getWorkQueue() {
+        return workQueue;
+    }
+
+    public void setWorkQueue(String workQueue) {
+        this.workQueue = workQueue;
+    }
+
+    public boolean isRequireTls() {
+        return requireTls;
+    }
+
+    public void setRequireTls(boolean requireTls) {
+        this.requireTls = requireTls;
+    }
+}
@@ -0,0 +1,226 @@
+package projects.encryptit.distributed;
+
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.batch.BatchingStrategy;
+import org.springframework.amqp.rabbit.batch.MessageBatch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Упаковка нескольких сообщений в один кадр AMQP.
+ * В отличие от стандартной упаковки Spring AMQP, каждое сообщение пакета
+ * сохраняет свои заголовки и тип содержимого, поэтому после распаковки
+ * {@link BinaryMessageConverter} видит те же метаданные, что и без пакетов.
+ * Строки пишутся длиной int и байтами UTF-8, без ограничения 64 КБ
+ * {@link DataOutputStream#writeUTF(String)}.
+ * Пакет отправляется, когда набрано {@code batchSize} сообщений,
+ * заполнен буфер {@code bufferLimit} или истек {@code timeout}.
+ */
+public class HeaderBatchingStrategy implements BatchingStrategy {
+
+    static final String FORMAT_HEADER = "x-encryptit-batch";
+    static final String FORMAT = "headers-v2";
+
+    private static final byte STRING = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte BOOLEAN = 3;
+
+    private final int batchSize;
+    private final int bufferLimit;
+    private final long timeout;
+    private final List<Message> messages = new ArrayList<>();
+    private String exchange;
+    private String routingKey;
+    private int currentSize;
+
+    /**
+     * @param batchSize максимальное количество сообщений в пакете
+     * @param bufferLimit максимальный размер пакета в байтах
+     * @param timeout максимальная задержка сообщения в пакете, мс
+     */
+    public HeaderBatchingStrategy(int batchSize, int bufferLimit, long timeout) {
+        this.batchSize = batchSize;
+        this.bufferLimit = bufferLimit;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public MessageBatch addToBatch(String exchange, String routingKey, Message message) {
+        MessageBatch released = null;
+        // В пакет попадают только сообщения с одним адресом
+        if (!messages.isEmpty() && (!exchange.equals(this.exchange) || !routingKey.equals(this.routingKey))) {
+            released = doRelease();
+        }
+        int size = estimateSize(message);
+        if (released == null && !messages.isEmpty() && currentSize + size > bufferLimit) {
+            released = doRelease();
+        }
+        this.exchange = exchange;
+        this.routingKey = routingKey;
+        messages.add(message);
+        currentSize += size;
+        if (released == null && (messages.size() >= batchSize || currentSize >= bufferLimit)) {
+            released = doRelease();
+        }
+        return released;
+    }
+
+    @Override
+    public Date nextRelease() {
+        return messages.isEmpty() ? null : new Date(System.currentTimeMillis() + timeout);
+    }
+
+    @Override
+    public Collection<MessageBatch> releaseBatches() {
+        MessageBatch batch = doRelease();
+        return batch == null ? Collections.emptyList() : Collections.singletonList(batch);
+    }
+
+    @Override
+    public boolean canDebatch(MessageProperties properties) {
+        return FORMAT.equals(String.valueOf(properties.getHeaders().get(FORMAT_HEADER)));
+    }
+
+    @Override
+    public void deBatch(Message message, Consumer<Message> fragmentConsumer) {
+        MessageProperties batchProperties = message.getMessageProperties();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message.getBody()))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                MessageProperties properties = new MessageProperties();
+                properties.setReplyTo(batchProperties.getReplyTo());
+                String contentType = readString(in);
+                if (!contentType.isEmpty()) {
+                    properties.setContentType(contentType);
+                }
+                String replyTo = readString(in);
+                if (!replyTo.isEmpty()) {
+                    properties.setReplyTo(replyTo);
+                }
+                int headers = in.readUnsignedShort();
+                for (int h = 0; h < headers; h++) {
+                    String name = readString(in);
+                    properties.setHeader(name, readValue(in));
+                }
+                byte[] body = new byte[in.readInt()];
+                in.readFully(body);
+                properties.setContentLength(body.length);
+                fragmentConsumer.accept(new Message(body, properties));
+            }
+        } catch (IOException e) {
+            throw new AmqpException("Поврежденный пакет сообщений", e);
+        }
+    }
+
+    private MessageBatch doRelease() {
+        if (messages.isEmpty()) {
+            return null;
+        }
+        Message result;
+        if (messages.size() == 1) {
+            result = messages.get(0);
+        } else {
+            result = pack(messages);
+        }
+        MessageBatch batch = new MessageBatch(exchange, routingKey, result);
+        messages.clear();
+        currentSize = 0;
+        return batch;
+    }
+
+    private static Message pack(List<Message> batch) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        boolean persistent = false;
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(batch.size());
+            for (Message message : batch) {
+                MessageProperties properties = message.getMessageProperties();
+                persistent |= properties.getDeliveryMode() != MessageDeliveryMode.NON_PERSISTENT;
+                writeString(out, properties.getContentType() != null ? properties.getContentType() : "");
+                writeString(out, properties.getReplyTo() != null ? properties.getReplyTo() : "");
+                Map<String, Object> headers = properties.getHeaders();
+                out.writeShort(headers.size());
+                for (Map.Entry<String, Object> header : headers.entrySet()) {
+                    writeString(out, header.getKey());
+                    writeValue(out, header.getValue());
+                }
+                out.writeInt(message.getBody().length);
+                out.write(message.getBody());
+            }
+        } catch (IOException e) {
+            throw new AmqpException("Не удалось упаковать сообщения", e);
+        }
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_BYTES);
+        properties.setHeader(FORMAT_HEADER, FORMAT);
+        // Пакет сохраняется на диске брокера, только если этого требует хотя бы одно сообщение
+        properties.setDeliveryMode(persistent ? MessageDeliveryMode.PERSISTENT : MessageDeliveryMode.NON_PERSISTENT);
+        byte[] body = bytes.toByteArray();
+        properties.setContentLength(body.length);
+        return new Message(body, properties);
+    }
+
+    private static int estimateSize(Message message) {
+        // Заголовки занимают немного по сравнению с телом; 256 байт с запасом
+        return message.getBody().length + 256;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Integer number) {
+            out.writeByte(INT);
+            out.writeInt(number);
+        } else if (value instanceof Long number) {
+            out.writeByte(LONG);
+            out.writeLong(number);
+        } else if (value instanceof Boolean flag) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(flag);
+        } else {
+            out.writeByte(STRING);
+            writeString(out, String.valueOf(value));
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Неверная длина строки " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case INT -> in.readInt();
+            case LONG -> in.readLong();
+            case BOOLEAN -> in.readBoolean();
+            case STRING -> readString(in);
+            default -> throw new IOException("Неизвестный тип заголовка " + type);
+        };
+    }
+}
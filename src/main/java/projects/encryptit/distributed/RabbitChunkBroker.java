@@ -0,0 +1,91 @@
+package projects.encryptit.distributed;
+
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.BatchingRabbitTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.amqp.RabbitProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+/**
+ * Транспорт фрагментов через RabbitMQ.
+ * Задания идут в общую очередь {@code distributed.work-queue}, которую слушают
+ * все узлы, а результаты - в собственную очередь ответов узла-координатора.
+ * Сообщения двоичные ({@link BinaryMessageConverter}); мелкие фрагменты
+ * уходят пакетами через {@link BatchingRabbitTemplate}.
+ * Задания содержат ключ, а результаты - данные пользователя, поэтому все
+ * сообщения отправляются без сохранения на диск брокера: после перезапуска
+ * брокера координатор просто опубликует потерянные фрагменты заново.
+ * Ключ в теле задания не шифруется: брокер и все его клиенты должны быть доверенными,
+ * а без {@code spring.rabbitmq.ssl.enabled} узел не запустится, пока не отключен
+ * {@code distributed.require-tls}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "distributed", name = "enabled", havingValue = "true")
+public class RabbitChunkBroker implements ChunkBroker {
+
+    private static final MessagePostProcessor TRANSIENT = message -> {
+        message.getMessageProperties().setDeliveryMode(MessageDeliveryMode.NON_PERSISTENT);
+        return message;
+    };
+
+    private final BatchingRabbitTemplate rabbitTemplate;
+    private final ChunkWorker worker;
+    private final DistributedProperties properties;
+    private final Queue replyQueue;
+    private volatile Consumer<ChunkResult> resultHandler = result -> { };
+
+    public RabbitChunkBroker(BatchingRabbitTemplate rabbitTemplate,
+                             ChunkWorker worker,
+                             DistributedProperties properties,
+                             @Qualifier("chunkReplyQueue") Queue replyQueue,
+                             RabbitProperties rabbitProperties) {
+        if (properties.isRequireTls() && !rabbitProperties.getSsl().determineEnabled()) {
+            throw new IllegalStateException("Распределенная обработка передает ключи через RabbitMQ: "
+                    + "включите spring.rabbitmq.ssl.enabled или, если сеть до брокера доверенная, "
+                    + "distributed.require-tls=false");
+        }
+        this.rabbitTemplate = rabbitTemplate;
+        this.worker = worker;
+        this.properties = properties;
+        this.replyQueue = replyQueue;
+    }
+
+    @Override
+    public void publish(ChunkTask task) {
+        rabbitTemplate.convertAndSend(properties.getWorkQueue(), task, TRANSIENT);
+    }
+
+    @Override
+    public String replyAddress() {
+        return replyQueue.getName();
+    }
+
+    @Override
+    public void subscribeResults(Consumer<ChunkResult> handler) {
+        this.resultHandler = handler;
+    }
+
+    /**
+     * Обрабатывает задание любого координатора и отправляет результат ему в очередь ответов.
+     * @param task задание
+     */
+    @RabbitListener(queues = "${distributed.work-queue:encryption.chunks}")
+    public void onTask(ChunkTask task) {
+        rabbitTemplate.convertAndSend(task.replyTo(), worker.process(task), TRANSIENT);
+    }
+
+    /**
+     * Передает результат координатору этого узла.
+     * @param result результат
+     */
+    @RabbitListener(queues = "#{chunkReplyQueue.name}")
+    public void onResult(ChunkResult result) {
+        resultHandler.accept(result);
+    }
+}
@@ -0,0 +1,476 @@
+package projects.encryptit.ingest;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import projects.encryptit.service.EncryptionService;
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Автоматически шифрует файлы, появляющиеся в наблюдаемых каталогах (например, от сканеров документов).
+ * <p>
+ * Поток наблюдения только регистрирует события {@link WatchService} в таблице ожидающих файлов и
+ * никогда не блокируется, поэтому не теряет события при всплесках. Планировщик раз в четверть
+ * {@code ingest.quiet-period} отбирает файлы, по которым не было событий весь период и у которых
+ * размер и время изменения совпали при двух проверках подряд: так недописанный файл не уходит в обработку.
+ * Готовые файлы передаются в ограниченный пул; если его очередь заполнена, файлы остаются ожидать
+ * в таблице (обратное давление), а не копятся в памяти пула, и отбор повторяется, как только пул
+ * разберет половину очереди.
+ * <p>
+ * Шифротекст пишется во временный файл и атомарно переименовывается в {@code output}, после чего
+ * оригинал атомарно переносится в архив (или в каталог ошибок, если обработка не удалась).
+ * Переносы не заменяют существующие файлы: повторно пришедший файл с тем же именем получает
+ * свободное имя с номером ({@code scan-1.pdf}), а прежние шифротекст и оригинал остаются.
+ * Если файл с тем же именем появляется, пока прежний обрабатывается, оригинал не архивируется
+ * (на его месте уже другие данные), а путь после обработки снова ставится в ожидание.
+ * Файл, который после обработки не удалось убрать ни в архив, ни в каталог ошибок, остается
+ * на месте и не обрабатывается повторно, пока не изменятся его размер или время изменения.
+ * При переполнении очереди событий ОС и при старте каталог просматривается целиком.
+ */
+@Service
+@ConditionalOnProperty(prefix = "ingest", name = "enabled", havingValue = "true")
+public class DirectoryIngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectoryIngestionService.class);
+
+    private static final String ENCRYPTED_SUFFIX = ".enc";
+    private static final String TEMP_SUFFIX = ".part";
+    private static final long MIN_DISPATCH_INTERVAL_MILLIS = 50;
+
+    /**
+     * Метрики наблюдения.
+     * @param queueDepth файлов ожидает обработки (ожидание стабилизации и очередь пула)
+     * @param settling файлов ожидает стабилизации или места в очереди
+     * @param queued файлов в очереди пула
+     * @param active файлов обрабатывается
+     * @param processed обработано файлов
+     * @param failed файлов с ошибкой
+     * @param bytes зашифровано байт
+     * @param oldestWaitingMillis сколько ждет самый старый необработанный файл (текущее отставание)
+     * @param lastLagMillis время от обнаружения до завершения для последнего файла
+     * @param maxLagMillis наибольшее время от обнаружения до завершения
+     */
+    public record Metrics(int queueDepth, int settling, int queued, int active, long processed, long failed,
+                          long bytes, long oldestWaitingMillis, long lastLagMillis, long maxLagMillis) {
+    }
+
+    /**
+     * Размер и время изменения файла, по которым видно, что его содержимое заменили.
+     */
+    private record Stamp(long size, long modified) {
+    }
+
+    /**
+     * Файл, обнаруженный в наблюдаемом каталоге.
+     */
+    private static final class PendingFile {
+        final Path path;
+        final IngestProperties.Watch watch;
+        final long detectedNanos = System.nanoTime();
+        volatile long lastEventNanos = detectedNanos;
+        volatile boolean submitted;
+        // Во время обработки по пути пришли новые события: там уже другой файл
+        volatile boolean dirty;
+        // Изменяются только потоком планировщика
+        long size = -1;
+        long modified = -1;
+
+        PendingFile(Path path, IngestProperties.Watch watch) {
+            this.path = path;
+            this.watch = watch;
+        }
+    }
+
+    private final EncryptionService encryptionService;
+    private final AlgorithmRegistry registry;
+    private final IngestProperties properties;
+    private final Map<Path, PendingFile> pending = new ConcurrentHashMap<>();
+    // Файлы, оставшиеся на месте после обработки, и их размер и время изменения в тот момент
+    private final Map<Path, Stamp> stuck = new ConcurrentHashMap<>();
+    private final Map<WatchKey, IngestProperties.Watch> watchKeys = new ConcurrentHashMap<>();
+    private final AtomicInteger settling = new AtomicInteger();
+    private final AtomicBoolean backlogged = new AtomicBoolean();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong lastLagNanos = new AtomicLong();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    // Выбор свободного имени и перенос в общие каталоги результатов, архива и ошибок
+    private final Object moveLock = new Object();
+
+    private String algorithm;
+    private String key;
+    private WatchService watchService;
+    private Thread watcher;
+    private ScheduledExecutorService dispatcher;
+    private ThreadPoolExecutor workers;
+
+    public DirectoryIngestionService(EncryptionService encryptionService, AlgorithmRegistry registry,
+                                     IngestProperties properties) {
+        this.encryptionService = encryptionService;
+        this.registry = registry;
+        this.properties = properties;
+    }
+
+    /**
+     * Регистрирует каталоги и запускает наблюдение.
+     * @throws IOException если каталог недоступен
+     * @throws IllegalArgumentException если настройки некорректны
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (properties.getDirectories().isEmpty()) {
+            throw new IllegalArgumentException("Не заданы наблюдаемые каталоги ingest.directories");
+        }
+        algorithm = registry.require(properties.getAlgorithm()).getName();
+        key = properties.resolveKey();
+        watchService = FileSystems.getDefault().newWatchService();
+        for (IngestProperties.Watch watch : properties.getDirectories()) {
+            validate(watch);
+            Files.createDirectories(watch.getOutput());
+            Files.createDirectories(watch.archiveDirectory());
+            Files.createDirectories(watch.failedDirectory());
+            WatchKey watchKey = watch.getSource().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchKeys.put(watchKey, watch);
+        }
+
+        int threads = properties.effectiveWorkers();
+        AtomicInteger counter = new AtomicInteger();
+        workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())), runnable -> {
+                    Thread thread = new Thread(runnable, "ingest-worker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ingest-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher = new Thread(this::watchLoop, "ingest-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+
+        // Файлы, появившиеся, пока сервис не работал
+        for (IngestProperties.Watch watch : properties.getDirectories()) {
+            scan(watch);
+        }
+        long interval = Math.max(MIN_DISPATCH_INTERVAL_MILLIS, properties.getQuietPeriod().toMillis() / 4);
+        dispatcher.scheduleWithFixedDelay(this::dispatchSafely, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Наблюдение за {} каталогами запущено: алгоритм {}, потоков {}",
+                properties.getDirectories().size(), algorithm, threads);
+    }
+
+    /**
+     * Останавливает наблюдение и дожидается файлов, уже переданных в пул.
+     */
+    @PreDestroy
+    public void shutdown() {
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось закрыть WatchService: {}", e.getMessage());
+        }
+        if (dispatcher != null) {
+            dispatcher.shutdownNow();
+        }
+        if (workers != null) {
+            workers.shutdown();
+            try {
+                if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                    workers.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                workers.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Возвращает метрики очереди и отставания.
+     * @return метрики
+     */
+    public Metrics metrics() {
+        long now = System.nanoTime();
+        long oldest = 0;
+        for (PendingFile file : pending.values()) {
+            oldest = Math.max(oldest, now - file.detectedNanos);
+        }
+        int waiting = settling.get();
+        int queued = workers.getQueue().size();
+        return new Metrics(waiting + queued, waiting, queued, workers.getActiveCount(), processed.get(),
+                failed.get(), bytes.get(), TimeUnit.NANOSECONDS.toMillis(oldest),
+                TimeUnit.NANOSECONDS.toMillis(lastLagNanos.get()), TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get()));
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey watchKey;
+            try {
+                watchKey = watchService.take();
+            } catch (ClosedWatchServiceException | InterruptedException e) {
+                return;
+            }
+            IngestProperties.Watch watch = watchKeys.get(watchKey);
+            if (watch != null) {
+                for (WatchEvent<?> event : watchKey.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // ОС потеряла события - просматриваем каталог целиком
+                        scan(watch);
+                    } else if (event.context() instanceof Path name) {
+                        offer(watch.getSource().resolve(name), watch);
+                    }
+                }
+            }
+            if (!watchKey.reset()) {
+                watchKeys.remove(watchKey);
+                log.warn("Каталог {} больше не наблюдается", watch != null ? watch.getSource() : "?");
+            }
+        }
+    }
+
+    private void scan(IngestProperties.Watch watch) {
+        try (Stream<Path> files = Files.list(watch.getSource())) {
+            files.forEach(file -> offer(file, watch));
+        } catch (IOException e) {
+            log.warn("Не удалось просмотреть каталог {}: {}", watch.getSource(), e.getMessage());
+        }
+    }
+
+    private void offer(Path path, IngestProperties.Watch watch) {
+        String name = path.getFileName().toString();
+        if (name.startsWith(".") || properties.getIgnoreSuffixes().stream().anyMatch(name::endsWith)) {
+            return;
+        }
+        PendingFile existing = pending.get(path);
+        if (existing != null) {
+            if (existing.submitted) {
+                // Прежний файл обрабатывается: новый будет поставлен в ожидание после него
+                existing.dirty = true;
+            }
+            // Файл еще пишется: период тишины начинается заново
+            existing.lastEventNanos = System.nanoTime();
+            return;
+        }
+        if (pending.putIfAbsent(path, new PendingFile(path, watch)) == null) {
+            settling.incrementAndGet();
+        }
+    }
+
+    private void dispatchSafely() {
+        try {
+            dispatch();
+        } catch (RuntimeException e) {
+            log.error("Ошибка отбора файлов для шифрования", e);
+        }
+    }
+
+    /**
+     * Передает в пул файлы, которые перестали меняться.
+     */
+    void dispatch() {
+        long now = System.nanoTime();
+        long quietNanos = properties.getQuietPeriod().toNanos();
+        if (!stuck.isEmpty()) {
+            stuck.keySet().removeIf(path -> !Files.exists(path, LinkOption.NOFOLLOW_LINKS));
+        }
+        for (PendingFile file : pending.values()) {
+            if (file.submitted || now - file.lastEventNanos < quietNanos) {
+                continue;
+            }
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file.path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                // Файл удален или переименован до обработки
+                forget(file);
+                continue;
+            }
+            if (!attributes.isRegularFile()) {
+                forget(file);
+                continue;
+            }
+            long size = attributes.size();
+            long modified = attributes.lastModifiedTime().toMillis();
+            Stamp left = stuck.get(file.path);
+            if (left != null) {
+                if (left.equals(new Stamp(size, modified))) {
+                    // Тот же файл, который уже не удалось убрать: повтор дал бы тот же результат
+                    forget(file);
+                    continue;
+                }
+                stuck.remove(file.path, left);
+            }
+            if (size != file.size || modified != file.modified) {
+                // Стабильным считается файл, не изменившийся между двумя проходами
+                file.size = size;
+                file.modified = modified;
+                continue;
+            }
+            file.submitted = true;
+            try {
+                workers.execute(() -> process(file));
+                settling.decrementAndGet();
+            } catch (RejectedExecutionException e) {
+                // Очередь пула заполнена: остальные файлы ждут, пока пул ее не разберет
+                file.submitted = false;
+                backlogged.set(true);
+                return;
+            }
+        }
+    }
+
+    private void forget(PendingFile file) {
+        if (pending.remove(file.path, file) && !file.submitted) {
+            settling.decrementAndGet();
+        }
+    }
+
+    private void process(PendingFile file) {
+        IngestProperties.Watch watch = file.watch;
+        String name = file.path.getFileName().toString();
+        try {
+            encrypt(file.path, watch.getOutput(), name + ENCRYPTED_SUFFIX, file.size);
+            if (!file.dirty) {
+                moveToFreeName(file.path, watch.archiveDirectory(), name);
+            }
+            processed.incrementAndGet();
+            bytes.addAndGet(file.size);
+        } catch (NoSuchFileException e) {
+            log.debug("Файл {} удален до обработки", file.path);
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.warn("Не удалось зашифровать {}: {}", file.path, e.getMessage());
+            try {
+                if (!file.dirty) {
+                    moveToFreeName(file.path, watch.failedDirectory(), name);
+                }
+            } catch (IOException moveError) {
+                log.warn("Не удалось перенести {} в каталог ошибок: {}", file.path, moveError.getMessage());
+            }
+        } finally {
+            pending.remove(file.path, file);
+            boolean exists = Files.exists(file.path, LinkOption.NOFOLLOW_LINKS);
+            if (exists && !file.dirty) {
+                // Файл не удалось перенести: отбор пропустит его, пока он не изменится,
+                // иначе он снова уходил бы в обработку по кругу
+                stuck.put(file.path, new Stamp(file.size, file.modified));
+                log.warn("Файл {} оставлен на месте и будет обработан снова только после изменения", file.path);
+            }
+            if (file.dirty || exists) {
+                // Одноименный файл мог прийти во время обработки; его события достались прежней записи
+                offer(file.path, watch);
+            }
+            long lag = System.nanoTime() - file.detectedNanos;
+            lastLagNanos.set(lag);
+            maxLagNanos.accumulateAndGet(lag, Math::max);
+            refillIfDrained();
+        }
+    }
+
+    /**
+     * При всплеске не ждет следующего прохода: когда очередь пула разобрана наполовину,
+     * отбор файлов запускается сразу.
+     */
+    private void refillIfDrained() {
+        if (workers.getQueue().size() <= properties.getQueueCapacity() / 2 && backlogged.compareAndSet(true, false)) {
+            try {
+                dispatcher.execute(this::dispatchSafely);
+            } catch (RejectedExecutionException e) {
+                // Сервис останавливается
+            }
+        }
+    }
+
+    private void encrypt(Path source, Path directory, String name, long size) throws IOException {
+        // Свой временный файл у каждой обработки: одноименные файлы могут шифроваться одновременно
+        Path temp = Files.createTempFile(directory, name, TEMP_SUFFIX);
+        try (FileChannel input = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel output = FileChannel.open(temp, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            encryptionService.encryptSealed(input, output, algorithm, key, size);
+            output.force(false);
+            output.close();
+            moveToFreeName(temp, directory, name);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Атомарно переносит файл в каталог под первым свободным именем.
+     * На POSIX {@code ATOMIC_MOVE} молча заменяет существующий файл, поэтому занятость
+     * имени проверяется заранее; в эти каталоги пишут только потоки сервиса, и проверка
+     * с переносом выполняются под общей блокировкой.
+     * @return итоговый путь
+     */
+    private Path moveToFreeName(Path source, Path directory, String name) throws IOException {
+        synchronized (moveLock) {
+            Path target = directory.resolve(name);
+            for (int i = 1; Files.exists(target, LinkOption.NOFOLLOW_LINKS); i++) {
+                target = directory.resolve(numbered(name, i));
+            }
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            if (!target.getFileName().toString().equals(name)) {
+                log.info("Имя {} в {} занято, файл сохранен как {}", name, directory, target.getFileName());
+            }
+            return target;
+        }
+    }
+
+    /**
+     * Вставляет номер перед расширениями: {@code scan.pdf.enc} - {@code scan-1.pdf.enc}.
+     */
+    private static String numbered(String name, int number) {
+        int dot = name.indexOf('.', 1);
+        return dot < 0 ? name + "-" + number : name.substring(0, dot) + "-" + number + name.substring(dot);
+    }
+
+    private static void validate(IngestProperties.Watch watch) {
+        if (watch.getSource() == null || !Files.isDirectory(watch.getSource())) {
+            throw new IllegalArgumentException("Наблюдаемый каталог не задан или не существует: " + watch.getSource());
+        }
+        if (watch.getOutput() == null) {
+            throw new IllegalArgumentException("Не задан каталог результатов для " + watch.getSource());
+        }
+        Path source = watch.getSource().toAbsolutePath().normalize();
+        if (watch.getOutput().toAbsolutePath().normalize().equals(source)) {
+            throw new IllegalArgumentException("Каталог результатов совпадает с наблюдаемым: " + source);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package projects.encryptit.ingest;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки автоматического шифрования файлов из наблюдаемых каталогов (префикс {@code ingest}).
+ * Ключ задается переменной окружения {@code INGEST_KEY} или файлом {@code ingest.key-file}.
+ */
+@Component
+@ConfigurationProperties(prefix = "ingest")
+public class IngestProperties {
+
+    /**
+     * Наблюдаемый каталог.
+     * Каталоги исходных файлов по умолчанию создаются внутри {@code source}, чтобы перенос
+     * оригинала был атомарным (в пределах одной файловой системы); вложенные каталоги не наблюдаются.
+     */
+    public static class Watch {
+        private Path source;
+        private Path output;
+        private Path archive;
+        private Path failed;
+
+        /**
+         * @return каталог для обработанных оригиналов
+         */
+        public Path archiveDirectory() {
+            return archive != null ? archive : source.resolve(".processed");
+        }
+
+        /**
+         * @return каталог для оригиналов, которые не удалось обработать
+         */
+        public Path failedDirectory() {
+            return failed != null ? failed : source.resolve(".failed");
+        }
+
+        public Path getSource() {
+            return source;
+        }
+
+        public void setSource(Path source) {
+            this.source = source;
+        }
+
+        public Path getOutput() {
+            return output;
+        }
+
+        public void setOutput(Path output) {
+            this.output = output;
+        }
+
+        public Path getArchive() {
+            return archive;
+        }
+
+        public void setArchive(Path archive) {
+            this.archive = archive;
+        }
+
+        public Path getFailed() {
+            return failed;
+        }
+
+        public void setFailed(Path failed) {
+            this.failed = failed;
+        }
+    }
+
+    private boolean enabled = false;
+    private List<Watch> directories = new ArrayList<>();
+    private String algorithm = "AES";
+    private String key;
+    private Path keyFile;
+    private Duration quietPeriod = Duration.ofSeconds(2);
+    private int workers = 0;
+    private int queueCapacity = 1000;
+    private List<String> ignoreSuffixes = new ArrayList<>(List.of(".part", ".tmp", "~"));
+
+    /**
+     * Возвращает ключ из {@code ingest.key} (переменная {@code INGEST_KEY}) или из файла ключа.
+     * @return ключ
+     * @throws IOException если файл ключа не читается
+     * @throws IllegalArgumentException если ключ не задан
+     */
+    public String resolveKey() throws IOException {
+        if (key != null && !key.isEmpty()) {
+            return key;
+        }
+        if (keyFile != null) {
+            String fromFile = Files.readString(keyFile, StandardCharsets.UTF_8).strip();
+            if (!fromFile.isEmpty()) {
+                return fromFile;
+            }
+        }
+        throw new IllegalArgumentException("Ключ не задан: укажите переменную INGEST_KEY или ingest.key-file");
+    }
+
+    /**
+     * @return число потоков шифрования (по умолчанию по числу ядер)
+     */
+    public int effectiveWorkers() {
+        return workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<Watch> getDirectories() {
+        return directories;
+    }
+
+    public void setDirectories(List<Watch> directories) {
+        this.directories = directories;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public Path getKeyFile() {
+        return keyFile;
+    }
+
+    public void setKeyFile(Path keyFile) {
+        this.keyFile = keyFile;
+    }
+
+    public Duration getQuietPeriod() {
+        return quietPeriod;
+    }
+
+    public void setQuietPeriod(Duration quietPeriod) {
+        this.quietPeriod = quietPeriod;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public List<String> getIgnoreSuffixes() {
+        return ignoreSuffixes;
+    }
+
+    public void setIgnoreSuffixes(List<String> ignoreSuffixes) {
+        this.ignoreSuffixes = ignoreSuffixes;
+    }
+}
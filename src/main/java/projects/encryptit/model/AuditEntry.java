@@ -0,0 +1,16 @@
+package projects.encryptit.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Запись журнала действий пользователя (таблица {@code audit_log}).
+ * @param id идентификатор записи
+ * @param userId идентификатор пользователя
+ * @param action действие, например {@code encrypt-file}
+ * @param description подробности
+ * @param ipAddress адрес клиента
+ * @param createdAt время действия
+ */
+public record AuditEntry(Long id, Long userId, String action, String description,
+                         String ipAddress, LocalDateTime createdAt) {
+}
@@ -0,0 +1,130 @@
+package projects.encryptit.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Зашифрованный файл, сохраненный на сервере.
+ * Хранит упорядоченный список хешей фрагментов, из которых собирается содержимое.
+ */
+@Entity
+@Table(name = "stored_files")
+public class StoredFile {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User owner;
+
+    @Column(nullable = false)
+    private String filename;
+
+    @Column(nullable = false, length = 50)
+    private String algorithm;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(name = "chunk_count", nullable = false)
+    private int chunkCount;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @ElementCollection(fetch = FetchType.LAZY)
+    @CollectionTable(name = "stored_file_chunks", joinColumns = @JoinColumn(name = "file_id"))
+    @OrderColumn(name = "seq")
+    @Column(name = "chunk_hash", length = 64, nullable = false)
+    private List<String> chunkHashes = new ArrayList<>();
+
+    /**
+     * Конструктор по умолчанию.
+     */
+    public StoredFile() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    /**
+     * Конструктор с параметрами.
+     * @param owner владелец файла
+     * @param filename имя файла
+     * @param algorithm алгоритм, которым зашифрован файл
+     */
+    public StoredFile(User owner, String filename, String algorithm) {
+        this.owner = owner;
+        this.filename = filename;
+        this.algorithm = algorithm;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Геттеры и сеттеры
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public User getOwner() {
+        return owner;
+    }
+
+    public void setOwner(User owner) {
+        this.owner = owner;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public void setChunkCount(int chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public List<String> getChunkHashes() {
+        return chunkHashes;
+    }
+
+    public void setChunkHashes(List<String> chunkHashes) {
+        this.chunkHashes = chunkHashes;
+    }
+}
@@ -0,0 +1,76 @@
+package projects.encryptit.model;
+
+/**
+ * Суммарное использование алгоритма пользователем (таблица {@code usage_totals}).
+ * @param algorithm алгоритм
+ * @param encryptedBytes зашифровано байт
+ * @param decryptedBytes расшифровано байт
+ * @param encryptRequests запросов на шифрование
+ * @param decryptRequests запросов на дешифрование
+ * @param busyNanos суммарное время обработки, нс
+ */
+public record UsageTotals(String algorithm, long encryptedBytes, long decryptedBytes,
+                          long encryptRequests, long decryptRequests, long busyNanos) {
+
+    /**
+     * Пустые счетчики алгоритма.
+     * @param algorithm алгоритм
+     * @return нулевые счетчики
+     */
+    public static UsageTotals empty(String algorithm) {
+        return new UsageTotals(algorithm, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Сумма двух наборов счетчиков одного алгоритма.
+     * @param other другие счетчики
+     * @return сумма
+     */
+    public UsageTotals plus(UsageTotals other) {
+        return new UsageTotals(algorithm,
+                encryptedBytes + other.encryptedBytes,
+                decryptedBytes + other.decryptedBytes,
+                encryptRequests + other.encryptRequests,
+                decryptRequests + other.decryptRequests,
+                busyNanos + other.busyNanos);
+    }
+
+    /**
+     * Разность счетчиков одного алгоритма.
+     * @param other вычитаемые счетчики
+     * @return разность
+     */
+    public UsageTotals minus(UsageTotals other) {
+        return new UsageTotals(algorithm,
+                encryptedBytes - other.encryptedBytes,
+                decryptedBytes - other.decryptedBytes,
+                encryptRequests - other.encryptRequests,
+                decryptRequests - other.decryptRequests,
+                busyNanos - other.busyNanos);
+    }
+
+    /**
+     * @return общее количество запросов
+     */
+    public long requests() {
+        return encryptRequests + decryptRequests;
+    }
+
+    /**
+     * @return true если счетчики нулевые
+     */
+    public boolean isEmpty() {
+        return requests() == 0 && encryptedBytes == 0 && decryptedBytes == 0 && busyNanos == 0;
+    }
+
+    /**
+     * Средняя пропускная способность за все время обработки.
+     * @return МБ/с или 0, если время не накоплено
+     */
+    public double throughputMbPerSecond() {
+        if (busyNanos == 0) {
+            return 0;
+        }
+        return (encryptedBytes + decryptedBytes) / (1024.0 * 1024.0) / (busyNanos / 1e9);
+    }
+}
@@ -0,0 +1,79 @@
+package projects.encryptit.ratelimit;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.security.Principal;
+
+/**
+ * Фильтр, применяющий лимиты к POST-запросам шифрования и дешифрования.
+ * Стоит в цепочке сервлет-фильтров сразу после Spring Security и до разбора
+ * multipart в DispatcherServlet, поэтому отклоненный запрос не читается с диска или сети.
+ * Запросы без {@code Content-Length} (chunked) отклоняются с кодом 411: их размер
+ * нельзя списать с ведра байтов заранее. Тело больше запаса ведра байтов
+ * ({@code burst-bytes}) отклоняется с кодом 413: оно не пройдет при любом ожидании.
+ * Выставляет заголовки {@code RateLimit-Limit}, {@code RateLimit-Remaining},
+ * {@code RateLimit-Reset} и {@code Retry-After} при отказе.
+ * Не создается как бин: регистрируется в {@link projects.encryptit.config.WebConfig}
+ * с явным порядком и путями.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+    private final RateLimitProperties properties;
+
+    public RateLimitFilter(RateLimiter rateLimiter, RateLimitProperties properties) {
+        this.rateLimiter = rateLimiter;
+        this.properties = properties;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Повторная асинхронная диспетчеризация сюда не попадает: лимит уже списан
+        return !properties.isEnabled() || !"POST".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long contentLength = request.getContentLengthLong();
+        if (contentLength < 0) {
+            // Без Content-Length и Transfer-Encoding у запроса нет тела
+            if (request.getHeader(HttpHeaders.TRANSFER_ENCODING) != null) {
+                response.sendError(HttpServletResponse.SC_LENGTH_REQUIRED, "Требуется заголовок Content-Length");
+                return;
+            }
+            contentLength = 0;
+        }
+
+        Principal principal = request.getUserPrincipal();
+        String client = principal != null ? principal.getName() : request.getRemoteAddr();
+        String endpoint = endpointName(request.getServletPath());
+        RateLimiter.Decision decision = rateLimiter.tryAcquire(client, endpoint, contentLength);
+
+        response.setHeader("RateLimit-Limit", Long.toString(decision.limit()));
+        response.setHeader("RateLimit-Remaining", Long.toString(decision.remaining()));
+        response.setHeader("RateLimit-Reset", Long.toString(decision.resetSeconds()));
+        if (decision.tooLarge()) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                    "Тело запроса больше лимита эндпоинта");
+            return;
+        }
+        if (!decision.allowed()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(decision.retryAfterSeconds()));
+            response.sendError(HttpServletResponse.SC_TOO_MANY_REQUESTS, "Слишком много запросов");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static String endpointName(String path) {
+        String trimmed = path.startsWith("/") ? path.substring(1) : path;
+        return trimmed.replace('/', '-');
+    }
+}
@@ -0,0 +1,108 @@
+package projects.encryptit.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Настройки ограничения частоты запросов (префикс {@code rate-limit}).
+ * Лимиты эндпоинтов задаются по имени пути без ведущего слэша,
+ * например {@code encrypt-file} для {@code /encrypt/file}.
+ */
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+    private Duration idleEviction = Duration.ofMinutes(10);
+    private Limit defaults = new Limit();
+    private Map<String, Limit> endpoints = new HashMap<>();
+
+    /**
+     * Лимит одного эндпоинта для одного пользователя.
+     */
+    public static class Limit {
+
+        private long requestsPerSecond = 5;
+        private long burstRequests = 10;
+        private DataSize bytesPerSecond = DataSize.ofMegabytes(20);
+        private DataSize burstBytes = DataSize.ofMegabytes(40);
+
+        public long getRequestsPerSecond() {
+            return requestsPerSecond;
+        }
+
+        public void setRequestsPerSecond(long requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+        }
+
+        public long getBurstRequests() {
+            return burstRequests;
+        }
+
+        public void setBurstRequests(long burstRequests) {
+            this.burstRequests = burstRequests;
+        }
+
+        public DataSize getBytesPerSecond() {
+            return bytesPerSecond;
+        }
+
+        public void setBytesPerSecond(DataSize bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        public DataSize getBurstBytes() {
+            return burstBytes;
+        }
+
+        public void setBurstBytes(DataSize burstBytes) {
+            this.burstBytes = burstBytes;
+        }
+    }
+
+    /**
+     * Возвращает лимит эндпоинта или лимит по умолчанию.
+     * @param endpoint имя эндпоинта
+     * @return лимит
+     */
+    public Limit limitFor(String endpoint) {
+        return endpoints.getOrDefault(endpoint, defaults);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getIdleEviction() {
+        return idleEviction;
+    }
+
+    public void setIdleEviction(Duration idleEviction) {
+        this.idleEviction = idleEviction;
+    }
+
+    public Limit getDefaults() {
+        return defaults;
+    }
+
+    public void setDefaults(Limit defaults) {
+        this.defaults = defaults;
+    }
+
+    public Map<String, Limit> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(Map<String, Limit> endpoints) {
+        this.endpoints = endpoints;
+    }
+}
@@ -0,0 +1,105 @@
+package projects.encryptit.ratelimit;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ограничитель частоты запросов по пользователю и эндпоинту.
+ * Ведра хранятся в {@link ConcurrentHashMap} (блокировки только на уровне
+ * отдельных корзин таблицы), сами ведра неблокирующие.
+ * Неиспользуемые ведра периодически удаляются.
+ */
+@Component
+public class RateLimiter {
+
+    private final RateLimitProperties properties;
+    private final ConcurrentHashMap<BucketKey, Buckets> buckets =
+            new ConcurrentHashMap<>(256, 0.75f, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Решение ограничителя.
+     * @param allowed разрешен ли запрос
+     * @param limit емкость ведра запросов
+     * @param remaining оставшиеся запросы
+     * @param resetSeconds секунд до полного восстановления
+     * @param retryAfterSeconds секунд до следующей попытки (0 если запрос разрешен)
+     * @param tooLarge тело запроса больше емкости ведра байтов и не пройдет при любом ожидании
+     */
+    public record Decision(boolean allowed, long limit, long remaining,
+                           long resetSeconds, long retryAfterSeconds, boolean tooLarge) {
+    }
+
+    private record BucketKey(String principal, String endpoint) {
+    }
+
+    private static final class Buckets {
+        final TokenBucket requests;
+        final TokenBucket bytes;
+        volatile long lastAccess;
+
+        Buckets(RateLimitProperties.Limit limit, long now) {
+            this.requests = new TokenBucket(limit.getRequestsPerSecond(), limit.getBurstRequests(), now);
+            this.bytes = new TokenBucket(limit.getBytesPerSecond().toBytes(), limit.getBurstBytes().toBytes(), now);
+            this.lastAccess = now;
+        }
+    }
+
+    public RateLimiter(RateLimitProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Пытается пропустить запрос.
+     * @param principal имя пользователя или адрес клиента
+     * @param endpoint имя эндпоинта
+     * @param requestBytes размер тела запроса
+     * @return решение ограничителя
+     */
+    public Decision tryAcquire(String principal, String endpoint, long requestBytes) {
+        long now = System.nanoTime();
+        Buckets pair = buckets.computeIfAbsent(new BucketKey(principal, endpoint),
+                key -> new Buckets(properties.limitFor(endpoint), now));
+        pair.lastAccess = now;
+
+        if (requestBytes > pair.bytes.capacity()) {
+            // Ведра не трогаем: повтор такого запроса бесполезен, ожидание его не пропустит
+            return new Decision(false, pair.requests.capacity(), pair.requests.available(now),
+                    toSeconds(pair.requests.nanosUntilFull(now)), 0, true);
+        }
+
+        long waitNanos = pair.requests.tryAcquire(1, now);
+        if (waitNanos == 0 && requestBytes > 0) {
+            waitNanos = pair.bytes.tryAcquire(requestBytes, now);
+            if (waitNanos > 0) {
+                pair.requests.refund(1);
+            }
+        }
+
+        long reset = Math.max(pair.requests.nanosUntilFull(now), pair.bytes.nanosUntilFull(now));
+        return new Decision(waitNanos == 0, pair.requests.capacity(), pair.requests.available(now),
+                toSeconds(reset), waitNanos == 0 ? 0 : Math.max(1, toSeconds(waitNanos)), false);
+    }
+
+    /**
+     * Удаляет ведра пользователей, которые давно не обращались к сервису.
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        long threshold = System.nanoTime() - properties.getIdleEviction().toNanos();
+        buckets.values().removeIf(pair -> pair.lastAccess - threshold < 0);
+    }
+
+    /**
+     * Возвращает количество активных ведер.
+     * @return количество пар ведер
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    private static long toSeconds(long nanos) {
+        return (nanos + 999_999_999L) / 1_000_000_000L;
+    }
+}
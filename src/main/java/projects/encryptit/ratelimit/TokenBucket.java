@@ -0,0 +1,105 @@
+package projects.encryptit.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Неблокирующее ведро токенов на основе алгоритма GCRA.
+ * Все состояние хранится в одном {@link AtomicLong} - теоретическом
+ * времени прибытия следующего запроса, поэтому захват выполняется одной CAS-операцией.
+ * Стоимость токенов считается от скорости без округления стоимости одного токена,
+ * поэтому точна и для скоростей больше 1 ГБ/с.
+ */
+final class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final long tokensPerSecond;
+    private final long burstTolerance;
+    private final long capacity;
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param tokensPerSecond скорость пополнения
+     * @param capacity максимальный запас токенов
+     * @param now текущее время, нс
+     */
+    TokenBucket(long tokensPerSecond, long capacity, long now) {
+        this.tokensPerSecond = Math.max(1, tokensPerSecond);
+        this.capacity = Math.max(1, capacity);
+        this.burstTolerance = nanosFor(this.capacity);
+        this.theoreticalArrival = new AtomicLong(now);
+    }
+
+    /**
+     * Пытается забрать токены.
+     * @param tokens количество токенов (не больше емкости ведра)
+     * @param now текущее время, нс
+     * @return 0 если токены получены, иначе время ожидания в нс
+     * @throws IllegalArgumentException если запрошено больше емкости: такой запрос не пройдет никогда
+     */
+    long tryAcquire(long tokens, long now) {
+        if (tokens > capacity) {
+            throw new IllegalArgumentException("Запрошено " + tokens + " токенов при емкости " + capacity);
+        }
+        long cost = nanosFor(tokens);
+        while (true) {
+            long current = theoreticalArrival.get();
+            long base = Math.max(current, now);
+            long next = base + cost;
+            if (next - now > burstTolerance) {
+                return next - now - burstTolerance;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Возвращает ранее забранные токены, если запрос не был выполнен.
+     * @param tokens количество токенов
+     */
+    void refund(long tokens) {
+        theoreticalArrival.addAndGet(-nanosFor(Math.min(tokens, capacity)));
+    }
+
+    /**
+     * Оценивает текущий запас токенов.
+     * @param now текущее время, нс
+     * @return количество доступных токенов
+     */
+    long available(long now) {
+        long debt = Math.max(0, theoreticalArrival.get() - now);
+        return Math.max(0, tokensFor(burstTolerance - debt));
+    }
+
+    /**
+     * Оценивает время до полного восстановления ведра.
+     * @param now текущее время, нс
+     * @return время в нс
+     */
+    long nanosUntilFull(long now) {
+        return Math.max(0, theoreticalArrival.get() - now);
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Время пополнения {@code tokens} токенов; деление с остатком не дает произведению
+     * переполниться при скоростях до 9 ГБ/с.
+     */
+    private long nanosFor(long tokens) {
+        return tokens / tokensPerSecond * NANOS_PER_SECOND
+                + (tokens % tokensPerSecond) * NANOS_PER_SECOND / tokensPerSecond;
+    }
+
+    /**
+     * Количество токенов, пополняемых за {@code nanos}.
+     */
+    private long tokensFor(long nanos) {
+        return nanos / NANOS_PER_SECOND * tokensPerSecond
+                + (nanos % NANOS_PER_SECOND) * tokensPerSecond / NANOS_PER_SECOND;
+    }
+}
@@ -0,0 +1,169 @@
+package projects.encryptit.repository;
+
+import projects.encryptit.model.AuditEntry;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Репозиторий журнала действий.
+ * Таблица секционирована по месяцам, поэтому работа идет через JDBC:
+ * пакетная вставка, постраничное чтение по ключу и управление секциями.
+ */
+@Repository
+public class AuditLogRepository {
+
+    private static final String PARTITION_PREFIX = "audit_log_p";
+    private static final String DEFAULT_PARTITION = "audit_log_default";
+    private static final String COLUMNS = "id, user_id, action, description, ip_address, created_at";
+    private static final Pattern PARTITION_NAME = Pattern.compile(PARTITION_PREFIX + "\\d{6}");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final RowMapper<AuditEntry> ENTRY_MAPPER = (rs, rowNum) -> new AuditEntry(
+            rs.getLong("id"),
+            rs.getLong("user_id"),
+            rs.getString("action"),
+            rs.getString("description"),
+            rs.getString("ip_address"),
+            rs.getTimestamp("created_at").toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AuditLogRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Вставляет записи одним пакетом.
+     * @param entries записи (идентификатор назначает база)
+     */
+    public void insertBatch(List<AuditEntry> entries) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO audit_log (user_id, action, description, ip_address, created_at) VALUES (?, ?, ?, ?, ?)",
+                entries.stream()
+                        .map(e -> new Object[] {e.userId(), e.action(), e.description(), e.ipAddress(),
+                                Timestamp.valueOf(e.createdAt())})
+                        .toList());
+    }
+
+    /**
+     * Страница истории пользователя, новые записи первыми.
+     * Продолжение задается ключом последней записи предыдущей страницы,
+     * поэтому стоимость не растет с номером страницы.
+     * @param userId идентификатор пользователя
+     * @param afterCreatedAt время последней записи предыдущей страницы или null для первой
+     * @param afterId идентификатор последней записи предыдущей страницы
+     * @param limit размер страницы
+     * @return записи
+     */
+    public List<AuditEntry> findPage(Long userId, LocalDateTime afterCreatedAt, Long afterId, int limit) {
+        if (afterCreatedAt == null) {
+            return jdbcTemplate.query(
+                    "SELECT id, user_id, action, description, ip_address, created_at FROM audit_log "
+                            + "WHERE user_id = ? ORDER BY created_at DESC, id DESC LIMIT ?",
+                    ENTRY_MAPPER, userId, limit);
+        }
+        Timestamp after = Timestamp.valueOf(afterCreatedAt);
+        // Отдельное условие на created_at позволяет планировщику отсечь более новые секции
+        return jdbcTemplate.query(
+                "SELECT id, user_id, action, description, ip_address, created_at FROM audit_log "
+                        + "WHERE user_id = ? AND created_at <= ? AND (created_at, id) < (?, ?) "
+                        + "ORDER BY created_at DESC, id DESC LIMIT ?",
+                ENTRY_MAPPER, userId, after, after, afterId, limit);
+    }
+
+    /**
+     * Проверяет, что таблица секционирована (PostgreSQL после миграции V3).
+     * @return true для секционированной таблицы
+     */
+    public boolean isPartitioned() {
+        try {
+            Integer count = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM pg_partitioned_table pt "
+                            + "JOIN pg_class c ON c.oid = pt.partrelid WHERE c.relname = 'audit_log'",
+                    Integer.class);
+            return count != null && count > 0;
+        } catch (DataAccessException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Месяцы, для которых существуют секции.
+     * @return месяцы секций
+     */
+    public List<YearMonth> findPartitionMonths() {
+        return jdbcTemplate.queryForList(
+                        "SELECT c.relname FROM pg_inherits i "
+                                + "JOIN pg_class c ON c.oid = i.inhrelid "
+                                + "JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = 'audit_log'",
+                        String.class).stream()
+                .filter(name -> PARTITION_NAME.matcher(name).matches())
+                .map(name -> YearMonth.parse(name.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX))
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Месяцы, записи которых лежат в секции по умолчанию (для них не было своей секции).
+     * @return месяцы записей секции по умолчанию
+     */
+    public List<YearMonth> findDefaultPartitionMonths() {
+        return jdbcTemplate.queryForList(
+                        "SELECT DISTINCT date_trunc('month', created_at) FROM " + DEFAULT_PARTITION, Timestamp.class)
+                .stream()
+                .map(month -> YearMonth.from(month.toLocalDateTime()))
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Создает секцию месяца, если ее нет, и переносит в нее записи этого месяца
+     * из секции по умолчанию. Секция создается отдельной таблицей и подключается
+     * после переноса: {@code CREATE TABLE ... PARTITION OF} не выполнился бы,
+     * пока в секции по умолчанию есть записи этого месяца.
+     * @param month месяц
+     * @return число перенесенных записей
+     */
+    @Transactional
+    public int createPartition(YearMonth month) {
+        String name = partitionName(month);
+        Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?::text) IS NOT NULL", Boolean.class, name);
+        if (Boolean.TRUE.equals(exists)) {
+            return 0;
+        }
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE audit_log INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                        + " WHERE created_at >= ? AND created_at < ? RETURNING " + COLUMNS + ") "
+                        + "INSERT INTO " + name + " (" + COLUMNS + ") SELECT " + COLUMNS + " FROM moved",
+                Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.atStartOfDay()));
+        // Индексы и внешний ключ родительской таблицы создаются на секции при подключении
+        jdbcTemplate.execute("ALTER TABLE audit_log ATTACH PARTITION " + name
+                + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        return moved;
+    }
+
+    /**
+     * Удаляет секцию месяца целиком вместо построчного DELETE.
+     * @param month месяц
+     */
+    public void dropPartition(YearMonth month) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partitionName(month));
+    }
+
+    private static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+}
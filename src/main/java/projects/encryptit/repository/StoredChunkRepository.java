@@ -0,0 +1,86 @@
+package projects.encryptit.repository;
+
+import projects.encryptit.model.StoredChunk;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Репозиторий счетчиков ссылок на фрагменты.
+ */
+@Repository
+public interface StoredChunkRepository extends JpaRepository<StoredChunk, String> {
+
+    /**
+     * Добавляет ссылки на фрагмент, создавая запись при первом упоминании.
+     * Блокирует строку до конца транзакции, так что сборщик мусора не удалит фрагмент.
+     * Транзакция, берущая несколько ссылок, должна брать их в порядке хешей,
+     * иначе параллельные загрузки с общими фрагментами могут взаимно заблокироваться.
+     * @param hash хеш фрагмента
+     * @param size размер фрагмента
+     * @param count количество добавляемых ссылок
+     */
+    @Modifying
+    @Query(value = "INSERT INTO stored_chunks (hash, size, ref_count, created_at) "
+            + "VALUES (:hash, :size, :count, CURRENT_TIMESTAMP) "
+            + "ON CONFLICT (hash) DO UPDATE SET ref_count = stored_chunks.ref_count + :count, released_at = NULL",
+            nativeQuery = true)
+    void acquire(@Param("hash") String hash, @Param("size") int size, @Param("count") int count);
+
+    /**
+     * Снимает ссылки на фрагмент; при обнулении запоминает момент освобождения.
+     * @param hash хеш фрагмента
+     * @param count количество снимаемых ссылок
+     */
+    @Modifying
+    @Query(value = "UPDATE stored_chunks SET ref_count = ref_count - :count, "
+            + "released_at = CASE WHEN ref_count = :count THEN CURRENT_TIMESTAMP ELSE released_at END "
+            + "WHERE hash = :hash",
+            nativeQuery = true)
+    void release(@Param("hash") String hash, @Param("count") int count);
+
+    /**
+     * Фрагменты без ссылок, освобожденные раньше указанного момента.
+     * @param cutoff граница времени освобождения
+     * @param page размер порции
+     * @return хеши фрагментов
+     */
+    @Query("SELECT c.hash FROM StoredChunk c WHERE c.refCount = 0 AND c.releasedAt < :cutoff")
+    List<String> findReleasedBefore(@Param("cutoff") LocalDateTime cutoff, Pageable page);
+
+    /**
+     * Удаляет запись фрагмента, если на него по-прежнему нет ссылок.
+     * @param hash хеш фрагмента
+     * @return 1 если запись удалена, 0 если фрагмент снова используется
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM StoredChunk c WHERE c.hash = :hash AND c.refCount = 0")
+    int deleteIfUnreferenced(@Param("hash") String hash);
+
+    /**
+     * Размеры фрагментов файла в порядке их следования.
+     * @param fileId идентификатор файла
+     * @return размеры фрагментов
+     */
+    @Query(value = "SELECT c.size FROM stored_file_chunks f JOIN stored_chunks c ON c.hash = f.chunk_hash "
+            + "WHERE f.file_id = :fileId ORDER BY f.seq",
+            nativeQuery = true)
+    List<Integer> findSizesByFile(@Param("fileId") Long fileId);
+
+    /**
+     * Какие из указанных хешей известны базе.
+     * @param hashes хеши фрагментов
+     * @return существующие хеши
+     */
+    @Query("SELECT c.hash FROM StoredChunk c WHERE c.hash IN :hashes")
+    List<String> findExisting(@Param("hashes") Collection<String> hashes);
+}
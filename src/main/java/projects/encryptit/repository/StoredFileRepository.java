@@ -0,0 +1,31 @@
+package projects.encryptit.repository;
+
+import projects.encryptit.model.StoredFile;
+import projects.encryptit.model.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Репозиторий каталога сохраненных файлов.
+ */
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, Long> {
+
+    /**
+     * Файлы пользователя, новые первыми.
+     * @param owner владелец
+     * @return список файлов
+     */
+    List<StoredFile> findByOwnerOrderByCreatedAtDesc(User owner);
+
+    /**
+     * Поиск файла с проверкой владельца.
+     * @param id идентификатор файла
+     * @param owner владелец
+     * @return Optional с файлом
+     */
+    Optional<StoredFile> findByIdAndOwner(Long id, User owner);
+}
@@ -0,0 +1,109 @@
+package projects.encryptit.repository;
+
+import projects.encryptit.model.UsageTotals;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Репозиторий накопленной статистики использования.
+ * Строки только увеличиваются на переданные приращения, поэтому
+ * несколько экземпляров приложения могут сбрасывать статистику одновременно.
+ */
+@Repository
+public class UsageTotalsRepository {
+
+    private static final RowMapper<UsageTotals> TOTALS_MAPPER = (rs, rowNum) -> new UsageTotals(
+            rs.getString("algorithm"),
+            rs.getLong("encrypted_bytes"),
+            rs.getLong("decrypted_bytes"),
+            rs.getLong("encrypt_requests"),
+            rs.getLong("decrypt_requests"),
+            rs.getLong("busy_nanos"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean postgres;
+
+    public UsageTotalsRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Прибавляет приращения к сохраненным счетчикам одним пакетом.
+     * В PostgreSQL это один пакет {@code INSERT ... ON CONFLICT DO UPDATE}, поэтому
+     * экземпляры, одновременно создающие одну и ту же строку, не конфликтуют по ключу.
+     * В остальных базах (H2 в нагрузочных тестах, один экземпляр) отсутствующие строки
+     * создаются вставкой после пакетного обновления.
+     * @param deltas приращения по идентификатору пользователя
+     */
+    @Transactional
+    public void addAll(List<Map.Entry<Long, UsageTotals>> deltas) {
+        List<Object[]> rows = deltas.stream().map(d -> row(d.getKey(), d.getValue())).toList();
+        if (isPostgres()) {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO usage_totals (encrypted_bytes, decrypted_bytes, encrypt_requests, "
+                            + "decrypt_requests, busy_nanos, user_id, algorithm) VALUES (?, ?, ?, ?, ?, ?, ?) "
+                            + "ON CONFLICT (user_id, algorithm) DO UPDATE SET "
+                            + "encrypted_bytes = usage_totals.encrypted_bytes + EXCLUDED.encrypted_bytes, "
+                            + "decrypted_bytes = usage_totals.decrypted_bytes + EXCLUDED.decrypted_bytes, "
+                            + "encrypt_requests = usage_totals.encrypt_requests + EXCLUDED.encrypt_requests, "
+                            + "decrypt_requests = usage_totals.decrypt_requests + EXCLUDED.decrypt_requests, "
+                            + "busy_nanos = usage_totals.busy_nanos + EXCLUDED.busy_nanos, "
+                            + "updated_at = CURRENT_TIMESTAMP",
+                    rows);
+            return;
+        }
+        int[] updated = jdbcTemplate.batchUpdate(
+                "UPDATE usage_totals SET encrypted_bytes = encrypted_bytes + ?, "
+                        + "decrypted_bytes = decrypted_bytes + ?, encrypt_requests = encrypt_requests + ?, "
+                        + "decrypt_requests = decrypt_requests + ?, busy_nanos = busy_nanos + ?, "
+                        + "updated_at = CURRENT_TIMESTAMP WHERE user_id = ? AND algorithm = ?",
+                rows);
+        List<Object[]> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(rows.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO usage_totals (encrypted_bytes, decrypted_bytes, encrypt_requests, "
+                            + "decrypt_requests, busy_nanos, user_id, algorithm) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    missing);
+        }
+    }
+
+    /**
+     * Сохраненные счетчики пользователя по алгоритмам.
+     * @param userId идентификатор пользователя
+     * @return счетчики
+     */
+    public List<UsageTotals> findByUser(Long userId) {
+        return jdbcTemplate.query(
+                "SELECT algorithm, encrypted_bytes, decrypted_bytes, encrypt_requests, decrypt_requests, busy_nanos "
+                        + "FROM usage_totals WHERE user_id = ? ORDER BY algorithm",
+                TOTALS_MAPPER, userId);
+    }
+
+    private boolean isPostgres() {
+        Boolean postgres = this.postgres;
+        if (postgres == null) {
+            // ON CONFLICT ... DO UPDATE есть только в PostgreSQL (H2 понимает лишь DO NOTHING)
+            postgres = "PostgreSQL".equals(jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+            this.postgres = postgres;
+        }
+        return postgres;
+    }
+
+    private static Object[] row(Long userId, UsageTotals t) {
+        return new Object[] {t.encryptedBytes(), t.decryptedBytes(), t.encryptRequests(),
+                t.decryptRequests(), t.busyNanos(), userId, t.algorithm()};
+    }
+}
@@ -1,19 +1,46 @@
 package projects.encryptit.security;
 
+import jakarta.servlet.DispatcherType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authorization.AuthenticatedAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.context.NullSecurityContextRepository;
+import org.springframework.security.web.savedrequest.NullRequestCache;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    /**
+     * Режим аутентификации без серверных сессий.
+     */
+    public static final String MODE_STATELESS = "stateless";
+
+    private final String authMode;
+    private final List<String> diagnosticsAddresses;
+
+    public SecurityConfig(@Value("${security.auth.mode:session}") String authMode,
+                          @Value("${diagnostics.allowed-addresses:127.0.0.1,::1}") List<String> diagnosticsAddresses) {
+        this.authMode = authMode;
+        this.diagnosticsAddresses = diagnosticsAddresses;
+    }
+
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, TokenService tokenService) throws Exception {
         http
             .authorizeHttpRequests(authz -> authz
                 .requestMatchers(
@@ -22,31 +49,77 @@ public class SecurityConfig {
                     "/register",
                     "/css/**",
                     "/js/**",
-                    "/webjars/**"
+                    "/webjars/**",
+                    "/health/readiness"
                 ).permitAll()
+                // Повторная диспетчеризация асинхронного ответа: запрос уже прошел проверку
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                .requestMatchers("/diagnostics/**").access(diagnosticsAccess())
                 .anyRequest().authenticated()
             )
-            .formLogin(form -> form
-                .loginPage("/login")
-                .defaultSuccessUrl("/dashboard", true)
-                .permitAll()
-            )
             .logout(logout -> logout
                 .logoutRequestMatcher(new org.springframework.security.web.util.matcher.AntPathRequestMatcher("/logout"))
                 .logoutSuccessUrl("/login?logout")
+                .deleteCookies(TokenAuthenticationFilter.COOKIE_NAME)
                 .permitAll()
             )
-            .rememberMe(remember -> remember
-                .key("uniqueAndSecret")
-                .tokenValiditySeconds(86400)
-            )
             .csrf(csrf -> csrf.disable());
 
+        if (MODE_STATELESS.equalsIgnoreCase(authMode)) {
+            // Токен проверяется только по подписи: ни сессии, ни обращения к БД
+            http
+                .formLogin(form -> form
+                    .loginPage("/login")
+                    .successHandler(new TokenLoginSuccessHandler(tokenService, "/dashboard"))
+                    .permitAll()
+                )
+                .sessionManagement(session -> session
+                    .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                )
+                .securityContext(context -> context
+                    .securityContextRepository(new NullSecurityContextRepository())
+                )
+                .requestCache(cache -> cache
+                    .requestCache(new NullRequestCache())
+                )
+                .addFilterBefore(new TokenAuthenticationFilter(tokenService),
+                        UsernamePasswordAuthenticationFilter.class);
+        } else {
+            http
+                .formLogin(form -> form
+                    .loginPage("/login")
+                    .defaultSuccessUrl("/dashboard", true)
+                    .permitAll()
+                )
+                .rememberMe(remember -> remember
+                    .key("uniqueAndSecret")
+                    .tokenValiditySeconds(86400)
+                );
+        }
+
         return http.build();
     }
 
+    /**
+     * Доступ к диагностике: запись JFR содержит имена пользователей и параметры запросов,
+     * поэтому она доступна только вошедшему пользователю с адреса из
+     * {@code diagnostics.allowed-addresses} (по умолчанию только локального).
+     */
+    private AuthorizationManager<RequestAuthorizationContext> diagnosticsAccess() {
+        List<IpAddressMatcher> matchers = diagnosticsAddresses.stream().map(IpAddressMatcher::new).toList();
+        AuthenticatedAuthorizationManager<RequestAuthorizationContext> authenticated =
+                AuthenticatedAuthorizationManager.authenticated();
+        return (authentication, context) -> {
+            String address = context.getRequest().getRemoteAddr();
+            if (matchers.stream().noneMatch(matcher -> matcher.matches(address))) {
+                return new AuthorizationDecision(false);
+            }
+            return authenticated.check(authentication, context);
+        };
+    }
+
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
     }
-}
\ No newline at end of file
+}
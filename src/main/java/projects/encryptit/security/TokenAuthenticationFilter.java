@@ -0,0 +1,89 @@
+package projects.encryptit.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Фильтр stateless-режима: аутентифицирует запрос по подписанному токену
+ * из cookie или заголовка {@code Authorization: Bearer}.
+ * Не создается как бин, чтобы не попасть в цепочку сервлет-фильтров дважды.
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    /**
+     * Имя cookie с токеном.
+     */
+    public static final String COOKIE_NAME = "AUTH_TOKEN";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final TokenService tokenService;
+
+    public TokenAuthenticationFilter(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Optional<TokenService.VerifiedToken> verified = tokenService.verify(extractToken(request));
+        if (verified.isPresent()) {
+            TokenPrincipal principal = verified.get().principal();
+            SecurityContext context = SecurityContextHolder.createEmptyContext();
+            context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(principal, null, List.of()));
+            SecurityContextHolder.setContext(context);
+
+            if (tokenService.shouldRefresh(verified.get())) {
+                writeCookie(response, tokenService, tokenService.issue(principal.username(), principal.userId()));
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Записывает cookie с токеном: HttpOnly, SameSite=Lax и, если не отключено
+     * ({@code security.token.cookie-secure}), Secure.
+     * @param response HTTP-ответ
+     * @param tokenService сервис токенов (срок жизни и флаг Secure)
+     * @param token токен
+     */
+    static void writeCookie(HttpServletResponse response, TokenService tokenService, String token) {
+        ResponseCookie cookie = ResponseCookie.from(COOKIE_NAME, token)
+                .httpOnly(true)
+                .secure(tokenService.isCookieSecure())
+                .sameSite("Lax")
+                .path("/")
+                .maxAge(tokenService.getTtl())
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    private static String extractToken(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            return header.substring(BEARER_PREFIX.length());
+        }
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (COOKIE_NAME.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+}
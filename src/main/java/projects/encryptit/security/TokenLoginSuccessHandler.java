@@ -0,0 +1,32 @@
+package projects.encryptit.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+
+import java.io.IOException;
+
+/**
+ * После успешного входа выдает подписанный токен в cookie
+ * и перенаправляет на главную страницу.
+ */
+public class TokenLoginSuccessHandler implements AuthenticationSuccessHandler {
+
+    private final TokenService tokenService;
+    private final String targetUrl;
+
+    public TokenLoginSuccessHandler(TokenService tokenService, String targetUrl) {
+        this.tokenService = tokenService;
+        this.targetUrl = targetUrl;
+    }
+
+    @Override
+    public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
+                                        Authentication authentication) throws IOException {
+        CustomUserDetails details = (CustomUserDetails) authentication.getPrincipal();
+        String token = tokenService.issue(details.getUsername(), details.getUser().getId());
+        TokenAuthenticationFilter.writeCookie(response, tokenService, token);
+        response.sendRedirect(request.getContextPath() + targetUrl);
+    }
+}
@@ -0,0 +1,35 @@
+package projects.encryptit.security;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.security.Principal;
+import java.util.Optional;
+
+/**
+ * Пользователь, восстановленный из подписанного токена без обращения к БД.
+ * Сервисы берут из него идентификатор пользователя вместо поиска по имени.
+ * @param username имя пользователя
+ * @param userId идентификатор пользователя
+ */
+public record TokenPrincipal(String username, long userId) implements Principal {
+
+    @Override
+    public String getName() {
+        return username;
+    }
+
+    /**
+     * Идентификатор пользователя из токена текущего запроса.
+     * @param username имя пользователя, для которого нужен идентификатор
+     * @return идентификатор, если запрос аутентифицирован токеном этого пользователя
+     */
+    public static Optional<Long> currentUserId(String username) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof TokenPrincipal principal
+                && principal.username().equals(username)) {
+            return Optional.of(principal.userId());
+        }
+        return Optional.empty();
+    }
+}
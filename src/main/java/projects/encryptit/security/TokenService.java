@@ -0,0 +1,159 @@
+package projects.encryptit.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Выпуск и проверка подписанных токенов аутентификации (HMAC-SHA256).
+ * Формат: {@code base64url(userId:expiresAt:base64url(username)).base64url(hmac)}.
+ * Проверка выполняется только по подписи, без сессии и без обращения к БД.
+ */
+@Service
+public class TokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec secretKey;
+    private final Duration ttl;
+    private final boolean cookieSecure;
+    private final Clock clock;
+    private final ThreadLocal<Mac> macs;
+
+    /**
+     * Проверенное содержимое токена.
+     * @param principal пользователь
+     * @param expiresAt время истечения, секунды эпохи
+     */
+    public record VerifiedToken(TokenPrincipal principal, long expiresAt) {
+    }
+
+    @Autowired
+    public TokenService(@Value("${security.token.secret:}") String secret,
+                        @Value("${security.token.ttl:15m}") Duration ttl,
+                        @Value("${security.token.cookie-secure:true}") boolean cookieSecure) {
+        this(secret, ttl, cookieSecure, Clock.systemUTC());
+    }
+
+    TokenService(String secret, Duration ttl, boolean cookieSecure, Clock clock) {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            // Без общего секрета токены одного узла не принимаются другими узлами
+            log.warn("security.token.secret не задан, используется случайный ключ этого узла");
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.secretKey = new SecretKeySpec(keyBytes, MAC_ALGORITHM);
+        this.ttl = ttl;
+        this.cookieSecure = cookieSecure;
+        this.clock = clock;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * Выпускает токен для пользователя.
+     * @param username имя пользователя
+     * @param userId идентификатор пользователя
+     * @return токен
+     */
+    public String issue(String username, long userId) {
+        long expiresAt = clock.instant().plus(ttl).getEpochSecond();
+        String payload = userId + ":" + expiresAt + ":"
+                + ENCODER.encodeToString(username.getBytes(StandardCharsets.UTF_8));
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(payloadBytes) + "." + ENCODER.encodeToString(sign(payloadBytes));
+    }
+
+    /**
+     * Проверяет подпись и срок действия токена.
+     * @param token токен
+     * @return содержимое токена, если он действителен
+     */
+    public Optional<VerifiedToken> verify(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot == token.length() - 1) {
+            return Optional.empty();
+        }
+        try {
+            byte[] payloadBytes = DECODER.decode(token.substring(0, dot));
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(sign(payloadBytes), signature)) {
+                return Optional.empty();
+            }
+
+            String[] parts = new String(payloadBytes, StandardCharsets.UTF_8).split(":", 3);
+            if (parts.length != 3) {
+                return Optional.empty();
+            }
+            long expiresAt = Long.parseLong(parts[1]);
+            if (clock.instant().getEpochSecond() >= expiresAt) {
+                return Optional.empty();
+            }
+            String username = new String(DECODER.decode(parts[2]), StandardCharsets.UTF_8);
+            return Optional.of(new VerifiedToken(new TokenPrincipal(username, Long.parseLong(parts[0])), expiresAt));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Проверяет, пора ли перевыпустить токен (прошло больше половины срока).
+     * @param token проверенный токен
+     * @return true если токен стоит обновить
+     */
+    public boolean shouldRefresh(VerifiedToken token) {
+        return token.expiresAt() - clock.instant().getEpochSecond() < ttl.getSeconds() / 2;
+    }
+
+    /**
+     * Возвращает срок действия токена.
+     * @return срок действия
+     */
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Отправлять ли cookie с токеном только по HTTPS.
+     * @return значение атрибута {@code Secure}
+     */
+    public boolean isCookieSecure() {
+        return cookieSecure;
+    }
+
+    private byte[] sign(byte[] payload) {
+        Mac mac = macs.get();
+        return mac.doFinal(payload);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(secretKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC недоступен", e);
+        }
+    }
+}
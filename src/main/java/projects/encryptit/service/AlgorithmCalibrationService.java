@@ -0,0 +1,146 @@
+package projects.encryptit.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+import projects.encryptit.util.encryption.EncryptionAlgorithm;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Сервис выбора алгоритма по умолчанию.
+ * Если в настройках указано значение AUTO, при старте измеряет пропускную
+ * способность AES и ChaCha20 и выбирает более быстрый алгоритм.
+ */
+@Service
+public class AlgorithmCalibrationService {
+
+    /**
+     * Значение настройки, включающее автоматический выбор.
+     */
+    public static final String AUTO = "AUTO";
+
+    private static final Logger log = LoggerFactory.getLogger(AlgorithmCalibrationService.class);
+    private static final List<String> CANDIDATES = List.of("AES", "CHACHA20");
+    private static final String FALLBACK = "AES";
+    private static final String CALIBRATION_KEY = "calibration-key";
+    private static final int WARMUP_ITERATIONS = 20;
+
+    private final AlgorithmRegistry registry;
+    private final String configuredAlgorithm;
+    private final int payloadSize;
+    private final long durationMillis;
+
+    private volatile CalibrationReport report;
+
+    /**
+     * Результат измерения одного алгоритма.
+     * @param algorithm название алгоритма
+     * @param megabytesPerSecond пропускная способность, МБ/с
+     * @param bytesProcessed количество обработанных байт
+     * @param elapsedNanos длительность измерения
+     */
+    public record CalibrationResult(String algorithm, double megabytesPerSecond,
+                                    long bytesProcessed, long elapsedNanos) {
+    }
+
+    /**
+     * Отчет о выборе алгоритма по умолчанию.
+     * @param configured значение из настроек
+     * @param selected выбранный алгоритм
+     * @param results результаты измерений (пустой список, если калибровка не выполнялась)
+     * @param measuredAt время измерения
+     */
+    public record CalibrationReport(String configured, String selected,
+                                    List<CalibrationResult> results, Instant measuredAt) {
+    }
+
+    public AlgorithmCalibrationService(AlgorithmRegistry registry,
+                                       @Value("${encryption.default-algorithm:AES}") String configuredAlgorithm,
+                                       @Value("${encryption.calibration.payload-size:65536}") int payloadSize,
+                                       @Value("${encryption.calibration.duration-ms:150}") long durationMillis) {
+        this.registry = registry;
+        this.configuredAlgorithm = configuredAlgorithm;
+        this.payloadSize = payloadSize;
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * Выполняет калибровку при старте приложения.
+     */
+    @PostConstruct
+    public void calibrate() {
+        if (!AUTO.equalsIgnoreCase(configuredAlgorithm)) {
+            String selected = registry.require(configuredAlgorithm).getName();
+            report = new CalibrationReport(configuredAlgorithm, selected, List.of(), Instant.now());
+            return;
+        }
+
+        byte[] payload = new byte[payloadSize];
+        new Random(42).nextBytes(payload);
+
+        List<CalibrationResult> results = new ArrayList<>();
+        for (String candidate : CANDIDATES) {
+            try {
+                results.add(measure(registry.require(candidate), payload));
+            } catch (RuntimeException e) {
+                log.warn("Калибровка алгоритма {} не удалась: {}", candidate, e.getMessage());
+            }
+        }
+
+        String selected = results.stream()
+                .max(Comparator.comparingDouble(CalibrationResult::megabytesPerSecond))
+                .map(CalibrationResult::algorithm)
+                .orElse(FALLBACK);
+        report = new CalibrationReport(configuredAlgorithm, selected, List.copyOf(results), Instant.now());
+        log.info("Алгоритм по умолчанию: {} (замеры: {})", selected, results);
+    }
+
+    /**
+     * Возвращает алгоритм по умолчанию.
+     * @return название алгоритма
+     */
+    public String getDefaultAlgorithm() {
+        return report.selected();
+    }
+
+    /**
+     * Возвращает отчет о последней калибровке.
+     * @return отчет
+     */
+    public CalibrationReport getReport() {
+        return report;
+    }
+
+    private CalibrationResult measure(EncryptionAlgorithm algorithm, byte[] payload) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += algorithm.encrypt(payload, CALIBRATION_KEY).length;
+        }
+
+        long bytes = 0;
+        long start = System.nanoTime();
+        long deadline = start + durationMillis * 1_000_000L;
+        long now;
+        do {
+            sink += algorithm.encrypt(payload, CALIBRATION_KEY).length;
+            bytes += payload.length;
+            now = System.nanoTime();
+        } while (now < deadline);
+
+        long elapsed = now - start;
+        double megabytesPerSecond = bytes / (1024.0 * 1024.0) / (elapsed / 1_000_000_000.0);
+        if (sink == 0) {
+            // Не даем JIT выбросить замеряемую работу
+            throw new IllegalStateException("Пустой результат калибровки");
+        }
+        return new CalibrationResult(algorithm.getName(), megabytesPerSecond, bytes, elapsed);
+    }
+}
@@ -0,0 +1,92 @@
+package projects.encryptit.service;
+
+import projects.encryptit.repository.AuditLogRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Обслуживание секций журнала действий.
+ * Заранее создает секции будущих месяцев, чтобы записи не попадали
+ * в секцию по умолчанию, и удаляет секции старше срока хранения
+ * целиком, без построчного удаления. Записи, все же попавшие в секцию
+ * по умолчанию (например, пока обслуживание не работало), переносятся
+ * в секции своих месяцев и дальше удаляются вместе с ними.
+ */
+@Service
+public class AuditPartitionMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditPartitionMaintenance.class);
+
+    private final AuditLogRepository auditLogRepository;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    public AuditPartitionMaintenance(AuditLogRepository auditLogRepository,
+                                     @Value("${audit.partitions.months-ahead:2}") int monthsAhead,
+                                     @Value("${audit.retention-months:12}") int retentionMonths) {
+        this.auditLogRepository = auditLogRepository;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    /**
+     * Проверяет секции при старте приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    /**
+     * Создает недостающие секции, разбирает секцию по умолчанию и удаляет устаревшие секции.
+     */
+    @Scheduled(cron = "${audit.partitions.cron:0 15 3 * * *}")
+    public void maintain() {
+        if (!auditLogRepository.isPartitioned()) {
+            return;
+        }
+        YearMonth current = YearMonth.now();
+        Set<YearMonth> months = new TreeSet<>();
+        for (int i = 0; i <= monthsAhead; i++) {
+            months.add(current.plusMonths(i));
+        }
+        try {
+            months.addAll(auditLogRepository.findDefaultPartitionMonths());
+        } catch (RuntimeException e) {
+            log.warn("Не удалось проверить секцию журнала по умолчанию", e);
+        }
+        for (YearMonth month : months) {
+            try {
+                int moved = auditLogRepository.createPartition(month);
+                if (moved > 0) {
+                    log.info("Из секции журнала по умолчанию в секцию за {} перенесено записей: {}", month, moved);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Не удалось создать секцию журнала за {}", month, e);
+            }
+        }
+        if (retentionMonths <= 0) {
+            return;
+        }
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+        for (YearMonth month : auditLogRepository.findPartitionMonths()) {
+            if (month.isBefore(oldestKept)) {
+                try {
+                    auditLogRepository.dropPartition(month);
+                    log.info("Удалена секция журнала за {}", month);
+                } catch (RuntimeException e) {
+                    log.warn("Не удалось удалить секцию журнала за {}", month, e);
+                }
+            }
+        }
+    }
+}
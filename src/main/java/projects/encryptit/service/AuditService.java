@@ -0,0 +1,191 @@
+package projects.encryptit.service;
+
+import projects.encryptit.model.AuditEntry;
+import projects.encryptit.model.User;
+import projects.encryptit.repository.AuditLogRepository;
+import projects.encryptit.repository.UserRepository;
+import projects.encryptit.security.TokenPrincipal;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Журнал действий пользователей.
+ * Записи копятся в памяти и пишутся в базу пакетами, чтобы запрос
+ * к шифрованию не ждал отдельной вставки.
+ */
+@Service
+public class AuditService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditService.class);
+
+    private static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * Страница истории.
+     * @param entries записи, новые первыми
+     * @param nextCursor курсор следующей страницы или null, если это последняя
+     */
+    public record HistoryPage(List<AuditEntry> entries, String nextCursor) {
+    }
+
+    /**
+     * Событие, ожидающее записи; пользователь определяется при сбросе.
+     */
+    private record PendingEvent(String username, String action, String description,
+                                String ipAddress, LocalDateTime createdAt) {
+    }
+
+    private final AuditLogRepository auditLogRepository;
+    private final UserRepository userRepository;
+    private final int batchSize;
+    private final int maxPending;
+    private final ConcurrentLinkedQueue<PendingEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Map<String, Long> userIds = new ConcurrentHashMap<>();
+
+    public AuditService(AuditLogRepository auditLogRepository,
+                        UserRepository userRepository,
+                        @Value("${audit.batch-size:500}") int batchSize,
+                        @Value("${audit.max-pending:100000}") int maxPending) {
+        this.auditLogRepository = auditLogRepository;
+        this.userRepository = userRepository;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Ставит событие в очередь на запись.
+     * Если база не успевает и очередь переполнена, событие отбрасывается.
+     * @param username пользователь
+     * @param action действие
+     * @param description подробности
+     * @param ipAddress адрес клиента
+     */
+    public void record(String username, String action, String description, String ipAddress) {
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        if (!userIds.containsKey(username)) {
+            // Запись идет в потоке планировщика без контекста запроса: идентификатор из токена запоминается здесь
+            TokenPrincipal.currentUserId(username).ifPresent(id -> userIds.putIfAbsent(username, id));
+        }
+        pending.offer(new PendingEvent(username, action, description, ipAddress, LocalDateTime.now()));
+    }
+
+    /**
+     * Записывает накопленные события пакетами.
+     */
+    @Scheduled(fixedDelayString = "${audit.flush-interval-ms:1000}")
+    @PreDestroy
+    public void flush() {
+        List<AuditEntry> batch = new ArrayList<>(batchSize);
+        PendingEvent event;
+        while ((event = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            Long userId = resolveUserId(event.username());
+            if (userId == null) {
+                continue;
+            }
+            batch.add(new AuditEntry(null, userId, event.action(), event.description(),
+                    event.ipAddress(), event.createdAt()));
+            if (batch.size() == batchSize) {
+                write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            log.warn("Журнал действий переполнен, отброшено событий: {}", lost);
+        }
+    }
+
+    /**
+     * Возвращает страницу истории пользователя.
+     * @param username пользователь
+     * @param cursor курсор из предыдущей страницы или null для первой
+     * @param limit размер страницы (не больше 200)
+     * @return страница истории
+     * @throws IllegalArgumentException если курсор поврежден
+     */
+    public HistoryPage history(String username, String cursor, int limit) {
+        Long userId = resolveUserId(username);
+        if (userId == null) {
+            return new HistoryPage(List.of(), null);
+        }
+        int size = Math.max(1, Math.min(MAX_PAGE_SIZE, limit));
+        List<AuditEntry> entries;
+        if (cursor == null || cursor.isEmpty()) {
+            entries = auditLogRepository.findPage(userId, null, null, size);
+        } else {
+            String[] parts = decodeCursor(cursor);
+            entries = auditLogRepository.findPage(userId, LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]), size);
+        }
+        String next = null;
+        if (entries.size() == size) {
+            AuditEntry last = entries.get(entries.size() - 1);
+            next = encodeCursor(last.createdAt(), last.id());
+        }
+        return new HistoryPage(entries, next);
+    }
+
+    private void write(List<AuditEntry> batch) {
+        try {
+            auditLogRepository.insertBatch(batch);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось записать {} событий журнала", batch.size(), e);
+        }
+    }
+
+    private Long resolveUserId(String username) {
+        Long cached = userIds.get(username);
+        if (cached != null) {
+            return cached;
+        }
+        Optional<Long> id = TokenPrincipal.currentUserId(username)
+                .or(() -> userRepository.findByUsername(username).map(User::getId));
+        id.ifPresent(value -> userIds.put(username, value));
+        return id.orElse(null);
+    }
+
+    private static String encodeCursor(LocalDateTime createdAt, Long id) {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Некорректный курсор истории");
+            }
+            LocalDateTime.parse(parts[0]);
+            Long.parseLong(parts[1]);
+            return parts;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Некорректный курсор истории", e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package projects.encryptit.service;
+
+import projects.encryptit.repository.StoredChunkRepository;
+import projects.encryptit.util.storage.ChunkDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Фоновая сборка мусора в хранилище фрагментов.
+ * Удаляет фрагменты, на которые нет ссылок дольше периода ожидания, и файлы
+ * на диске, для которых нет записи в базе (остатки отмененных загрузок).
+ */
+@Service
+public class ChunkGarbageCollector {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkGarbageCollector.class);
+
+    private final StoredChunkRepository chunkRepository;
+    private final ChunkDirectory chunkDirectory;
+    private final Duration grace;
+    private final int batchSize;
+
+    public ChunkGarbageCollector(StoredChunkRepository chunkRepository,
+                                 ChunkDirectory chunkDirectory,
+                                 @Value("${storage.gc.grace:10m}") Duration grace,
+                                 @Value("${storage.gc.batch-size:500}") int batchSize) {
+        this.chunkRepository = chunkRepository;
+        this.chunkDirectory = chunkDirectory;
+        this.grace = grace;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Запускает очередной проход сборки мусора.
+     */
+    @Scheduled(fixedDelayString = "${storage.gc.interval-ms:300000}",
+               initialDelayString = "${storage.gc.interval-ms:300000}")
+    public void collect() {
+        try {
+            int released = collectReleased();
+            int orphans = sweepOrphans();
+            if (released > 0 || orphans > 0) {
+                log.info("Сборка мусора: удалено фрагментов {}, осиротевших файлов {}", released, orphans);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Сборка мусора фрагментов не удалась", e);
+        }
+    }
+
+    /**
+     * Удаляет фрагменты без ссылок. Файл сначала переименовывается, затем условно
+     * удаляется запись; если загрузка успела снова сослаться на фрагмент, файл возвращается.
+     * @return количество удаленных фрагментов
+     * @throws IOException при ошибке работы с диском
+     */
+    int collectReleased() throws IOException {
+        LocalDateTime cutoff = LocalDateTime.now().minus(grace);
+        int removed = 0;
+        List<String> batch;
+        int removedInBatch;
+        do {
+            batch = chunkRepository.findReleasedBefore(cutoff, PageRequest.of(0, batchSize));
+            removedInBatch = 0;
+            for (String hash : batch) {
+                chunkDirectory.tombstone(hash);
+                if (chunkRepository.deleteIfUnreferenced(hash) == 1) {
+                    chunkDirectory.purge(hash);
+                    removedInBatch++;
+                } else {
+                    chunkDirectory.restore(hash);
+                }
+            }
+            removed += removedInBatch;
+        } while (batch.size() == batchSize && removedInBatch > 0);
+        return removed;
+    }
+
+    /**
+     * Удаляет файлы фрагментов, не известные базе и не тронутые дольше периода ожидания.
+     * @return количество удаленных файлов
+     * @throws IOException при ошибке обхода каталога
+     */
+    int sweepOrphans() throws IOException {
+        Instant cutoff = Instant.now().minus(grace);
+        List<String> candidates = new ArrayList<>();
+        chunkDirectory.forEach((hash, modified) -> {
+            if (modified.isBefore(cutoff)) {
+                candidates.add(hash);
+            }
+        });
+
+        int removed = 0;
+        for (int from = 0; from < candidates.size(); from += batchSize) {
+            List<String> batch = candidates.subList(from, Math.min(candidates.size(), from + batchSize));
+            Set<String> known = new HashSet<>(chunkRepository.findExisting(batch));
+            for (String hash : batch) {
+                if (!known.contains(hash)) {
+                    chunkDirectory.delete(hash);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+}
@@ -1,29 +1,168 @@
 package projects.encryptit.service;
 
+import projects.encryptit.distributed.DistributedChunkCoordinator;
+import projects.encryptit.util.buffer.ByteArraySink;
+import projects.encryptit.util.encryption.AlgorithmCapability;
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+import projects.encryptit.util.encryption.CancellationToken;
+import projects.encryptit.util.encryption.CascadeAlgorithm;
+import projects.encryptit.util.encryption.DigestingChannels;
 import projects.encryptit.util.encryption.EncryptionAlgorithm;
+import projects.encryptit.util.encryption.IntegrityCheckException;
+import projects.encryptit.util.encryption.IntegrityTrailer;
+import projects.encryptit.util.encryption.KeyedCipher;
+import projects.encryptit.util.encryption.RangeSource;
+import projects.encryptit.util.jfr.EncryptionStageEvent;
+import projects.encryptit.util.jfr.EncryptionStageEvent.Stage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.util.HashMap;
+
+import javax.crypto.Mac;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * Сервис для управления шифрованием.
+ * Выбирает путь обработки по возможностям алгоритма и размеру данных.
+ * Вместо названия алгоритма можно передать каскад, например {@code VIGENERE+XOR+AES}
+ * (см. {@link CascadeAlgorithm}); часто используемые каскады задаются в
+ * {@code encryption.cascades} и показываются в списке алгоритмов.
  */
 @Service
 public class EncryptionService {
 
-    private final Map<String, EncryptionAlgorithm> algorithms = new HashMap<>();
+    /**
+     * Путь обработки запроса.
+     */
+    public enum ProcessingPath {
+        /** Обычный вызов алгоритма. */
+        DIRECT,
+        /** Преобразование на месте без промежуточных массивов. */
+        IN_PLACE,
+        /** Параллельная обработка фрагментов. */
+        PARALLEL,
+        /** Потоковая обработка каналов. */
+        STREAMING
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(EncryptionService.class);
+
+    private static final int PARALLEL_THRESHOLD = 1024 * 1024;
+    private static final int PARALLEL_SEGMENT = 256 * 1024;
+    private static final int MAX_RANGE_LENGTH = 4 * 1024 * 1024;
+    // Запас под nonce/IV, тег аутентификации и дополнение блочного шифра
+    private static final int CIPHER_OVERHEAD = 64;
+
+    /**
+     * Результат с дайджестом SHA-256, посчитанным за тот же проход.
+     * @param data данные
+     * @param digest SHA-256 данных
+     * @param verified проверен ли блок целостности (false только для шифротекста без блока,
+     *                 принятого при включенном {@code encryption.integrity.allow-unsealed})
+     */
+    public record DigestedData(byte[] data, byte[] digest, boolean verified) {
+
+        /**
+         * Результат, не требующий проверки или прошедший ее.
+         * @param data данные
+         * @param digest SHA-256 данных
+         */
+        public DigestedData(byte[] data, byte[] digest) {
+            this(data, digest, true);
+        }
+    }
+
+    /**
+     * Итог потокового дешифрования.
+     * @param digest SHA-256 открытого текста
+     * @param verified проверен ли блок целостности
+     */
+    public record Verification(byte[] digest, boolean verified) {
+    }
+
+    private final AlgorithmRegistry registry;
+    private final boolean integrityMac;
+    private final boolean allowUnsealed;
+    // Предупреждение об устаревшем формате пишется один раз, а не на каждый запрос
+    private final AtomicBoolean unsealedWarned = new AtomicBoolean();
+    private final List<String> availableAlgorithms;
+    private DistributedChunkCoordinator distributedCoordinator;
 
     /**
-     * Конструктор с внедрением всех алгоритмов.
-     * @param algorithmList список алгоритмов шифрования
+     * Конструктор с внедрением реестра алгоритмов.
+     * @param registry реестр алгоритмов шифрования
+     * @param integrityMac добавлять в блок целостности HMAC открытого текста под ключом
+     * @param allowUnsealed дешифровать шифротекст без блока целостности (созданный до его появления)
+     *                      без проверки вместо отказа; устаревший режим для старых данных
+     * @param cascades каскады, которые показываются в списке алгоритмов
+     * @throws IllegalArgumentException если каскад задан некорректно
      */
     @Autowired
-    public EncryptionService(List<EncryptionAlgorithm> algorithmList) {
-        for (EncryptionAlgorithm algorithm : algorithmList) {
-            algorithms.put(algorithm.getName(), algorithm);
+    public EncryptionService(AlgorithmRegistry registry,
+                             @Value("${encryption.integrity.hmac:true}") boolean integrityMac,
+                             @Value("${encryption.integrity.allow-unsealed:true}") boolean allowUnsealed,
+                             @Value("${encryption.cascades:}") List<String> cascades) {
+        this.registry = registry;
+        this.integrityMac = integrityMac;
+        this.allowUnsealed = allowUnsealed;
+        List<String> names = new ArrayList<>(registry.getNames());
+        for (String cascade : cascades) {
+            if (!cascade.isBlank()) {
+                names.add(registry.require(cascade.trim()).getName());
+            }
         }
+        this.availableAlgorithms = List.copyOf(names);
+    }
+
+    /**
+     * Конструктор без каскадов в списке алгоритмов.
+     * @param registry реестр алгоритмов шифрования
+     * @param integrityMac добавлять в блок целостности HMAC открытого текста под ключом
+     */
+    public EncryptionService(AlgorithmRegistry registry, boolean integrityMac) {
+        this(registry, integrityMac, true, List.of());
+    }
+
+    /**
+     * Конструктор с настройками целостности по умолчанию.
+     * @param registry реестр алгоритмов шифрования
+     */
+    public EncryptionService(AlgorithmRegistry registry) {
+        this(registry, true);
+    }
+
+    /**
+     * Подключает распределенную обработку больших файлов (при {@code distributed.enabled}).
+     * @param distributedCoordinator координатор распределенной обработки
+     */
+    @Autowired(required = false)
+    public void setDistributedCoordinator(DistributedChunkCoordinator distributedCoordinator) {
+        this.distributedCoordinator = distributedCoordinator;
+    }
+
+    /**
+     * Приводит название алгоритма или каскада к каноническому виду реестра.
+     * @param algorithmName название алгоритма в любом регистре
+     * @return каноническое название (например, {@code AES} для {@code aes})
+     * @throws IllegalArgumentException если алгоритм не найден
+     */
+    public String canonicalName(String algorithmName) {
+        return registry.require(algorithmName).getName();
     }
 
     /**
@@ -35,11 +174,7 @@ public class EncryptionService {
      * @throws IllegalArgumentException если алгоритм не найден
      */
     public byte[] encrypt(byte[] data, String algorithmName, String key) {
-        EncryptionAlgorithm algorithm = algorithms.get(algorithmName.toUpperCase());
-        if (algorithm == null) {
-            throw new IllegalArgumentException("Алгоритм не найден: " + algorithmName);
-        }
-        return algorithm.encrypt(data, key);
+        return process(registry.require(algorithmName), data, key, true, false);
     }
 
     /**
@@ -51,11 +186,283 @@ public class EncryptionService {
      * @throws IllegalArgumentException если алгоритм не найден
      */
     public byte[] decrypt(byte[] encryptedData, String algorithmName, String key) {
-        EncryptionAlgorithm algorithm = algorithms.get(algorithmName.toUpperCase());
-        if (algorithm == null) {
-            throw new IllegalArgumentException("Алгоритм не найден: " + algorithmName);
+        return process(registry.require(algorithmName), encryptedData, key, false, false);
+    }
+
+    /**
+     * Шифрует данные, разрешая записать результат прямо во входной массив.
+     * Вызывающий код не должен использовать {@code data} после вызова.
+     * @param data данные для шифрования
+     * @param algorithmName название алгоритма
+     * @param key ключ шифрования
+     * @return зашифрованные данные (возможно, тот же массив)
+     */
+    public byte[] encryptInPlace(byte[] data, String algorithmName, String key) {
+        return process(registry.require(algorithmName), data, key, true, true);
+    }
+
+    /**
+     * Дешифрует данные, разрешая записать результат прямо во входной массив.
+     * Вызывающий код не должен использовать {@code encryptedData} после вызова.
+     * @param encryptedData зашифрованные данные
+     * @param algorithmName название алгоритма
+     * @param key ключ шифрования
+     * @return расшифрованные данные (возможно, тот же массив)
+     */
+    public byte[] decryptInPlace(byte[] encryptedData, String algorithmName, String key) {
+        return process(registry.require(algorithmName), encryptedData, key, false, true);
+    }
+
+    /**
+     * Шифрует данные потоком из канала в канал.
+     * @param source источник данных
+     * @param target приемник зашифрованных данных
+     * @param algorithmName название алгоритма
+     * @param key ключ шифрования
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public void encrypt(ReadableByteChannel source, WritableByteChannel target,
+                        String algorithmName, String key) throws IOException {
+        transform(registry.require(algorithmName), source, target, key, true, -1);
+    }
+
+    /**
+     * Дешифрует данные потоком из канала в канал.
+     * @param source источник зашифрованных данных
+     * @param target приемник расшифрованных данных
+     * @param algorithmName название алгоритма
+     * @param key ключ шифрования
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public void decrypt(ReadableByteChannel source, WritableByteChannel target,
+                        String algorithmName, String key) throws IOException {
+        transform(registry.require(algorithmName), source, target, key, false, -1);
+    }
+
+    /**
+     * Шифрует поток и дописывает блок целостности ({@link IntegrityTrailer}).
+     * HMAC открытого текста и SHA-256 шифротекста считаются на лету, за один проход.
+     * @param source источник открытого текста
+     * @param target приемник шифротекста с блоком целостности
+     * @param algorithmName название алгоритма
+     * @param key ключ шифрования
+     * @return SHA-256 всего записанного результата, включая блок
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public byte[] encryptSealed(ReadableByteChannel source, WritableByteChannel target,
+                                String algorithmName, String key) throws IOException {
+        return encryptSealed(source, target, algorithmName, key, -1);
+    }
+
+    /**
+     * Шифрует поток известного размера и дописывает блок целостности.
+     * Большие файлы при включенной распределенной обработке раздаются по узлам.
+     * @param source источник открытого текста
+     * @param target приемник шифротекста с блоком целостности
+     * @param algorithmName название алгоритма
+     * @param key ключ шифрования
+     * @param length размер открытого текста или -1, если неизвестен
+     * @return SHA-256 всего записанного результата, включая блок
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public byte[] encryptSealed(ReadableByteChannel source, WritableByteChannel target,
+                                String algorithmName, String key, long length) throws IOException {
+        EncryptionAlgorithm algorithm = registry.require(algorithmName);
+        Mac mac = integrityMac ? IntegrityTrailer.newMac(key) : null;
+        MessageDigest digest = IntegrityTrailer.newDigest();
+
+        ReadableByteChannel input = mac != null ? DigestingChannels.tap(source, mac::update) : source;
+        transform(algorithm, input, DigestingChannels.tap(target, digest::update), key, true, length);
+
+        // Дайджест тела ответа = дайджест шифротекста, продолженный блоком целостности
+        MessageDigest body = cloneDigest(digest);
+        byte[] trailer = IntegrityTrailer.encode(digest.digest(), mac != null ? mac.doFinal() : null);
+        body.update(trailer);
+        ByteBuffer buffer = ByteBuffer.wrap(trailer);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        return body.digest();
+    }
+
+    /**
+     * Дешифрует поток, проверяя блок целостности за тот же проход.
+     * Шифротекст без блока дешифруется без проверки ({@code verified = false}), а при выключенном
+     * {@code encryption.integrity.allow-unsealed} отклоняется. При несовпадении результат в {@code target} использовать нельзя.
+     * @param source источник шифротекста
+     * @param target приемник открытого текста
+     * @param algorithmName название алгоритма
+     * @param key ключ шифрования
+     * @return SHA-256 открытого текста и признак проверки блока
+     * @throws IOException если произошла ошибка ввода-вывода
+     * @throws IntegrityCheckException если шифротекст поврежден, ключ неверен или блока нет
+     */
+    public Verification decryptVerified(ReadableByteChannel source, WritableByteChannel target,
+                                  String algorithmName, String key) throws IOException {
+        return decryptVerified(source, target, algorithmName, key, -1);
+    }
+
+    /**
+     * Дешифрует поток известного размера, проверяя блок целостности за тот же проход.
+     * Большие файлы при включенной распределенной обработке раздаются по узлам.
+     * @param source источник шифротекста
+     * @param target приемник открытого текста
+     * @param algorithmName название алгоритма
+     * @param key ключ шифрования
+     * @param length размер шифротекста или -1, если неизвестен
+     * @return SHA-256 открытого текста и признак проверки блока
+     * @throws IOException если произошла ошибка ввода-вывода
+     * @throws IntegrityCheckException если шифротекст поврежден, ключ неверен или блока нет
+     */
+    public Verification decryptVerified(ReadableByteChannel source, WritableByteChannel target,
+                                  String algorithmName, String key, long length) throws IOException {
+        // Байты шифротекста передаются в дайджест в decryptChecked
+        DigestingChannels.TrailerStripping input = new DigestingChannels.TrailerStripping(source, chunk -> { });
+        return decryptChecked(registry.require(algorithmName), input, target, key, length, input::getTrailer);
+    }
+
+    /**
+     * Шифрует массив и дописывает блок целостности.
+     * Массив проходит тем же потоковым путем, что и файлы: HMAC, шифр и дайджест
+     * обновляются по фрагментам за один проход, а результат пишется сразу в массив
+     * с местом под блок целостности.
+     * @param data данные для шифрования (не изменяются)
+     * @param algorithmName название алгоритма
+     * @param key ключ шифрования
+     * @return шифротекст с блоком целостности и его SHA-256
+     */
+    public DigestedData encryptSealed(byte[] data, String algorithmName, String key) {
+        EncryptionAlgorithm algorithm = registry.require(algorithmName);
+        ByteArraySink sink = new ByteArraySink(algorithm.supports(AlgorithmCapability.LENGTH_PRESERVING)
+                ? data.length + IntegrityTrailer.LENGTH
+                : data.length + CIPHER_OVERHEAD + IntegrityTrailer.LENGTH);
+        try {
+            byte[] digest = encryptSealed(Channels.newChannel(new ByteArrayInputStream(data)), sink,
+                    algorithmName, key, data.length);
+            return new DigestedData(sink.toByteArray(), digest);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка обработки данных в памяти", e);
+        }
+    }
+
+    /**
+     * Шифрует группу коротких сообщений одним алгоритмом и ключом и дописывает каждому блок целостности.
+     * Ключ, объекты JCE и HMAC готовятся один раз на группу ({@link EncryptionAlgorithm#withKey(String)}),
+     * а результат каждого сообщения совпадает по формату с {@link #encryptSealed(byte[], String, String)}.
+     * @param messages сообщения (не изменяются)
+     * @param algorithmName название алгоритма
+     * @param key ключ шифрования
+     * @return шифротексты с блоками целостности в порядке сообщений
+     * @throws IllegalArgumentException если алгоритм не найден
+     */
+    public List<byte[]> encryptSealedAll(List<byte[]> messages, String algorithmName, String key) {
+        EncryptionAlgorithm algorithm = registry.require(algorithmName);
+        long total = 0;
+        for (byte[] message : messages) {
+            total += message.length;
+        }
+        EncryptionStageEvent event = EncryptionStageEvent.begin(Stage.CIPHER, algorithm.getName(), total);
+        try {
+            KeyedCipher cipher = algorithm.withKey(key);
+            Mac mac = integrityMac ? IntegrityTrailer.newMac(key) : null;
+            MessageDigest digest = IntegrityTrailer.newDigest();
+            List<byte[]> sealed = new ArrayList<>(messages.size());
+            for (byte[] message : messages) {
+                // doFinal сбрасывает HMAC и дайджест - они готовы к следующему сообщению
+                byte[] plaintextMac = mac != null ? mac.doFinal(message) : null;
+                byte[] encrypted = cipher.encrypt(message);
+                byte[] trailer = IntegrityTrailer.encode(digest.digest(encrypted), plaintextMac);
+                byte[] result = Arrays.copyOf(encrypted, encrypted.length + IntegrityTrailer.LENGTH);
+                System.arraycopy(trailer, 0, result, encrypted.length, IntegrityTrailer.LENGTH);
+                sealed.add(result);
+            }
+            return sealed;
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * Дешифрует массив, проверяя блок целостности.
+     * Блок отделяется по известной позиции без копирования шифротекста; дайджесты
+     * и HMAC обновляются по фрагментам за тот же проход, что и дешифрование.
+     * Шифротекст без блока дешифруется без проверки, а при выключенном
+     * {@code encryption.integrity.allow-unsealed} отклоняется до дешифрования.
+     * @param encryptedData шифротекст (не изменяется)
+     * @param algorithmName название алгоритма
+     * @param key ключ шифрования
+     * @return открытый текст, его SHA-256 и признак проверки блока
+     * @throws IntegrityCheckException если шифротекст поврежден, ключ неверен или блока нет
+     */
+    public DigestedData decryptVerified(byte[] encryptedData, String algorithmName, String key) {
+        EncryptionAlgorithm algorithm = registry.require(algorithmName);
+        IntegrityTrailer.Parsed trailer = IntegrityTrailer.parse(encryptedData,
+                encryptedData.length - IntegrityTrailer.LENGTH).orElse(null);
+        if (trailer == null) {
+            requireUnsealedAllowed();
+        }
+        int length = trailer != null ? encryptedData.length - IntegrityTrailer.LENGTH : encryptedData.length;
+        ByteArraySink sink = new ByteArraySink(length);
+        try {
+            Verification verification = decryptChecked(algorithm,
+                    Channels.newChannel(new ByteArrayInputStream(encryptedData, 0, length)), sink, key, length,
+                    () -> trailer);
+            return new DigestedData(sink.toByteArray(), verification.digest(), verification.verified());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка обработки данных в памяти", e);
         }
-        return algorithm.decrypt(encryptedData, key);
+    }
+
+    /**
+     * Дешифрует диапазон открытого текста, читая только покрывающие его байты шифротекста,
+     * чтобы просмотреть начало или середину большого файла без дешифрования всего файла.
+     * Блок целостности в конце шифротекста отбрасывается без проверки: дайджест
+     * покрывает весь шифротекст, поэтому диапазон годится только для предпросмотра.
+     * @param source шифротекст
+     * @param algorithmName название алгоритма
+     * @param key ключ шифрования
+     * @param offset смещение начала диапазона в открытом тексте
+     * @param length длина диапазона (не больше {@value #MAX_RANGE_LENGTH} байт)
+     * @return расшифрованный диапазон (короче {@code length}, если данные заканчиваются раньше)
+     * @throws IOException если произошла ошибка ввода-вывода
+     * @throws IllegalArgumentException если диапазон некорректен или алгоритм его не поддерживает
+     */
+    public byte[] decryptRange(RangeSource source, String algorithmName, String key,
+                               long offset, int length) throws IOException {
+        if (offset < 0 || length <= 0 || length > MAX_RANGE_LENGTH) {
+            throw new IllegalArgumentException("Диапазон должен начинаться с неотрицательного смещения "
+                    + "и иметь длину от 1 до " + MAX_RANGE_LENGTH + " байт");
+        }
+        EncryptionAlgorithm algorithm = registry.require(algorithmName);
+        if (!algorithm.supports(AlgorithmCapability.SEEKABLE)) {
+            throw new IllegalArgumentException("Алгоритм " + algorithm.getName()
+                    + " не поддерживает дешифрование диапазона");
+        }
+        EncryptionStageEvent event = EncryptionStageEvent.begin(Stage.CIPHER, algorithm.getName(), length);
+        try {
+            return algorithm.decryptRange(withoutTrailer(source), offset, length, key);
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * Определяет путь обработки для данных указанного размера.
+     * Результаты намеренно не кэшируются: кэш держал бы в памяти ключи пользователей
+     * вместе с открытыми текстами.
+     * @param algorithm алгоритм
+     * @param length размер данных
+     * @param reuseInput можно ли изменять входной массив
+     * @return путь обработки
+     */
+    public ProcessingPath choosePath(EncryptionAlgorithm algorithm, int length, boolean reuseInput) {
+        if (algorithm.supports(AlgorithmCapability.LENGTH_PRESERVING)) {
+            if (algorithm.supports(AlgorithmCapability.PARALLELIZABLE) && length >= PARALLEL_THRESHOLD) {
+                return ProcessingPath.PARALLEL;
+            }
+            return reuseInput ? ProcessingPath.IN_PLACE : ProcessingPath.DIRECT;
+        }
+        return ProcessingPath.DIRECT;
     }
 
     /**
@@ -63,6 +470,140 @@ public class EncryptionService {
      * @return список названий алгоритмов
      */
     public List<String> getAvailableAlgorithms() {
-        return List.copyOf(algorithms.keySet());
+        return availableAlgorithms;
+    }
+
+    private byte[] process(EncryptionAlgorithm algorithm, byte[] data, String key,
+                           boolean encrypt, boolean reuseInput) {
+        EncryptionStageEvent event = EncryptionStageEvent.begin(Stage.CIPHER, algorithm.getName(), data.length);
+        try {
+            switch (choosePath(algorithm, data.length, reuseInput)) {
+                case PARALLEL: {
+                    byte[] target = reuseInput ? data : data.clone();
+                    transformParallel(algorithm, target, key, encrypt);
+                    return target;
+                }
+                case IN_PLACE: {
+                    ByteBuffer buffer = ByteBuffer.wrap(data);
+                    if (encrypt) {
+                        algorithm.encryptInPlace(buffer, 0, key);
+                    } else {
+                        algorithm.decryptInPlace(buffer, 0, key);
+                    }
+                    return data;
+                }
+                default:
+                    return invoke(algorithm, data, key, encrypt);
+            }
+        } finally {
+            event.commit();
+        }
+    }
+
+    private static RangeSource withoutTrailer(RangeSource source) throws IOException {
+        long size = source.size();
+        if (size < IntegrityTrailer.LENGTH) {
+            return source;
+        }
+        byte[] tail = source.readRange(size - IntegrityTrailer.LENGTH, IntegrityTrailer.LENGTH);
+        return IntegrityTrailer.parse(tail, 0).isPresent() ? source.truncate(size - IntegrityTrailer.LENGTH) : source;
+    }
+
+    private void transformParallel(EncryptionAlgorithm algorithm, byte[] data, String key, boolean encrypt) {
+        int segments = (data.length + PARALLEL_SEGMENT - 1) / PARALLEL_SEGMENT;
+        // Сегменты выполняются в других потоках, поэтому токен передается явно
+        CancellationToken token = CancellationToken.current();
+        IntStream.range(0, segments).parallel().forEach(segment -> {
+            token.throwIfCancelled();
+            int offset = segment * PARALLEL_SEGMENT;
+            ByteBuffer slice = ByteBuffer.wrap(data, offset, Math.min(PARALLEL_SEGMENT, data.length - offset));
+            if (encrypt) {
+                algorithm.encryptInPlace(slice, offset, key);
+            } else {
+                algorithm.decryptInPlace(slice, offset, key);
+            }
+        });
+    }
+
+    private void transform(EncryptionAlgorithm algorithm, ReadableByteChannel source, WritableByteChannel target,
+                           String key, boolean encrypt, long length) throws IOException {
+        EncryptionStageEvent event = EncryptionStageEvent.begin(Stage.CIPHER, algorithm.getName(), length);
+        try {
+            if (distributedCoordinator != null && distributedCoordinator.accepts(algorithm, length)) {
+                distributedCoordinator.transform(source, target, algorithm, key, encrypt);
+            } else if (encrypt) {
+                algorithm.encrypt(source, target, key);
+            } else {
+                algorithm.decrypt(source, target, key);
+            }
+        } finally {
+            event.commit();
+        }
+    }
+
+    private byte[] invoke(EncryptionAlgorithm algorithm, byte[] data, String key, boolean encrypt) {
+        return encrypt ? algorithm.encrypt(data, key) : algorithm.decrypt(data, key);
+    }
+
+    /**
+     * Дешифрует шифротекст без блока целостности, считая дайджесты и HMAC на лету,
+     * и сверяет их с блоком, который становится известен после прохода.
+     */
+    private Verification decryptChecked(EncryptionAlgorithm algorithm, ReadableByteChannel source,
+                                  WritableByteChannel target, String key, long length,
+                                  Supplier<IntegrityTrailer.Parsed> trailerSource) throws IOException {
+        MessageDigest ciphertextDigest = IntegrityTrailer.newDigest();
+        MessageDigest plaintextDigest = IntegrityTrailer.newDigest();
+        Mac mac = IntegrityTrailer.newMac(key);
+
+        WritableByteChannel output = DigestingChannels.tap(target, chunk -> {
+            if (mac != null) {
+                mac.update(chunk.duplicate());
+            }
+            plaintextDigest.update(chunk);
+        });
+        transform(algorithm, DigestingChannels.tap(source, ciphertextDigest::update), output, key, false, length);
+
+        IntegrityTrailer.Parsed trailer = trailerSource.get();
+        if (trailer == null) {
+            requireUnsealedAllowed();
+            return new Verification(plaintextDigest.digest(), false);
+        }
+        verifyDigest(trailer, ciphertextDigest.digest());
+        verifyMac(trailer, mac != null ? mac.doFinal() : null);
+        return new Verification(plaintextDigest.digest(), true);
+    }
+
+    private void requireUnsealedAllowed() {
+        if (!allowUnsealed) {
+            throw new IntegrityCheckException("Шифротекст без блока целостности: данные обрезаны или созданы "
+                    + "до его появления");
+        }
+        if (unsealedWarned.compareAndSet(false, true)) {
+            log.warn("Дешифрован шифротекст без блока целостности: он создан до появления блока или обрезан. "
+                    + "Поддержка такого шифротекста устарела; после перешифрования старых данных выключите "
+                    + "encryption.integrity.allow-unsealed");
+        }
+    }
+
+    private static void verifyDigest(IntegrityTrailer.Parsed trailer, byte[] ciphertextDigest) {
+        if (!MessageDigest.isEqual(trailer.ciphertextDigest(), ciphertextDigest)) {
+            throw new IntegrityCheckException("Шифротекст поврежден: дайджест не совпадает");
+        }
+    }
+
+    private static void verifyMac(IntegrityTrailer.Parsed trailer, byte[] plaintextMac) {
+        if (trailer.plaintextMac() != null
+                && (plaintextMac == null || !MessageDigest.isEqual(trailer.plaintextMac(), plaintextMac))) {
+            throw new IntegrityCheckException("Неверный ключ или поврежденный шифротекст");
+        }
+    }
+
+    private static MessageDigest cloneDigest(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("Реализация SHA-256 не поддерживает копирование", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,244 @@
+package projects.encryptit.service;
+
+import projects.encryptit.model.StoredFile;
+import projects.encryptit.model.User;
+import projects.encryptit.repository.StoredChunkRepository;
+import projects.encryptit.repository.StoredFileRepository;
+import projects.encryptit.repository.UserRepository;
+import projects.encryptit.security.TokenPrincipal;
+import projects.encryptit.util.encryption.RangeSource;
+import projects.encryptit.util.storage.ChunkDirectory;
+import projects.encryptit.util.storage.ChunkRangeSource;
+import projects.encryptit.util.storage.ContentDefinedChunker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Серверное хранилище зашифрованных файлов с дедупликацией.
+ * Шифротекст режется на фрагменты по содержимому, каждый уникальный фрагмент
+ * хранится один раз; файл — это упорядоченный список хешей в каталоге пользователя.
+ * Дедупликация работает для детерминированных алгоритмов: шифротекст со случайным
+ * nonce (CHACHA20) хранится фактически целиком.
+ */
+@Service
+@Transactional
+public class FileStorageService {
+
+    private static final Logger log = LoggerFactory.getLogger(FileStorageService.class);
+
+    private final StoredFileRepository fileRepository;
+    private final StoredChunkRepository chunkRepository;
+    private final UserRepository userRepository;
+    private final ChunkDirectory chunkDirectory;
+    private final TransactionOperations transactions;
+
+    /**
+     * Источник содержимого сохраняемого файла.
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+        void writeTo(WritableByteChannel target) throws IOException;
+    }
+
+    /**
+     * Запись каталога для отображения пользователю.
+     */
+    public record StoredFileInfo(Long id, String filename, String algorithm, long size,
+                                 int chunkCount, LocalDateTime createdAt) {
+    }
+
+    /**
+     * Снимок файла для потоковой выдачи вне транзакции.
+     * Размеры фрагментов идут в том же порядке, что и хеши.
+     */
+    public record StoredFileContent(String filename, String algorithm, long size, List<String> chunkHashes,
+                                    List<Integer> chunkSizes) {
+    }
+
+    public FileStorageService(StoredFileRepository fileRepository,
+                              StoredChunkRepository chunkRepository,
+                              UserRepository userRepository,
+                              ChunkDirectory chunkDirectory,
+                              TransactionOperations transactions) {
+        this.fileRepository = fileRepository;
+        this.chunkRepository = chunkRepository;
+        this.userRepository = userRepository;
+        this.chunkDirectory = chunkDirectory;
+        this.transactions = transactions;
+    }
+
+    /**
+     * Сохраняет файл в каталог пользователя.
+     * Содержимое шифруется, режется на фрагменты и записывается на диск вне транзакции:
+     * соединение с базой занято только коротким захватом ссылок и записью каталога, а не
+     * все время шифрования. Ссылки берутся одним проходом в порядке хешей: параллельные
+     * загрузки с общими фрагментами блокируют строки счетчиков в одном порядке и не попадают
+     * во взаимную блокировку. Строки остаются заблокированными до коммита, поэтому после
+     * захвата сборщик мусора фрагмент не удалит; если он успел удалить фрагмент до захвата,
+     * загрузка отменяется.
+     * @param username владелец
+     * @param filename имя файла
+     * @param algorithm алгоритм, которым зашифровано содержимое
+     * @param content источник шифротекста
+     * @return сведения о сохраненном файле
+     * @throws IOException при ошибке чтения содержимого или записи фрагментов
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public StoredFileInfo store(String username, String filename, String algorithm,
+                                ContentWriter content) throws IOException {
+        List<String> hashes = new ArrayList<>();
+        Map<String, ChunkReference> references = new TreeMap<>();
+        long[] newBytes = {0};
+
+        ContentDefinedChunker chunker = new ContentDefinedChunker((data, length) -> {
+            String hash = ChunkDirectory.hash(data, length);
+            if (chunkDirectory.write(hash, data, length)) {
+                newBytes[0] += length;
+            }
+            references.computeIfAbsent(hash, key -> new ChunkReference(length)).count++;
+            hashes.add(hash);
+        });
+        try (chunker) {
+            content.writeTo(chunker);
+        }
+
+        StoredFile saved;
+        try {
+            saved = transactions.execute(status -> {
+                StoredFile file = new StoredFile(requireUser(username), filename, algorithm);
+                for (Map.Entry<String, ChunkReference> reference : references.entrySet()) {
+                    chunkRepository.acquire(reference.getKey(), reference.getValue().size,
+                            reference.getValue().count);
+                }
+                for (String hash : references.keySet()) {
+                    if (!chunkDirectory.exists(hash)) {
+                        // Непроверяемое исключение откатывает транзакцию вместе с захваченными ссылками
+                        throw new UncheckedIOException(new IOException(
+                                "Фрагмент " + hash + " удален сборщиком мусора во время загрузки"));
+                    }
+                }
+                file.getChunkHashes().addAll(hashes);
+                file.setSize(chunker.getTotal());
+                file.setChunkCount(hashes.size());
+                return fileRepository.save(file);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.debug("Сохранен файл {} ({} байт, {} фрагментов, новых байт {})",
+                filename, saved.getSize(), saved.getChunkCount(), newBytes[0]);
+        return toInfo(saved);
+    }
+
+    /**
+     * Возвращает каталог файлов пользователя.
+     * @param username владелец
+     * @return файлы, новые первыми
+     */
+    @Transactional(readOnly = true)
+    public List<StoredFileInfo> listFiles(String username) {
+        return fileRepository.findByOwnerOrderByCreatedAtDesc(requireUser(username)).stream()
+                .map(FileStorageService::toInfo)
+                .toList();
+    }
+
+    /**
+     * Загружает список фрагментов файла вместе с их размерами.
+     * @param username владелец
+     * @param id идентификатор файла
+     * @return Optional со снимком файла
+     */
+    @Transactional(readOnly = true)
+    public Optional<StoredFileContent> open(String username, Long id) {
+        return fileRepository.findByIdAndOwner(id, requireUser(username))
+                .map(file -> new StoredFileContent(file.getFilename(), file.getAlgorithm(),
+                        file.getSize(), List.copyOf(file.getChunkHashes()),
+                        chunkRepository.findSizesByFile(file.getId())));
+    }
+
+    /**
+     * Собирает файл, передавая фрагменты по порядку.
+     * @param content снимок файла
+     * @param target приемник
+     * @throws IOException если фрагмент отсутствует или не читается
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void copyTo(StoredFileContent content, WritableByteChannel target) throws IOException {
+        for (String hash : content.chunkHashes()) {
+            chunkDirectory.copyTo(hash, target);
+        }
+    }
+
+    /**
+     * Открывает файл для чтения произвольных диапазонов без сборки целиком.
+     * @param content снимок файла
+     * @return источник с произвольным доступом
+     */
+    public RangeSource rangeSource(StoredFileContent content) {
+        return new ChunkRangeSource(chunkDirectory, content.chunkHashes(), content.chunkSizes(), content.size());
+    }
+
+    /**
+     * Удаляет файл из каталога и снимает ссылки на его фрагменты.
+     * Сами фрагменты удаляет сборщик мусора.
+     * @param username владелец
+     * @param id идентификатор файла
+     * @return true если файл был удален
+     */
+    public boolean delete(String username, Long id) {
+        Optional<StoredFile> found = fileRepository.findByIdAndOwner(id, requireUser(username));
+        if (found.isEmpty()) {
+            return false;
+        }
+        StoredFile file = found.get();
+        Map<String, Integer> references = new HashMap<>();
+        for (String hash : file.getChunkHashes()) {
+            references.merge(hash, 1, Integer::sum);
+        }
+        fileRepository.delete(file);
+        references.forEach(chunkRepository::release);
+        return true;
+    }
+
+    /**
+     * Размер фрагмента и число ссылок на него из сохраняемого файла.
+     */
+    private static final class ChunkReference {
+        final int size;
+        int count;
+
+        ChunkReference(int size) {
+            this.size = size;
+        }
+    }
+
+    private User requireUser(String username) {
+        // В stateless-режиме идентификатор уже есть в токене: ссылка на пользователя создается без запроса к БД
+        Optional<Long> tokenUserId = TokenPrincipal.currentUserId(username);
+        if (tokenUserId.isPresent()) {
+            return userRepository.getReferenceById(tokenUserId.get());
+        }
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException("Пользователь не найден: " + username));
+    }
+
+    private static StoredFileInfo toInfo(StoredFile file) {
+        return new StoredFileInfo(file.getId(), file.getFilename(), file.getAlgorithm(),
+                file.getSize(), file.getChunkCount(), file.getCreatedAt());
+    }
+}
@@ -0,0 +1,138 @@
+package projects.encryptit.service;
+
+import projects.encryptit.util.jfr.EncryptionStageEvent;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Запись JDK Flight Recorder по запросу.
+ * Запись идет с настройками {@code diagnostics.jfr.settings} (по умолчанию {@code default},
+ * около 1% накладных расходов) плюс события {@link EncryptionStageEvent}; на диске хранится
+ * только последний отрезок по {@code max-age}/{@code max-size}. Снимок можно получить
+ * в любой момент, не останавливая запись.
+ */
+@Service
+public class FlightRecorderService {
+
+    /**
+     * Состояние записи.
+     * @param state состояние записи или null, если запись не запущена
+     * @param startedAt момент запуска
+     * @param maxAge сколько данных хранится
+     * @param maxSizeBytes предельный объем данных на диске
+     * @param stageThreshold порог длительности событий этапов
+     */
+    public record Status(RecordingState state, Instant startedAt, Duration maxAge, long maxSizeBytes,
+                         Duration stageThreshold) {
+    }
+
+    private static final String RECORDING_NAME = "encrypt-it";
+
+    private final String settings;
+    private final Duration maxAge;
+    private final DataSize maxSize;
+    private Recording recording;
+    private Duration stageThreshold;
+
+    public FlightRecorderService(@Value("${diagnostics.jfr.settings:default}") String settings,
+                                 @Value("${diagnostics.jfr.max-age:10m}") Duration maxAge,
+                                 @Value("${diagnostics.jfr.max-size:100MB}") DataSize maxSize) {
+        this.settings = settings;
+        this.maxAge = maxAge;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Запускает запись, если она еще не идет.
+     * @param threshold порог длительности событий этапов (null - порог по умолчанию, 1 мс)
+     * @return состояние записи
+     * @throws IOException если настройки JFR не удалось прочитать
+     */
+    public synchronized Status start(Duration threshold) throws IOException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            return status();
+        }
+        closeRecording();
+        try {
+            recording = new Recording(Configuration.getConfiguration(settings));
+        } catch (ParseException e) {
+            throw new IOException("Некорректные настройки JFR " + settings, e);
+        }
+        recording.setName(RECORDING_NAME);
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge);
+        recording.setMaxSize(maxSize.toBytes());
+        stageThreshold = threshold != null ? threshold : Duration.ofMillis(1);
+        recording.enable(EncryptionStageEvent.NAME).withThreshold(stageThreshold);
+        recording.start();
+        return status();
+    }
+
+    /**
+     * Сохраняет данные записи в файл, не останавливая ее.
+     * Вызывающий код удаляет файл после использования.
+     * @return временный файл {@code .jfr}
+     * @throws IOException при ошибке записи файла
+     * @throws IllegalStateException если запись не запущена
+     */
+    public synchronized Path dump() throws IOException {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("Запись JFR не запущена");
+        }
+        Path file = Files.createTempFile(RECORDING_NAME + "-", ".jfr");
+        try {
+            recording.dump(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Останавливает запись и удаляет ее данные.
+     * @return состояние записи
+     */
+    public synchronized Status stop() {
+        closeRecording();
+        return status();
+    }
+
+    /**
+     * @return текущее состояние записи
+     */
+    public synchronized Status status() {
+        if (recording == null) {
+            return new Status(null, null, maxAge, maxSize.toBytes(), null);
+        }
+        return new Status(recording.getState(), recording.getStartTime(), recording.getMaxAge(),
+                recording.getMaxSize(), stageThreshold);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        closeRecording();
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            if (recording.getState() == RecordingState.RUNNING) {
+                recording.stop();
+            }
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package projects.encryptit.service;
+
+import projects.encryptit.util.analysis.ColumnHistogramTask;
+import projects.encryptit.util.analysis.PlaintextModel;
+import projects.encryptit.util.encryption.IntegrityTrailer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Восстановление ключа шифров Цезаря и Виженера частотным анализом.
+ * Анализ идет по нарастающей выборке (64KB, 256KB, 1MB, ...) и завершается,
+ * как только лучший ключ уверенно отрывается от остальных или исчерпан бюджет времени,
+ * поэтому на многомегабайтных шифротекстах обычно хватает первого префикса.
+ * Блок целостности в конце шифротекста не анализируется: его случайные байты
+ * искажают частоты коротких текстов.
+ */
+@Service
+public class KeyRecoveryService {
+
+    private static final double RANDOM_INDEX_OF_COINCIDENCE = 1.0 / 256;
+    private static final int INITIAL_SAMPLE = 64 * 1024;
+    private static final int MIN_COLUMN_LENGTH = 64;
+    private static final int PREVIEW_LENGTH = 160;
+
+    /**
+     * Минимальный отрыв лучшего сдвига от второго, в натах на байт.
+     */
+    private static final double CONFIDENT_MARGIN = 0.5;
+
+    /**
+     * Длина периода принимается, если ее индекс совпадений не ниже этой доли максимума;
+     * берется наименьшая такая длина, так как кратные периоду длины дают тот же индекс.
+     */
+    private static final double PERIOD_ACCEPT_RATIO = 0.9;
+
+    /**
+     * Кандидат ключа.
+     * @param key ключ в виде, принимаемом алгоритмом (null, если байты ключа не образуют строку)
+     * @param keyHex байты ключа в шестнадцатеричном виде
+     * @param score средний логарифм правдоподобия на байт
+     * @param preview начало расшифрованного этим ключом текста
+     */
+    public record KeyCandidate(String key, String keyHex, double score, String preview) {
+    }
+
+    /**
+     * Результат подбора ключа.
+     */
+    public record KeyRecoveryReport(String algorithm, int keyLength, double indexOfCoincidence,
+                                    boolean confident, long sampledBytes, long totalBytes,
+                                    long elapsedMs, List<KeyCandidate> candidates) {
+    }
+
+    /**
+     * Промежуточный результат анализа одной выборки: сдвиги по позициям периода.
+     */
+    private record Analysis(int keyLength, double indexOfCoincidence, boolean confident,
+                            List<int[]> keys, List<Double> scores) {
+    }
+
+    private final ForkJoinPool pool;
+    private final int maxKeyLength;
+    private final int candidateCount;
+    private final Duration timeBudget;
+
+    public KeyRecoveryService(@Value("${analysis.parallelism:0}") int parallelism,
+                              @Value("${analysis.max-key-length:32}") int maxKeyLength,
+                              @Value("${analysis.candidates:5}") int candidateCount,
+                              @Value("${analysis.time-budget:5s}") Duration timeBudget) {
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.maxKeyLength = maxKeyLength;
+        this.candidateCount = candidateCount;
+        this.timeBudget = timeBudget;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Подбирает ключ по шифротексту.
+     * @param ciphertext шифротекст (проверенный блок целостности в конце отбрасывается)
+     * @param algorithmName CAESAR или VIGENERE
+     * @return лучшие кандидаты ключа
+     * @throws IllegalArgumentException если алгоритм не поддерживается
+     */
+    public KeyRecoveryReport recover(byte[] ciphertext, String algorithmName) {
+        String algorithm = algorithmName.toUpperCase(Locale.ROOT);
+        boolean caesar = switch (algorithm) {
+            case "CAESAR" -> true;
+            case "VIGENERE" -> false;
+            default -> throw new IllegalArgumentException(
+                    "Подбор ключа поддерживается только для CAESAR и VIGENERE: " + algorithmName);
+        };
+
+        long start = System.nanoTime();
+        long deadline = start + timeBudget.toNanos();
+        int length = unsealedLength(ciphertext);
+        int sample = Math.min(INITIAL_SAMPLE, length);
+        Analysis analysis;
+        while (true) {
+            analysis = caesar ? analyzeCaesar(ciphertext, sample) : analyzeVigenere(ciphertext, sample);
+            if (analysis.confident() || sample == length || System.nanoTime() > deadline) {
+                break;
+            }
+            sample = (int) Math.min(length, sample * 4L);
+        }
+
+        List<KeyCandidate> candidates = new ArrayList<>();
+        for (int i = 0; i < analysis.keys().size(); i++) {
+            int[] shifts = analysis.keys().get(i);
+            candidates.add(new KeyCandidate(
+                    caesar ? String.valueOf(shifts[0]) : keyString(shifts),
+                    HexFormat.of().formatHex(toBytes(shifts)),
+                    analysis.scores().get(i),
+                    preview(ciphertext, length, shifts)));
+        }
+        return new KeyRecoveryReport(algorithm, analysis.keyLength(), analysis.indexOfCoincidence(),
+                analysis.confident(), sample, length,
+                Duration.ofNanos(System.nanoTime() - start).toMillis(), candidates);
+    }
+
+    private Analysis analyzeCaesar(byte[] data, int length) {
+        long[] histogram = pool.invoke(new ColumnHistogramTask(data, 0, length, 1))[0];
+        Integer[] ranked = rankShifts(histogram);
+        double best = PlaintextModel.score(histogram, ranked[0]);
+        double second = PlaintextModel.score(histogram, ranked[1]);
+        boolean confident = length > 0 && (best - second) / length >= CONFIDENT_MARGIN;
+
+        List<int[]> keys = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        for (int i = 0; i < Math.min(candidateCount, ranked.length); i++) {
+            keys.add(new int[] {ranked[i]});
+            scores.add(perByte(PlaintextModel.score(histogram, ranked[i]), length));
+        }
+        return new Analysis(1, ColumnHistogramTask.indexOfCoincidence(new long[][] {histogram}),
+                confident, keys, scores);
+    }
+
+    private Analysis analyzeVigenere(byte[] data, int length) {
+        int maxPeriod = Math.max(1, Math.min(maxKeyLength, length / MIN_COLUMN_LENGTH));
+
+        // Гистограммы столбцов для всех длин периода; каждая длина - отдельная задача пула
+        List<long[][]> histograms = pool.submit(() -> IntStream.rangeClosed(1, maxPeriod).parallel()
+                .mapToObj(period -> new ColumnHistogramTask(data, 0, length, period).invoke())
+                .toList()).join();
+
+        double[] coincidence = new double[maxPeriod + 1];
+        double maxCoincidence = 0;
+        for (int period = 1; period <= maxPeriod; period++) {
+            coincidence[period] = ColumnHistogramTask.indexOfCoincidence(histograms.get(period - 1));
+            maxCoincidence = Math.max(maxCoincidence, coincidence[period]);
+        }
+        int keyLength = 1;
+        while (keyLength < maxPeriod && coincidence[keyLength] < PERIOD_ACCEPT_RATIO * maxCoincidence) {
+            keyLength++;
+        }
+
+        long[][] columns = histograms.get(keyLength - 1);
+        List<Integer[]> rankings = pool.submit(() -> Arrays.stream(columns).parallel()
+                .map(KeyRecoveryService::rankShifts)
+                .toList()).join();
+
+        int[] best = new int[keyLength];
+        double[] loss = new double[keyLength];
+        double total = 0;
+        double minMargin = Double.MAX_VALUE;
+        for (int c = 0; c < keyLength; c++) {
+            Integer[] ranked = rankings.get(c);
+            best[c] = ranked[0];
+            double first = PlaintextModel.score(columns[c], ranked[0]);
+            loss[c] = first - PlaintextModel.score(columns[c], ranked[1]);
+            total += first;
+            long columnLength = Arrays.stream(columns[c]).sum();
+            minMargin = Math.min(minMargin, columnLength == 0 ? 0 : loss[c] / columnLength);
+        }
+        boolean confident = coincidence[keyLength] >= 3 * RANDOM_INDEX_OF_COINCIDENCE
+                && minMargin >= CONFIDENT_MARGIN;
+
+        // Альтернативы: заменить второй по рангу сдвиг в столбцах с наименьшим отрывом
+        List<int[]> keys = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        keys.add(best);
+        scores.add(perByte(total, length));
+        Integer[] columnsByLoss = IntStream.range(0, keyLength).boxed()
+                .sorted(Comparator.comparingDouble(c -> loss[c]))
+                .toArray(Integer[]::new);
+        for (int i = 0; i < Math.min(candidateCount - 1, keyLength); i++) {
+            int column = columnsByLoss[i];
+            int[] alternative = best.clone();
+            alternative[column] = rankings.get(column)[1];
+            keys.add(alternative);
+            scores.add(perByte(total - loss[column], length));
+        }
+        return new Analysis(keyLength, coincidence[keyLength], confident, keys, scores);
+    }
+
+    private static Integer[] rankShifts(long[] histogram) {
+        double[] scores = new double[256];
+        for (int shift = 0; shift < 256; shift++) {
+            scores[shift] = PlaintextModel.score(histogram, shift);
+        }
+        return IntStream.range(0, 256).boxed()
+                .sorted(Comparator.comparingDouble((Integer shift) -> scores[shift]).reversed())
+                .toArray(Integer[]::new);
+    }
+
+    private static double perByte(double score, int length) {
+        return length == 0 ? 0 : score / length;
+    }
+
+    private static byte[] toBytes(int[] shifts) {
+        byte[] bytes = new byte[shifts.length];
+        for (int i = 0; i < shifts.length; i++) {
+            bytes[i] = (byte) shifts[i];
+        }
+        return bytes;
+    }
+
+    private static String keyString(int[] shifts) {
+        try {
+            return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(toBytes(shifts))).toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Длина шифротекста без блока целостности. Блок отбрасывается, только если
+     * дайджест в нем совпал с остальными данными: иначе совпадение сигнатуры
+     * случайно, и последние байты - часть шифротекста.
+     */
+    private static int unsealedLength(byte[] ciphertext) {
+        int length = ciphertext.length - IntegrityTrailer.LENGTH;
+        Optional<IntegrityTrailer.Parsed> trailer = IntegrityTrailer.parse(ciphertext, length);
+        if (trailer.isEmpty()) {
+            return ciphertext.length;
+        }
+        MessageDigest digest = IntegrityTrailer.newDigest();
+        digest.update(ciphertext, 0, length);
+        return MessageDigest.isEqual(trailer.get().ciphertextDigest(), digest.digest()) ? length : ciphertext.length;
+    }
+
+    private static String preview(byte[] ciphertext, int length, int[] shifts) {
+        byte[] plain = new byte[Math.min(PREVIEW_LENGTH, length)];
+        for (int i = 0; i < plain.length; i++) {
+            plain[i] = (byte) (ciphertext[i] - shifts[i % shifts.length]);
+        }
+        return new String(plain, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,246 @@
+package projects.encryptit.service;
+
+import projects.encryptit.util.encryption.CancellationToken;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Планировщик обработки по размеру данных.
+ * Небольшие запросы (текст) выполняются в отдельной полосе с зарезервированной
+ * долей ядер и не ждут за крупными загрузками. Средние запросы получают
+ * собственный пул, крупные - ForkJoinPool на оставшихся ядрах; параллельные
+ * потоки ({@code parallel()}) внутри крупных задач выполняются в этом же пуле.
+ */
+@Service
+public class ProcessingLanes {
+
+    /**
+     * Полоса обработки.
+     */
+    public enum Lane {
+        SMALL, MEDIUM, LARGE
+    }
+
+    /**
+     * Задача, выполняемая в полосе.
+     * @param <T> тип результата
+     */
+    @FunctionalInterface
+    public interface LaneTask<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Состояние полосы.
+     * @param lane полоса
+     * @param threads число потоков
+     * @param active выполняется задач
+     * @param queued ожидает задач
+     * @param completed выполнено задач
+     * @param averageWaitMicros среднее ожидание в очереди, мкс
+     */
+    public record LaneStats(Lane lane, int threads, int active, long queued, long completed,
+                            long averageWaitMicros) {
+    }
+
+    private static final ThreadLocal<Boolean> ON_LANE = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final long smallThreshold;
+    private final long largeThreshold;
+    private final ThreadPoolExecutor smallPool;
+    private final ThreadPoolExecutor mediumPool;
+    private final ForkJoinPool largePool;
+    private final AtomicLong[] waitNanos = {new AtomicLong(), new AtomicLong(), new AtomicLong()};
+    private final AtomicLong[] started = {new AtomicLong(), new AtomicLong(), new AtomicLong()};
+
+    public ProcessingLanes(@Value("${lanes.small-threshold:64KB}") DataSize smallThreshold,
+                           @Value("${lanes.large-threshold:4MB}") DataSize largeThreshold,
+                           @Value("${lanes.small-threads:0}") int smallThreads,
+                           @Value("${lanes.medium-threads:0}") int mediumThreads,
+                           @Value("${lanes.large-parallelism:0}") int largeParallelism) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        // Для мелких запросов резервируется четверть ядер, остальное делят средние и крупные
+        int reserved = smallThreads > 0 ? smallThreads : Math.max(1, cores / 4);
+        int shared = Math.max(1, cores - reserved);
+        this.smallThreshold = smallThreshold.toBytes();
+        this.largeThreshold = largeThreshold.toBytes();
+        this.smallPool = fixedPool(reserved, "lane-small-");
+        this.mediumPool = fixedPool(mediumThreads > 0 ? mediumThreads : Math.max(1, shared / 2), "lane-medium-");
+        this.largePool = new ForkJoinPool(largeParallelism > 0 ? largeParallelism : shared);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        smallPool.shutdownNow();
+        mediumPool.shutdownNow();
+        largePool.shutdownNow();
+    }
+
+    /**
+     * Определяет полосу для данных указанного размера.
+     * @param size размер данных в байтах
+     * @return полоса
+     */
+    public Lane laneFor(long size) {
+        if (size < smallThreshold) {
+            return Lane.SMALL;
+        }
+        return size < largeThreshold ? Lane.MEDIUM : Lane.LARGE;
+    }
+
+    /**
+     * Выполняет задачу в полосе по размеру данных и ждет результата.
+     * Вызывающий поток блокируется на все время ожидания и обработки, поэтому
+     * обработчики запросов используют {@link #executorFor(long)} (WebAsyncTask,
+     * CompletableFuture), а этот метод - фоновые задачи и вложенная работа
+     * в потоке полосы, которая выполняется сразу, без очереди.
+     * @param size размер данных в байтах
+     * @param task задача
+     * @param <T> тип результата
+     * @return результат задачи
+     * @throws IOException если задача завершилась ошибкой ввода-вывода или ожидание прервано
+     */
+    public <T> T execute(long size, LaneTask<T> task) throws IOException {
+        if (ON_LANE.get()) {
+            // Поток уже принадлежит полосе: ожидание задачи в том же пуле может занять все его потоки
+            return task.run();
+        }
+        Lane lane = laneFor(size);
+        long submitted = System.nanoTime();
+        // Отмена запроса должна доходить до потока полосы, пользователь - до событий JFR
+        CancellationToken token = CancellationToken.current();
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        Future<T> future = executor(lane).submit(() -> onLane(() -> {
+            recordStart(lane, submitted);
+            SecurityContextHolder.setContext(securityContext);
+            try {
+                return token.call(task::run);
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        }));
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ожидание обработки прервано");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Исполнитель полосы для асинхронной обработки запроса (WebAsyncTask, CompletableFuture).
+     * Как и {@link #execute(long, LaneTask)}, передает задаче контекст безопасности
+     * потока, который ее отправил.
+     * @param size размер данных в байтах
+     * @return исполнитель полосы
+     */
+    public AsyncTaskExecutor executorFor(long size) {
+        Lane lane = laneFor(size);
+        ExecutorService executor = executor(lane);
+        return new TaskExecutorAdapter(command -> {
+            long submitted = System.nanoTime();
+            SecurityContext securityContext = SecurityContextHolder.getContext();
+            executor.execute(() -> {
+                recordStart(lane, submitted);
+                ON_LANE.set(Boolean.TRUE);
+                SecurityContextHolder.setContext(securityContext);
+                try {
+                    command.run();
+                } finally {
+                    SecurityContextHolder.clearContext();
+                    ON_LANE.remove();
+                }
+            });
+        });
+    }
+
+    /**
+     * Возвращает состояние всех полос.
+     * @return состояние полос
+     */
+    public List<LaneStats> stats() {
+        return List.of(
+                poolStats(Lane.SMALL, smallPool),
+                poolStats(Lane.MEDIUM, mediumPool),
+                new LaneStats(Lane.LARGE, largePool.getParallelism(), largePool.getActiveThreadCount(),
+                        largePool.getQueuedSubmissionCount(), started[Lane.LARGE.ordinal()].get(),
+                        averageWait(Lane.LARGE)));
+    }
+
+    private LaneStats poolStats(Lane lane, ThreadPoolExecutor pool) {
+        return new LaneStats(lane, pool.getMaximumPoolSize(), pool.getActiveCount(), pool.getQueue().size(),
+                pool.getCompletedTaskCount(), averageWait(lane));
+    }
+
+    private void recordStart(Lane lane, long submitted) {
+        waitNanos[lane.ordinal()].addAndGet(System.nanoTime() - submitted);
+        started[lane.ordinal()].incrementAndGet();
+    }
+
+    private static <T> T onLane(Callable<T> task) throws Exception {
+        ON_LANE.set(Boolean.TRUE);
+        try {
+            return task.call();
+        } finally {
+            ON_LANE.remove();
+        }
+    }
+
+    private long averageWait(Lane lane) {
+        long count = started[lane.ordinal()].get();
+        return count == 0 ? 0 : waitNanos[lane.ordinal()].get() / count / 1000;
+    }
+
+    private ExecutorService executor(Lane lane) {
+        return switch (lane) {
+            case SMALL -> smallPool;
+            case MEDIUM -> mediumPool;
+            case LARGE -> largePool;
+        };
+    }
+
+    private static ThreadPoolExecutor fixedPool(int threads, String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), factory);
+    }
+}
@@ -0,0 +1,288 @@
+package projects.encryptit.service;
+
+import projects.encryptit.util.encryption.ProgressTracker;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Ход обработки файлов для клиентов через Server-Sent Events.
+ * Форма генерирует идентификатор, открывает поток событий и отправляет
+ * его вместе с файлом; порядок подключения не важен. Счетчики опрашиваются
+ * с интервалом {@code progress.interval-ms}, и событие отправляется только
+ * при изменении, поэтому цикл шифрования лишь увеличивает счетчик.
+ * Запись в потоки идет в собственном пуле {@code progress.send-threads}, а не в общем
+ * потоке {@code @Scheduled}: медленный клиент задерживает только свой поток, и пока
+ * его предыдущее событие не отправлено, новое для него не ставится в очередь.
+ * Один пользователь держит не больше {@code progress.max-streams-per-user} потоков.
+ * Запись, к которой так и не подключился клиент, после завершения обработки
+ * хранится только {@code progress.pending-ttl}, а не весь {@code progress.retention}:
+ * иначе отправка файлов без подписки исчерпала бы лимит пользователя.
+ */
+@Service
+public class ProgressService {
+
+    private static final Pattern ID_PATTERN = Pattern.compile("[A-Za-z0-9-]{8,64}");
+
+    /**
+     * Состояние обработки.
+     */
+    public enum State {
+        WAITING, RUNNING, DONE, FAILED
+    }
+
+    /**
+     * Событие хода обработки.
+     * @param state состояние
+     * @param processed обработано байт
+     * @param total всего байт
+     * @param bytesPerSecond средняя скорость с начала обработки
+     * @param etaSeconds оценка оставшегося времени или null, если скорость еще неизвестна
+     */
+    public record Snapshot(State state, long processed, long total, long bytesPerSecond, Long etaSeconds) {
+    }
+
+    private static final class Entry {
+        final String owner;
+        final long createdNanos = System.nanoTime();
+        volatile ProgressTracker tracker;
+        volatile SseEmitter emitter;
+        final AtomicBoolean sending = new AtomicBoolean();
+        // Изменяется только потоком публикации
+        long lastProcessed = -1;
+
+        Entry(String owner) {
+            this.owner = owner;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Integer> streamsByOwner = new ConcurrentHashMap<>();
+    private final Duration retention;
+    private final Duration pendingTtl;
+    private final int maxStreams;
+    private final int maxStreamsPerUser;
+    private final ThreadPoolExecutor sender;
+
+    public ProgressService(Duration retention, int maxStreams, int maxStreamsPerUser, int sendThreads) {
+        this(retention, Duration.ofSeconds(30), maxStreams, maxStreamsPerUser, sendThreads);
+    }
+
+    @Autowired
+    public ProgressService(@Value("${progress.retention:10m}") Duration retention,
+                           @Value("${progress.pending-ttl:30s}") Duration pendingTtl,
+                           @Value("${progress.max-streams:1000}") int maxStreams,
+                           @Value("${progress.max-streams-per-user:5}") int maxStreamsPerUser,
+                           @Value("${progress.send-threads:2}") int sendThreads) {
+        this.retention = retention;
+        this.pendingTtl = pendingTtl;
+        this.maxStreams = maxStreams;
+        this.maxStreamsPerUser = maxStreamsPerUser;
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "progress-send-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // Очередь ограничена числом потоков событий: на поток не больше одной отправки
+        this.sender = new ThreadPoolExecutor(sendThreads, sendThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), factory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    /**
+     * Создает счетчик для обработки, которую отслеживает клиент.
+     * @param id идентификатор из формы (может быть null)
+     * @param owner пользователь
+     * @param total ожидаемый объем данных
+     * @return счетчик или {@link ProgressTracker#NONE}, если ход не отслеживается
+     */
+    public ProgressTracker start(String id, String owner, long total) {
+        Entry entry = entry(id, owner);
+        if (entry == null) {
+            return ProgressTracker.NONE;
+        }
+        synchronized (entry) {
+            if (entry.tracker != null) {
+                return ProgressTracker.NONE;
+            }
+            entry.tracker = new ProgressTracker(total);
+            return entry.tracker;
+        }
+    }
+
+    /**
+     * Открывает поток событий для обработки.
+     * @param id идентификатор из формы
+     * @param owner пользователь
+     * @return поток событий
+     * @throws IllegalArgumentException если идентификатор некорректен или принадлежит другому пользователю
+     */
+    public SseEmitter subscribe(String id, String owner) {
+        Entry entry = entry(id, owner);
+        if (entry == null) {
+            throw new IllegalArgumentException("Некорректный идентификатор обработки");
+        }
+        SseEmitter emitter = createEmitter(retention.toMillis());
+        emitter.onCompletion(() -> discard(id, entry));
+        emitter.onTimeout(() -> discard(id, entry));
+        SseEmitter previous = entry.emitter;
+        entry.emitter = emitter;
+        if (previous != null) {
+            previous.complete();
+        }
+        return emitter;
+    }
+
+    /**
+     * Отправляет изменившийся ход обработки подписчикам.
+     * Здесь только снимаются показания счетчиков; запись в потоки идет в пуле отправки.
+     */
+    @Scheduled(fixedDelayString = "${progress.interval-ms:250}")
+    public void publish() {
+        long now = System.nanoTime();
+        entries.forEach((id, entry) -> {
+            SseEmitter emitter = entry.emitter;
+            if (now - entry.createdNanos > retention.toNanos() || abandoned(entry, emitter, now)) {
+                discard(id, entry);
+                if (emitter != null) {
+                    emitter.complete();
+                }
+                return;
+            }
+            if (emitter == null) {
+                return;
+            }
+            Snapshot snapshot = snapshot(entry.tracker, now);
+            boolean finished = snapshot.state() == State.DONE || snapshot.state() == State.FAILED;
+            if (snapshot.processed() == entry.lastProcessed && !finished) {
+                return;
+            }
+            if (!entry.sending.compareAndSet(false, true)) {
+                // Предыдущее событие еще пишется: клиент медленный, пропускаем такт
+                return;
+            }
+            entry.lastProcessed = snapshot.processed();
+            try {
+                sender.execute(() -> send(id, entry, emitter, snapshot, finished));
+            } catch (RejectedExecutionException e) {
+                entry.sending.set(false);
+            }
+        });
+    }
+
+    /**
+     * Создает поток событий.
+     * @param timeout срок жизни потока, мс
+     * @return поток событий
+     */
+    SseEmitter createEmitter(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    private void send(String id, Entry entry, SseEmitter emitter, Snapshot snapshot, boolean finished) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(snapshot, MediaType.APPLICATION_JSON));
+            if (finished) {
+                discard(id, entry);
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Клиент закрыл страницу
+            discard(id, entry);
+        } finally {
+            entry.sending.set(false);
+        }
+    }
+
+    /**
+     * Клиент не подключился, а обработка уже завершена: ждать подписчика дольше
+     * {@code pendingTtl} незачем. Идущая обработка запись сохраняет - их число
+     * ограничено числом одновременных запросов.
+     */
+    private boolean abandoned(Entry entry, SseEmitter emitter, long now) {
+        ProgressTracker tracker = entry.tracker;
+        return emitter == null && (tracker == null || tracker.isFinished())
+                && now - entry.createdNanos > pendingTtl.toNanos();
+    }
+
+    private Entry entry(String id, String owner) {
+        if (id == null || owner == null || !ID_PATTERN.matcher(id).matches()) {
+            return null;
+        }
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            if (entries.size() >= maxStreams || !reserve(owner)) {
+                return null;
+            }
+            Entry created = new Entry(owner);
+            entry = entries.putIfAbsent(id, created);
+            if (entry == null) {
+                entry = created;
+            } else {
+                release(owner);
+            }
+        }
+        return entry.owner.equals(owner) ? entry : null;
+    }
+
+    private boolean reserve(String owner) {
+        AtomicBoolean reserved = new AtomicBoolean();
+        streamsByOwner.compute(owner, (key, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxStreamsPerUser) {
+                return count;
+            }
+            reserved.set(true);
+            return current + 1;
+        });
+        return reserved.get();
+    }
+
+    private void release(String owner) {
+        streamsByOwner.computeIfPresent(owner, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private void discard(String id, Entry entry) {
+        if (entries.remove(id, entry)) {
+            release(entry.owner);
+        }
+    }
+
+    private static Snapshot snapshot(ProgressTracker tracker, long now) {
+        if (tracker == null || tracker.getStartedNanos() == 0) {
+            return new Snapshot(State.WAITING, 0, tracker != null ? tracker.getTotal() : 0, 0, null);
+        }
+        long processed = tracker.getProcessed();
+        long total = tracker.getTotal();
+        long elapsed = Math.max(1, now - tracker.getStartedNanos());
+        long bytesPerSecond = (long) (processed * 1_000_000_000.0 / elapsed);
+        if (tracker.isFinished()) {
+            State state = tracker.isSucceeded() ? State.DONE : State.FAILED;
+            return new Snapshot(state, processed, total, bytesPerSecond, 0L);
+        }
+        Long eta = bytesPerSecond > 0 ? Math.max(0, total - processed) / bytesPerSecond : null;
+        return new Snapshot(State.RUNNING, processed, total, bytesPerSecond, eta);
+    }
+}
@@ -0,0 +1,203 @@
+package projects.encryptit.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Пакетное шифрование коротких строк (токены, поля записей) одним запросом.
+ * Элементы группируются по паре (алгоритм, ключ) без учета регистра названия:
+ * подготовка ключа и объектов JCE выполняется один раз на группу, а группы
+ * обрабатываются параллельно в полосах
+ * {@link ProcessingLanes}. Ошибка группы (например, неизвестный алгоритм) отражается
+ * только в ее элементах; результаты возвращаются в порядке запроса.
+ */
+@Service
+public class TextBatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(TextBatchService.class);
+
+    /**
+     * Элемент пакета.
+     * @param id идентификатор, возвращаемый в результате
+     * @param text открытый текст
+     * @param algorithm алгоритм шифрования
+     * @param key ключ шифрования
+     */
+    public record Item(String id, String text, String algorithm, String key) {
+    }
+
+    /**
+     * Результат элемента.
+     * @param id идентификатор из запроса
+     * @param data шифротекст с блоком целостности в Base64 (как тело ответа /encrypt/text) или null при ошибке
+     * @param error описание ошибки или null
+     */
+    public record Result(String id, String data, String error) {
+    }
+
+    /**
+     * Использование алгоритма в пакете.
+     * @param bytes объем зашифрованного открытого текста
+     * @param nanos суммарное время шифрования групп этого алгоритма
+     */
+    public record Usage(long bytes, long nanos) {
+
+        private Usage plus(Usage other) {
+            return new Usage(bytes + other.bytes, nanos + other.nanos);
+        }
+    }
+
+    /**
+     * Итог обработки пакета.
+     * @param results результаты в порядке элементов
+     * @param usageByAlgorithm объем и время по алгоритмам (для учета использования);
+     *                         время считается по группам, а не по всему пакету
+     */
+    public record BatchOutcome(List<Result> results, Map<String, Usage> usageByAlgorithm) {
+    }
+
+    private record GroupKey(String algorithm, String key) {
+    }
+
+    private final EncryptionService encryptionService;
+    private final ProcessingLanes processingLanes;
+    private final int maxItems;
+    private final long maxBytes;
+
+    public TextBatchService(EncryptionService encryptionService,
+                            ProcessingLanes processingLanes,
+                            @Value("${encryption.batch.max-items:1000}") int maxItems,
+                            @Value("${encryption.batch.max-bytes:1048576}") long maxBytes) {
+        this.encryptionService = encryptionService;
+        this.processingLanes = processingLanes;
+        this.maxItems = maxItems;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Шифрует пакет строк. Группы выполняются в полосах, вызывающий поток не ждет их завершения.
+     * @param items элементы пакета
+     * @return результаты в порядке элементов, когда все группы обработаны
+     * @throws IllegalArgumentException если пакет пуст или превышает ограничения
+     */
+    public CompletableFuture<BatchOutcome> encrypt(List<Item> items) {
+        if (items == null || items.isEmpty() || items.size() > maxItems) {
+            throw new IllegalArgumentException("Пакет должен содержать от 1 до " + maxItems + " элементов");
+        }
+        Result[] results = new Result[items.size()];
+        byte[][] plaintexts = new byte[items.size()][];
+        Map<GroupKey, List<Integer>> groups = new LinkedHashMap<>();
+        Map<String, String> algorithms = new HashMap<>();
+        long total = 0;
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            if (item == null || item.text() == null || isBlank(item.algorithm()) || isBlank(item.key())) {
+                results[i] = new Result(item != null ? item.id() : null, null,
+                        "Не заданы text, algorithm или key");
+                continue;
+            }
+            plaintexts[i] = item.text().getBytes(StandardCharsets.UTF_8);
+            total += plaintexts[i].length;
+            String algorithm = algorithms.computeIfAbsent(item.algorithm(), this::groupAlgorithm);
+            groups.computeIfAbsent(new GroupKey(algorithm, item.key()), k -> new ArrayList<>()).add(i);
+        }
+        if (total > maxBytes) {
+            throw new IllegalArgumentException("Объем пакета превышает " + maxBytes + " байт");
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(groups.size());
+        long[] elapsed = new long[groups.size()];
+        int slot = 0;
+        for (Map.Entry<GroupKey, List<Integer>> group : groups.entrySet()) {
+            long size = groupBytes(plaintexts, group.getValue());
+            int groupSlot = slot++;
+            futures.add(CompletableFuture.runAsync(() -> {
+                long started = System.nanoTime();
+                encryptGroup(group.getKey(), group.getValue(), items, plaintexts, results);
+                elapsed[groupSlot] = System.nanoTime() - started;
+            }, processingLanes.executorFor(size)));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            Map<String, Usage> usageByAlgorithm = new LinkedHashMap<>();
+            int index = 0;
+            for (Map.Entry<GroupKey, List<Integer>> group : groups.entrySet()) {
+                record(usageByAlgorithm, group.getKey(), group.getValue(), elapsed[index++], results, plaintexts);
+            }
+            return new BatchOutcome(List.of(results), usageByAlgorithm);
+        });
+    }
+
+    /**
+     * Шифрует элементы одной группы. Результаты записываются в свои ячейки массива,
+     * поэтому группы не пересекаются и синхронизация не нужна: завершение задач
+     * публикует записи (и время групп) для продолжения, собирающего итог.
+     */
+    private void encryptGroup(GroupKey group, List<Integer> indexes, List<Item> items,
+                              byte[][] plaintexts, Result[] results) {
+        List<byte[]> messages = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            messages.add(plaintexts[index]);
+        }
+        try {
+            List<byte[]> sealed = encryptionService.encryptSealedAll(messages, group.algorithm(), group.key());
+            Base64.Encoder encoder = Base64.getEncoder();
+            for (int i = 0; i < indexes.size(); i++) {
+                int index = indexes.get(i);
+                results[index] = new Result(items.get(index).id(), encoder.encodeToString(sealed.get(i)), null);
+            }
+        } catch (RuntimeException e) {
+            String error = e instanceof IllegalArgumentException ? e.getMessage() : "Ошибка шифрования";
+            if (!(e instanceof IllegalArgumentException)) {
+                log.warn("Ошибка пакетного шифрования алгоритмом {}", group.algorithm(), e);
+            }
+            for (int index : indexes) {
+                results[index] = new Result(items.get(index).id(), null, error);
+            }
+        }
+    }
+
+    /**
+     * Название алгоритма для группировки: "aes" и "AES" попадают в одну группу,
+     * как и при поиске в реестре. Неизвестное название только приводится к верхнему
+     * регистру, а ошибку сообщает шифрование группы.
+     */
+    private String groupAlgorithm(String name) {
+        try {
+            return encryptionService.canonicalName(name);
+        } catch (IllegalArgumentException e) {
+            return name.trim().toUpperCase(Locale.ROOT);
+        }
+    }
+
+    private static void record(Map<String, Usage> usageByAlgorithm, GroupKey group, List<Integer> indexes,
+                               long elapsed, Result[] results, byte[][] plaintexts) {
+        if (results[indexes.get(0)].error() == null) {
+            usageByAlgorithm.merge(group.algorithm(), new Usage(groupBytes(plaintexts, indexes), elapsed),
+                    Usage::plus);
+        }
+    }
+
+    private static long groupBytes(byte[][] plaintexts, List<Integer> indexes) {
+        long size = 0;
+        for (int index : indexes) {
+            size += plaintexts[index].length;
+        }
+        return size;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,172 @@
+package projects.encryptit.service;
+
+import projects.encryptit.model.UsageTotals;
+import projects.encryptit.model.User;
+import projects.encryptit.repository.UsageTotalsRepository;
+import projects.encryptit.repository.UserRepository;
+import projects.encryptit.security.TokenPrincipal;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики использования по пользователям и алгоритмам.
+ * Запросы только увеличивают {@link LongAdder} без блокировок; в базу
+ * периодически уходят агрегированные приращения одной пакетной операцией.
+ */
+@Service
+public class UsageMeterService {
+
+    private static final Logger log = LoggerFactory.getLogger(UsageMeterService.class);
+
+    private record Key(String username, String algorithm) {
+    }
+
+    /**
+     * Счетчики одной пары пользователь/алгоритм.
+     * Сумматоры никогда не обнуляются: в базу пишется разница с последним
+     * сохраненным снимком, поэтому приращения, пришедшие во время сброса,
+     * попадут в следующий сброс, а не потеряются.
+     */
+    private static final class Counters {
+        final LongAdder encryptedBytes = new LongAdder();
+        final LongAdder decryptedBytes = new LongAdder();
+        final LongAdder encryptRequests = new LongAdder();
+        final LongAdder decryptRequests = new LongAdder();
+        final LongAdder busyNanos = new LongAdder();
+        // Изменяется только потоком сброса
+        volatile UsageTotals flushed;
+
+        Counters(String algorithm) {
+            this.flushed = UsageTotals.empty(algorithm);
+        }
+
+        UsageTotals snapshot() {
+            return new UsageTotals(flushed.algorithm(), encryptedBytes.sum(), decryptedBytes.sum(),
+                    encryptRequests.sum(), decryptRequests.sum(), busyNanos.sum());
+        }
+
+        UsageTotals unflushed() {
+            return snapshot().minus(flushed);
+        }
+    }
+
+    private final UsageTotalsRepository usageTotalsRepository;
+    private final UserRepository userRepository;
+    private final Map<Key, Counters> counters = new ConcurrentHashMap<>();
+    private final Map<String, Long> userIds = new ConcurrentHashMap<>();
+
+    public UsageMeterService(UsageTotalsRepository usageTotalsRepository, UserRepository userRepository) {
+        this.usageTotalsRepository = usageTotalsRepository;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Учитывает выполненный запрос.
+     * @param username пользователь
+     * @param algorithm алгоритм
+     * @param encrypt шифрование или дешифрование
+     * @param bytes объем входных данных
+     * @param nanos время обработки
+     */
+    public void record(String username, String algorithm, boolean encrypt, long bytes, long nanos) {
+        Counters c = counters.computeIfAbsent(new Key(username, algorithm.toUpperCase()), key -> {
+            // Сброс идет в потоке планировщика без контекста запроса: идентификатор из токена запоминается здесь
+            TokenPrincipal.currentUserId(username).ifPresent(id -> userIds.putIfAbsent(username, id));
+            return new Counters(key.algorithm());
+        });
+        if (encrypt) {
+            c.encryptedBytes.add(bytes);
+            c.encryptRequests.increment();
+        } else {
+            c.decryptedBytes.add(bytes);
+            c.decryptRequests.increment();
+        }
+        c.busyNanos.add(nanos);
+    }
+
+    /**
+     * Статистика пользователя: сохраненные итоги плюс еще не сброшенные приращения.
+     * @param username пользователь
+     * @return счетчики по алгоритмам, упорядоченные по имени
+     */
+    public List<UsageTotals> usage(String username) {
+        Map<String, UsageTotals> result = new TreeMap<>();
+        Optional<Long> userId = resolveUserId(username);
+        userId.ifPresent(id -> usageTotalsRepository.findByUser(id)
+                .forEach(t -> result.put(t.algorithm(), t)));
+        counters.forEach((key, c) -> {
+            if (key.username().equals(username)) {
+                UsageTotals delta = c.unflushed();
+                if (!delta.isEmpty()) {
+                    result.merge(key.algorithm(), delta, UsageTotals::plus);
+                }
+            }
+        });
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * Сбрасывает накопленные приращения в базу одной пакетной операцией.
+     * Идентификаторы пользователей кэшируются, чтобы сброс не ходил в базу за каждым счетчиком.
+     * При ошибке снимки не сдвигаются, и приращения уйдут со следующим сбросом.
+     */
+    @Scheduled(fixedDelayString = "${usage.flush-interval-ms:30000}")
+    @PreDestroy
+    public synchronized void flush() {
+        List<Map.Entry<Long, UsageTotals>> deltas = new ArrayList<>();
+        List<Counters> flushedCounters = new ArrayList<>();
+        List<UsageTotals> snapshots = new ArrayList<>();
+        counters.forEach((key, c) -> {
+            UsageTotals snapshot = c.snapshot();
+            UsageTotals delta = snapshot.minus(c.flushed);
+            if (delta.isEmpty()) {
+                return;
+            }
+            Optional<Long> userId = resolveUserId(key.username());
+            if (userId.isEmpty()) {
+                // Пользователь удален: учитывать некуда
+                c.flushed = snapshot;
+                return;
+            }
+            deltas.add(new AbstractMap.SimpleImmutableEntry<>(userId.get(), delta));
+            flushedCounters.add(c);
+            snapshots.add(snapshot);
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            usageTotalsRepository.addAll(deltas);
+            for (int i = 0; i < flushedCounters.size(); i++) {
+                flushedCounters.get(i).flushed = snapshots.get(i);
+            }
+        } catch (RuntimeException e) {
+            // Идентификаторы перечитываются: среди них мог оказаться удаленный пользователь
+            userIds.clear();
+            log.warn("Не удалось сохранить статистику использования ({} строк)", deltas.size(), e);
+        }
+    }
+
+    private Optional<Long> resolveUserId(String username) {
+        Long cached = userIds.get(username);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Long> id = TokenPrincipal.currentUserId(username)
+                .or(() -> userRepository.findByUsername(username).map(User::getId));
+        id.ifPresent(value -> userIds.put(username, value));
+        return id;
+    }
+}
@@ -13,6 +13,11 @@ public class FileUtil {
 
     private static final String TEMP_DIR = System.getProperty("java.io.tmpdir");
 
+    /**
+     * Сколько первых байт достаточно для определения типа файла по сигнатурам.
+     */
+    public static final int SIGNATURE_PROBE_LENGTH = 1000;
+
     /**
      * Сохраняет временный файл.
      * @param file загруженный файл
@@ -40,6 +45,20 @@ public class FileUtil {
         }
     }
 
+    /**
+     * Получает имя файла без расширения.
+     * @param filename имя файла (может быть null)
+     * @return имя без последнего расширения; имя целиком, если расширения нет,
+     *         или {@code file}, если имя не задано
+     */
+    public static String getBaseName(String filename) {
+        if (filename == null || filename.isBlank()) {
+            return "file";
+        }
+        int dot = filename.lastIndexOf('.');
+        return dot > 0 ? filename.substring(0, dot) : filename;
+    }
+
     /**
      * Получает расширение файла.
      * @param filename имя файла
@@ -157,7 +176,7 @@ public class FileUtil {
         if (data.length == 0) return true;
 
         // Проверяем первые 1000 байт на наличие не-текстовых символов
-        int checkLength = Math.min(data.length, 1000);
+        int checkLength = Math.min(data.length, SIGNATURE_PROBE_LENGTH);
         int textCharCount = 0;
 
         for (int i = 0; i < checkLength; i++) {
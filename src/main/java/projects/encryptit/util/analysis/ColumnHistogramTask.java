@@ -0,0 +1,81 @@
+package projects.encryptit.util.analysis;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Параллельный подсчет гистограмм байтов по столбцам периода:
+ * байт в позиции {@code i} попадает в столбец {@code i % period}.
+ * Период 1 дает обычную гистограмму всего текста.
+ */
+public class ColumnHistogramTask extends RecursiveTask<long[][]> {
+
+    private static final int SEQUENTIAL_THRESHOLD = 64 * 1024;
+
+    private final byte[] data;
+    private final int from;
+    private final int to;
+    private final int period;
+
+    /**
+     * @param data данные
+     * @param from начало диапазона (включительно)
+     * @param to конец диапазона (не включительно)
+     * @param period длина периода
+     */
+    public ColumnHistogramTask(byte[] data, int from, int to, int period) {
+        this.data = data;
+        this.from = from;
+        this.to = to;
+        this.period = period;
+    }
+
+    @Override
+    protected long[][] compute() {
+        if (to - from <= SEQUENTIAL_THRESHOLD) {
+            long[][] histograms = new long[period][256];
+            int column = from % period;
+            for (int i = from; i < to; i++) {
+                histograms[column][data[i] & 0xFF]++;
+                if (++column == period) {
+                    column = 0;
+                }
+            }
+            return histograms;
+        }
+        int middle = (from + to) >>> 1;
+        ColumnHistogramTask left = new ColumnHistogramTask(data, from, middle, period);
+        left.fork();
+        long[][] right = new ColumnHistogramTask(data, middle, to, period).compute();
+        long[][] merged = left.join();
+        for (int c = 0; c < period; c++) {
+            for (int b = 0; b < 256; b++) {
+                merged[c][b] += right[c][b];
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Средний индекс совпадений по столбцам.
+     * Для случайных байтов он близок к 1/256, для текста заметно выше.
+     * @param histograms гистограммы столбцов
+     * @return индекс совпадений
+     */
+    public static double indexOfCoincidence(long[][] histograms) {
+        double sum = 0;
+        int columns = 0;
+        for (long[] histogram : histograms) {
+            long n = 0;
+            long pairs = 0;
+            for (long f : histogram) {
+                n += f;
+                pairs += f * (f - 1);
+            }
+            if (n > 1) {
+                sum += (double) pairs / ((double) n * (n - 1));
+                columns++;
+            }
+        }
+        return columns == 0 ? 0 : sum / columns;
+    }
+}
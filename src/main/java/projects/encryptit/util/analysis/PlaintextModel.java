@@ -0,0 +1,77 @@
+package projects.encryptit.util.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Модель распределения байтов открытого текста для частотного анализа.
+ * Ориентирована на текст в UTF-8: латиница с английскими частотами, пробелы,
+ * знаки препинания и кириллица (ведущие байты 0xD0/0xD1 и байты продолжения).
+ */
+public final class PlaintextModel {
+
+    private static final double[] LOG_PROBABILITY = new double[256];
+
+    /**
+     * Частоты английских букв a..z в процентах.
+     */
+    private static final double[] ENGLISH_LETTERS = {
+            8.2, 1.5, 2.8, 4.3, 12.7, 2.2, 2.0, 6.1, 7.0, 0.15, 0.77, 4.0, 2.4,
+            6.7, 7.5, 1.9, 0.095, 6.0, 6.3, 9.1, 2.8, 0.98, 2.4, 0.15, 2.0, 0.074
+    };
+
+    static {
+        double[] weight = new double[256];
+        Arrays.fill(weight, 0.001);
+        for (int i = 0; i < 26; i++) {
+            weight['a' + i] = ENGLISH_LETTERS[i];
+            weight['A' + i] = ENGLISH_LETTERS[i] * 0.08;
+        }
+        weight[' '] = 18.0;
+        weight['\n'] = 1.0;
+        weight['\r'] = 0.3;
+        weight['\t'] = 0.1;
+        for (char c : ".,-:;!?\"'()".toCharArray()) {
+            weight[c] = 0.4;
+        }
+        weight['.'] = 1.2;
+        weight[','] = 1.2;
+        for (int d = '0'; d <= '9'; d++) {
+            weight[d] = 0.3;
+        }
+        // Кириллица в UTF-8: два байта на букву
+        weight[0xD0] = 7.0;
+        weight[0xD1] = 4.0;
+        for (int b = 0x80; b <= 0xBF; b++) {
+            weight[b] = 0.25;
+        }
+        weight[0x00] = 0.01;
+
+        double total = 0;
+        for (double w : weight) {
+            total += w;
+        }
+        for (int i = 0; i < 256; i++) {
+            LOG_PROBABILITY[i] = Math.log(weight[i] / total);
+        }
+    }
+
+    private PlaintextModel() {
+    }
+
+    /**
+     * Логарифм правдоподобия гистограммы, сдвинутой на {@code shift}:
+     * байт {@code c} гистограммы считается открытым байтом {@code c - shift}.
+     * @param histogram частоты байтов
+     * @param shift проверяемый сдвиг
+     * @return сумма логарифмов вероятностей (чем больше, тем правдоподобнее)
+     */
+    public static double score(long[] histogram, int shift) {
+        double score = 0;
+        for (int c = 0; c < 256; c++) {
+            if (histogram[c] != 0) {
+                score += histogram[c] * LOG_PROBABILITY[(c - shift) & 0xFF];
+            }
+        }
+        return score;
+    }
+}
@@ -0,0 +1,78 @@
+package projects.encryptit.util.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Канал, накапливающий записанные данные в арендованном буфере.
+ * При нехватке места арендует буфер большего класса и переносит в него данные.
+ */
+public class ArenaByteChannel implements WritableByteChannel {
+
+    private final BufferArena arena;
+    private BufferLease lease;
+
+    /**
+     * @param arena пул буферов
+     * @param initialCapacity ожидаемый объем данных
+     */
+    public ArenaByteChannel(BufferArena arena, int initialCapacity) {
+        this.arena = arena;
+        this.lease = arena.lease(Math.max(1, initialCapacity));
+        this.lease.buffer().clear();
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws ClosedChannelException {
+        if (lease == null) {
+            throw new ClosedChannelException();
+        }
+        int length = source.remaining();
+        ByteBuffer target = lease.buffer();
+        if (target.remaining() < length) {
+            target = grow(target.position() + length);
+        }
+        target.put(source);
+        return length;
+    }
+
+    /**
+     * Передает накопленные данные вызывающему коду вместе с ответственностью за аренду.
+     * Буфер аренды переводится в режим чтения; канал после этого закрыт.
+     * @return аренда с записанными данными
+     */
+    public BufferLease detach() {
+        BufferLease result = lease;
+        lease = null;
+        result.buffer().flip();
+        return result;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return lease != null;
+    }
+
+    /**
+     * Закрывает канал и возвращает буфер в пул, если данные не были переданы через {@link #detach()}.
+     */
+    @Override
+    public void close() {
+        if (lease != null) {
+            lease.close();
+            lease = null;
+        }
+    }
+
+    private ByteBuffer grow(int required) {
+        int capacity = lease.buffer().capacity();
+        int newCapacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max((long) capacity * 2, required));
+        BufferLease bigger = arena.lease(newCapacity);
+        ByteBuffer target = bigger.buffer().clear();
+        target.put(lease.buffer().flip());
+        lease.close();
+        lease = bigger;
+        return target;
+    }
+}
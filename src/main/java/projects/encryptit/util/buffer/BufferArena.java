@@ -0,0 +1,202 @@
+package projects.encryptit.util.buffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пул direct-буферов с классами размеров от 4 КБ до 16 МБ (шаг x4).
+ * Буферы выдаются в аренду через {@link BufferLease} и возвращаются в пул
+ * при закрытии аренды. Запросы больше максимального класса обслуживаются
+ * обычными heap-буферами и учитываются как fallback.
+ */
+public class BufferArena {
+
+    private static final Logger log = LoggerFactory.getLogger(BufferArena.class);
+    private static final int MIN_CLASS_SHIFT = 12;
+    private static final int CLASS_COUNT = 7;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static volatile BufferArena shared = new BufferArena(64L * 1024 * 1024, false);
+
+    private final long maxRetainedBytes;
+    private final boolean leakDetection;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ConcurrentLinkedQueue<ByteBuffer>[] free = new ConcurrentLinkedQueue[CLASS_COUNT];
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final AtomicLong leasedBytes = new AtomicLong();
+    private final AtomicLong outstanding = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder discards = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private final AtomicLong leaseIds = new AtomicLong();
+    private final Map<Long, Throwable> leaseSites = new ConcurrentHashMap<>();
+
+    /**
+     * Снимок метрик пула.
+     * @param leasedBytes байт в аренде сейчас
+     * @param retainedBytes байт в свободных буферах пула
+     * @param outstandingLeases незакрытых аренд
+     * @param hits выдач из пула
+     * @param misses выдач с выделением нового direct-буфера
+     * @param fallbacks выдач heap-буферов для слишком больших запросов
+     * @param discards буферов, не возвращенных в пул из-за лимита
+     * @param leaks аренд, собранных GC без закрытия
+     * @param hitRate доля выдач из пула
+     */
+    public record Metrics(long leasedBytes, long retainedBytes, long outstandingLeases,
+                          long hits, long misses, long fallbacks, long discards, long leaks,
+                          double hitRate) {
+    }
+
+    /**
+     * @param maxRetainedBytes максимальный объем свободных буферов в пуле
+     * @param leakDetection запоминать место выдачи и сообщать о незакрытых арендах
+     */
+    public BufferArena(long maxRetainedBytes, boolean leakDetection) {
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.leakDetection = leakDetection;
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            free[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Возвращает общий пул, используемый потоковой обработкой.
+     * @return общий пул
+     */
+    public static BufferArena shared() {
+        return shared;
+    }
+
+    /**
+     * Заменяет общий пул (вызывается конфигурацией приложения и тестами).
+     * @param arena новый общий пул
+     */
+    public static void installShared(BufferArena arena) {
+        shared = arena;
+    }
+
+    /**
+     * Выдает буфер емкостью не меньше запрошенной.
+     * Позиция буфера 0, лимит равен {@code minCapacity}.
+     * @param minCapacity требуемая емкость
+     * @return аренда буфера
+     */
+    public BufferLease lease(int minCapacity) {
+        int sizeClass = sizeClass(minCapacity);
+        ByteBuffer buffer;
+        if (sizeClass < 0) {
+            fallbacks.increment();
+            buffer = ByteBuffer.allocate(minCapacity);
+        } else {
+            buffer = free[sizeClass].poll();
+            if (buffer != null) {
+                hits.increment();
+                retainedBytes.addAndGet(-buffer.capacity());
+            } else {
+                misses.increment();
+                buffer = ByteBuffer.allocateDirect(classCapacity(sizeClass));
+            }
+        }
+        buffer.clear().limit(minCapacity);
+
+        BufferLease lease = new BufferLease(this, leaseIds.incrementAndGet(), buffer, sizeClass);
+        leasedBytes.addAndGet(buffer.capacity());
+        outstanding.incrementAndGet();
+        if (leakDetection) {
+            leaseSites.put(lease.id(), new Throwable("Место выдачи буфера"));
+            CLEANER.register(lease, new LeakCheck(this, lease.releasedFlag(), lease.id(), buffer.capacity()));
+        }
+        return lease;
+    }
+
+    void release(BufferLease lease, ByteBuffer buffer, int sizeClass) {
+        leasedBytes.addAndGet(-buffer.capacity());
+        outstanding.decrementAndGet();
+        if (leakDetection) {
+            leaseSites.remove(lease.id());
+        }
+        if (sizeClass < 0) {
+            return;
+        }
+        if (retainedBytes.addAndGet(buffer.capacity()) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-buffer.capacity());
+            discards.increment();
+            return;
+        }
+        free[sizeClass].offer(buffer);
+    }
+
+    /**
+     * Возвращает количество незакрытых аренд.
+     * @return количество аренд
+     */
+    public long outstandingLeases() {
+        return outstanding.get();
+    }
+
+    /**
+     * Возвращает места выдачи незакрытых аренд (только при включенном отслеживании утечек).
+     * @return исключения со стеком места выдачи
+     */
+    public Iterable<Throwable> outstandingLeaseSites() {
+        return leaseSites.values();
+    }
+
+    /**
+     * Возвращает снимок метрик пула.
+     * @return метрики
+     */
+    public Metrics metrics() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum() + fallbacks.sum();
+        return new Metrics(leasedBytes.get(), retainedBytes.get(), outstanding.get(),
+                hitCount, misses.sum(), fallbacks.sum(), discards.sum(), leaks.sum(),
+                total == 0 ? 0 : (double) hitCount / total);
+    }
+
+    private void onLeak(long leaseId, int capacity) {
+        leaks.increment();
+        leasedBytes.addAndGet(-capacity);
+        outstanding.decrementAndGet();
+        Throwable site = leaseSites.remove(leaseId);
+        log.warn("Утечка буфера: аренда на {} байт не была закрыта", capacity, site);
+    }
+
+    private static int sizeClass(int capacity) {
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            if (capacity <= classCapacity(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int classCapacity(int sizeClass) {
+        return 1 << (MIN_CLASS_SHIFT + 2 * sizeClass);
+    }
+
+    /**
+     * Действие Cleaner: срабатывает, если аренда собрана GC, не будучи закрытой.
+     */
+    private record LeakCheck(BufferArena arena, AtomicBoolean released, long leaseId,
+                             int capacity) implements Runnable {
+        @Override
+        public void run() {
+            if (released.compareAndSet(false, true)) {
+                arena.onLeak(leaseId, capacity);
+            }
+        }
+    }
+}
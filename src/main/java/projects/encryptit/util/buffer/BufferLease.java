@@ -0,0 +1,58 @@
+package projects.encryptit.util.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Аренда буфера из {@link BufferArena}. Закрытие возвращает буфер в пул;
+ * повторное закрытие ничего не делает.
+ */
+public final class BufferLease implements AutoCloseable {
+
+    private final BufferArena arena;
+    private final long id;
+    private final ByteBuffer buffer;
+    private final int sizeClass;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    BufferLease(BufferArena arena, long id, ByteBuffer buffer, int sizeClass) {
+        this.arena = arena;
+        this.id = id;
+        this.buffer = buffer;
+        this.sizeClass = sizeClass;
+    }
+
+    /**
+     * Возвращает арендованный буфер. После закрытия аренды использовать буфер нельзя.
+     * @return буфер
+     */
+    public ByteBuffer buffer() {
+        if (released.get()) {
+            throw new IllegalStateException("Буфер уже возвращен в пул");
+        }
+        return buffer;
+    }
+
+    /**
+     * Проверяет, возвращен ли буфер в пул.
+     * @return true если аренда закрыта
+     */
+    public boolean isReleased() {
+        return released.get();
+    }
+
+    long id() {
+        return id;
+    }
+
+    AtomicBoolean releasedFlag() {
+        return released;
+    }
+
+    @Override
+    public void close() {
+        if (released.compareAndSet(false, true)) {
+            arena.release(this, buffer, sizeClass);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package projects.encryptit.util.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Канал записи в массив заданной емкости; при нехватке места массив растет.
+ * Если емкость угадана точно, результат возвращается без копирования.
+ */
+public final class ByteArraySink implements WritableByteChannel {
+
+    private byte[] buffer;
+    private int size;
+
+    /**
+     * @param capacity ожидаемый объем данных
+     */
+    public ByteArraySink(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    @Override
+    public int write(ByteBuffer source) {
+        int length = source.remaining();
+        if (buffer.length - size < length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+        }
+        source.get(buffer, size, length);
+        size += length;
+        return length;
+    }
+
+    /**
+     * @return записанные данные; массив не копируется, если емкость угадана точно
+     */
+    public byte[] toByteArray() {
+        return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+}
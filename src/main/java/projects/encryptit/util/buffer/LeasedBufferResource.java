@@ -0,0 +1,85 @@
+package projects.encryptit.util.buffer;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Ресурс для тела HTTP-ответа поверх арендованного буфера.
+ * Закрытие потока чтения возвращает буфер в пул.
+ */
+public class LeasedBufferResource extends AbstractResource {
+
+    private final BufferLease lease;
+    private final ByteBuffer contents;
+
+    /**
+     * @param lease аренда с данными в режиме чтения
+     */
+    public LeasedBufferResource(BufferLease lease) {
+        this.lease = lease;
+        this.contents = lease.buffer().duplicate();
+    }
+
+    @Override
+    public String getDescription() {
+        return "Leased buffer [" + contents.remaining() + " bytes]";
+    }
+
+    @Override
+    public long contentLength() {
+        return contents.remaining();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        ByteBuffer view = contents.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return view.hasRemaining() ? view.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!view.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, view.remaining());
+                view.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return view.remaining();
+            }
+
+            @Override
+            public void close() {
+                lease.close();
+            }
+        };
+    }
+
+    /**
+     * Возвращает буфер в пул, если ответ так и не будет отправлен.
+     */
+    public void release() {
+        lease.close();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+}
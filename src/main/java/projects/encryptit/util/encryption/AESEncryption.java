@@ -3,7 +3,13 @@ package projects.encryptit.util.encryption;
 import org.springframework.stereotype.Component;
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
-import java.util.Base64;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Реализация AES шифрования.
@@ -12,40 +18,98 @@ import java.util.Base64;
 public class AESEncryption implements EncryptionAlgorithm {
 
     private static final String NAME = "AES";
+    private static final int ID = 1;
     private static final String ALGORITHM = "AES";
     private static final int KEY_LENGTH = 16;
+    private static final Set<AlgorithmCapability> CAPABILITIES = Collections.unmodifiableSet(
+            EnumSet.of(AlgorithmCapability.STREAMING, AlgorithmCapability.DETERMINISTIC));
 
     @Override
     public byte[] encrypt(byte[] data, String key) {
+        return withKey(key).encrypt(data);
+    }
+
+    @Override
+    public byte[] decrypt(byte[] encryptedData, String key) {
+        return withKey(key).decrypt(encryptedData);
+    }
+
+    @Override
+    public void encrypt(ReadableByteChannel source, WritableByteChannel target, String key) throws IOException {
         try {
-            byte[] keyBytes = normalizeKey(key);
-            SecretKeySpec secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            return cipher.doFinal(data);
-        } catch (Exception e) {
+            ChunkPump.pump(source, target, newCipher(Cipher.ENCRYPT_MODE, key));
+        } catch (GeneralSecurityException e) {
             throw new RuntimeException("Ошибка AES шифрования", e);
         }
     }
 
     @Override
-    public byte[] decrypt(byte[] encryptedData, String key) {
+    public void decrypt(ReadableByteChannel source, WritableByteChannel target, String key) throws IOException {
         try {
-            byte[] keyBytes = normalizeKey(key);
-            SecretKeySpec secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            return cipher.doFinal(encryptedData);
-        } catch (Exception e) {
+            ChunkPump.pump(source, target, newCipher(Cipher.DECRYPT_MODE, key));
+        } catch (GeneralSecurityException e) {
             throw new RuntimeException("Ошибка AES дешифрования", e);
         }
     }
 
+    @Override
+    public KeyedCipher withKey(String key) {
+        SecretKeySpec secretKey = new SecretKeySpec(normalizeKey(key), ALGORITHM);
+        return new KeyedCipher() {
+            // После doFinal шифр возвращается в состояние после init и готов к следующему сообщению
+            private Cipher encryptor;
+            private Cipher decryptor;
+
+            @Override
+            public byte[] encrypt(byte[] data) {
+                try {
+                    if (encryptor == null) {
+                        encryptor = Cipher.getInstance(ALGORITHM);
+                        encryptor.init(Cipher.ENCRYPT_MODE, secretKey);
+                    }
+                    return encryptor.doFinal(data);
+                } catch (Exception e) {
+                    throw new RuntimeException("Ошибка AES шифрования", e);
+                }
+            }
+
+            @Override
+            public byte[] decrypt(byte[] encryptedData) {
+                try {
+                    if (decryptor == null) {
+                        decryptor = Cipher.getInstance(ALGORITHM);
+                        decryptor.init(Cipher.DECRYPT_MODE, secretKey);
+                    }
+                    return decryptor.doFinal(encryptedData);
+                } catch (Exception e) {
+                    throw new RuntimeException("Ошибка AES дешифрования", e);
+                }
+            }
+        };
+    }
+
     @Override
     public String getName() {
         return NAME;
     }
 
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public Set<AlgorithmCapability> getCapabilities() {
+        return CAPABILITIES;
+    }
+
+    private Cipher newCipher(int mode, String key) throws GeneralSecurityException {
+        SecretKeySpec secretKey = new SecretKeySpec(normalizeKey(key), ALGORITHM);
+        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        cipher.init(mode, secretKey);
+        return cipher;
+    }
+
     private byte[] normalizeKey(String key) {
         byte[] keyBytes = key.getBytes();
         if (keyBytes.length == KEY_LENGTH) {
@@ -58,4 +122,4 @@ public class AESEncryption implements EncryptionAlgorithm {
         }
         return normalized;
     }
-}
\ No newline at end of file
+}
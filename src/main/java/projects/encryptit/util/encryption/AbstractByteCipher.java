@@ -0,0 +1,127 @@
+package projects.encryptit.util.encryption;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Базовый класс для побайтовых шифров, у которых результат для каждого байта
+ * зависит только от самого байта, ключа и позиции в потоке.
+ * Такие шифры сохраняют длину, работают на месте, потоком и параллельно.
+ */
+public abstract class AbstractByteCipher implements EncryptionAlgorithm {
+
+    private static final Set<AlgorithmCapability> CAPABILITIES = Collections.unmodifiableSet(EnumSet.of(
+            AlgorithmCapability.STREAMING,
+            AlgorithmCapability.PARALLELIZABLE,
+            AlgorithmCapability.LENGTH_PRESERVING,
+            AlgorithmCapability.SEEKABLE,
+            AlgorithmCapability.DETERMINISTIC));
+    private static final int SCRATCH_SIZE = 8 * 1024;
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[SCRATCH_SIZE]);
+
+    /**
+     * Шифрует диапазон массива на месте.
+     * @param data массив с данными
+     * @param offset начало диапазона
+     * @param length длина диапазона
+     * @param position смещение первого байта диапазона от начала данных
+     * @param key ключ шифрования
+     */
+    protected abstract void encryptRange(byte[] data, int offset, int length, long position, String key);
+
+    /**
+     * Дешифрует диапазон массива на месте.
+     * @param data массив с данными
+     * @param offset начало диапазона
+     * @param length длина диапазона
+     * @param position смещение первого байта диапазона от начала данных
+     * @param key ключ шифрования
+     */
+    protected abstract void decryptRange(byte[] data, int offset, int length, long position, String key);
+
+    @Override
+    public byte[] encrypt(byte[] data, String key) {
+        byte[] result = data.clone();
+        encryptRange(result, 0, result.length, 0, key);
+        return result;
+    }
+
+    @Override
+    public byte[] decrypt(byte[] encryptedData, String key) {
+        byte[] result = encryptedData.clone();
+        decryptRange(result, 0, result.length, 0, key);
+        return result;
+    }
+
+    @Override
+    public Set<AlgorithmCapability> getCapabilities() {
+        return CAPABILITIES;
+    }
+
+    @Override
+    public void encryptInPlace(ByteBuffer buffer, long position, String key) {
+        transform(buffer, position, key, true);
+    }
+
+    @Override
+    public void decryptInPlace(ByteBuffer buffer, long position, String key) {
+        transform(buffer, position, key, false);
+    }
+
+    @Override
+    public void encrypt(ReadableByteChannel source, WritableByteChannel target, String key) throws IOException {
+        ChunkPump.pump(source, target, (chunk, position) -> transform(chunk, position, key, true));
+    }
+
+    @Override
+    public void decrypt(ReadableByteChannel source, WritableByteChannel target, String key) throws IOException {
+        ChunkPump.pump(source, target, (chunk, position) -> transform(chunk, position, key, false));
+    }
+
+    /**
+     * Возвращает байты ключа для шифров с повторяющимся ключом.
+     * Проверка выполняется до обращения к данным, поэтому пустой ключ
+     * отклоняется и для пустого ввода.
+     * @param key ключ шифрования
+     * @return байты ключа
+     * @throws IllegalArgumentException если ключ пустой
+     */
+    protected static byte[] requireKeyBytes(String key) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("Ключ не может быть пустым");
+        }
+        return key.getBytes();
+    }
+
+    private void transform(ByteBuffer buffer, long position, String key, boolean encrypt) {
+        int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            applyRange(buffer.array(), buffer.arrayOffset() + buffer.position(), length, position, key, encrypt);
+            return;
+        }
+
+        // Direct-буфер обрабатываем через небольшой промежуточный массив
+        byte[] scratch = SCRATCH.get();
+        int base = buffer.position();
+        for (int done = 0; done < length; ) {
+            int n = Math.min(scratch.length, length - done);
+            buffer.get(base + done, scratch, 0, n);
+            applyRange(scratch, 0, n, position + done, key, encrypt);
+            buffer.put(base + done, scratch, 0, n);
+            done += n;
+        }
+    }
+
+    private void applyRange(byte[] data, int offset, int length, long position, String key, boolean encrypt) {
+        if (encrypt) {
+            encryptRange(data, offset, length, position, key);
+        } else {
+            decryptRange(data, offset, length, position, key);
+        }
+    }
+}
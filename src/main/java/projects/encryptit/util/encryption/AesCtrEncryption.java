@@ -0,0 +1,193 @@
+package projects.encryptit.util.encryption;
+
+import org.springframework.stereotype.Component;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Реализация AES в режиме счетчика (CTR).
+ * Случайный начальный счетчик (16 байт) записывается в начало шифротекста.
+ * Блок открытого текста с номером {@code n} шифруется гаммой от счетчика
+ * {@code IV + n}, поэтому любой диапазон дешифруется без чтения данных до него.
+ */
+@Component
+public class AesCtrEncryption implements EncryptionAlgorithm {
+
+    private static final String NAME = "AES-CTR";
+    private static final int ID = 6;
+    private static final String TRANSFORMATION = "AES/CTR/NoPadding";
+    private static final String KEY_ALGORITHM = "AES";
+    private static final int KEY_LENGTH = 16;
+    private static final int BLOCK_LENGTH = 16;
+    private static final Set<AlgorithmCapability> CAPABILITIES = Collections.unmodifiableSet(
+            EnumSet.of(AlgorithmCapability.STREAMING, AlgorithmCapability.SEEKABLE));
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Override
+    public byte[] encrypt(byte[] data, String key) {
+        return withKey(key).encrypt(data);
+    }
+
+    @Override
+    public byte[] decrypt(byte[] encryptedData, String key) {
+        return withKey(key).decrypt(encryptedData);
+    }
+
+    @Override
+    public void encrypt(ReadableByteChannel source, WritableByteChannel target, String key) throws IOException {
+        try {
+            byte[] iv = newIv();
+            Cipher cipher = newCipher(Cipher.ENCRYPT_MODE, key, iv);
+            ChunkPump.writeFully(target, ByteBuffer.wrap(iv));
+            ChunkPump.pump(source, target, cipher);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Ошибка AES-CTR шифрования", e);
+        }
+    }
+
+    @Override
+    public void decrypt(ReadableByteChannel source, WritableByteChannel target, String key) throws IOException {
+        ByteBuffer iv = ByteBuffer.allocate(BLOCK_LENGTH);
+        while (iv.hasRemaining()) {
+            if (source.read(iv) < 0) {
+                throw new IllegalArgumentException("Данные AES-CTR слишком короткие");
+            }
+        }
+        try {
+            ChunkPump.pump(source, target, newCipher(Cipher.DECRYPT_MODE, key, iv.array()));
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Ошибка AES-CTR дешифрования", e);
+        }
+    }
+
+    @Override
+    public byte[] decryptRange(RangeSource source, long offset, int length, String key) throws IOException {
+        if (source.size() < BLOCK_LENGTH) {
+            throw new IllegalArgumentException("Данные AES-CTR слишком короткие");
+        }
+        byte[] iv = source.readRange(0, BLOCK_LENGTH);
+        byte[] data = source.readRange(BLOCK_LENGTH + offset, length);
+        try {
+            // Счетчик первого блока диапазона; гамма до начала диапазона внутри блока пропускается
+            Cipher cipher = newCipher(Cipher.DECRYPT_MODE, key, counterAt(iv, offset / BLOCK_LENGTH));
+            int skip = (int) (offset % BLOCK_LENGTH);
+            if (skip > 0) {
+                cipher.update(new byte[skip]);
+            }
+            cipher.doFinal(data, 0, data.length, data, 0);
+            return data;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Ошибка AES-CTR дешифрования", e);
+        }
+    }
+
+    @Override
+    public KeyedCipher withKey(String key) {
+        SecretKeySpec secretKey = new SecretKeySpec(normalizeKey(key), KEY_ALGORITHM);
+        return new KeyedCipher() {
+            // Каждое сообщение получает свой IV, поэтому init выполняется заново, но на том же объекте
+            private Cipher cipher;
+
+            @Override
+            public byte[] encrypt(byte[] data) {
+                try {
+                    byte[] iv = newIv();
+                    byte[] result = new byte[BLOCK_LENGTH + data.length];
+                    System.arraycopy(iv, 0, result, 0, BLOCK_LENGTH);
+                    cipher(Cipher.ENCRYPT_MODE, iv).doFinal(data, 0, data.length, result, BLOCK_LENGTH);
+                    return result;
+                } catch (GeneralSecurityException e) {
+                    throw new RuntimeException("Ошибка AES-CTR шифрования", e);
+                }
+            }
+
+            @Override
+            public byte[] decrypt(byte[] encryptedData) {
+                if (encryptedData.length < BLOCK_LENGTH) {
+                    throw new IllegalArgumentException("Данные AES-CTR слишком короткие");
+                }
+                try {
+                    return cipher(Cipher.DECRYPT_MODE, Arrays.copyOf(encryptedData, BLOCK_LENGTH))
+                            .doFinal(encryptedData, BLOCK_LENGTH, encryptedData.length - BLOCK_LENGTH);
+                } catch (GeneralSecurityException e) {
+                    throw new RuntimeException("Ошибка AES-CTR дешифрования", e);
+                }
+            }
+
+            private Cipher cipher(int mode, byte[] iv) throws GeneralSecurityException {
+                if (cipher == null) {
+                    cipher = Cipher.getInstance(TRANSFORMATION);
+                }
+                cipher.init(mode, secretKey, new IvParameterSpec(iv));
+                return cipher;
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public Set<AlgorithmCapability> getCapabilities() {
+        return CAPABILITIES;
+    }
+
+    private byte[] newIv() {
+        byte[] iv = new byte[BLOCK_LENGTH];
+        random.nextBytes(iv);
+        return iv;
+    }
+
+    /**
+     * Прибавляет номер блока к начальному счетчику как к 128-битному числу (big-endian),
+     * так же как JCE увеличивает счетчик от блока к блоку.
+     */
+    private static byte[] counterAt(byte[] iv, long block) {
+        byte[] counter = iv.clone();
+        long carry = block;
+        for (int i = BLOCK_LENGTH - 1; i >= 0 && carry != 0; i--) {
+            long sum = (counter[i] & 0xFF) + (carry & 0xFF);
+            counter[i] = (byte) sum;
+            carry = (carry >>> 8) + (sum >>> 8);
+        }
+        return counter;
+    }
+
+    private Cipher newCipher(int mode, String key, byte[] counter) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(mode, new SecretKeySpec(normalizeKey(key), KEY_ALGORITHM), new IvParameterSpec(counter));
+        return cipher;
+    }
+
+    private byte[] normalizeKey(String key) {
+        byte[] keyBytes = key.getBytes();
+        if (keyBytes.length == KEY_LENGTH) {
+            return keyBytes;
+        }
+
+        byte[] normalized = new byte[KEY_LENGTH];
+        for (int i = 0; i < KEY_LENGTH; i++) {
+            normalized[i] = keyBytes[i % keyBytes.length];
+        }
+        return normalized;
+    }
+}
@@ -0,0 +1,34 @@
+package projects.encryptit.util.encryption;
+
+/**
+ * Возможности алгоритма шифрования, по которым сервис выбирает путь обработки.
+ */
+public enum AlgorithmCapability {
+
+    /**
+     * Данные можно обрабатывать потоком, не загружая их в память целиком.
+     */
+    STREAMING,
+
+    /**
+     * Данные можно разбить на фрагменты и обработать их параллельно.
+     */
+    PARALLELIZABLE,
+
+    /**
+     * Длина результата совпадает с длиной исходных данных,
+     * поэтому преобразование можно выполнять на месте.
+     */
+    LENGTH_PRESERVING,
+
+    /**
+     * Любой диапазон открытого текста можно расшифровать, читая только
+     * покрывающие его байты шифротекста (см. {@link EncryptionAlgorithm#decryptRange}).
+     */
+    SEEKABLE,
+
+    /**
+     * Одинаковые данные и ключ всегда дают одинаковый результат.
+     */
+    DETERMINISTIC
+}
@@ -0,0 +1,166 @@
+package projects.encryptit.util.encryption;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Реестр алгоритмов шифрования.
+ * Объединяет бины Spring и реализации, найденные через {@link ServiceLoader};
+ * при совпадении имени приоритет у бина. Названия вида {@code VIGENERE+XOR+AES}
+ * разрешаются в {@link CascadeAlgorithm}, который собирается при первом обращении.
+ */
+@Component
+public class AlgorithmRegistry {
+
+    private final Map<String, EncryptionAlgorithm> byName;
+    private final Map<Integer, EncryptionAlgorithm> byId;
+    private final List<String> names;
+    private final Map<String, CascadeAlgorithm> cascades = new ConcurrentHashMap<>();
+    private final Map<Integer, CascadeAlgorithm> cascadesById = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор с внедрением алгоритмов-бинов.
+     * @param beans алгоритмы, зарегистрированные в контексте Spring
+     */
+    @Autowired
+    public AlgorithmRegistry(List<EncryptionAlgorithm> beans) {
+        this(beans, ServiceLoader.load(EncryptionAlgorithm.class, EncryptionAlgorithm.class.getClassLoader()));
+    }
+
+    /**
+     * Создает реестр из явно заданных и найденных алгоритмов.
+     * @param primary основные алгоритмы
+     * @param discovered дополнительные алгоритмы
+     */
+    public AlgorithmRegistry(Iterable<? extends EncryptionAlgorithm> primary,
+                             Iterable<? extends EncryptionAlgorithm> discovered) {
+        Map<String, EncryptionAlgorithm> algorithms = new LinkedHashMap<>();
+        for (EncryptionAlgorithm algorithm : primary) {
+            algorithms.put(algorithm.getName(), algorithm);
+        }
+        for (EncryptionAlgorithm algorithm : discovered) {
+            algorithms.putIfAbsent(algorithm.getName(), algorithm);
+        }
+
+        Map<Integer, EncryptionAlgorithm> ids = new HashMap<>();
+        for (EncryptionAlgorithm algorithm : algorithms.values()) {
+            EncryptionAlgorithm previous = ids.putIfAbsent(algorithm.getId(), algorithm);
+            if (previous != null) {
+                throw new IllegalStateException("Алгоритмы " + previous.getName() + " и "
+                        + algorithm.getName() + " используют один идентификатор " + algorithm.getId());
+            }
+        }
+
+        this.byName = Collections.unmodifiableMap(algorithms);
+        this.byId = Collections.unmodifiableMap(ids);
+        this.names = List.copyOf(algorithms.keySet());
+    }
+
+    /**
+     * Создает реестр только из алгоритмов, найденных через {@link ServiceLoader}.
+     * Используется вне контекста Spring.
+     * @return реестр алгоритмов
+     */
+    public static AlgorithmRegistry fromServiceLoader() {
+        return new AlgorithmRegistry(List.of(),
+                ServiceLoader.load(EncryptionAlgorithm.class, EncryptionAlgorithm.class.getClassLoader()));
+    }
+
+    /**
+     * Находит алгоритм или каскад алгоритмов по названию без учета регистра.
+     * @param name название алгоритма
+     * @return алгоритм
+     * @throws IllegalArgumentException если алгоритм не найден или каскад задан некорректно
+     */
+    public EncryptionAlgorithm require(String name) {
+        if (CascadeAlgorithm.isCascade(name)) {
+            return cascade(name);
+        }
+        EncryptionAlgorithm algorithm = byName.get(name);
+        if (algorithm == null && name != null) {
+            // Медленный путь только для имен не в верхнем регистре
+            algorithm = byName.get(name.toUpperCase(Locale.ROOT));
+        }
+        if (algorithm == null) {
+            throw new IllegalArgumentException("Алгоритм не найден: " + name);
+        }
+        return algorithm;
+    }
+
+    /**
+     * Находит алгоритм по числовому идентификатору.
+     * @param id идентификатор алгоритма
+     * @return алгоритм
+     * @throws IllegalArgumentException если алгоритм не найден
+     */
+    public EncryptionAlgorithm require(int id) {
+        EncryptionAlgorithm algorithm = byId.get(id);
+        if (algorithm == null) {
+            algorithm = cascadesById.get(id);
+        }
+        if (algorithm == null) {
+            throw new IllegalArgumentException("Алгоритм не найден: #" + id);
+        }
+        return algorithm;
+    }
+
+    /**
+     * Возвращает все зарегистрированные алгоритмы.
+     * @return алгоритмы в порядке регистрации
+     */
+    public Collection<EncryptionAlgorithm> getAll() {
+        return byName.values();
+    }
+
+    /**
+     * Возвращает названия зарегистрированных алгоритмов.
+     * @return список названий
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    private CascadeAlgorithm cascade(String name) {
+        CascadeAlgorithm cascade = cascades.get(name);
+        if (cascade != null) {
+            return cascade;
+        }
+        // Названия вида "xor + aes" приводятся к виду "XOR+AES" до обращения к кэшу
+        String[] parts = name.split(Pattern.quote(CascadeAlgorithm.SEPARATOR), -1);
+        StringJoiner normalized = new StringJoiner(CascadeAlgorithm.SEPARATOR);
+        for (String part : parts) {
+            normalized.add(part.trim().toUpperCase(Locale.ROOT));
+        }
+        String key = normalized.toString();
+        cascade = cascades.get(key);
+        if (cascade != null) {
+            return cascade;
+        }
+        List<EncryptionAlgorithm> stages = new ArrayList<>();
+        for (String stage : parts) {
+            stages.add(require(stage.trim()));
+        }
+        // Кэшируются только каноническое и нормализованное названия, поэтому число записей
+        // ограничено числом сочетаний, а не числом вариантов написания
+        CascadeAlgorithm created = CascadeAlgorithm.of(stages);
+        cascade = cascades.computeIfAbsent(created.getName(), canonical -> created);
+        if (!key.equals(cascade.getName())) {
+            cascades.putIfAbsent(key, cascade);
+        }
+        cascadesById.putIfAbsent(cascade.getId(), cascade);
+        return cascade;
+    }
+}
@@ -6,42 +6,37 @@ import org.springframework.stereotype.Component;
  * Реализация шифра Цезаря.
  */
 @Component
-public class CaesarCipher implements EncryptionAlgorithm {
+public class CaesarCipher extends AbstractByteCipher {
 
     private static final String NAME = "CAESAR";
+    private static final int ID = 2;
     private static final int DEFAULT_SHIFT = 3;
 
     @Override
-    public byte[] encrypt(byte[] data, String key) {
+    protected void encryptRange(byte[] data, int offset, int length, long position, String key) {
         int shift = parseShift(key);
-        byte[] result = new byte[data.length];
 
-        for (int i = 0; i < data.length; i++) {
+        for (int i = offset; i < offset + length; i++) {
             // Правильное шифрование с учетом отрицательных байтов
             int originalByte = data[i] & 0xFF; // Конвертируем в беззнаковый
             int encryptedByte = (originalByte + shift) % 256;
-            result[i] = (byte) encryptedByte;
+            data[i] = (byte) encryptedByte;
         }
-
-        return result;
     }
 
     @Override
-    public byte[] decrypt(byte[] encryptedData, String key) {
+    protected void decryptRange(byte[] data, int offset, int length, long position, String key) {
         int shift = parseShift(key);
-        byte[] result = new byte[encryptedData.length];
 
-        for (int i = 0; i < encryptedData.length; i++) {
+        for (int i = offset; i < offset + length; i++) {
             // Правильное дешифрование с учетом отрицательных байтов
-            int encryptedByte = encryptedData[i] & 0xFF; // Конвертируем в беззнаковый
+            int encryptedByte = data[i] & 0xFF; // Конвертируем в беззнаковый
             int decryptedByte = (encryptedByte - shift) % 256;
             if (decryptedByte < 0) {
                 decryptedByte += 256;
             }
-            result[i] = (byte) decryptedByte;
+            data[i] = (byte) decryptedByte;
         }
-
-        return result;
     }
 
     @Override
@@ -49,6 +44,11 @@ public class CaesarCipher implements EncryptionAlgorithm {
         return NAME;
     }
 
+    @Override
+    public int getId() {
+        return ID;
+    }
+
     private int parseShift(String key) {
         try {
             return Math.abs(Integer.parseInt(key)) % 256;
@@ -56,4 +56,4 @@ public class CaesarCipher implements EncryptionAlgorithm {
             return DEFAULT_SHIFT;
         }
     }
-}
\ No newline at end of file
+}
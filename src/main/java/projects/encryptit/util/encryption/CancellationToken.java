@@ -0,0 +1,115 @@
+package projects.encryptit.util.encryption;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Признак отмены обработки запроса.
+ * Токен привязывается к потоку, который выполняет запрос, и проверяется
+ * циклами обработки на границах фрагментов ({@link ChunkPump}), поэтому
+ * брошенная работа останавливается в пределах одного фрагмента.
+ * Отмена происходит явно (клиент отключился) или по истечении срока.
+ */
+public final class CancellationToken {
+
+    /**
+     * Токен, который никогда не отменяется.
+     */
+    public static final CancellationToken NONE = new CancellationToken(Long.MAX_VALUE, false);
+
+    private static final String DEADLINE_MESSAGE = "Истек срок обработки запроса";
+    private static final String COMPLETED = "";
+    private static final ThreadLocal<CancellationToken> CURRENT = ThreadLocal.withInitial(() -> NONE);
+
+    private final long deadline;
+    private final boolean hasDeadline;
+    private final AtomicReference<String> state = new AtomicReference<>();
+
+    private CancellationToken(long deadline, boolean hasDeadline) {
+        this.deadline = deadline;
+        this.hasDeadline = hasDeadline;
+    }
+
+    /**
+     * Создает токен, который отменяется по истечении срока.
+     * @param timeout срок обработки
+     * @return новый токен
+     */
+    public static CancellationToken withDeadline(Duration timeout) {
+        return new CancellationToken(System.nanoTime() + timeout.toNanos(), true);
+    }
+
+    /**
+     * Токен, привязанный к текущему потоку.
+     * @return токен или {@link #NONE}
+     */
+    public static CancellationToken current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Проверяет токен текущего потока.
+     * @throws OperationCancelledException если обработка отменена
+     */
+    public static void checkCurrent() {
+        CURRENT.get().throwIfCancelled();
+    }
+
+    /**
+     * Выполняет задачу с этим токеном в текущем потоке.
+     * @param task задача
+     * @param <T> тип результата
+     * @return результат задачи
+     * @throws Exception исключение задачи
+     */
+    public <T> T call(Callable<T> task) throws Exception {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.call();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Отменяет обработку, если она еще не завершена.
+     * @param reason причина отмены
+     * @return true если токен отменен этим вызовом
+     */
+    public boolean cancel(String reason) {
+        return this != NONE && state.compareAndSet(null, reason);
+    }
+
+    /**
+     * Отмечает обработку завершенной; после этого отмена не действует.
+     * @return true если обработка завершилась раньше отмены
+     */
+    public boolean complete() {
+        return this == NONE || state.compareAndSet(null, COMPLETED) || COMPLETED.equals(state.get());
+    }
+
+    /**
+     * @return true если обработка отменена или срок истек
+     */
+    public boolean isCancelled() {
+        String reason = state.get();
+        if (reason != null) {
+            return !COMPLETED.equals(reason);
+        }
+        return hasDeadline && System.nanoTime() - deadline > 0;
+    }
+
+    /**
+     * Бросает исключение, если обработка отменена.
+     * @throws OperationCancelledException если обработка отменена или срок истек
+     */
+    public void throwIfCancelled() {
+        if (!isCancelled()) {
+            return;
+        }
+        String reason = state.get();
+        throw new OperationCancelledException(reason != null ? reason : DEADLINE_MESSAGE);
+    }
+}
@@ -0,0 +1,321 @@
+package projects.encryptit.util.encryption;
+
+import projects.encryptit.util.buffer.ByteArraySink;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Каскад алгоритмов, заданный строкой вида {@code VIGENERE+XOR+AES}.
+ * Побайтовые шифры каскада выполняются одним проходом: каждый блок по
+ * {@value #BLOCK} байт проходит все ступени подряд, пока лежит в кэше
+ * процессора, и сразу передается завершающему шифру (например, AES) через
+ * его собственные буферы. Поэтому каскад читает и пишет данные один раз и
+ * не создает промежуточных массивов на каждую ступень; массив шифруется тем же
+ * путем, поэтому вход не меняется и не копируется целиком. Дешифрование
+ * выполняет ступени в обратном порядке. Все ступени используют один ключ.
+ */
+public final class CascadeAlgorithm implements EncryptionAlgorithm {
+
+    /**
+     * Разделитель ступеней в названии каскада.
+     */
+    public static final String SEPARATOR = "+";
+
+    private static final int BLOCK = 8 * 1024;
+    // Запас под nonce/IV, тег аутентификации и дополнение завершающего шифра
+    private static final int TERMINAL_OVERHEAD = 64;
+    private static final int MAX_STAGES = 4;
+    private static final int CASCADE_ID_FLAG = 0x4000_0000;
+    private static final int STAGE_ID_LIMIT = 64;
+
+    private final String name;
+    private final int id;
+    private final EncryptionAlgorithm[] byteStages;
+    private final EncryptionAlgorithm terminal;
+    private final Set<AlgorithmCapability> capabilities;
+
+    private CascadeAlgorithm(List<EncryptionAlgorithm> stages) {
+        EncryptionAlgorithm last = stages.get(stages.size() - 1);
+        this.terminal = last.supports(AlgorithmCapability.LENGTH_PRESERVING) ? null : last;
+        this.byteStages = stages.subList(0, terminal != null ? stages.size() - 1 : stages.size())
+                .toArray(new EncryptionAlgorithm[0]);
+        this.name = stages.stream().map(EncryptionAlgorithm::getName).collect(Collectors.joining(SEPARATOR));
+
+        int stageIds = 0;
+        EnumSet<AlgorithmCapability> common = EnumSet.allOf(AlgorithmCapability.class);
+        for (EncryptionAlgorithm stage : stages) {
+            stageIds = stageIds * STAGE_ID_LIMIT + stage.getId();
+            common.retainAll(stage.getCapabilities());
+        }
+        this.id = CASCADE_ID_FLAG | stageIds;
+        this.capabilities = Collections.unmodifiableSet(common);
+    }
+
+    /**
+     * Проверяет, задает ли название каскад.
+     * @param name название алгоритма
+     * @return true если название содержит несколько ступеней
+     */
+    public static boolean isCascade(String name) {
+        return name != null && name.contains(SEPARATOR);
+    }
+
+    /**
+     * Собирает каскад из ступеней в порядке шифрования.
+     * Шифр, меняющий длину данных (AES, CHACHA20), допускается только последним.
+     * @param stages ступени
+     * @return каскад
+     * @throws IllegalArgumentException если каскад задан некорректно
+     */
+    public static CascadeAlgorithm of(List<EncryptionAlgorithm> stages) {
+        if (stages.size() < 2 || stages.size() > MAX_STAGES) {
+            throw new IllegalArgumentException("Каскад должен содержать от 2 до " + MAX_STAGES + " алгоритмов");
+        }
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < stages.size(); i++) {
+            EncryptionAlgorithm stage = stages.get(i);
+            if (stage instanceof CascadeAlgorithm) {
+                throw new IllegalArgumentException("Каскад не может содержать другой каскад");
+            }
+            if (!seen.add(stage.getName())) {
+                // Например, XOR+XOR с одним ключом дает открытый текст
+                throw new IllegalArgumentException("Алгоритм " + stage.getName() + " повторяется в каскаде");
+            }
+            if (i < stages.size() - 1 && !stage.supports(AlgorithmCapability.LENGTH_PRESERVING)) {
+                throw new IllegalArgumentException("Алгоритм " + stage.getName()
+                        + " может быть только последним в каскаде");
+            }
+            if (stage.getId() <= 0 || stage.getId() >= STAGE_ID_LIMIT) {
+                throw new IllegalArgumentException("Алгоритм " + stage.getName()
+                        + " нельзя использовать в каскаде: идентификатор вне диапазона");
+            }
+        }
+        return new CascadeAlgorithm(List.copyOf(stages));
+    }
+
+    @Override
+    public byte[] encrypt(byte[] data, String key) {
+        if (terminal == null) {
+            return encryptCopy(data, key);
+        }
+        // Ступени шифруют блоки в буфере завершающего шифра, как при работе с каналами:
+        // вход не меняется, а копия создается только для результата
+        ByteArraySink sink = new ByteArraySink(data.length + TERMINAL_OVERHEAD);
+        try {
+            terminal.encrypt(new StagedSource(Channels.newChannel(new ByteArrayInputStream(data)), key), sink, key);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка обработки данных в памяти", e);
+        }
+        return sink.toByteArray();
+    }
+
+    @Override
+    public byte[] decrypt(byte[] encryptedData, String key) {
+        // Завершающий шифр всегда возвращает новый массив - его можно менять на месте
+        byte[] result = terminal != null ? terminal.decrypt(encryptedData, key) : encryptedData.clone();
+        applyStages(ByteBuffer.wrap(result), 0, key, false);
+        return result;
+    }
+
+    @Override
+    public void encryptInPlace(ByteBuffer buffer, long position, String key) {
+        if (terminal != null) {
+            EncryptionAlgorithm.super.encryptInPlace(buffer, position, key);
+        }
+        applyStages(buffer, position, key, true);
+    }
+
+    @Override
+    public void decryptInPlace(ByteBuffer buffer, long position, String key) {
+        if (terminal != null) {
+            EncryptionAlgorithm.super.decryptInPlace(buffer, position, key);
+        }
+        applyStages(buffer, position, key, false);
+    }
+
+    @Override
+    public void encrypt(ReadableByteChannel source, WritableByteChannel target, String key) throws IOException {
+        if (terminal == null) {
+            ChunkPump.pump(source, target, (chunk, position) -> applyStages(chunk, position, key, true));
+        } else {
+            terminal.encrypt(new StagedSource(source, key), target, key);
+        }
+    }
+
+    @Override
+    public void decrypt(ReadableByteChannel source, WritableByteChannel target, String key) throws IOException {
+        if (terminal == null) {
+            ChunkPump.pump(source, target, (chunk, position) -> applyStages(chunk, position, key, false));
+        } else {
+            terminal.decrypt(source, new StagedTarget(target, key), key);
+        }
+    }
+
+    @Override
+    public byte[] decryptRange(RangeSource source, long offset, int length, String key) throws IOException {
+        if (!supports(AlgorithmCapability.SEEKABLE)) {
+            throw new UnsupportedOperationException("Каскад " + name + " не поддерживает дешифрование диапазона");
+        }
+        byte[] result = terminal != null ? terminal.decryptRange(source, offset, length, key)
+                : source.readRange(offset, length);
+        applyStages(ByteBuffer.wrap(result), offset, key, false);
+        return result;
+    }
+
+    @Override
+    public KeyedCipher withKey(String key) {
+        KeyedCipher boundTerminal = terminal != null ? terminal.withKey(key) : null;
+        return new KeyedCipher() {
+            @Override
+            public byte[] encrypt(byte[] data) {
+                // Привязанный шифр принимает только целый массив: ступени работают на копии
+                byte[] staged = encryptCopy(data, key);
+                return boundTerminal != null ? boundTerminal.encrypt(staged) : staged;
+            }
+
+            @Override
+            public byte[] decrypt(byte[] encryptedData) {
+                byte[] result = boundTerminal != null ? boundTerminal.decrypt(encryptedData) : encryptedData.clone();
+                applyStages(ByteBuffer.wrap(result), 0, key, false);
+                return result;
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public Set<AlgorithmCapability> getCapabilities() {
+        return capabilities;
+    }
+
+    /**
+     * Применяет побайтовые ступени к копии данных; вход не меняется.
+     */
+    private byte[] encryptCopy(byte[] data, String key) {
+        byte[] result = data.clone();
+        applyStages(ByteBuffer.wrap(result), 0, key, true);
+        return result;
+    }
+
+    /**
+     * Применяет побайтовые ступени к оставшимся байтам буфера блоками по {@value #BLOCK} байт.
+     * Позиция и лимит буфера после вызова не меняются.
+     */
+    private void applyStages(ByteBuffer buffer, long position, String key, boolean encrypt) {
+        int start = buffer.position();
+        int end = buffer.limit();
+        try {
+            for (int offset = start; offset < end; offset += BLOCK) {
+                buffer.limit(Math.min(end, offset + BLOCK)).position(offset);
+                long blockPosition = position + (offset - start);
+                if (encrypt) {
+                    for (EncryptionAlgorithm stage : byteStages) {
+                        stage.encryptInPlace(buffer, blockPosition, key);
+                    }
+                } else {
+                    for (int i = byteStages.length - 1; i >= 0; i--) {
+                        byteStages[i].decryptInPlace(buffer, blockPosition, key);
+                    }
+                }
+            }
+        } finally {
+            buffer.limit(end).position(start);
+        }
+    }
+
+    /**
+     * Источник, который шифрует побайтовыми ступенями только что прочитанные
+     * данные прямо в буфере завершающего шифра.
+     */
+    private final class StagedSource implements ReadableByteChannel {
+        private final ReadableByteChannel delegate;
+        private final String key;
+        private long position;
+
+        StagedSource(ReadableByteChannel delegate, String key) {
+            this.delegate = delegate;
+            this.key = key;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int start = dst.position();
+            int read = delegate.read(dst);
+            if (read > 0) {
+                int end = dst.position();
+                int limit = dst.limit();
+                dst.limit(end).position(start);
+                applyStages(dst, position, key, true);
+                dst.limit(limit).position(end);
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return delegate.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    /**
+     * Приемник, который дешифрует побайтовыми ступенями выход завершающего шифра
+     * на месте перед записью. Буфер записывается полностью, поэтому каждый байт
+     * преобразуется ровно один раз.
+     */
+    private final class StagedTarget implements WritableByteChannel {
+        private final WritableByteChannel delegate;
+        private final String key;
+        private long position;
+
+        StagedTarget(WritableByteChannel delegate, String key) {
+            this.delegate = delegate;
+            this.key = key;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int length = src.remaining();
+            applyStages(src, position, key, false);
+            ChunkPump.writeFully(delegate, src);
+            position += length;
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return delegate.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
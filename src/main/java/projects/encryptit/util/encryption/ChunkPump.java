@@ -0,0 +1,166 @@
+package projects.encryptit.util.encryption;
+
+import projects.encryptit.util.buffer.BufferArena;
+import projects.encryptit.util.buffer.BufferLease;
+
+import javax.crypto.Cipher;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+
+/**
+ * Цикл потоковой обработки данных фрагментами фиксированного размера.
+ * Буферы фрагментов арендуются из общего {@link BufferArena}.
+ * Перед каждым фрагментом проверяется {@link CancellationToken} потока.
+ */
+public final class ChunkPump {
+
+    /**
+     * Размер фрагмента потоковой обработки.
+     */
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Преобразование фрагмента на месте.
+     */
+    @FunctionalInterface
+    public interface ChunkTransform {
+
+        /**
+         * Преобразует оставшиеся байты фрагмента.
+         * @param chunk фрагмент данных
+         * @param position смещение фрагмента от начала потока
+         */
+        void apply(ByteBuffer chunk, long position);
+    }
+
+    private ChunkPump() {
+    }
+
+    /**
+     * Перекачивает данные, преобразуя каждый фрагмент на месте.
+     * @param source источник
+     * @param target приемник
+     * @param transform преобразование фрагмента
+     * @return количество обработанных байт
+     * @throws IOException если произошла ошибка ввода-вывода
+     * @throws OperationCancelledException если обработка отменена
+     */
+    public static long pump(ReadableByteChannel source, WritableByteChannel target,
+                            ChunkTransform transform) throws IOException {
+        try (BufferLease lease = BufferArena.shared().lease(CHUNK_SIZE)) {
+            ByteBuffer buffer = lease.buffer();
+            long position = 0;
+            boolean eof = false;
+            while (!eof) {
+                CancellationToken.checkCurrent();
+                buffer.clear();
+                eof = fill(source, buffer);
+                buffer.flip();
+                if (!buffer.hasRemaining()) {
+                    break;
+                }
+                transform.apply(buffer, position);
+                position += buffer.remaining();
+                writeFully(target, buffer);
+                ProgressTracker.advanceCurrent(buffer.limit());
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Перекачивает данные через инициализированный {@link Cipher}.
+     * @param source источник
+     * @param target приемник
+     * @param cipher шифр в режиме шифрования или дешифрования
+     * @return количество прочитанных байт
+     * @throws IOException если произошла ошибка ввода-вывода
+     * @throws GeneralSecurityException если шифр отклонил данные
+     * @throws OperationCancelledException если обработка отменена
+     */
+    public static long pump(ReadableByteChannel source, WritableByteChannel target,
+                            Cipher cipher) throws IOException, GeneralSecurityException {
+        BufferArena arena = BufferArena.shared();
+        BufferLease outputLease = arena.lease(cipher.getOutputSize(CHUNK_SIZE));
+        try (BufferLease inputLease = arena.lease(CHUNK_SIZE)) {
+            ByteBuffer input = inputLease.buffer();
+            long total = 0;
+            boolean eof = false;
+            while (!eof) {
+                CancellationToken.checkCurrent();
+                input.clear();
+                eof = fill(source, input);
+                input.flip();
+                total += input.remaining();
+                outputLease = ensureCapacity(arena, outputLease, cipher.getOutputSize(input.remaining()));
+                ByteBuffer output = outputLease.buffer().clear();
+                cipher.update(input, output);
+                output.flip();
+                writeFully(target, output);
+                ProgressTracker.advanceCurrent(input.limit());
+            }
+            input.clear().flip();
+            outputLease = ensureCapacity(arena, outputLease, cipher.getOutputSize(0));
+            ByteBuffer output = outputLease.buffer().clear();
+            cipher.doFinal(input, output);
+            output.flip();
+            writeFully(target, output);
+            return total;
+        } finally {
+            outputLease.close();
+        }
+    }
+
+    /**
+     * Читает канал целиком.
+     * @param source источник
+     * @return прочитанные данные
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public static byte[] readFully(ReadableByteChannel source) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        while (source.read(buffer) >= 0) {
+            out.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Записывает все оставшиеся байты буфера.
+     * @param target приемник
+     * @param buffer буфер
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    public static void writeFully(WritableByteChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    /**
+     * Заменяет аренду на большую, если шифру не хватает места под вывод
+     * (например, при дешифровании удерживается последний блок).
+     */
+    private static BufferLease ensureCapacity(BufferArena arena, BufferLease lease, int required) {
+        if (lease.buffer().capacity() >= required) {
+            return lease;
+        }
+        lease.close();
+        return arena.lease(required);
+    }
+
+    private static boolean fill(ReadableByteChannel source, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
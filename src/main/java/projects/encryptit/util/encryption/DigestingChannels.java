@@ -0,0 +1,148 @@
+package projects.encryptit.util.encryption;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.Consumer;
+
+/**
+ * Обертки каналов, передающие проходящие байты в дайджест или HMAC
+ * без дополнительного чтения данных.
+ */
+public final class DigestingChannels {
+
+    private DigestingChannels() {
+    }
+
+    /**
+     * Канал чтения, сообщающий о каждом прочитанном фрагменте.
+     * @param source исходный канал
+     * @param tap получатель прочитанных байт (позиция буфера не важна вызывающему)
+     * @return обертка
+     */
+    public static ReadableByteChannel tap(ReadableByteChannel source, Consumer<ByteBuffer> tap) {
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                int start = dst.position();
+                int read = source.read(dst);
+                if (read > 0) {
+                    tap.accept(dst.duplicate().position(start).limit(start + read));
+                }
+                return read;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return source.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                source.close();
+            }
+        };
+    }
+
+    /**
+     * Канал записи, сообщающий о каждом записанном фрагменте.
+     * @param target исходный канал
+     * @param tap получатель записанных байт
+     * @return обертка
+     */
+    public static WritableByteChannel tap(WritableByteChannel target, Consumer<ByteBuffer> tap) {
+        return new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                int start = src.position();
+                int written = target.write(src);
+                if (written > 0) {
+                    tap.accept(src.duplicate().position(start).limit(start + written));
+                }
+                return written;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return target.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                target.close();
+            }
+        };
+    }
+
+    /**
+     * Канал чтения, отделяющий блок целостности в конце потока.
+     * Последние {@link IntegrityTrailer#LENGTH} байт удерживаются до конца потока;
+     * если это не блок целостности (старый шифротекст), они отдаются как данные.
+     */
+    public static class TrailerStripping implements ReadableByteChannel {
+
+        private final ReadableByteChannel source;
+        private final Consumer<ByteBuffer> tap;
+        private final ByteBuffer window = ByteBuffer.allocate(ChunkPump.CHUNK_SIZE + IntegrityTrailer.LENGTH);
+        private boolean eof;
+        private IntegrityTrailer.Parsed trailer;
+
+        /**
+         * @param source канал с шифротекстом и, возможно, блоком целостности
+         * @param tap получатель байт шифротекста (без блока)
+         */
+        public TrailerStripping(ReadableByteChannel source, Consumer<ByteBuffer> tap) {
+            this.source = source;
+            this.tap = tap;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!dst.hasRemaining()) {
+                return 0;
+            }
+            while (true) {
+                if (!eof && window.hasRemaining() && source.read(window) < 0) {
+                    eof = true;
+                    if (window.position() >= IntegrityTrailer.LENGTH) {
+                        trailer = IntegrityTrailer.parse(window.array(),
+                                window.position() - IntegrityTrailer.LENGTH).orElse(null);
+                    }
+                }
+                int held = eof && trailer == null ? 0 : IntegrityTrailer.LENGTH;
+                int deliverable = window.position() - held;
+                if (deliverable > 0) {
+                    int count = Math.min(deliverable, dst.remaining());
+                    window.flip();
+                    ByteBuffer chunk = window.duplicate().limit(count);
+                    tap.accept(chunk.duplicate());
+                    dst.put(chunk);
+                    window.position(count);
+                    window.compact();
+                    return count;
+                }
+                if (eof) {
+                    return -1;
+                }
+            }
+        }
+
+        /**
+         * @return блок целостности; null, если поток не дочитан или блока нет
+         */
+        public IntegrityTrailer.Parsed getTrailer() {
+            return trailer;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return source.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+}
@@ -1,7 +1,14 @@
 package projects.encryptit.util.encryption;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Set;
+
 /**
  * Интерфейс для алгоритмов шифрования.
+ * Реализации регистрируются как бины Spring или через {@link java.util.ServiceLoader}.
  */
 public interface EncryptionAlgorithm {
 
@@ -26,4 +33,114 @@ public interface EncryptionAlgorithm {
      * @return название алгоритма
      */
     String getName();
-}
\ No newline at end of file
+
+    /**
+     * Возвращает уникальный числовой идентификатор алгоритма.
+     * @return идентификатор алгоритма
+     */
+    int getId();
+
+    /**
+     * Возвращает возможности алгоритма.
+     * @return набор возможностей
+     */
+    Set<AlgorithmCapability> getCapabilities();
+
+    /**
+     * Проверяет наличие возможности у алгоритма.
+     * @param capability возможность
+     * @return true если алгоритм её поддерживает
+     */
+    default boolean supports(AlgorithmCapability capability) {
+        return getCapabilities().contains(capability);
+    }
+
+    /**
+     * Привязывает алгоритм к ключу для обработки группы сообщений.
+     * Реализация по умолчанию просто передает ключ при каждом вызове; алгоритмы
+     * с дорогой подготовкой ключа (AES, CHACHA20) создают объекты JCE один раз.
+     * @param key ключ шифрования
+     * @return алгоритм с привязанным ключом
+     */
+    default KeyedCipher withKey(String key) {
+        EncryptionAlgorithm algorithm = this;
+        return new KeyedCipher() {
+            @Override
+            public byte[] encrypt(byte[] data) {
+                return algorithm.encrypt(data, key);
+            }
+
+            @Override
+            public byte[] decrypt(byte[] encryptedData) {
+                return algorithm.decrypt(encryptedData, key);
+            }
+        };
+    }
+
+    /**
+     * Шифрует оставшиеся байты буфера на месте.
+     * Доступно только алгоритмам с {@link AlgorithmCapability#LENGTH_PRESERVING}.
+     * @param buffer буфер с данными (позиция и лимит не меняются)
+     * @param position смещение первого байта буфера от начала данных
+     * @param key ключ шифрования
+     */
+    default void encryptInPlace(ByteBuffer buffer, long position, String key) {
+        throw new UnsupportedOperationException("Алгоритм " + getName() + " не поддерживает шифрование на месте");
+    }
+
+    /**
+     * Дешифрует оставшиеся байты буфера на месте.
+     * Доступно только алгоритмам с {@link AlgorithmCapability#LENGTH_PRESERVING}.
+     * @param buffer буфер с данными (позиция и лимит не меняются)
+     * @param position смещение первого байта буфера от начала данных
+     * @param key ключ шифрования
+     */
+    default void decryptInPlace(ByteBuffer buffer, long position, String key) {
+        throw new UnsupportedOperationException("Алгоритм " + getName() + " не поддерживает дешифрование на месте");
+    }
+
+    /**
+     * Шифрует данные из канала в канал.
+     * Реализация по умолчанию читает данные целиком; алгоритмы
+     * с {@link AlgorithmCapability#STREAMING} обрабатывают их фрагментами.
+     * @param source источник данных
+     * @param target приемник зашифрованных данных
+     * @param key ключ шифрования
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    default void encrypt(ReadableByteChannel source, WritableByteChannel target, String key) throws IOException {
+        ChunkPump.writeFully(target, ByteBuffer.wrap(encrypt(ChunkPump.readFully(source), key)));
+    }
+
+    /**
+     * Дешифрует данные из канала в канал.
+     * @param source источник зашифрованных данных
+     * @param target приемник расшифрованных данных
+     * @param key ключ шифрования
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    default void decrypt(ReadableByteChannel source, WritableByteChannel target, String key) throws IOException {
+        ChunkPump.writeFully(target, ByteBuffer.wrap(decrypt(ChunkPump.readFully(source), key)));
+    }
+
+    /**
+     * Дешифрует диапазон открытого текста, читая только покрывающие его байты шифротекста.
+     * Доступно алгоритмам с {@link AlgorithmCapability#SEEKABLE}; реализация по умолчанию
+     * подходит шифрам, сохраняющим длину: байт открытого текста со смещением {@code n}
+     * лежит в шифротексте по тому же смещению и дешифруется с позицией ключа {@code n}.
+     * @param source шифротекст
+     * @param offset смещение начала диапазона в открытом тексте
+     * @param length длина диапазона
+     * @param key ключ шифрования
+     * @return расшифрованный диапазон (короче {@code length}, если данные заканчиваются раньше)
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    default byte[] decryptRange(RangeSource source, long offset, int length, String key) throws IOException {
+        if (!supports(AlgorithmCapability.SEEKABLE) || !supports(AlgorithmCapability.LENGTH_PRESERVING)) {
+            throw new UnsupportedOperationException("Алгоритм " + getName() + " не поддерживает дешифрование диапазона");
+        }
+        byte[] data = source.readRange(offset, length);
+        decryptInPlace(ByteBuffer.wrap(data), offset, key);
+        return data;
+    }
+}
@@ -0,0 +1,12 @@
+package projects.encryptit.util.encryption;
+
+/**
+ * Данные не прошли проверку блока целостности: шифротекст поврежден
+ * или для дешифрования указан не тот ключ.
+ */
+public class IntegrityCheckException extends RuntimeException {
+
+    public IntegrityCheckException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,124 @@
+package projects.encryptit.util.encryption;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Блок целостности, дописываемый после шифротекста.
+ * Формат (72 байта): SHA-256 шифротекста (32), HMAC-SHA256 открытого текста
+ * под ключом пользователя (32, нули если не вычислялся), версия (1), флаги (1),
+ * резерв (2), сигнатура {@code EITD} (4). Блок стоит в конце, чтобы и он,
+ * и дайджест всего ответа получались за тот же проход, что и шифрование.
+ */
+public final class IntegrityTrailer {
+
+    public static final int LENGTH = 72;
+    public static final String DIGEST_ALGORITHM = "SHA-256";
+    public static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private static final int DIGEST_LENGTH = 32;
+    private static final byte VERSION = 1;
+    private static final byte FLAG_MAC = 1;
+    private static final byte[] MAGIC = {'E', 'I', 'T', 'D'};
+
+    /**
+     * Разобранный блок целостности.
+     * @param ciphertextDigest SHA-256 шифротекста
+     * @param plaintextMac HMAC открытого текста или null
+     */
+    public record Parsed(byte[] ciphertextDigest, byte[] plaintextMac) {
+    }
+
+    private IntegrityTrailer() {
+    }
+
+    /**
+     * Собирает блок целостности.
+     * @param ciphertextDigest SHA-256 шифротекста
+     * @param plaintextMac HMAC открытого текста или null
+     * @return 72 байта блока
+     */
+    public static byte[] encode(byte[] ciphertextDigest, byte[] plaintextMac) {
+        ByteBuffer trailer = ByteBuffer.allocate(LENGTH);
+        trailer.put(ciphertextDigest);
+        trailer.put(plaintextMac != null ? plaintextMac : new byte[DIGEST_LENGTH]);
+        trailer.put(VERSION);
+        trailer.put(plaintextMac != null ? FLAG_MAC : 0);
+        trailer.putShort((short) 0);
+        trailer.put(MAGIC);
+        return trailer.array();
+    }
+
+    /**
+     * Разбирает последние {@link #LENGTH} байт данных как блок целостности.
+     * @param data массив
+     * @param offset начало предполагаемого блока
+     * @return блок, если сигнатура и версия совпали
+     */
+    public static Optional<Parsed> parse(byte[] data, int offset) {
+        if (offset < 0 || data.length - offset < LENGTH
+                || !Arrays.equals(data, offset + LENGTH - MAGIC.length, offset + LENGTH, MAGIC, 0, MAGIC.length)
+                || data[offset + 2 * DIGEST_LENGTH] != VERSION) {
+            return Optional.empty();
+        }
+        byte[] digest = Arrays.copyOfRange(data, offset, offset + DIGEST_LENGTH);
+        byte[] mac = (data[offset + 2 * DIGEST_LENGTH + 1] & FLAG_MAC) != 0
+                ? Arrays.copyOfRange(data, offset + DIGEST_LENGTH, offset + 2 * DIGEST_LENGTH)
+                : null;
+        return Optional.of(new Parsed(digest, mac));
+    }
+
+    /**
+     * @return новый экземпляр SHA-256
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Создает HMAC под ключом пользователя.
+     * @param key ключ шифрования
+     * @return HMAC или null для пустого ключа
+     */
+    public static Mac newMac(String key) {
+        if (key == null || key.isEmpty()) {
+            return null;
+        }
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 недоступен", e);
+        }
+    }
+
+    /**
+     * Значение заголовка {@code Repr-Digest} (RFC 9530).
+     * @param sha256 дайджест тела ответа
+     * @return значение заголовка
+     */
+    public static String reprDigest(byte[] sha256) {
+        return "sha-256=:" + Base64.getEncoder().encodeToString(sha256) + ":";
+    }
+
+    /**
+     * Значение устаревшего заголовка {@code Digest} (RFC 3230) для старых клиентов.
+     * @param sha256 дайджест тела ответа
+     * @return значение заголовка
+     */
+    public static String legacyDigest(byte[] sha256) {
+        return "SHA-256=" + Base64.getEncoder().encodeToString(sha256);
+    }
+}
@@ -0,0 +1,24 @@
+package projects.encryptit.util.encryption;
+
+/**
+ * Алгоритм, привязанный к ключу (см. {@link EncryptionAlgorithm#withKey(String)}).
+ * Подготовка ключа и объектов JCE выполняется один раз, поэтому множество коротких
+ * сообщений с одним ключом шифруется без повторной инициализации на каждое.
+ * Экземпляр не потокобезопасен: им пользуется один поток.
+ */
+public interface KeyedCipher {
+
+    /**
+     * Шифрует данные.
+     * @param data исходные данные (не изменяются)
+     * @return зашифрованные данные в том же формате, что {@link EncryptionAlgorithm#encrypt(byte[], String)}
+     */
+    byte[] encrypt(byte[] data);
+
+    /**
+     * Дешифрует данные.
+     * @param encryptedData зашифрованные данные (не изменяются)
+     * @return расшифрованные данные
+     */
+    byte[] decrypt(byte[] encryptedData);
+}
@@ -0,0 +1,11 @@
+package projects.encryptit.util.encryption;
+
+/**
+ * Обработка остановлена: клиент отключился или истек срок запроса.
+ */
+public class OperationCancelledException extends RuntimeException {
+
+    public OperationCancelledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,122 @@
+package projects.encryptit.util.encryption;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчик обработанных байт одного запроса.
+ * Как и {@link CancellationToken}, привязывается к потоку обработки; циклы
+ * обработки увеличивают его на границах фрагментов. Запись - одно сложение
+ * без блокировок, а публикацию клиенту выполняет отдельный поток, который
+ * читает счетчик с фиксированным интервалом, поэтому частые фрагменты
+ * сливаются в одно событие и не нагружают цикл шифрования.
+ */
+public final class ProgressTracker {
+
+    /**
+     * Счетчик, который ничего не отслеживает.
+     */
+    public static final ProgressTracker NONE = new ProgressTracker(0);
+
+    private static final ThreadLocal<ProgressTracker> CURRENT = ThreadLocal.withInitial(() -> NONE);
+
+    private final long total;
+    private final LongAdder processed = new LongAdder();
+    private volatile long startedNanos;
+    private volatile Boolean succeeded;
+
+    /**
+     * @param total ожидаемый объем данных в байтах
+     */
+    public ProgressTracker(long total) {
+        this.total = total;
+    }
+
+    /**
+     * Счетчик, привязанный к текущему потоку.
+     * @return счетчик или {@link #NONE}
+     */
+    public static ProgressTracker current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Увеличивает счетчик текущего потока.
+     * @param bytes обработанные байты
+     */
+    public static void advanceCurrent(long bytes) {
+        CURRENT.get().advance(bytes);
+    }
+
+    /**
+     * Выполняет задачу с этим счетчиком в текущем потоке.
+     * Время начала отсчитывается от вызова, а не от создания счетчика,
+     * чтобы ожидание в очереди не занижало скорость.
+     * @param task задача
+     * @param <T> тип результата
+     * @return результат задачи
+     * @throws Exception исключение задачи
+     */
+    public <T> T call(Callable<T> task) throws Exception {
+        if (this == NONE) {
+            return task.call();
+        }
+        ProgressTracker previous = CURRENT.get();
+        CURRENT.set(this);
+        startedNanos = System.nanoTime();
+        boolean ok = false;
+        try {
+            T result = task.call();
+            ok = true;
+            return result;
+        } finally {
+            CURRENT.set(previous);
+            succeeded = ok;
+        }
+    }
+
+    /**
+     * Увеличивает счетчик.
+     * @param bytes обработанные байты
+     */
+    public void advance(long bytes) {
+        if (this != NONE) {
+            processed.add(bytes);
+        }
+    }
+
+    /**
+     * @return ожидаемый объем данных в байтах
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return обработано байт на текущий момент
+     */
+    public long getProcessed() {
+        return processed.sum();
+    }
+
+    /**
+     * @return время начала обработки по {@link System#nanoTime()} или 0, если она не начата
+     */
+    public long getStartedNanos() {
+        return startedNanos;
+    }
+
+    /**
+     * @return true если обработка завершена (успешно или с ошибкой)
+     */
+    public boolean isFinished() {
+        return succeeded != null;
+    }
+
+    /**
+     * @return true если обработка завершена успешно
+     */
+    public boolean isSucceeded() {
+        return Boolean.TRUE.equals(succeeded);
+    }
+}
@@ -0,0 +1,93 @@
+package projects.encryptit.util.encryption;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Шифротекст с произвольным доступом по смещению.
+ * Нужен для дешифрования диапазона: алгоритм читает только байты,
+ * покрывающие запрошенное окно, а не весь файл.
+ */
+public interface RangeSource {
+
+    /**
+     * Возвращает размер данных.
+     * @return размер в байтах
+     */
+    long size();
+
+    /**
+     * Читает данные начиная с указанного смещения, пока в буфере есть место.
+     * Меньше байт, чем осталось в буфере, возвращается только в конце данных.
+     * @param position смещение от начала данных
+     * @param target приемник
+     * @return количество прочитанных байт
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    int read(long position, ByteBuffer target) throws IOException;
+
+    /**
+     * Читает диапазон, обрезанный по концу данных.
+     * @param offset начало диапазона
+     * @param length длина диапазона
+     * @return прочитанные байты (пустой массив, если диапазон за концом данных)
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    default byte[] readRange(long offset, int length) throws IOException {
+        int available = (int) Math.max(0, Math.min(length, size() - offset));
+        byte[] data = new byte[available];
+        if (available > 0 && read(offset, ByteBuffer.wrap(data)) != available) {
+            throw new IOException("Данные закончились раньше заявленного размера");
+        }
+        return data;
+    }
+
+    /**
+     * Ограничивает данные первыми {@code size} байтами (например, без блока целостности).
+     * @param size новый размер
+     * @return укороченный источник
+     */
+    default RangeSource truncate(long size) {
+        RangeSource delegate = this;
+        return new RangeSource() {
+            @Override
+            public long size() {
+                return size;
+            }
+
+            @Override
+            public int read(long position, ByteBuffer target) throws IOException {
+                int available = (int) Math.max(0, Math.min(target.remaining(), size - position));
+                if (available == 0) {
+                    return 0;
+                }
+                int read = delegate.read(position, target.slice(target.position(), available));
+                target.position(target.position() + read);
+                return read;
+            }
+        };
+    }
+
+    /**
+     * Источник над массивом.
+     * @param data данные
+     * @return источник
+     */
+    static RangeSource of(byte[] data) {
+        return new RangeSource() {
+            @Override
+            public long size() {
+                return data.length;
+            }
+
+            @Override
+            public int read(long position, ByteBuffer target) {
+                int length = (int) Math.max(0, Math.min(target.remaining(), data.length - position));
+                if (length > 0) {
+                    target.put(data, (int) position, length);
+                }
+                return length;
+            }
+        };
+    }
+}
@@ -6,40 +6,48 @@ import org.springframework.stereotype.Component;
  * Реализация шифра Виженера для байтов.
  */
 @Component
-public class VigenereCipher implements EncryptionAlgorithm {
+public class VigenereCipher extends AbstractByteCipher {
 
     private static final String NAME = "VIGENERE";
+    private static final int ID = 4;
 
     @Override
-    public byte[] encrypt(byte[] data, String key) {
-        byte[] keyBytes = key.getBytes();
-        byte[] result = new byte[data.length];
+    protected void encryptRange(byte[] data, int offset, int length, long position, String key) {
+        byte[] keyBytes = requireKeyBytes(key);
+        int k = (int) (position % keyBytes.length);
 
-        for (int i = 0; i < data.length; i++) {
+        for (int i = offset; i < offset + length; i++) {
             int dataByte = data[i] & 0xFF;
-            int keyByte = keyBytes[i % keyBytes.length] & 0xFF;
-            result[i] = (byte) ((dataByte + keyByte) % 256);
+            int keyByte = keyBytes[k] & 0xFF;
+            data[i] = (byte) ((dataByte + keyByte) % 256);
+            if (++k == keyBytes.length) {
+                k = 0;
+            }
         }
-
-        return result;
     }
 
     @Override
-    public byte[] decrypt(byte[] encryptedData, String key) {
-        byte[] keyBytes = key.getBytes();
-        byte[] result = new byte[encryptedData.length];
-
-        for (int i = 0; i < encryptedData.length; i++) {
-            int encryptedByte = encryptedData[i] & 0xFF;
-            int keyByte = keyBytes[i % keyBytes.length] & 0xFF;
-            result[i] = (byte) ((encryptedByte - keyByte + 256) % 256);
+    protected void decryptRange(byte[] data, int offset, int length, long position, String key) {
+        byte[] keyBytes = requireKeyBytes(key);
+        int k = (int) (position % keyBytes.length);
+
+        for (int i = offset; i < offset + length; i++) {
+            int encryptedByte = data[i] & 0xFF;
+            int keyByte = keyBytes[k] & 0xFF;
+            data[i] = (byte) ((encryptedByte - keyByte + 256) % 256);
+            if (++k == keyBytes.length) {
+                k = 0;
+            }
         }
-
-        return result;
     }
 
     @Override
     public String getName() {
         return NAME;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+}
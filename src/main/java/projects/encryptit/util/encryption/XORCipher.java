@@ -6,30 +6,37 @@ import org.springframework.stereotype.Component;
  * Реализация XOR шифрования.
  */
 @Component
-public class XORCipher implements EncryptionAlgorithm {
+public class XORCipher extends AbstractByteCipher {
 
     private static final String NAME = "XOR";
+    private static final int ID = 3;
 
     @Override
-    public byte[] encrypt(byte[] data, String key) {
-        byte[] keyBytes = key.getBytes();
-        byte[] result = new byte[data.length];
-
-        for (int i = 0; i < data.length; i++) {
-            result[i] = (byte) (data[i] ^ keyBytes[i % keyBytes.length]);
+    protected void encryptRange(byte[] data, int offset, int length, long position, String key) {
+        byte[] keyBytes = requireKeyBytes(key);
+        int k = (int) (position % keyBytes.length);
+
+        for (int i = offset; i < offset + length; i++) {
+            data[i] = (byte) (data[i] ^ keyBytes[k]);
+            if (++k == keyBytes.length) {
+                k = 0;
+            }
         }
-
-        return result;
     }
 
     @Override
-    public byte[] decrypt(byte[] encryptedData, String key) {
+    protected void decryptRange(byte[] data, int offset, int length, long position, String key) {
         // XOR обратим - шифрование и дешифрование одинаковы
-        return encrypt(encryptedData, key);
+        encryptRange(data, offset, length, position, key);
     }
 
     @Override
     public String getName() {
         return NAME;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+}
@@ -0,0 +1,97 @@
+package projects.encryptit.util.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Событие JDK Flight Recorder для одного этапа обработки запроса шифрования.
+ * По событиям медленного запроса видно, ушло ли время на разбор multipart,
+ * чтение файла, шифр, проверку целостности, определение типа файла или запись ответа.
+ * <p>
+ * Пока запись JFR не идет, событие стоит одной проверки {@link #isEnabled()},
+ * поэтому его можно оставлять включенным в рабочей среде. Этапы короче
+ * порога (по умолчанию 1 мс) не записываются; порог задается при запуске записи.
+ * Использование:
+ * <pre>{@code
+ * EncryptionStageEvent event = EncryptionStageEvent.begin(Stage.CIPHER, algorithm, size);
+ * try {
+ *     ...
+ * } finally {
+ *     event.commit();
+ * }
+ * }</pre>
+ */
+@Name(EncryptionStageEvent.NAME)
+@Label("Encryption Stage")
+@Category({"Encrypt-It", "Encryption"})
+@Description("Этап обработки запроса шифрования или дешифрования")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class EncryptionStageEvent extends Event {
+
+    /**
+     * Имя типа события в записи JFR.
+     */
+    public static final String NAME = "projects.encryptit.EncryptionStage";
+
+    /**
+     * Этап обработки.
+     */
+    public enum Stage {
+        /** Разбор multipart-тела запроса контейнером. */
+        MULTIPART_PARSE,
+        /** Чтение загруженного файла в память. */
+        READ_INPUT,
+        /** Шифрование или дешифрование вместе с дайджестами и HMAC блока целостности. */
+        CIPHER,
+        /** Определение типа расшифрованного файла по сигнатуре. */
+        SIGNATURE_DETECTION,
+        /** Запись тела ответа клиенту. */
+        RESPONSE_WRITE
+    }
+
+    @Label("Stage")
+    private String stage;
+
+    @Label("Algorithm")
+    private String algorithm;
+
+    @Label("Payload Size")
+    @DataAmount
+    private long bytes;
+
+    @Label("User")
+    private String user;
+
+    /**
+     * Начинает этап. Поля заполняются, только если событие записывается.
+     * @param stage этап
+     * @param algorithm алгоритм (может быть null)
+     * @param bytes объем данных этапа
+     * @return начатое событие; завершается вызовом {@link #commit()}
+     */
+    public static EncryptionStageEvent begin(Stage stage, String algorithm, long bytes) {
+        EncryptionStageEvent event = new EncryptionStageEvent();
+        if (event.isEnabled()) {
+            event.stage = stage.name();
+            event.algorithm = algorithm;
+            event.bytes = bytes;
+            event.user = currentUser();
+            event.begin();
+        }
+        return event;
+    }
+
+    private static String currentUser() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth != null && auth.isAuthenticated() ? auth.getName() : null;
+    }
+}
@@ -0,0 +1,224 @@
+package projects.encryptit.util.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Каталог фрагментов, адресуемых SHA-256 содержимого.
+ * Файл фрагмента лежит в {@code root/ab/cd/abcd...}; запись атомарна
+ * (временный файл и переименование), повторная запись того же хеша ничего не делает.
+ */
+public class ChunkDirectory {
+
+    private static final String TOMBSTONE_SUFFIX = ".gc";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path root;
+
+    /**
+     * @param root корневой каталог хранилища
+     */
+    public ChunkDirectory(Path root) {
+        this.root = root;
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать каталог фрагментов " + root, e);
+        }
+    }
+
+    /**
+     * Вычисляет адрес фрагмента.
+     * @param data массив с фрагментом
+     * @param length длина фрагмента
+     * @return SHA-256 в шестнадцатеричном виде
+     */
+    public static String hash(byte[] data, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data, 0, length);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Сохраняет фрагмент, если его еще нет. Для существующего фрагмента обновляет
+     * время изменения, чтобы уборка осиротевших файлов не удалила его.
+     * @param hash адрес фрагмента
+     * @param data массив с фрагментом
+     * @param length длина фрагмента
+     * @return true если фрагмент записан впервые
+     * @throws IOException при ошибке записи
+     */
+    public boolean write(String hash, byte[] data, int length) throws IOException {
+        Path path = pathFor(hash);
+        if (Files.exists(path)) {
+            Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+            return false;
+        }
+        Files.createDirectories(path.getParent());
+        Path temp = Files.createTempFile(path.getParent(), hash, TEMP_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Проверяет, что фрагмент есть на диске.
+     * @param hash адрес фрагмента
+     * @return true если файл фрагмента существует
+     */
+    public boolean exists(String hash) {
+        return Files.exists(pathFor(hash));
+    }
+
+    /**
+     * Копирует фрагмент в канал.
+     * @param hash адрес фрагмента
+     * @param target приемник
+     * @return количество скопированных байт
+     * @throws IOException если фрагмента нет или чтение не удалось
+     */
+    public long copyTo(String hash, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(pathFor(hash), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Читает часть фрагмента, пока в буфере есть место.
+     * @param hash адрес фрагмента
+     * @param position смещение внутри фрагмента
+     * @param target приемник
+     * @return количество прочитанных байт
+     * @throws IOException если фрагмента нет или чтение не удалось
+     */
+    public int read(String hash, long position, ByteBuffer target) throws IOException {
+        try (FileChannel channel = FileChannel.open(pathFor(hash), StandardOpenOption.READ)) {
+            int total = 0;
+            while (target.hasRemaining()) {
+                int read = channel.read(target, position + total);
+                if (read < 0) {
+                    break;
+                }
+                total += read;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Первая фаза удаления: фрагмент переименовывается и становится недоступен.
+     * @param hash адрес фрагмента
+     * @return true если фрагмент был на диске
+     * @throws IOException при ошибке переименования
+     */
+    public boolean tombstone(String hash) throws IOException {
+        Path path = pathFor(hash);
+        try {
+            Files.move(path, tombstonePath(path), StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Возвращает фрагмент, если к нему снова обратились во время удаления.
+     * @param hash адрес фрагмента
+     * @throws IOException при ошибке переименования
+     */
+    public void restore(String hash) throws IOException {
+        Path path = pathFor(hash);
+        try {
+            Files.move(tombstonePath(path), path, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException e) {
+            // Фрагмент уже записан заново загрузкой
+        }
+    }
+
+    /**
+     * Вторая фаза удаления: окончательно удаляет переименованный фрагмент.
+     * @param hash адрес фрагмента
+     * @throws IOException при ошибке удаления
+     */
+    public void purge(String hash) throws IOException {
+        Files.deleteIfExists(tombstonePath(pathFor(hash)));
+    }
+
+    /**
+     * Удаляет фрагмент без учета ссылок (для осиротевших файлов).
+     * @param hash адрес фрагмента
+     * @throws IOException при ошибке удаления
+     */
+    public void delete(String hash) throws IOException {
+        Files.deleteIfExists(pathFor(hash));
+    }
+
+    /**
+     * Обходит все фрагменты на диске.
+     * @param consumer получает хеш и время последнего изменения
+     * @throws IOException при ошибке обхода
+     */
+    public void forEach(BiConsumer<String, Instant> consumer) throws IOException {
+        try (Stream<Path> files = Files.walk(root, 3)) {
+            files.filter(Files::isRegularFile).forEach(path -> {
+                String name = path.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX) || name.endsWith(TOMBSTONE_SUFFIX)) {
+                    return;
+                }
+                try {
+                    consumer.accept(name, Files.getLastModifiedTime(path).toInstant());
+                } catch (IOException e) {
+                    // Фрагмент удален параллельно
+                }
+            });
+        }
+    }
+
+    private Path pathFor(String hash) {
+        if (hash.length() != 64 || !hash.chars().allMatch(HexFormat::isHexDigit)) {
+            throw new IllegalArgumentException("Некорректный хеш фрагмента: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private static Path tombstonePath(Path path) {
+        return path.resolveSibling(path.getFileName() + TOMBSTONE_SUFFIX);
+    }
+}
@@ -0,0 +1,89 @@
+package projects.encryptit.util.storage;
+
+import projects.encryptit.util.encryption.RangeSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Произвольный доступ к файлу, собранному из фрагментов {@link ChunkDirectory}.
+ * Границы фрагментов вычисляются один раз по размерам из каталога файлов,
+ * загруженным вместе со списком хешей, и ищутся двоичным поиском, так что
+ * чтение диапазона не обращается к диску за размерами и открывает только
+ * фрагменты, которые его покрывают. Экземпляр рассчитан на один поток.
+ */
+public final class ChunkRangeSource implements RangeSource {
+
+    private final ChunkDirectory directory;
+    private final List<String> hashes;
+    private final long size;
+    // ends[i] - смещение конца фрагмента i
+    private final long[] ends;
+
+    /**
+     * @param directory каталог фрагментов
+     * @param hashes адреса фрагментов файла по порядку
+     * @param sizes размеры фрагментов в том же порядке
+     * @param size размер файла
+     * @throws IllegalArgumentException если размеров не столько же, сколько фрагментов
+     */
+    public ChunkRangeSource(ChunkDirectory directory, List<String> hashes, List<Integer> sizes, long size) {
+        if (sizes.size() != hashes.size()) {
+            throw new IllegalArgumentException("Размеры известны для " + sizes.size()
+                    + " из " + hashes.size() + " фрагментов");
+        }
+        this.directory = directory;
+        this.hashes = hashes;
+        this.size = size;
+        this.ends = new long[hashes.size()];
+        long end = 0;
+        for (int i = 0; i < ends.length; i++) {
+            end += sizes.get(i);
+            ends[i] = end;
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public int read(long position, ByteBuffer target) throws IOException {
+        int total = 0;
+        int index = locate(position);
+        while (target.hasRemaining() && index >= 0 && index < hashes.size()) {
+            long start = index == 0 ? 0 : ends[index - 1];
+            int read = directory.read(hashes.get(index), position + total - start, target);
+            total += read;
+            if (target.hasRemaining() && position + total < ends[index]) {
+                // Фрагмент короче, чем записано в каталоге
+                throw new IOException("Фрагмент " + hashes.get(index) + " поврежден");
+            }
+            index = target.hasRemaining() ? index + 1 : -1;
+        }
+        return total;
+    }
+
+    /**
+     * Находит фрагмент, содержащий смещение.
+     * @return индекс фрагмента или -1, если смещение за концом файла
+     */
+    private int locate(long position) {
+        if (ends.length == 0 || position < 0 || position >= ends[ends.length - 1]) {
+            return -1;
+        }
+        int low = 0;
+        int high = ends.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ends[middle] <= position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,110 @@
+package projects.encryptit.util.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+/**
+ * Канал, режущий поток на фрагменты по содержимому (скользящий gear-хеш).
+ * Границы зависят только от соседних байт, поэтому вставка в начало файла
+ * сдвигает лишь один-два фрагмента, а остальные совпадают с уже сохраненными.
+ * Закрытие канала отдает последний фрагмент.
+ */
+public class ContentDefinedChunker implements WritableByteChannel {
+
+    public static final int MIN_CHUNK_SIZE = 2 * 1024;
+    public static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Маска на 13 бит дает средний размер фрагмента около 8KB сверх минимального.
+     */
+    private static final long BOUNDARY_MASK = (1L << 13) - 1;
+
+    /**
+     * Таблица случайных значений для байтов; фиксированное зерно, чтобы границы
+     * не менялись между запусками и узлами.
+     */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x5EED_C0DEL);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Получатель готовых фрагментов.
+     */
+    @FunctionalInterface
+    public interface ChunkSink {
+        /**
+         * @param data массив с фрагментом (переиспользуется после возврата)
+         * @param length длина фрагмента
+         * @throws IOException если фрагмент не удалось сохранить
+         */
+        void accept(byte[] data, int length) throws IOException;
+    }
+
+    private final ChunkSink sink;
+    private final byte[] chunk = new byte[MAX_CHUNK_SIZE];
+    private int length;
+    private long hash;
+    private long total;
+    private boolean open = true;
+
+    /**
+     * @param sink получатель фрагментов
+     */
+    public ContentDefinedChunker(ChunkSink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        int written = source.remaining();
+        while (source.hasRemaining()) {
+            byte b = source.get();
+            chunk[length++] = b;
+            hash = (hash << 1) + GEAR[b & 0xFF];
+            if (length >= MAX_CHUNK_SIZE || (length >= MIN_CHUNK_SIZE && (hash & BOUNDARY_MASK) == 0)) {
+                emit();
+            }
+        }
+        total += written;
+        return written;
+    }
+
+    /**
+     * @return сколько байт прошло через канал
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            if (length > 0) {
+                emit();
+            }
+        }
+    }
+
+    private void emit() throws IOException {
+        sink.accept(chunk, length);
+        length = 0;
+        hash = 0;
+    }
+}
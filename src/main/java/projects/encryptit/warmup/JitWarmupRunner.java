@@ -0,0 +1,385 @@
+package projects.encryptit.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import projects.encryptit.controller.EncryptionController;
+import projects.encryptit.service.EncryptionService;
+import projects.encryptit.service.TextBatchService;
+import projects.encryptit.util.FileUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Прогрев JIT до того, как экземпляр начнет принимать трафик.
+ * Выполняется как {@link ApplicationRunner}: Spring Boot переводит готовность в
+ * {@code ACCEPTING_TRAFFIC} только после всех раннеров, поэтому {@code /health/readiness}
+ * отвечает 503, пока прогрев не закончится, и балансировщик не направляет запросы
+ * на код, который еще выполняется интерпретатором или C1.
+ * <p>
+ * На синтетических данных вызываются все доступные алгоритмы (включая каскады) через
+ * {@link EncryptionService} путями массивов и каналов, определение типа файла
+ * {@link FileUtil} и методы {@link EncryptionController} с чтением тела ответа и
+ * сериализацией JSON. Алгоритмы в эндпоинтах чередуются, чтобы точки вызова стали
+ * полиморфными, как под реальной нагрузкой. Каждая цель выполняется {@code warmup.iterations}
+ * раз (выше порога компиляции C2) или до исчерпания своего бюджета; затем прогрев ждет,
+ * пока очередь JIT-компиляции не опустеет. По истечении общего бюджета экземпляр все равно
+ * становится готовым, а отчет отмечает неполный прогрев.
+ */
+@Component
+public class JitWarmupRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(JitWarmupRunner.class);
+
+    private static final String KEY = "warmup-key-0123";
+    private static final int SMALL = 256;
+    private static final int MEDIUM = 16 * 1024;
+    private static final int LARGE = 1024 * 1024;
+    private static final int MEDIUM_EVERY = 20;
+    private static final int LARGE_EVERY = 500;
+    private static final int STREAM_EVERY = 10;
+    private static final int BATCH_SIZE = 32;
+    private static final long COMPILATION_POLL_MILLIS = 100;
+
+    /**
+     * Состояние прогрева.
+     */
+    public enum State {
+        PENDING, RUNNING, DONE, DISABLED
+    }
+
+    /**
+     * Итог прогрева одной цели.
+     * @param target название цели
+     * @param iterations выполнено итераций
+     * @param elapsedMillis длительность, мс
+     * @param budgetExhausted цель остановлена по бюджету раньше {@code warmup.iterations}
+     * @param error ошибка, прервавшая цель, или null
+     */
+    public record TargetReport(String target, long iterations, long elapsedMillis, boolean budgetExhausted,
+                               String error) {
+    }
+
+    /**
+     * Отчет о прогреве.
+     * @param state состояние
+     * @param complete все цели выполнили полное число итераций без ошибок, очередь JIT опустела
+     * @param elapsedMillis длительность прогрева, мс
+     * @param jitCompilationMillis время JIT-компиляции за прогрев, мс (-1, если JVM его не сообщает)
+     * @param targets итоги по целям
+     */
+    public record WarmupReport(State state, boolean complete, long elapsedMillis, long jitCompilationMillis,
+                               List<TargetReport> targets) {
+    }
+
+    /**
+     * Одна итерация цели прогрева.
+     */
+    @FunctionalInterface
+    private interface Step {
+        void run(int iteration) throws Exception;
+    }
+
+    private record Target(String name, Step step) {
+    }
+
+    /**
+     * Приемник, который ничего не хранит.
+     */
+    private static final WritableByteChannel DISCARD = Channels.newChannel(OutputStream.nullOutputStream());
+
+    private final EncryptionService encryptionService;
+    private final EncryptionController encryptionController;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Duration timeBudget;
+    private final Duration targetBudget;
+    private final int iterations;
+    private final int parallelism;
+
+    private volatile WarmupReport report;
+
+    public JitWarmupRunner(EncryptionService encryptionService,
+                           EncryptionController encryptionController,
+                           ObjectMapper objectMapper,
+                           @Value("${warmup.enabled:true}") boolean enabled,
+                           @Value("${warmup.time-budget:60s}") Duration timeBudget,
+                           @Value("${warmup.target-budget:10s}") Duration targetBudget,
+                           @Value("${warmup.iterations:10000}") int iterations,
+                           @Value("${warmup.parallelism:0}") int parallelism) {
+        this.encryptionService = encryptionService;
+        this.encryptionController = encryptionController;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.timeBudget = timeBudget;
+        this.targetBudget = targetBudget;
+        this.iterations = iterations;
+        this.parallelism = parallelism > 0 ? parallelism
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.report = new WarmupReport(enabled ? State.PENDING : State.DISABLED, false, 0, 0, List.of());
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        if (enabled) {
+            warmUp();
+        }
+    }
+
+    /**
+     * Возвращает отчет о последнем прогреве.
+     * @return отчет
+     */
+    public WarmupReport getReport() {
+        return report;
+    }
+
+    /**
+     * Выполняет прогрев всех целей.
+     * @return отчет
+     * @throws InterruptedException если ожидание прервано
+     */
+    public WarmupReport warmUp() throws InterruptedException {
+        report = new WarmupReport(State.RUNNING, false, 0, 0, List.of());
+        long started = System.nanoTime();
+        long deadline = started + timeBudget.toNanos();
+        long compilationBefore = compilationMillis();
+
+        List<Target> targets = targets();
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, targets.size()), runnable -> {
+            Thread thread = new Thread(runnable, "jit-warmup-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<TargetReport>> futures = new ArrayList<>();
+        try {
+            for (Target target : targets) {
+                futures.add(pool.submit(() -> runTarget(target, deadline)));
+            }
+            List<TargetReport> results = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                results.add(await(futures.get(i), targets.get(i), deadline));
+            }
+            boolean settled = awaitCompilationQueue(deadline);
+
+            long compilationAfter = compilationMillis();
+            boolean complete = settled && results.stream()
+                    .allMatch(result -> !result.budgetExhausted() && result.error() == null);
+            report = new WarmupReport(State.DONE, complete, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started),
+                    compilationBefore >= 0 ? compilationAfter - compilationBefore : -1, List.copyOf(results));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (report.complete()) {
+            log.info("Прогрев завершен за {} мс (JIT {} мс), целей: {}", report.elapsedMillis(),
+                    report.jitCompilationMillis(), report.targets().size());
+        } else {
+            log.warn("Прогрев завершен не полностью за {} мс: {}", report.elapsedMillis(), report.targets().stream()
+                    .filter(result -> result.budgetExhausted() || result.error() != null).toList());
+        }
+        return report;
+    }
+
+    private TargetReport runTarget(Target target, long globalDeadline) {
+        long started = System.nanoTime();
+        long deadline = Math.min(globalDeadline, started + targetBudget.toNanos());
+        int done = 0;
+        try {
+            while (done < iterations) {
+                if (System.nanoTime() >= deadline) {
+                    return new TargetReport(target.name(), done, elapsedMillis(started), true, null);
+                }
+                target.step().run(done);
+                done++;
+            }
+            return new TargetReport(target.name(), done, elapsedMillis(started), false, null);
+        } catch (Exception e) {
+            log.warn("Цель прогрева {} прервана: {}", target.name(), e.toString());
+            return new TargetReport(target.name(), done, elapsedMillis(started), false, e.toString());
+        }
+    }
+
+    private static TargetReport await(Future<TargetReport> future, Target target, long deadline)
+            throws InterruptedException {
+        try {
+            // Цель сама останавливается по бюджету; запас на итерацию с крупными данными
+            long wait = Math.max(0, deadline - System.nanoTime()) + TimeUnit.SECONDS.toNanos(1);
+            return future.get(wait, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            return new TargetReport(target.name(), 0, 0, true, null);
+        } catch (ExecutionException e) {
+            return new TargetReport(target.name(), 0, 0, false, e.getCause().toString());
+        }
+    }
+
+    /**
+     * Ждет, пока время JIT-компиляции не перестанет расти: методы, отправленные
+     * в очередь компиляции последними итерациями, должны успеть скомпилироваться.
+     */
+    private static boolean awaitCompilationQueue(long deadline) throws InterruptedException {
+        long previous = compilationMillis();
+        if (previous < 0) {
+            return true;
+        }
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(COMPILATION_POLL_MILLIS);
+            long current = compilationMillis();
+            if (current == previous) {
+                return true;
+            }
+            previous = current;
+        }
+        return false;
+    }
+
+    private static long compilationMillis() {
+        CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+        return compilation != null && compilation.isCompilationTimeMonitoringSupported()
+                ? compilation.getTotalCompilationTime() : -1;
+    }
+
+    private List<Target> targets() {
+        List<String> algorithms = encryptionService.getAvailableAlgorithms();
+        byte[][] payloads = {payload(SMALL), payload(MEDIUM), payload(LARGE)};
+        String text = new String(textPayload(SMALL), StandardCharsets.US_ASCII);
+
+        List<Target> targets = new ArrayList<>();
+        for (String algorithm : algorithms) {
+            targets.add(new Target("algorithm." + algorithm, iteration -> {
+                byte[] data = payloadFor(payloads, iteration);
+                EncryptionService.DigestedData sealed = encryptionService.encryptSealed(data.clone(), algorithm, KEY);
+                encryptionService.decryptVerified(sealed.data(), algorithm, KEY);
+                if (iteration % STREAM_EVERY == 0) {
+                    encryptionService.encryptSealed(Channels.newChannel(new ByteArrayInputStream(data)), DISCARD,
+                            algorithm, KEY, data.length);
+                }
+            }));
+        }
+
+        byte[][] samples = signatureSamples();
+        targets.add(new Target("file-signatures", iteration -> {
+            byte[] sample = samples[iteration % samples.length];
+            FileUtil.getMediaType(FileUtil.determineFileExtension(sample));
+            FileUtil.determineFileType(sample);
+        }));
+
+        targets.add(new Target("endpoint.encrypt-text", iteration -> {
+            String algorithm = algorithms.get(iteration % algorithms.size());
+            byte[] encrypted = drain(call(encryptionController.encryptText(text, algorithm, KEY)));
+            drain(call(encryptionController.decryptText(
+                    new SyntheticMultipartFile("text_encrypted.txt", encrypted), algorithm, KEY)));
+        }));
+        targets.add(new Target("endpoint.encrypt-file", iteration -> {
+            String algorithm = algorithms.get(iteration % algorithms.size());
+            byte[] data = payloadFor(payloads, iteration);
+            byte[] encrypted = drain(call(encryptionController.encryptFile(
+                    new SyntheticMultipartFile("scan.bin", data), algorithm, KEY, null)));
+            drain(call(encryptionController.decryptFile(
+                    new SyntheticMultipartFile("scan_encrypted.txt", encrypted), algorithm, KEY, null)));
+        }));
+        targets.add(new Target("endpoint.encrypt-batch", iteration -> {
+            List<TextBatchService.Item> items = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                items.add(new TextBatchService.Item(Integer.toString(i), text,
+                        algorithms.get((iteration + i) % algorithms.size()), KEY));
+            }
+            objectMapper.writeValueAsBytes(encryptionController.encryptBatch(items).join().getBody());
+        }));
+        return targets;
+    }
+
+    /**
+     * Выполняет асинхронную задачу эндпоинта в текущем потоке (без исполнителя и таймаутов запроса).
+     */
+    @SuppressWarnings("unchecked")
+    private static ResponseEntity<Resource> call(WebAsyncTask<ResponseEntity<Resource>> task) throws Exception {
+        return (ResponseEntity<Resource>) task.getCallable().call();
+    }
+
+    /**
+     * Читает тело ответа так же, как конвертер Spring при записи ответа, и закрывает поток
+     * (для арендованных буферов закрытие возвращает буфер в пул).
+     */
+    private static byte[] drain(ResponseEntity<Resource> response) throws IOException {
+        Resource body = response.getBody();
+        if (body == null || !response.getStatusCode().is2xxSuccessful()) {
+            throw new IllegalStateException("Эндпоинт вернул " + response.getStatusCode());
+        }
+        try (InputStream stream = body.getInputStream()) {
+            return stream.readAllBytes();
+        }
+    }
+
+    private static byte[] payloadFor(byte[][] payloads, int iteration) {
+        if (iteration % LARGE_EVERY == 0) {
+            return payloads[2];
+        }
+        return iteration % MEDIUM_EVERY == 0 ? payloads[1] : payloads[0];
+    }
+
+    private static byte[][] signatureSamples() {
+        byte[] jpeg = payload(MEDIUM);
+        jpeg[0] = (byte) 0xFF;
+        jpeg[1] = (byte) 0xD8;
+        jpeg[2] = (byte) 0xFF;
+        byte[] png = payload(MEDIUM);
+        System.arraycopy(new byte[]{(byte) 0x89, 'P', 'N', 'G'}, 0, png, 0, 4);
+        byte[] gif = payload(MEDIUM);
+        System.arraycopy(new byte[]{'G', 'I', 'F', '8'}, 0, gif, 0, 4);
+        byte[] bmp = payload(MEDIUM);
+        bmp[0] = 'B';
+        bmp[1] = 'M';
+        byte[] text = "Прогрев определения типа файла: обычный текст в UTF-8.\n".repeat(20)
+                .getBytes(StandardCharsets.UTF_8);
+        return new byte[][]{jpeg, png, gif, bmp, text, payload(FileUtil.SIGNATURE_PROBE_LENGTH)};
+    }
+
+    private static byte[] payload(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] textPayload(int size) {
+        byte[] data = new byte[size];
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ('a' + random.nextInt(26));
+        }
+        return data;
+    }
+
+    private static long elapsedMillis(long started) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+}
@@ -0,0 +1,32 @@
+-- Content-addressed chunks of stored ciphertexts, one row per unique chunk
+CREATE TABLE IF NOT EXISTS stored_chunks (
+    hash VARCHAR(64) PRIMARY KEY,
+    size INTEGER NOT NULL,
+    ref_count INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    released_at TIMESTAMP
+);
+
+-- Garbage collector looks up unreferenced chunks by release time
+CREATE INDEX IF NOT EXISTS idx_stored_chunks_released ON stored_chunks(ref_count, released_at);
+
+-- Per-user catalog of stored files
+CREATE TABLE IF NOT EXISTS stored_files (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    filename VARCHAR(255) NOT NULL,
+    algorithm VARCHAR(50) NOT NULL,
+    size BIGINT NOT NULL,
+    chunk_count INTEGER NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_stored_files_user ON stored_files(user_id, created_at);
+
+-- Ordered chunk list of each stored file
+CREATE TABLE IF NOT EXISTS stored_file_chunks (
+    file_id BIGINT NOT NULL REFERENCES stored_files(id) ON DELETE CASCADE,
+    seq INTEGER NOT NULL,
+    chunk_hash VARCHAR(64) NOT NULL REFERENCES stored_chunks(hash),
+    PRIMARY KEY (file_id, seq)
+);
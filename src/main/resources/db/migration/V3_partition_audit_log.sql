@@ -0,0 +1,48 @@
+--liquibase formatted sql
+
+-- Partitioning is PostgreSQL-specific; other databases (H2 in load tests) keep the plain table
+--changeset encryptit:v3-partition-audit-log dbms:postgresql splitStatements:false
+
+ALTER TABLE audit_log RENAME TO audit_log_legacy;
+ALTER SEQUENCE audit_log_id_seq OWNED BY NONE;
+
+-- Range-partitioned by month; the partition key must be part of the primary key
+CREATE TABLE audit_log (
+    id BIGINT NOT NULL DEFAULT nextval('audit_log_id_seq'),
+    user_id BIGINT REFERENCES users(id),
+    action VARCHAR(50) NOT NULL,
+    description TEXT,
+    ip_address VARCHAR(45),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Keyset pagination of a user's history: (user_id, created_at, id), newest first
+CREATE INDEX idx_audit_log_user_created ON audit_log (user_id, created_at DESC, id DESC);
+
+-- Catches rows outside the pre-created months; kept empty by the scheduled maintenance
+CREATE TABLE audit_log_default PARTITION OF audit_log DEFAULT;
+
+-- Monthly partitions from the oldest legacy row up to two months ahead
+DO $$
+DECLARE
+    month_start DATE := date_trunc('month', COALESCE((SELECT min(created_at) FROM audit_log_legacy), now()));
+    last_month DATE := date_trunc('month', now()) + INTERVAL '2 months';
+BEGIN
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF audit_log FOR VALUES FROM (%L) TO (%L)',
+                       'audit_log_p' || to_char(month_start, 'YYYYMM'),
+                       month_start, month_start + INTERVAL '1 month');
+        month_start := month_start + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO audit_log (id, user_id, action, description, ip_address, created_at)
+SELECT id, user_id, action, description, ip_address, COALESCE(created_at, CURRENT_TIMESTAMP)
+FROM audit_log_legacy;
+
+DROP TABLE audit_log_legacy;
+ALTER SEQUENCE audit_log_id_seq OWNED BY audit_log.id;
+
+--changeset encryptit:v3-audit-log-index dbms:!postgresql
+CREATE INDEX IF NOT EXISTS idx_audit_log_user_created ON audit_log (user_id, created_at, id);
@@ -0,0 +1,12 @@
+-- Aggregated usage per user and algorithm; rows are incremented by periodic flushes
+CREATE TABLE IF NOT EXISTS usage_totals (
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    algorithm VARCHAR(50) NOT NULL,
+    encrypted_bytes BIGINT NOT NULL DEFAULT 0,
+    decrypted_bytes BIGINT NOT NULL DEFAULT 0,
+    encrypt_requests BIGINT NOT NULL DEFAULT 0,
+    decrypt_requests BIGINT NOT NULL DEFAULT 0,
+    busy_nanos BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, algorithm)
+);
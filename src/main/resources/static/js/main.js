@@ -18,6 +18,9 @@ document.addEventListener('DOMContentLoaded', function() {
     // Инициализация загрузки файлов
     initFileUpload();
 
+    // Ход обработки больших файлов
+    initProgress();
+
     // Инициализация проверки силы пароля
     initPasswordStrength();
 
@@ -460,6 +463,92 @@ function initFileUpload() {
     });
 }
 
+/**
+ * Ход шифрования файла через Server-Sent Events
+ */
+function initProgress() {
+    const forms = document.querySelectorAll('form[data-progress-url]');
+
+    forms.forEach(form => {
+        const idField = form.querySelector('input[name="progressId"]');
+        const panel = form.querySelector('.progress-panel');
+        const submitBtn = form.querySelector('button[type="submit"]');
+        if (!idField || !panel || typeof EventSource === 'undefined') {
+            return;
+        }
+        const submitLabel = submitBtn ? submitBtn.innerHTML : '';
+        let source = null;
+
+        form.addEventListener('submit', function(event) {
+            // Форма не прошла валидацию
+            if (event.defaultPrevented) {
+                return;
+            }
+            if (source) {
+                source.close();
+            }
+            const id = window.crypto && crypto.randomUUID
+                ? crypto.randomUUID()
+                : Date.now().toString(36) + '-' + Math.random().toString(36).slice(2);
+            idField.value = id;
+            renderProgress(panel, { state: 'WAITING', processed: 0, total: 0 });
+            panel.hidden = false;
+
+            source = new EventSource(form.getAttribute('data-progress-url') + encodeURIComponent(id));
+            source.addEventListener('progress', function(e) {
+                const progress = JSON.parse(e.data);
+                renderProgress(panel, progress);
+                if (progress.state === 'DONE' || progress.state === 'FAILED') {
+                    source.close();
+                    source = null;
+                    if (submitBtn) {
+                        submitBtn.disabled = false;
+                        submitBtn.innerHTML = submitLabel;
+                    }
+                }
+            });
+            source.onerror = function() {
+                // Сервер закрыл поток: переподключение вернуло бы пустое состояние
+                source.close();
+                source = null;
+            };
+        });
+    });
+}
+
+/**
+ * Отрисовка хода обработки
+ */
+function renderProgress(panel, progress) {
+    const fill = panel.querySelector('.progress-fill');
+    const text = panel.querySelector('.progress-text');
+    const percent = progress.total > 0 ? Math.min(100, Math.round(progress.processed * 100 / progress.total)) : 0;
+
+    fill.style.width = (progress.state === 'DONE' ? 100 : percent) + '%';
+    fill.classList.toggle('failed', progress.state === 'FAILED');
+
+    if (progress.state === 'WAITING') {
+        text.textContent = 'Загрузка файла на сервер...';
+    } else if (progress.state === 'DONE') {
+        text.textContent = 'Готово: ' + formatBytes(progress.processed) + ', скачивание начинается';
+    } else if (progress.state === 'FAILED') {
+        text.textContent = 'Обработка прервана';
+    } else {
+        const eta = progress.etaSeconds != null ? ', осталось ~' + progress.etaSeconds + ' с' : '';
+        text.textContent = `${percent}% (${formatBytes(progress.processed)} из ${formatBytes(progress.total)}), `
+            + `${formatBytes(progress.bytesPerSecond)}/с${eta}`;
+    }
+}
+
+/**
+ * Размер в читаемом виде
+ */
+function formatBytes(bytes) {
+    if (bytes < 1024) return bytes + ' Б';
+    if (bytes < 1024 * 1024) return (bytes / 1024).toFixed(1) + ' КБ';
+    return (bytes / 1024 / 1024).toFixed(1) + ' МБ';
+}
+
 /**
  * Инициализация проверки силы пароля
  */
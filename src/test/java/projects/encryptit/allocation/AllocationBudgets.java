@@ -0,0 +1,50 @@
+package projects.encryptit.allocation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Бюджеты выделения памяти из {@code allocation-budgets.properties}.
+ * Бюджет задается кратностью размера полезной нагрузки; к нему добавляется
+ * постоянный запас {@code overhead-bytes} на объекты, не зависящие от размера
+ * (заголовки ответа, дайджесты, обертки каналов).
+ */
+final class AllocationBudgets {
+
+    private static final String RESOURCE = "/allocation-budgets.properties";
+
+    private final Properties budgets = new Properties();
+    private final long overheadBytes;
+
+    AllocationBudgets() throws IOException {
+        try (InputStream input = AllocationBudgets.class.getResourceAsStream(RESOURCE)) {
+            if (input == null) {
+                throw new IllegalStateException("Не найден файл бюджетов " + RESOURCE);
+            }
+            budgets.load(input);
+        }
+        this.overheadBytes = Long.parseLong(budgets.getProperty("overhead-bytes"));
+    }
+
+    /**
+     * Проверяет измерение по бюджету.
+     * @param name ключ бюджета
+     * @param payloadBytes размер полезной нагрузки
+     * @param allocatedBytes выделено памяти за вызов
+     * @return описание нарушения или null, если бюджет соблюден
+     */
+    String check(String name, long payloadBytes, long allocatedBytes) {
+        String multiple = budgets.getProperty(name);
+        if (multiple == null) {
+            return String.format("%s: нет бюджета, выделено %.2fx нагрузки", name,
+                    (double) allocatedBytes / payloadBytes);
+        }
+        long allowed = (long) (Double.parseDouble(multiple) * payloadBytes) + overheadBytes;
+        if (allocatedBytes <= allowed) {
+            return null;
+        }
+        return String.format("%s: выделено %d байт (%.2fx нагрузки), бюджет %sx + %d байт", name,
+                allocatedBytes, (double) allocatedBytes / payloadBytes, multiple, overheadBytes);
+    }
+}
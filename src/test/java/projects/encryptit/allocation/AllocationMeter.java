@@ -0,0 +1,103 @@
+package projects.encryptit.allocation;
+
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Измеряет объем памяти, выделяемой потоком на один вызов, через
+ * {@link com.sun.management.ThreadMXBean#getCurrentThreadAllocatedBytes()}.
+ * Сначала код прогревается, чтобы JIT успел скомпилировать горячие пути,
+ * затем берется минимум по нескольким повторам: минимум устойчив к
+ * единичным выбросам (загрузка классов, расширение TLAB).
+ * <p>
+ * При {@code -Dallocation.jfr=<файл>} измерения записываются в JFR с событиями
+ * выделения памяти, чтобы при превышении бюджета сразу найти источник.
+ */
+final class AllocationMeter {
+
+    /**
+     * Измеряемое действие.
+     */
+    @FunctionalInterface
+    interface Action {
+        void run() throws Exception;
+    }
+
+    private static final int WARMUP = Integer.getInteger("allocation.warmup", 30);
+    private static final int ITERATIONS = Integer.getInteger("allocation.iterations", 10);
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final Recording recording;
+
+    AllocationMeter() throws IOException {
+        String jfr = System.getProperty("allocation.jfr");
+        if (jfr != null && !jfr.isBlank()) {
+            recording = new Recording();
+            recording.enable("jdk.ObjectAllocationSample").with("throttle", "1000/s");
+            recording.enable("jdk.ObjectAllocationOutsideTLAB");
+            recording.setDestination(Path.of(jfr));
+            recording.start();
+        } else {
+            recording = null;
+        }
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("JVM не поддерживает учет выделенной памяти по потокам");
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Измеряет выделение памяти действием в текущем потоке.
+     * @param action действие
+     * @return минимальный объем выделенной памяти за вызов, байт
+     * @throws Exception исключение действия
+     */
+    long measure(Action action) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            action.run();
+        }
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long before = threads.getCurrentThreadAllocatedBytes();
+            action.run();
+            min = Math.min(min, threads.getCurrentThreadAllocatedBytes() - before);
+        }
+        return min;
+    }
+
+    /**
+     * Измеряет выделение памяти действием в потоке исполнителя.
+     * Нужно, когда код сам переключается на пул, если вызван не из него.
+     * @param executor исполнитель
+     * @param action действие
+     * @return минимальный объем выделенной памяти за вызов, байт
+     * @throws Exception исключение действия
+     */
+    long measure(Executor executor, Action action) throws Exception {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(measure(action));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result.join();
+    }
+
+    /**
+     * Завершает запись JFR, если она включена.
+     */
+    void close() {
+        if (recording != null) {
+            recording.stop();
+            recording.close();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package projects.encryptit.allocation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import projects.encryptit.controller.EncryptionController;
+import projects.encryptit.service.AlgorithmCalibrationService;
+import projects.encryptit.service.EncryptionService;
+import projects.encryptit.service.FileStorageService;
+import projects.encryptit.service.ProcessingLanes;
+import projects.encryptit.service.ProgressService;
+import projects.encryptit.service.TextBatchService;
+import projects.encryptit.service.UsageMeterService;
+import projects.encryptit.util.buffer.BufferArena;
+import projects.encryptit.util.buffer.LeasedBufferResource;
+import projects.encryptit.util.encryption.AESEncryption;
+import projects.encryptit.util.encryption.AesCtrEncryption;
+import projects.encryptit.util.encryption.AlgorithmCapability;
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+import projects.encryptit.util.encryption.CaesarCipher;
+import projects.encryptit.util.encryption.ChaCha20Encryption;
+import projects.encryptit.util.encryption.EncryptionAlgorithm;
+import projects.encryptit.util.encryption.RangeSource;
+import projects.encryptit.util.encryption.VigenereCipher;
+import projects.encryptit.util.encryption.XORCipher;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Регрессионные проверки выделения памяти на запрос.
+ * Эндпоинты шифрования и все алгоритмы вызываются в процессе, без HTTP;
+ * выделенная память сравнивается с бюджетами из {@code allocation-budgets.properties}.
+ * Если изменение обоснованно увеличивает выделение, бюджет правится в том же коммите.
+ * Измерения публикуются в отчет JUnit. Тесты помечены тегом {@code allocation} и
+ * запускаются отдельной задачей, в том числе с записью JFR:
+ * {@code ./gradlew allocationTest -Dallocation.jfr=build/allocation.jfr}.
+ */
+@Tag("allocation")
+class AllocationRegressionTest {
+
+    private static final String KEY = "allocation-key-1";
+    private static final String ALGORITHM = "AES";
+    private static final int FILE_SIZE = 1024 * 1024;
+    private static final int TEXT_SIZE = 64 * 1024;
+    private static final int RANGE_SIZE = 64 * 1024;
+    private static final List<String> CASCADES = List.of("VIGENERE+XOR+AES", "VIGENERE+XOR", "XOR+AES-CTR");
+
+    /**
+     * Приемник, который ничего не хранит: измеряется только сам алгоритм.
+     */
+    private static final WritableByteChannel DISCARD = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer src) {
+            int length = src.remaining();
+            src.position(src.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private AllocationMeter meter;
+    private AllocationBudgets budgets;
+    private BufferArena previousArena;
+    private BufferArena arena;
+    private ProcessingLanes lanes;
+    private AlgorithmRegistry registry;
+    private EncryptionService encryptionService;
+    private EncryptionController controller;
+    private final Map<String, String> report = new LinkedHashMap<>();
+    private final List<String> violations = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        budgets = new AllocationBudgets();
+        meter = new AllocationMeter();
+        previousArena = BufferArena.shared();
+        // Без отслеживания утечек: оно записывает стек каждой аренды
+        arena = new BufferArena(64L * 1024 * 1024, false);
+        BufferArena.installShared(arena);
+        lanes = new ProcessingLanes(DataSize.ofKilobytes(64), DataSize.ofMegabytes(4), 1, 1, 1);
+        registry = new AlgorithmRegistry(List.of(new AESEncryption(), new CaesarCipher(), new XORCipher(),
+                new VigenereCipher(), new ChaCha20Encryption(), new AesCtrEncryption()), List.of());
+        encryptionService = new EncryptionService(registry);
+        controller = new EncryptionController(encryptionService, mock(AlgorithmCalibrationService.class), arena,
+                mock(FileStorageService.class), mock(UsageMeterService.class), lanes,
+                new ProgressService(Duration.ofMinutes(1), 10, 5, 1),
+                new TextBatchService(encryptionService, lanes, 1000, 1024 * 1024), Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown(TestReporter reporter) {
+        meter.close();
+        lanes.shutdown();
+        BufferArena.installShared(previousArena);
+        if (!report.isEmpty()) {
+            reporter.publishEntry(report);
+        }
+    }
+
+    @Test
+    void controllerEndpointsStayWithinBudget() throws Exception {
+        byte[] file = payload(FILE_SIZE);
+        String text = new String(textPayload(TEXT_SIZE), StandardCharsets.US_ASCII);
+        byte[] encryptedText = encryptionService.encryptSealed(text.getBytes(StandardCharsets.UTF_8),
+                ALGORITHM, KEY).data();
+        byte[] encryptedFile = encryptionService.encryptSealed(file, ALGORITHM, KEY).data();
+
+        // Эндпоинты сами переходят в пул полос; измеряем в потоке полосы, чтобы учесть всю работу
+        check("endpoint.encrypt-text", TEXT_SIZE, meter.measure(lanes.executorFor(TEXT_SIZE),
+                () -> drain(controller.encryptText(text, ALGORITHM, KEY))));
+        check("endpoint.decrypt-text", TEXT_SIZE, meter.measure(lanes.executorFor(TEXT_SIZE),
+                () -> drain(controller.decryptText(upload("text_encrypted.txt", encryptedText), ALGORITHM, KEY))));
+        check("endpoint.encrypt-file", FILE_SIZE, meter.measure(lanes.executorFor(FILE_SIZE),
+                () -> drain(controller.encryptFile(upload("payload.bin", file), ALGORITHM, KEY, null))));
+        check("endpoint.decrypt-file", FILE_SIZE, meter.measure(lanes.executorFor(FILE_SIZE),
+                () -> drain(controller.decryptFile(upload("payload_encrypted.txt", encryptedFile),
+                        ALGORITHM, KEY, null))));
+
+        assertThat(violations).isEmpty();
+        assertThat(arena.outstandingLeases()).isZero();
+    }
+
+    @Test
+    void algorithmsStayWithinBudget() throws Exception {
+        byte[] data = payload(FILE_SIZE);
+        List<EncryptionAlgorithm> algorithms = new ArrayList<>(registry.getAll());
+        for (String cascade : CASCADES) {
+            algorithms.add(registry.require(cascade));
+        }
+
+        for (EncryptionAlgorithm algorithm : algorithms) {
+            String name = "algorithm." + algorithm.getName();
+            byte[] encrypted = algorithm.encrypt(data, KEY);
+            check(name + ".encrypt", FILE_SIZE, meter.measure(() -> algorithm.encrypt(data, KEY)));
+            check(name + ".decrypt", FILE_SIZE, meter.measure(() -> algorithm.decrypt(encrypted, KEY)));
+            check(name + ".stream", FILE_SIZE, meter.measure(() -> algorithm.encrypt(
+                    Channels.newChannel(new ByteArrayInputStream(data)), DISCARD, KEY)));
+            if (algorithm.supports(AlgorithmCapability.SEEKABLE)) {
+                // Диапазон из середины файла: выделение зависит от длины диапазона, а не файла
+                RangeSource source = RangeSource.of(encrypted);
+                check(name + ".range", RANGE_SIZE, meter.measure(() -> algorithm.decryptRange(source,
+                        FILE_SIZE / 2 + 7, RANGE_SIZE, KEY)));
+            }
+        }
+
+        assertThat(violations).isEmpty();
+    }
+
+    private void check(String name, long payloadBytes, long allocatedBytes) {
+        report.put(name, String.format("%d B %.2fx", allocatedBytes, (double) allocatedBytes / payloadBytes));
+        String violation = budgets.check(name, payloadBytes, allocatedBytes);
+        if (violation != null) {
+            violations.add(violation);
+        }
+    }
+
+    private static void drain(ResponseEntity<Resource> response) {
+        assertThat(response.getBody()).isNotNull();
+        if (response.getBody() instanceof LeasedBufferResource resource) {
+            resource.release();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void drain(WebAsyncTask<ResponseEntity<Resource>> task) throws Exception {
+        // Вызываем задачу в текущем потоке: исполнитель и таймауты здесь не измеряются
+        drain((ResponseEntity<Resource>) task.getCallable().call());
+    }
+
+    private static MockMultipartFile upload(String filename, byte[] content) {
+        return new MockMultipartFile("file", filename, "application/octet-stream", content);
+    }
+
+    private static byte[] payload(int size) {
+        byte[] data = new byte[size];
+        new Random(43).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] textPayload(int size) {
+        byte[] data = new byte[size];
+        Random random = new Random(43);
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ('a' + random.nextInt(26));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,118 @@
+package projects.encryptit.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import projects.encryptit.service.EncryptionService;
+import projects.encryptit.util.encryption.AESEncryption;
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+import projects.encryptit.util.encryption.XORCipher;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверки пакетной обработки: полный цикл шифрования и дешифрования дерева
+ * и продолжение по журналу после прерванного запуска.
+ */
+class DirectoryEncryptorTest {
+
+    private static final String KEY = "batch-key";
+
+    private Path root;
+    private Path input;
+    private DirectoryEncryptor encryptor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = Files.createTempDirectory("batch-test");
+        input = Files.createDirectories(root.resolve("in"));
+        Files.createDirectories(input.resolve("nested/deeper"));
+        Files.write(input.resolve("a.bin"), randomBytes(300_001));
+        Files.writeString(input.resolve("nested/b.txt"), "текст для шифрования", StandardCharsets.UTF_8);
+        Files.write(input.resolve("nested/deeper/empty.bin"), new byte[0]);
+        AlgorithmRegistry registry = new AlgorithmRegistry(List.of(new AESEncryption(), new XORCipher()), List.of());
+        encryptor = new DirectoryEncryptor(new EncryptionService(registry), registry);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void encryptedTreeDecryptsToOriginal() throws Exception {
+        DirectoryEncryptor.Report encrypted = encryptor.run(properties(input, root.resolve("enc"),
+                BatchProperties.Operation.ENCRYPT));
+        assertThat(encrypted.processed()).isEqualTo(3);
+        assertThat(encrypted.failed()).isZero();
+        assertThat(Files.exists(root.resolve("enc/nested/deeper/empty.bin.enc"))).isTrue();
+
+        DirectoryEncryptor.Report decrypted = encryptor.run(properties(root.resolve("enc"), root.resolve("dec"),
+                BatchProperties.Operation.DECRYPT));
+        assertThat(decrypted.processed()).isEqualTo(3);
+        assertThat(decrypted.failed()).isZero();
+        assertThat(Files.readAllBytes(root.resolve("dec/a.bin")))
+                .isEqualTo(Files.readAllBytes(input.resolve("a.bin")));
+        assertThat(Files.readAllBytes(root.resolve("dec/nested/b.txt")))
+                .isEqualTo(Files.readAllBytes(input.resolve("nested/b.txt")));
+    }
+
+    @Test
+    void rerunSkipsCompletedFilesAndRedoesChangedOnes() throws Exception {
+        Path output = root.resolve("enc");
+        BatchProperties properties = properties(input, output, BatchProperties.Operation.ENCRYPT);
+        encryptor.run(properties);
+
+        // Имитируем сбой: результат одного файла потерян, другой файл изменился
+        Files.delete(output.resolve("a.bin.enc"));
+        Files.writeString(input.resolve("nested/b.txt"), "новое содержимое", StandardCharsets.UTF_8);
+        // Оборванная последняя строка журнала не должна мешать чтению
+        Files.writeString(output.resolve(".encrypt-it-manifest"), "12\t34", StandardOpenOption.APPEND);
+
+        DirectoryEncryptor.Report rerun = encryptor.run(properties);
+        assertThat(rerun.processed()).isEqualTo(2);
+        assertThat(rerun.skipped()).isEqualTo(1);
+        assertThat(Files.exists(output.resolve("a.bin.enc"))).isTrue();
+    }
+
+    @Test
+    void manifestOfAnotherAlgorithmIsRejected() throws Exception {
+        Path output = root.resolve("enc");
+        encryptor.run(properties(input, output, BatchProperties.Operation.ENCRYPT));
+
+        BatchProperties xor = properties(input, output, BatchProperties.Operation.ENCRYPT);
+        xor.setAlgorithm("XOR");
+        assertThatThrownBy(() -> encryptor.run(xor)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static BatchProperties properties(Path input, Path output, BatchProperties.Operation operation) {
+        BatchProperties properties = new BatchProperties();
+        properties.setInput(input);
+        properties.setOutput(output);
+        properties.setOperation(operation);
+        properties.setKey(KEY);
+        properties.setThreads(2);
+        return properties;
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(47).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,136 @@
+package projects.encryptit.controller;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import projects.encryptit.service.AlgorithmCalibrationService;
+import projects.encryptit.service.EncryptionService;
+import projects.encryptit.service.FileStorageService;
+import projects.encryptit.service.ProcessingLanes;
+import projects.encryptit.service.ProgressService;
+import projects.encryptit.service.TextBatchService;
+import projects.encryptit.service.UsageMeterService;
+import projects.encryptit.util.buffer.BufferArena;
+import projects.encryptit.util.encryption.AESEncryption;
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Отмена асинхронной обработки файла через Spring MVC: отключение клиента
+ * (ошибка асинхронного запроса) и таймаут запроса отменяют токен, и идущая
+ * обработка останавливается, не дочитав файл и вернув буферы в пул.
+ */
+class EncryptionControllerAsyncTest {
+
+    private static final String KEY = "controller-key-1";
+    private static final long FILE_SIZE = DataSize.ofMegabytes(8).toBytes();
+
+    private BufferArena previousArena;
+    private BufferArena arena;
+    private ProcessingLanes lanes;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        previousArena = BufferArena.shared();
+        arena = new BufferArena(32L * 1024 * 1024, true);
+        BufferArena.installShared(arena);
+        lanes = new ProcessingLanes(DataSize.ofKilobytes(64), DataSize.ofMegabytes(4), 1, 1, 1);
+        EncryptionService encryptionService = new EncryptionService(new AlgorithmRegistry(
+                List.of(new AESEncryption()), List.of()));
+        EncryptionController controller = new EncryptionController(encryptionService,
+                mock(AlgorithmCalibrationService.class), arena, mock(FileStorageService.class),
+                mock(UsageMeterService.class), lanes, new ProgressService(Duration.ofMinutes(1), 10, 5, 1),
+                new TextBatchService(encryptionService, lanes, 1000, 1024 * 1024), Duration.ofMinutes(1));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        lanes.shutdown();
+        BufferArena.installShared(previousArena);
+    }
+
+    @Test
+    void clientDisconnectCancelsRunningTransform() throws Exception {
+        StalledUpload upload = new StalledUpload("large.bin", FILE_SIZE);
+        MvcResult started = startEncryption(upload);
+
+        for (AsyncListener listener : listeners(started)) {
+            listener.onError(new AsyncEvent(asyncContext(started), new IOException("Broken pipe")));
+        }
+        upload.resume();
+
+        assertCancelled(started, upload, "Клиент отключился");
+    }
+
+    @Test
+    void requestTimeoutCancelsRunningTransform() throws Exception {
+        StalledUpload upload = new StalledUpload("large.bin", FILE_SIZE);
+        MvcResult started = startEncryption(upload);
+
+        for (AsyncListener listener : listeners(started)) {
+            listener.onTimeout(new AsyncEvent(asyncContext(started)));
+        }
+        upload.resume();
+
+        assertCancelled(started, upload, "Истек срок обработки запроса");
+    }
+
+    private MvcResult startEncryption(StalledUpload upload) throws Exception {
+        MvcResult started = mockMvc.perform(multipart("/encrypt/file").file(upload)
+                        .param("algorithm", "AES")
+                        .param("key", KEY))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(upload.awaitStalled()).isTrue();
+        return started;
+    }
+
+    private void assertCancelled(MvcResult started, StalledUpload upload, String reason) throws Exception {
+        // Ответ для клиента - результат обработчика отмены WebAsyncTask
+        Object result = WebAsyncUtils.getAsyncManager(started.getRequest()).getConcurrentResult();
+        assertThat(result).isInstanceOf(ResponseEntity.class);
+        ResponseEntity<?> response = (ResponseEntity<?>) result;
+        assertThat(response.getStatusCode().value()).isEqualTo(503);
+        assertThat(new String(((Resource) response.getBody()).getInputStream().readAllBytes(),
+                StandardCharsets.UTF_8)).isEqualTo(reason);
+
+        // Обработка в полосе остановилась на ближайшем фрагменте и вернула буферы
+        assertThat(upload.awaitClosed()).isTrue();
+        assertThat(upload.bytesRead()).isLessThan(FILE_SIZE);
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (arena.outstandingLeases() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(arena.outstandingLeases()).isZero();
+    }
+
+    private static MockAsyncContext asyncContext(MvcResult result) {
+        return (MockAsyncContext) result.getRequest().getAsyncContext();
+    }
+
+    private static List<AsyncListener> listeners(MvcResult result) {
+        return new ArrayList<>(asyncContext(result).getListeners());
+    }
+}
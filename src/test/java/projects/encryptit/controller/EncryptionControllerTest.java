@@ -0,0 +1,161 @@
+package projects.encryptit.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import projects.encryptit.service.AlgorithmCalibrationService;
+import projects.encryptit.service.EncryptionService;
+import projects.encryptit.service.FileStorageService;
+import projects.encryptit.service.ProcessingLanes;
+import projects.encryptit.service.ProgressService;
+import projects.encryptit.service.TextBatchService;
+import projects.encryptit.service.UsageMeterService;
+import projects.encryptit.util.buffer.BufferArena;
+import projects.encryptit.util.buffer.LeasedBufferResource;
+import projects.encryptit.util.encryption.AESEncryption;
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+import projects.encryptit.util.encryption.IntegrityTrailer;
+import projects.encryptit.util.encryption.XORCipher;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Проверки эндпоинтов файлов без HTTP: имена результата, возврат буферов в пул,
+ * остановка обработки по сроку запроса и шифротекст без блока целостности.
+ */
+class EncryptionControllerTest {
+
+    private static final String KEY = "controller-key-1";
+
+    private BufferArena previousArena;
+    private BufferArena arena;
+    private ProcessingLanes lanes;
+    private EncryptionService encryptionService;
+    private EncryptionController controller;
+
+    @BeforeEach
+    void setUp() {
+        previousArena = BufferArena.shared();
+        arena = new BufferArena(16L * 1024 * 1024, true);
+        BufferArena.installShared(arena);
+        lanes = new ProcessingLanes(DataSize.ofKilobytes(64), DataSize.ofMegabytes(4), 1, 1, 1);
+        encryptionService = new EncryptionService(new AlgorithmRegistry(
+                List.of(new AESEncryption(), new XORCipher()), List.of()));
+        controller = controller(Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        lanes.shutdown();
+        BufferArena.installShared(previousArena);
+    }
+
+    @Test
+    void fileWithoutExtensionKeepsWholeName() throws Exception {
+        ResponseEntity<Resource> response = call(controller.encryptFile(
+                upload("scan0001", "содержимое".getBytes(StandardCharsets.UTF_8)), "AES", KEY, null));
+
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION))
+                .isEqualTo("attachment; filename=\"scan0001_encrypted.txt\"");
+        release(response);
+        assertThat(arena.outstandingLeases()).isZero();
+    }
+
+    @Test
+    void decryptedFileWithoutOriginalNameGetsDefaultName() throws Exception {
+        byte[] encrypted = encryptionService.encryptSealed("plain text".getBytes(StandardCharsets.UTF_8),
+                "AES", KEY).data();
+
+        ResponseEntity<Resource> response = call(controller.decryptFile(upload("", encrypted), "AES", KEY, null));
+
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION))
+                .isEqualTo("attachment; filename=\"file_decrypted.txt\"");
+        release(response);
+        assertThat(arena.outstandingLeases()).isZero();
+    }
+
+    @Test
+    void ciphertextWithoutTrailerIsRejectedWhenUnsealedDisallowed() throws Exception {
+        encryptionService = new EncryptionService(new AlgorithmRegistry(List.of(new AESEncryption()), List.of()),
+                true, false, List.of());
+        controller = controller(Duration.ofMinutes(1));
+        byte[] sealed = encryptionService.encryptSealed("plain text".getBytes(StandardCharsets.UTF_8),
+                "AES", KEY).data();
+        byte[] truncated = Arrays.copyOf(sealed, sealed.length - IntegrityTrailer.LENGTH);
+
+        ResponseEntity<Resource> response = call(controller.decryptFile(upload("note_encrypted.txt", truncated),
+                "AES", KEY, null));
+
+        assertThat(response.getStatusCode().value()).isEqualTo(422);
+        assertThat(arena.outstandingLeases()).isZero();
+    }
+
+    @Test
+    void legacyCiphertextIsDecryptedAndMarkedUnverifiedByDefault() throws Exception {
+        byte[] legacy = new AESEncryption().encrypt("plain text".getBytes(StandardCharsets.UTF_8), KEY);
+
+        ResponseEntity<Resource> response = call(controller.decryptFile(
+                upload("note_encrypted.txt", legacy), "AES", KEY, null));
+
+        assertThat(response.getStatusCode().value()).isEqualTo(200);
+        assertThat(response.getHeaders().getFirst("X-Integrity")).isEqualTo("unverified");
+        release(response);
+        assertThat(arena.outstandingLeases()).isZero();
+    }
+
+    @Test
+    void deadlineStopsRunningTransform() throws Exception {
+        EncryptionController shortDeadline = controller(Duration.ofMillis(200));
+        StalledUpload upload = new StalledUpload("large.bin", DataSize.ofMegabytes(8).toBytes());
+        FutureTask<ResponseEntity<Resource>> request = new FutureTask<>(
+                () -> call(shortDeadline.encryptFile(upload, "AES", KEY, null)));
+        new Thread(request, "request").start();
+
+        assertThat(upload.awaitStalled()).isTrue();
+        Thread.sleep(300); // Срок истекает, пока обработка стоит на втором фрагменте
+        upload.resume();
+
+        ResponseEntity<Resource> response = request.get(5, TimeUnit.SECONDS);
+        assertThat(response.getStatusCode().value()).isEqualTo(503);
+        assertThat(new String(response.getBody().getInputStream().readAllBytes(), StandardCharsets.UTF_8))
+                .isEqualTo("Истек срок обработки запроса");
+        assertThat(upload.awaitClosed()).isTrue();
+        assertThat(upload.bytesRead()).isLessThan(upload.getSize());
+        assertThat(arena.outstandingLeases()).isZero();
+    }
+
+    private EncryptionController controller(Duration requestDeadline) {
+        return new EncryptionController(encryptionService, mock(AlgorithmCalibrationService.class), arena,
+                mock(FileStorageService.class), mock(UsageMeterService.class), lanes,
+                new ProgressService(Duration.ofMinutes(1), 10, 5, 1),
+                new TextBatchService(encryptionService, lanes, 1000, 1024 * 1024), requestDeadline);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ResponseEntity<Resource> call(WebAsyncTask<ResponseEntity<Resource>> task) throws Exception {
+        return (ResponseEntity<Resource>) task.getCallable().call();
+    }
+
+    private static void release(ResponseEntity<Resource> response) {
+        assertThat(response.getBody()).isInstanceOf(LeasedBufferResource.class);
+        ((LeasedBufferResource) response.getBody()).release();
+    }
+
+    private static MockMultipartFile upload(String filename, byte[] content) {
+        return new MockMultipartFile("file", filename, "application/octet-stream", content);
+    }
+}
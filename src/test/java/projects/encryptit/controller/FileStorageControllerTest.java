@@ -0,0 +1,110 @@
+package projects.encryptit.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.unit.DataSize;
+import projects.encryptit.model.StoredFile;
+import projects.encryptit.model.User;
+import projects.encryptit.repository.StoredChunkRepository;
+import projects.encryptit.repository.StoredFileRepository;
+import projects.encryptit.repository.UsageTotalsRepository;
+import projects.encryptit.repository.UserRepository;
+import projects.encryptit.service.EncryptionService;
+import projects.encryptit.service.FileStorageService;
+import projects.encryptit.service.ProcessingLanes;
+import projects.encryptit.service.UsageMeterService;
+import projects.encryptit.util.encryption.AESEncryption;
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+import projects.encryptit.util.encryption.IntegrityTrailer;
+import projects.encryptit.util.storage.ChunkDirectory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверки сохранения файлов через контроллер: шифротекст в хранилище
+ * совпадает по формату с {@code /encrypt/file} и проверяется при дешифровании.
+ */
+class FileStorageControllerTest {
+
+    private static final String KEY = "storage-key-1";
+
+    private Path root;
+    private ProcessingLanes lanes;
+    private StoredFileRepository fileRepository;
+    private FileStorageService storageService;
+    private EncryptionService encryptionService;
+    private FileStorageController controller;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = Files.createTempDirectory("storage-controller-test");
+        fileRepository = mock(StoredFileRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(new User("alice", "a@b.c", "x")));
+        when(fileRepository.save(any(StoredFile.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        lanes = new ProcessingLanes(DataSize.ofKilobytes(64), DataSize.ofMegabytes(4), 1, 1, 1);
+        storageService = new FileStorageService(fileRepository, mock(StoredChunkRepository.class), userRepository,
+                new ChunkDirectory(root), TransactionOperations.withoutTransaction());
+        encryptionService = new EncryptionService(new AlgorithmRegistry(List.of(new AESEncryption()), List.of()));
+        controller = new FileStorageController(storageService, encryptionService,
+                new UsageMeterService(mock(UsageTotalsRepository.class), userRepository), lanes, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        lanes.shutdown();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void storedCiphertextCarriesIntegrityTrailer() throws Exception {
+        byte[] plaintext = new byte[300_000];
+        new Random(5).nextBytes(plaintext);
+
+        Object view = controller.storeFile(new MockMultipartFile("file", "report.pdf", "application/pdf", plaintext),
+                "AES", KEY, () -> "alice").getCallable().call();
+        assertThat(view).isEqualTo("redirect:/dashboard");
+
+        ArgumentCaptor<StoredFile> saved = ArgumentCaptor.forClass(StoredFile.class);
+        verify(fileRepository).save(saved.capture());
+        StoredFile file = saved.getValue();
+        assertThat(file.getFilename()).isEqualTo("report_encrypted.txt");
+
+        ByteArrayOutputStream stored = new ByteArrayOutputStream();
+        storageService.copyTo(new FileStorageService.StoredFileContent(file.getFilename(), file.getAlgorithm(),
+                file.getSize(), file.getChunkHashes(), List.of()), Channels.newChannel(stored));
+        byte[] ciphertext = stored.toByteArray();
+        assertThat(IntegrityTrailer.parse(ciphertext, ciphertext.length - IntegrityTrailer.LENGTH).isPresent())
+                .isTrue();
+
+        EncryptionService.DigestedData decrypted = encryptionService.decryptVerified(
+                Arrays.copyOf(ciphertext, ciphertext.length), "AES", KEY);
+        assertThat(decrypted.data()).isEqualTo(plaintext);
+    }
+}
@@ -0,0 +1,117 @@
+package projects.encryptit.controller;
+
+import org.springframework.mock.web.MockMultipartFile;
+import projects.encryptit.util.encryption.ChunkPump;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Загрузка заданного размера, чтение которой останавливается после первого
+ * фрагмента {@link ChunkPump} до вызова {@link #resume()}. Позволяет отменить
+ * обработку, пока она идет, и проверить, что остаток файла не читается.
+ */
+class StalledUpload extends MockMultipartFile {
+
+    private final long size;
+    private final AtomicLong read = new AtomicLong();
+    private final CountDownLatch stalled = new CountDownLatch(1);
+    private final CountDownLatch resumed = new CountDownLatch(1);
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    StalledUpload(String filename, long size) {
+        super("file", filename, "application/octet-stream", new byte[0]);
+        this.size = size;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new InputStream() {
+            @Override
+            public int read() {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                long position = read.get();
+                if (position >= size) {
+                    return -1;
+                }
+                if (position >= ChunkPump.CHUNK_SIZE) {
+                    stalled.countDown();
+                    awaitResume();
+                }
+                int count = (int) Math.min(length, size - position);
+                Arrays.fill(buffer, offset, offset + count, (byte) 7);
+                read.addAndGet(count);
+                return count;
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+    }
+
+    /**
+     * Ждет, пока обработка прочитает первый фрагмент и остановится на втором.
+     * @return true если обработка дошла до остановки
+     */
+    boolean awaitStalled() throws InterruptedException {
+        return stalled.await(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Разрешает читать дальше.
+     */
+    void resume() {
+        resumed.countDown();
+    }
+
+    /**
+     * Ждет закрытия потока чтения обработкой.
+     * @return true если поток закрыт
+     */
+    boolean awaitClosed() throws InterruptedException {
+        return closed.await(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return прочитано байт
+     */
+    long bytesRead() {
+        return read.get();
+    }
+
+    private void awaitResume() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                resumed.await();
+                break;
+            } catch (InterruptedException e) {
+                // Прерывание (отмена задачи Spring MVC) сохраняем для канала чтения
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package projects.encryptit.distributed;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import projects.encryptit.util.encryption.AESEncryption;
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+import projects.encryptit.util.encryption.EncryptionAlgorithm;
+import projects.encryptit.util.encryption.VigenereCipher;
+import projects.encryptit.util.encryption.XORCipher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверки распределенной обработки на брокере в памяти:
+ * порядок сборки, повтор потерянных фрагментов и отказ после всех попыток.
+ */
+class DistributedChunkCoordinatorTest {
+
+    private static final String KEY = "distributed-key";
+
+    private AlgorithmRegistry registry;
+    private DistributedProperties properties;
+    private InProcessChunkBroker broker;
+    private DistributedChunkCoordinator coordinator;
+
+    @BeforeEach
+    void startNodes() {
+        registry = new AlgorithmRegistry(List.of(new XORCipher(), new VigenereCipher(), new AESEncryption()));
+        properties = new DistributedProperties();
+        properties.setChunkSize(DataSize.ofKilobytes(64));
+        properties.setThreshold(DataSize.ofKilobytes(256));
+        properties.setMaxInFlight(4);
+        properties.setChunkTimeout(Duration.ofMillis(200));
+        broker = new InProcessChunkBroker(new ChunkWorker(registry), 3);
+        coordinator = new DistributedChunkCoordinator(broker, properties);
+    }
+
+    @AfterEach
+    void stopNodes() {
+        broker.close();
+    }
+
+    @Test
+    void resultMatchesLocalProcessing() throws IOException {
+        byte[] data = randomBytes(1_000_003);
+        for (String name : List.of("XOR", "VIGENERE")) {
+            EncryptionAlgorithm algorithm = registry.require(name);
+
+            byte[] encrypted = run(algorithm, data, true);
+            assertThat(encrypted).isEqualTo(algorithm.encrypt(data.clone(), KEY));
+            assertThat(run(algorithm, encrypted, false)).isEqualTo(data);
+        }
+        int total = broker.processedBy(0) + broker.processedBy(1) + broker.processedBy(2);
+        assertThat(total).isEqualTo(broker.published());
+    }
+
+    @Test
+    void lostChunksArePublishedAgain() throws IOException {
+        broker.loseWhen(task -> task.seq() % 3 == 1 && task.attempt() == 1);
+        byte[] data = randomBytes(640 * 1024);
+        EncryptionAlgorithm algorithm = registry.require("XOR");
+
+        assertThat(run(algorithm, data, true)).isEqualTo(algorithm.encrypt(data.clone(), KEY));
+        // 10 фрагментов, из них 3 потеряны и опубликованы повторно
+        assertThat(broker.published()).isEqualTo(13);
+    }
+
+    @Test
+    void failsAfterMaxAttempts() {
+        properties.setMaxAttempts(2);
+        broker.loseWhen(task -> task.seq() == 2);
+        byte[] data = randomBytes(300 * 1024);
+
+        assertThatThrownBy(() -> run(registry.require("XOR"), data, true))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Фрагмент 2");
+    }
+
+    @Test
+    void acceptsOnlyLargeDataForChunkableAlgorithms() {
+        assertThat(coordinator.accepts(registry.require("XOR"), 1024 * 1024)).isTrue();
+        assertThat(coordinator.accepts(registry.require("XOR"), 1024)).isFalse();
+        assertThat(coordinator.accepts(registry.require("XOR"), -1)).isFalse();
+        assertThat(coordinator.accepts(registry.require("AES"), 1024 * 1024)).isFalse();
+    }
+
+    private byte[] run(EncryptionAlgorithm algorithm, byte[] input, boolean encrypt) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        coordinator.transform(Channels.newChannel(new ByteArrayInputStream(input)), Channels.newChannel(output),
+                algorithm, KEY, encrypt);
+        return output.toByteArray();
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
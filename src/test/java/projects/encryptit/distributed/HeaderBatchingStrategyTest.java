@@ -0,0 +1,100 @@
+package projects.encryptit.distributed;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.batch.MessageBatch;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Упаковка и распаковка пакетов: после распаковки сообщения совпадают с исходными,
+ * а ключ задания не попадает в заголовки.
+ */
+class HeaderBatchingStrategyTest {
+
+    private final BinaryMessageConverter converter = new BinaryMessageConverter(new Jackson2JsonMessageConverter());
+
+    @Test
+    void tasksSurviveBatchRoundTrip() {
+        HeaderBatchingStrategy strategy = new HeaderBatchingStrategy(2, 1 << 20, 1000);
+        ChunkTask first = new ChunkTask("job", 0, 0, "AES-CTR", "ключ-1", true, bytes(70_000, 1), "replies", 1);
+        ChunkTask second = new ChunkTask("job", 1, 70_000, "AES-CTR", "ключ-2", false, bytes(3, 2), "replies", 2);
+
+        assertThat(strategy.addToBatch("", "chunks", toMessage(first))).isNull();
+        MessageBatch batch = strategy.addToBatch("", "chunks", toMessage(second));
+
+        assertThat(batch).isNotNull();
+        assertThat(strategy.canDebatch(batch.message().getMessageProperties())).isTrue();
+        List<Object> received = new ArrayList<>();
+        strategy.deBatch(batch.message(), message -> {
+            assertThat(message.getMessageProperties().getHeaders().containsKey("x-key")).isFalse();
+            received.add(converter.fromMessage(message));
+        });
+
+        assertThat(received).hasSize(2);
+        assertSameTask((ChunkTask) received.get(0), first);
+        assertSameTask((ChunkTask) received.get(1), second);
+    }
+
+    @Test
+    void longHeaderValuesSurviveBatchRoundTrip() {
+        HeaderBatchingStrategy strategy = new HeaderBatchingStrategy(2, 1 << 20, 1000);
+        String longValue = "ы".repeat(70_000); // 140 000 байт UTF-8, больше предела writeUTF
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_BYTES);
+        properties.setReplyTo(longValue);
+        properties.setHeader("x-error", longValue);
+        properties.setHeader("x-seq", 7);
+        properties.setHeader("x-offset", 1L << 40);
+        properties.setHeader("x-encrypt", true);
+
+        strategy.addToBatch("", "replies", new Message(bytes(10, 3), properties));
+        MessageBatch batch = strategy.addToBatch("", "replies", new Message(new byte[0], new MessageProperties()));
+
+        List<Message> received = new ArrayList<>();
+        strategy.deBatch(batch.message(), received::add);
+
+        assertThat(received).hasSize(2);
+        MessageProperties restored = received.get(0).getMessageProperties();
+        assertThat(restored.getContentType()).isEqualTo(MessageProperties.CONTENT_TYPE_BYTES);
+        assertThat(restored.getReplyTo()).isEqualTo(longValue);
+        assertThat((String) restored.getHeader("x-error")).isEqualTo(longValue);
+        assertThat((Integer) restored.getHeader("x-seq")).isEqualTo(7);
+        assertThat((Long) restored.getHeader("x-offset")).isEqualTo(1L << 40);
+        assertThat((Boolean) restored.getHeader("x-encrypt")).isTrue();
+        assertThat(received.get(0).getBody()).isEqualTo(bytes(10, 3));
+        assertThat(received.get(1).getBody()).hasSize(0);
+    }
+
+    private Message toMessage(ChunkTask task) {
+        Message message = converter.toMessage(task, new MessageProperties());
+        assertThat(message.getMessageProperties().getHeaders().containsKey("x-key")).isFalse();
+        assertThat(message.getMessageProperties().getHeaders().values().toString()).doesNotContain(task.key());
+        return message;
+    }
+
+    private static void assertSameTask(ChunkTask actual, ChunkTask expected) {
+        assertThat(actual.jobId()).isEqualTo(expected.jobId());
+        assertThat(actual.seq()).isEqualTo(expected.seq());
+        assertThat(actual.offset()).isEqualTo(expected.offset());
+        assertThat(actual.algorithm()).isEqualTo(expected.algorithm());
+        assertThat(actual.key()).isEqualTo(expected.key());
+        assertThat(actual.encrypt()).isEqualTo(expected.encrypt());
+        assertThat(actual.data()).isEqualTo(expected.data());
+        assertThat(actual.replyTo()).isEqualTo(expected.replyTo());
+        assertThat(actual.attempt()).isEqualTo(expected.attempt());
+    }
+
+    private static byte[] bytes(int length, int seed) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,90 @@
+package projects.encryptit.distributed;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Брокер в памяти вместо RabbitMQ: общая очередь заданий и несколько
+ * "узлов"-потоков, которые забирают задания и отправляют результаты координатору.
+ * Умеет терять сообщения, чтобы проверить повторную публикацию.
+ */
+class InProcessChunkBroker implements ChunkBroker, AutoCloseable {
+
+    private final BlockingQueue<ChunkTask> workQueue = new LinkedBlockingQueue<>();
+    private final ExecutorService nodes;
+    private final AtomicIntegerArray processedByNode;
+    private final AtomicInteger published = new AtomicInteger();
+    private volatile Predicate<ChunkTask> lose = task -> false;
+    private volatile Consumer<ChunkResult> resultHandler = result -> { };
+
+    InProcessChunkBroker(ChunkWorker worker, int nodeCount) {
+        this.nodes = Executors.newFixedThreadPool(nodeCount);
+        this.processedByNode = new AtomicIntegerArray(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            int node = i;
+            nodes.execute(() -> {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        ChunkTask task = workQueue.poll(100, TimeUnit.MILLISECONDS);
+                        if (task == null) {
+                            continue;
+                        }
+                        ChunkResult result = worker.process(task);
+                        processedByNode.incrementAndGet(node);
+                        resultHandler.accept(result);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+    }
+
+    /**
+     * Задает, какие задания теряются при публикации.
+     * @param lose условие потери
+     */
+    void loseWhen(Predicate<ChunkTask> lose) {
+        this.lose = lose;
+    }
+
+    int published() {
+        return published.get();
+    }
+
+    int processedBy(int node) {
+        return processedByNode.get(node);
+    }
+
+    @Override
+    public void publish(ChunkTask task) {
+        published.incrementAndGet();
+        if (!lose.test(task)) {
+            // Узел получает копию, как при передаче по сети
+            workQueue.add(new ChunkTask(task.jobId(), task.seq(), task.offset(), task.algorithm(), task.key(),
+                    task.encrypt(), task.data().clone(), task.replyTo(), task.attempt()));
+        }
+    }
+
+    @Override
+    public String replyAddress() {
+        return "in-process.replies";
+    }
+
+    @Override
+    public void subscribeResults(Consumer<ChunkResult> handler) {
+        this.resultHandler = handler;
+    }
+
+    @Override
+    public void close() {
+        nodes.shutdownNow();
+    }
+}
@@ -0,0 +1,231 @@
+package projects.encryptit.ingest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import projects.encryptit.service.EncryptionService;
+import projects.encryptit.util.encryption.AESEncryption;
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+import projects.encryptit.util.encryption.XORCipher;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверки наблюдения за каталогом: всплеск мелких файлов при маленькой очереди пула,
+ * файл, который еще дописывается, повторный файл с тем же именем, в том числе пришедший во время обработки,
+ * и файл, который не удалось ни зашифровать, ни убрать из каталога.
+ */
+class DirectoryIngestionServiceTest {
+
+    private static final String KEY = "ingest-key";
+    private static final long TIMEOUT_MILLIS = 30_000;
+
+    private Path root;
+    private Path inbox;
+    private Path output;
+    private IngestProperties properties;
+    private EncryptionService encryptionService;
+    private DirectoryIngestionService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = Files.createTempDirectory("ingest-test");
+        inbox = Files.createDirectories(root.resolve("inbox"));
+        output = root.resolve("encrypted");
+
+        IngestProperties.Watch watch = new IngestProperties.Watch();
+        watch.setSource(inbox);
+        watch.setOutput(output);
+        properties = new IngestProperties();
+        properties.setDirectories(List.of(watch));
+        properties.setKey(KEY);
+        properties.setQuietPeriod(Duration.ofMillis(200));
+        properties.setWorkers(2);
+        properties.setQueueCapacity(8);
+
+        AlgorithmRegistry registry = new AlgorithmRegistry(List.of(new AESEncryption(), new XORCipher()), List.of());
+        encryptionService = new EncryptionService(registry);
+        service = new DirectoryIngestionService(encryptionService, registry, properties);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        service.shutdown();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void burstOfSmallFilesIsEncryptedAndArchived() throws Exception {
+        // Часть файлов лежит до старта, остальные появляются во время наблюдения
+        for (int i = 0; i < 100; i++) {
+            Files.writeString(inbox.resolve("before-" + i + ".txt"), "скан " + i);
+        }
+        service.start();
+        for (int i = 0; i < 400; i++) {
+            Files.writeString(inbox.resolve("scan-" + i + ".txt"), "скан " + i);
+        }
+
+        awaitTrue(() -> service.metrics().processed() == 500);
+        DirectoryIngestionService.Metrics metrics = service.metrics();
+        assertThat(metrics.failed()).isZero();
+        assertThat(metrics.queueDepth()).isZero();
+        assertThat(Files.exists(inbox.resolve("scan-7.txt"))).isFalse();
+        assertThat(Files.exists(inbox.resolve(".processed/scan-7.txt"))).isTrue();
+        byte[] decrypted = encryptionService.decryptVerified(
+                Files.readAllBytes(output.resolve("scan-7.txt.enc")), "AES", KEY).data();
+        assertThat(new String(decrypted, StandardCharsets.UTF_8)).isEqualTo("скан 7");
+    }
+
+    @Test
+    void fileIsNotTakenWhileStillBeingWritten() throws Exception {
+        service.start();
+        Path scan = inbox.resolve("slow.pdf");
+        try (OutputStream stream = Files.newOutputStream(scan)) {
+            for (int i = 0; i < 10; i++) {
+                stream.write(new byte[1024]);
+                stream.flush();
+                Thread.sleep(100);
+            }
+        }
+        assertThat(Files.exists(output.resolve("slow.pdf.enc"))).isFalse();
+
+        awaitTrue(() -> service.metrics().processed() == 1);
+        byte[] decrypted = encryptionService.decryptVerified(
+                Files.readAllBytes(output.resolve("slow.pdf.enc")), "AES", KEY).data();
+        assertThat(decrypted.length).isEqualTo(10 * 1024);
+    }
+
+    @Test
+    void sameNameDroppedTwiceKeepsBothFiles() throws Exception {
+        service.start();
+        Files.writeString(inbox.resolve("scan.pdf"), "первый");
+        awaitTrue(() -> idleAfter(1));
+        Files.writeString(inbox.resolve("scan.pdf"), "второй");
+        awaitTrue(() -> idleAfter(2));
+
+        assertThat(service.metrics().failed()).isZero();
+        assertThat(decrypt(output.resolve("scan.pdf.enc"))).isEqualTo("первый");
+        assertThat(decrypt(output.resolve("scan-1.pdf.enc"))).isEqualTo("второй");
+        assertThat(Files.readString(inbox.resolve(".processed/scan.pdf"))).isEqualTo("первый");
+        assertThat(Files.readString(inbox.resolve(".processed/scan-1.pdf"))).isEqualTo("второй");
+        try (Stream<Path> files = Files.list(output)) {
+            // Временные файлы не остаются
+            assertThat(files.map(path -> path.getFileName().toString()).sorted().toList())
+                    .isEqualTo(List.of("scan-1.pdf.enc", "scan.pdf.enc"));
+        }
+    }
+
+    @Test
+    void sameNameArrivingDuringProcessingIsIngestedAfterIt() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        AlgorithmRegistry registry = new AlgorithmRegistry(List.of(new AESEncryption()), List.of());
+        EncryptionService blocking = new EncryptionService(registry) {
+            @Override
+            public byte[] encryptSealed(ReadableByteChannel source, WritableByteChannel target,
+                                        String algorithmName, String key, long length) throws IOException {
+                if (first.compareAndSet(true, false)) {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.encryptSealed(source, target, algorithmName, key, length);
+            }
+        };
+        service.shutdown();
+        service = new DirectoryIngestionService(blocking, registry, properties);
+        service.start();
+
+        Files.writeString(inbox.resolve("scan.pdf"), "первый");
+        assertThat(started.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+        // Сканер заменяет файл, пока прежний шифруется (открытый канал читает прежние данные)
+        Path replacement = Files.writeString(inbox.resolve(".scan.pdf.tmp"), "второй");
+        Files.move(replacement, inbox.resolve("scan.pdf"), StandardCopyOption.REPLACE_EXISTING);
+        Thread.sleep(300);
+        release.countDown();
+        awaitTrue(() -> idleAfter(2));
+
+        assertThat(decrypt(output.resolve("scan.pdf.enc"))).isEqualTo("первый");
+        assertThat(decrypt(output.resolve("scan-1.pdf.enc"))).isEqualTo("второй");
+        assertThat(Files.readString(inbox.resolve(".processed/scan.pdf"))).isEqualTo("второй");
+        assertThat(Files.exists(inbox.resolve("scan.pdf"))).isFalse();
+    }
+
+    @Test
+    void fileThatCannotBeMovedAsideIsRetriedOnlyAfterItChanges() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        AlgorithmRegistry registry = new AlgorithmRegistry(List.of(new AESEncryption()), List.of());
+        EncryptionService failing = new EncryptionService(registry) {
+            @Override
+            public byte[] encryptSealed(ReadableByteChannel source, WritableByteChannel target,
+                                        String algorithmName, String key, long length) throws IOException {
+                attempts.incrementAndGet();
+                throw new IOException("диск недоступен");
+            }
+        };
+        service.shutdown();
+        service = new DirectoryIngestionService(failing, registry, properties);
+        service.start();
+        // Каталог ошибок заменен файлом: перенос в него тоже не удается
+        Path failedDirectory = properties.getDirectories().get(0).failedDirectory();
+        Files.delete(failedDirectory);
+        Files.writeString(failedDirectory, "");
+
+        Path poison = Files.writeString(inbox.resolve("poison.pdf"), "первый");
+        awaitTrue(() -> service.metrics().failed() == 1 && service.metrics().active() == 0);
+        Thread.sleep(5 * properties.getQuietPeriod().toMillis());
+
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(service.metrics().failed()).isEqualTo(1);
+        assertThat(Files.readString(poison)).isEqualTo("первый");
+
+        Files.writeString(poison, "второй вариант");
+        awaitTrue(() -> attempts.get() == 2 && service.metrics().active() == 0);
+        Thread.sleep(5 * properties.getQuietPeriod().toMillis());
+        assertThat(attempts.get()).isEqualTo(2);
+    }
+
+    private boolean idleAfter(long processed) {
+        DirectoryIngestionService.Metrics metrics = service.metrics();
+        return metrics.processed() == processed && metrics.active() == 0 && metrics.queueDepth() == 0;
+    }
+
+    private String decrypt(Path file) throws IOException {
+        return new String(encryptionService.decryptVerified(Files.readAllBytes(file), "AES", KEY).data(),
+                StandardCharsets.UTF_8);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis() < deadline).isTrue();
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package projects.encryptit.loadtest;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Нагрузочный тест HTTP-эндпоинтов шифрования.
+ * Запуск: {@code ./gradlew loadTest -Dloadtest.concurrency=16 -Dloadtest.requests=1000}.
+ */
+@Tag("load")
+@ActiveProfiles("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class EncryptionLoadTest {
+
+    private static final String TEXT_CHARS = "abcdefghijklmnopqrstuvwxyz ABCDEFGHIJKLMNOPQRSTUVWXYZ 0123456789.,";
+
+    @LocalServerPort
+    private int port;
+
+    /**
+     * Функция одного запроса к эндпоинту.
+     */
+    @FunctionalInterface
+    private interface Call {
+        HttpResponse<byte[]> execute(int payloadSize) throws Exception;
+    }
+
+    @Test
+    void cipherEndpointsUnderLoad() throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        LoadTestClient client = new LoadTestClient(port);
+        client.registerAndLogin("loaduser", "load-password");
+
+        Map<String, String> cipherFields = Map.of("algorithm", settings.algorithm(), "key", settings.key());
+        Map<Integer, byte[]> files = payloads(settings.fileMix().sizes(), false);
+        Map<Integer, byte[]> texts = payloads(settings.textMix().sizes(), true);
+
+        // Шифротексты для эндпоинтов дешифрования получаем через сам сервис
+        Map<Integer, byte[]> encryptedFiles = new HashMap<>();
+        for (Map.Entry<Integer, byte[]> entry : files.entrySet()) {
+            encryptedFiles.put(entry.getKey(), ok(client.postFile("/encrypt/file", cipherFields,
+                    "payload.bin", entry.getValue())).body());
+        }
+        Map<Integer, byte[]> encryptedTexts = new HashMap<>();
+        for (Map.Entry<Integer, byte[]> entry : texts.entrySet()) {
+            encryptedTexts.put(entry.getKey(), ok(client.postFile("/encrypt/file", cipherFields,
+                    "text.txt", entry.getValue())).body());
+        }
+
+        List<EndpointStats> results = new ArrayList<>();
+        results.add(drive("/encrypt/text", settings, settings.textMix(), size -> {
+            Map<String, String> fields = new HashMap<>(cipherFields);
+            fields.put("text", new String(texts.get(size), StandardCharsets.UTF_8));
+            return client.postForm("/encrypt/text", fields);
+        }));
+        results.add(drive("/decrypt/text", settings, settings.textMix(),
+                size -> client.postFile("/decrypt/text", cipherFields, "text_encrypted.txt", encryptedTexts.get(size))));
+        results.add(drive("/encrypt/file", settings, settings.fileMix(),
+                size -> client.postFile("/encrypt/file", cipherFields, "payload.bin", files.get(size))));
+        results.add(drive("/decrypt/file", settings, settings.fileMix(),
+                size -> client.postFile("/decrypt/file", cipherFields, "payload_encrypted.txt", encryptedFiles.get(size))));
+
+        System.out.printf("%nalgorithm=%s concurrency=%d requests=%d%n",
+                settings.algorithm(), settings.concurrency(), settings.requests());
+        System.out.println(EndpointStats.header());
+        results.forEach(stats -> System.out.println(stats.format()));
+
+        for (EndpointStats stats : results) {
+            assertThat(stats.errors()).as(stats.endpoint()).isZero();
+        }
+    }
+
+    private EndpointStats drive(String endpoint, LoadTestSettings settings, LoadTestSettings.PayloadMix mix,
+                                Call call) throws InterruptedException {
+        EndpointStats stats = new EndpointStats(endpoint);
+        AtomicInteger issued = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(settings.concurrency());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < settings.concurrency(); i++) {
+            workers.execute(() -> {
+                while (issued.getAndIncrement() < settings.requests()) {
+                    int size = mix.next();
+                    long begin = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = call.execute(size);
+                        long latency = System.nanoTime() - begin;
+                        if (response.statusCode() == 200) {
+                            stats.record(latency, size);
+                        } else {
+                            stats.recordError();
+                        }
+                    } catch (Exception e) {
+                        stats.recordError();
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(30, TimeUnit.MINUTES);
+        stats.setWallNanos(System.nanoTime() - start);
+        return stats;
+    }
+
+    private static HttpResponse<byte[]> ok(HttpResponse<byte[]> response) {
+        assertThat(response.statusCode()).isEqualTo(200);
+        return response;
+    }
+
+    private static Map<Integer, byte[]> payloads(int[] sizes, boolean text) {
+        Random random = new Random(7);
+        Map<Integer, byte[]> payloads = new HashMap<>();
+        for (int size : sizes) {
+            byte[] data = new byte[size];
+            if (text) {
+                for (int i = 0; i < size; i++) {
+                    data[i] = (byte) TEXT_CHARS.charAt(random.nextInt(TEXT_CHARS.length()));
+                }
+            } else {
+                random.nextBytes(data);
+            }
+            payloads.put(size, data);
+        }
+        return payloads;
+    }
+}
@@ -0,0 +1,68 @@
+package projects.encryptit.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Статистика задержек и пропускной способности одного эндпоинта.
+ */
+final class EndpointStats {
+
+    private final String endpoint;
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private long[] latencies = new long[1024];
+    private int count;
+    private long wallNanos;
+
+    EndpointStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    synchronized void record(long latencyNanos, long payloadBytes) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyNanos;
+        bytes.addAndGet(payloadBytes);
+    }
+
+    void recordError() {
+        errors.incrementAndGet();
+    }
+
+    void setWallNanos(long wallNanos) {
+        this.wallNanos = wallNanos;
+    }
+
+    String endpoint() {
+        return endpoint;
+    }
+
+    long errors() {
+        return errors.get();
+    }
+
+    synchronized String format() {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        double seconds = wallNanos / 1_000_000_000.0;
+        return String.format("%-14s %7d %6d %9.2f %9.2f %9.2f %9.2f %9.1f",
+                endpoint, count, errors.get(),
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                bytes.get() / (1024.0 * 1024.0) / seconds, count / seconds);
+    }
+
+    static String header() {
+        return String.format("%-14s %7s %6s %9s %9s %9s %9s %9s",
+                "endpoint", "reqs", "errors", "p50 ms", "p99 ms", "p999 ms", "MB/s", "req/s");
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000_000.0;
+    }
+}
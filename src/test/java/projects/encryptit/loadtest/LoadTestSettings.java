@@ -0,0 +1,56 @@
+package projects.encryptit.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Параметры нагрузочного теста, задаются системными свойствами {@code loadtest.*}.
+ */
+record LoadTestSettings(int concurrency, int requests, String algorithm, String key,
+                        PayloadMix fileMix, PayloadMix textMix) {
+
+    static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+                Integer.getInteger("loadtest.concurrency", 8),
+                Integer.getInteger("loadtest.requests", 200),
+                System.getProperty("loadtest.algorithm", "AES"),
+                System.getProperty("loadtest.key", "load-test-key-123"),
+                PayloadMix.parse(System.getProperty("loadtest.file-mix", "1024:60,65536:30,1048576:10")),
+                PayloadMix.parse(System.getProperty("loadtest.text-mix", "64:50,1024:40,16384:10")));
+    }
+
+    /**
+     * Взвешенный набор размеров полезной нагрузки в формате {@code размер:вес,...}.
+     */
+    record PayloadMix(int[] sizes, int[] cumulativeWeights) {
+
+        static PayloadMix parse(String spec) {
+            List<int[]> entries = new ArrayList<>();
+            for (String part : spec.split(",")) {
+                String[] pair = part.trim().split(":");
+                int weight = pair.length > 1 ? Integer.parseInt(pair[1].trim()) : 1;
+                entries.add(new int[]{Integer.parseInt(pair[0].trim()), weight});
+            }
+            int[] sizes = new int[entries.size()];
+            int[] cumulative = new int[entries.size()];
+            int total = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                sizes[i] = entries.get(i)[0];
+                total += entries.get(i)[1];
+                cumulative[i] = total;
+            }
+            return new PayloadMix(sizes, cumulative);
+        }
+
+        int next() {
+            int roll = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (roll < cumulativeWeights[i]) {
+                    return sizes[i];
+                }
+            }
+            return sizes[sizes.length - 1];
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package projects.encryptit.ratelimit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверки фильтра ограничения частоты: отказ до передачи запроса дальше по цепочке,
+ * списание размера тела, отказ телу больше запаса ведра и отклонение запросов без {@code Content-Length}.
+ */
+class RateLimitFilterTest {
+
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void createFilter() {
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit();
+        limit.setRequestsPerSecond(1);
+        limit.setBurstRequests(2);
+        limit.setBytesPerSecond(DataSize.ofBytes(1));
+        limit.setBurstBytes(DataSize.ofKilobytes(4));
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setEndpoints(Map.of("encrypt-file", limit));
+        filter = new RateLimitFilter(new RateLimiter(properties), properties);
+    }
+
+    @Test
+    void requestsBeyondBurstAreRejectedBeforeTheChain() throws Exception {
+        assertThat(send("alice", new byte[10]).chain.getRequest()).isNotNull();
+        assertThat(send("alice", new byte[10]).chain.getRequest()).isNotNull();
+
+        Exchange rejected = send("alice", new byte[10]);
+        assertThat(rejected.response.getStatus()).isEqualTo(429);
+        assertThat(rejected.response.getHeader(HttpHeaders.RETRY_AFTER)).isNotNull();
+        assertThat(rejected.chain.getRequest()).isNull();
+
+        // Ведра у каждого пользователя свои
+        assertThat(send("bob", new byte[10]).response.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void bodyLargerThanByteBudgetIsRejected() throws Exception {
+        assertThat(send("alice", new byte[3 * 1024]).response.getStatus()).isEqualTo(200);
+
+        Exchange rejected = send("alice", new byte[3 * 1024]);
+        assertThat(rejected.response.getStatus()).isEqualTo(429);
+        assertThat(rejected.chain.getRequest()).isNull();
+    }
+
+    @Test
+    void bodyLargerThanBurstIsRejectedAsTooLarge() throws Exception {
+        Exchange rejected = send("alice", new byte[5 * 1024]);
+        assertThat(rejected.response.getStatus()).isEqualTo(413);
+        assertThat(rejected.response.getHeader(HttpHeaders.RETRY_AFTER)).isNull();
+        assertThat(rejected.chain.getRequest()).isNull();
+
+        // Отказ ничего не списал с ведер
+        assertThat(send("alice", new byte[4 * 1024]).response.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void fastRatesAreChargedExactly() {
+        TokenBucket bucket = new TokenBucket(4_000_000_000L, 4_000_000_000L, 0);
+
+        assertThat(bucket.tryAcquire(4_000_000_000L, 0)).isZero();
+        // 1 ГБ при 4 ГБ/с пополняется за 0,25 с, а не за 1 нс на байт
+        assertThat(bucket.tryAcquire(1_000_000_000L, 0)).isEqualTo(250_000_000L);
+    }
+
+    @Test
+    void chunkedRequestWithoutContentLengthIsRejected() throws Exception {
+        MockHttpServletRequest request = request("alice");
+        request.addHeader(HttpHeaders.TRANSFER_ENCODING, "chunked");
+        Exchange exchange = run(request);
+
+        assertThat(exchange.response.getStatus()).isEqualTo(411);
+        assertThat(exchange.chain.getRequest()).isNull();
+    }
+
+    @Test
+    void requestWithoutBodyIsChargedAsEmpty() throws Exception {
+        Exchange exchange = run(request("alice"));
+
+        assertThat(exchange.response.getStatus()).isEqualTo(200);
+        assertThat(exchange.chain.getRequest()).isNotNull();
+    }
+
+    @Test
+    void getRequestsAreNotLimited() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletRequest request = request("alice");
+            request.setMethod("GET");
+            Exchange exchange = run(request);
+            assertThat(exchange.chain.getRequest()).isNotNull();
+            assertThat(exchange.response.getHeader("RateLimit-Limit")).isNull();
+        }
+    }
+
+    private Exchange send(String user, byte[] body) throws Exception {
+        MockHttpServletRequest request = request(user);
+        request.setContent(body);
+        return run(request);
+    }
+
+    private Exchange run(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        return new Exchange(response, chain);
+    }
+
+    private static MockHttpServletRequest request(String user) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/encrypt/file");
+        request.setServletPath("/encrypt/file");
+        request.setUserPrincipal(() -> user);
+        return request;
+    }
+
+    private record Exchange(MockHttpServletResponse response, MockFilterChain chain) {
+    }
+}
@@ -0,0 +1,88 @@
+package projects.encryptit.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import projects.encryptit.model.UsageTotals;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверки SQL сброса статистики: одна вставка с ON CONFLICT в PostgreSQL
+ * и обновление со вставкой недостающих строк в остальных базах.
+ */
+class UsageTotalsRepositoryTest {
+
+    private static final List<Map.Entry<Long, UsageTotals>> DELTAS = List.of(
+            new AbstractMap.SimpleImmutableEntry<>(1L, new UsageTotals("AES", 10, 0, 1, 0, 5)),
+            new AbstractMap.SimpleImmutableEntry<>(2L, new UsageTotals("XOR", 0, 20, 0, 1, 7)));
+
+    @Test
+    void postgresUsesSingleUpsertBatch() {
+        RecordingJdbcTemplate jdbc = new RecordingJdbcTemplate("PostgreSQL", new int[] {1, 1});
+        new UsageTotalsRepository(jdbc).addAll(DELTAS);
+
+        assertThat(jdbc.statements).hasSize(1);
+        assertThat(jdbc.statements.get(0)).startsWith("INSERT INTO usage_totals");
+        assertThat(jdbc.statements.get(0)).contains("ON CONFLICT (user_id, algorithm) DO UPDATE");
+        assertThat(jdbc.rows.get(0)).hasSize(2);
+    }
+
+    @Test
+    void otherDatabasesInsertOnlyRowsTheUpdateMissed() {
+        RecordingJdbcTemplate jdbc = new RecordingJdbcTemplate("H2", new int[] {1, 0});
+        new UsageTotalsRepository(jdbc).addAll(DELTAS);
+
+        assertThat(jdbc.statements).hasSize(2);
+        assertThat(jdbc.statements.get(0)).startsWith("UPDATE usage_totals");
+        assertThat(jdbc.statements.get(1)).startsWith("INSERT INTO usage_totals");
+        assertThat(jdbc.rows.get(1)).hasSize(1);
+        assertThat(jdbc.rows.get(1).get(0)[5]).isEqualTo(2L);
+    }
+
+    /**
+     * JdbcTemplate без базы: запоминает пакеты и сообщает заданное имя СУБД.
+     */
+    private static final class RecordingJdbcTemplate extends JdbcTemplate {
+        final List<String> statements = new ArrayList<>();
+        final List<List<Object[]>> rows = new ArrayList<>();
+        private final String product;
+        private final int[] updateCounts;
+
+        RecordingJdbcTemplate(String product, int[] updateCounts) {
+            this.product = product;
+            this.updateCounts = updateCounts;
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            statements.add(sql);
+            rows.add(batchArgs);
+            return sql.startsWith("UPDATE") ? updateCounts : new int[batchArgs.size()];
+        }
+
+        @Override
+        public <T> T execute(ConnectionCallback<T> action) {
+            DatabaseMetaData metaData = (DatabaseMetaData) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {DatabaseMetaData.class},
+                    (proxy, method, args) -> "getDatabaseProductName".equals(method.getName()) ? product : null);
+            Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {Connection.class},
+                    (proxy, method, args) -> "getMetaData".equals(method.getName()) ? metaData : null);
+            try {
+                return action.doInConnection(connection);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
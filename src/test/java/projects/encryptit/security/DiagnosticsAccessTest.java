@@ -0,0 +1,73 @@
+package projects.encryptit.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.web.servlet.MockMvc;
+import projects.encryptit.config.AuditInterceptor;
+import projects.encryptit.config.WebConfig;
+import projects.encryptit.controller.FlightRecorderController;
+import projects.encryptit.service.FlightRecorderService;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Доступ к управлению записью JFR: обычный пользователь с внешнего адреса получает 403,
+ * вошедший пользователь с локального адреса допускается, анонимный отправляется на вход.
+ */
+@WebMvcTest(controllers = FlightRecorderController.class,
+        properties = "diagnostics.jfr.endpoint-enabled=true",
+        excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE,
+                classes = {WebConfig.class, AuditInterceptor.class}))
+@Import(SecurityConfig.class)
+class DiagnosticsAccessTest {
+
+    private static final String REMOTE_ADDRESS = "203.0.113.7";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private FlightRecorderService flightRecorderService;
+
+    @MockBean
+    private TokenService tokenService;
+
+    @MockBean
+    private UserDetailsService userDetailsService;
+
+    @Test
+    void remoteUserIsForbidden() throws Exception {
+        mockMvc.perform(post("/diagnostics/jfr/start").with(user("alice")).remoteAddress(REMOTE_ADDRESS))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/diagnostics/jfr/dump").with(user("alice")).remoteAddress(REMOTE_ADDRESS))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/diagnostics/jfr/stop").with(user("alice")).remoteAddress(REMOTE_ADDRESS))
+                .andExpect(status().isForbidden());
+
+        verify(flightRecorderService, never()).start(any());
+    }
+
+    @Test
+    void localUserIsAllowed() throws Exception {
+        mockMvc.perform(get("/diagnostics/jfr").with(user("alice")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void anonymousRequestIsSentToLogin() throws Exception {
+        mockMvc.perform(post("/diagnostics/jfr/start"))
+                .andExpect(status().is3xxRedirection());
+    }
+}
@@ -0,0 +1,105 @@
+package projects.encryptit.security;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Фильтр токенов: действительный токен из cookie или заголовка аутентифицирует
+ * запрос, поврежденный - нет, но запрос в обоих случаях идет дальше по цепочке.
+ */
+class TokenAuthenticationFilterTest {
+
+    private static final String SECRET = "token-secret-0000000000000000001";
+    private static final Duration TTL = Duration.ofMinutes(15);
+    private static final Instant NOW = Instant.parse("2026-03-01T10:00:00Z");
+
+    private final TokenService tokenService = service(NOW);
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void cookieTokenAuthenticatesRequest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(TokenAuthenticationFilter.COOKIE_NAME, tokenService.issue("alice", 42)));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        new TokenAuthenticationFilter(tokenService).doFilter(request, response, chain);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertThat(authentication).isNotNull();
+        assertThat(authentication.isAuthenticated()).isTrue();
+        assertThat(authentication.getPrincipal()).isEqualTo(new TokenPrincipal("alice", 42));
+        assertThat(chain.getRequest()).isSameAs(request);
+        // Токен свежий: перевыпуск не нужен
+        assertThat(response.getHeader(HttpHeaders.SET_COOKIE)).isNull();
+    }
+
+    @Test
+    void bearerTokenAuthenticatesAndIsRefreshedPastHalfOfLifetime() throws Exception {
+        String token = tokenService.issue("alice", 42);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new TokenAuthenticationFilter(service(NOW.plus(TTL.dividedBy(2)).plusSeconds(1)))
+                .doFilter(request, response, new MockFilterChain());
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNotNull();
+        assertThat(response.getHeader(HttpHeaders.SET_COOKIE))
+                .startsWith(TokenAuthenticationFilter.COOKIE_NAME + "=")
+                .contains("HttpOnly", "Secure", "SameSite=Lax")
+                .doesNotContain(token);
+    }
+
+    @Test
+    void malformedOrTruncatedCookieLeavesRequestAnonymous() throws Exception {
+        String token = tokenService.issue("alice", 42);
+        for (String value : new String[] {"", "garbage", "a.b.c", token.substring(0, token.length() - 5),
+                token.substring(0, token.indexOf('.')), token.replace('.', '!')}) {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.setCookies(new Cookie(TokenAuthenticationFilter.COOKIE_NAME, value));
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            MockFilterChain chain = new MockFilterChain();
+
+            new TokenAuthenticationFilter(tokenService).doFilter(request, response, chain);
+
+            assertThat(SecurityContextHolder.getContext().getAuthentication()).as(value).isNull();
+            assertThat(chain.getRequest()).as(value).isSameAs(request);
+            assertThat(response.getHeader(HttpHeaders.SET_COOKIE)).as(value).isNull();
+        }
+    }
+
+    @Test
+    void expiredTokenLeavesRequestAnonymous() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + tokenService.issue("alice", 42));
+        MockFilterChain chain = new MockFilterChain();
+
+        new TokenAuthenticationFilter(service(NOW.plus(TTL))).doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        assertThat(chain.getRequest()).isSameAs(request);
+    }
+
+    private static TokenService service(Instant now) {
+        return new TokenService(SECRET, TTL, true, Clock.fixed(now, ZoneOffset.UTC));
+    }
+}
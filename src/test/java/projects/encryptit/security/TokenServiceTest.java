@@ -0,0 +1,108 @@
+package projects.encryptit.security;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверки токенов: подпись и срок действия проверяются без обращения к БД,
+ * а поддельные, просроченные и поврежденные токены отклоняются без исключений.
+ */
+class TokenServiceTest {
+
+    private static final String SECRET = "token-secret-0000000000000000001";
+    private static final Duration TTL = Duration.ofMinutes(15);
+    private static final Instant NOW = Instant.parse("2026-03-01T10:00:00Z");
+
+    private final TokenService service = service(SECRET, NOW);
+
+    @Test
+    void issuedTokenVerifiesWithUserIdAndExpiry() {
+        String token = service.issue("алиса:admin", 42);
+
+        Optional<TokenService.VerifiedToken> verified = service.verify(token);
+
+        assertThat(verified).isPresent();
+        assertThat(verified.get().principal().username()).isEqualTo("алиса:admin");
+        assertThat(verified.get().principal().userId()).isEqualTo(42);
+        assertThat(verified.get().expiresAt()).isEqualTo(NOW.plus(TTL).getEpochSecond());
+        assertThat(service.shouldRefresh(verified.get())).isFalse();
+    }
+
+    @Test
+    void tamperedPayloadOrSignatureIsRejected() {
+        String token = service.issue("alice", 42);
+        int dot = token.indexOf('.');
+        String forgedPayload = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                new String(Base64.getUrlDecoder().decode(token.substring(0, dot)), StandardCharsets.UTF_8)
+                        .replaceFirst("^42:", "1:").getBytes(StandardCharsets.UTF_8));
+        // Первый символ подписи: последний несет и незначащие биты, которые декодер не проверяет
+        char first = token.charAt(dot + 1);
+        String forgedSignature = token.substring(0, dot + 1) + (first == 'A' ? 'B' : 'A') + token.substring(dot + 2);
+
+        assertThat(service.verify(forgedPayload + token.substring(dot))).isEmpty();
+        assertThat(service.verify(forgedSignature)).isEmpty();
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        String token = service.issue("alice", 42);
+
+        assertThat(service(SECRET, NOW.plus(TTL).minusSeconds(1)).verify(token)).isPresent();
+        assertThat(service(SECRET, NOW.plus(TTL)).verify(token)).isEmpty();
+    }
+
+    @Test
+    void tokenSignedWithAnotherSecretIsRejected() {
+        String token = service("another-secret-00000000000000001", NOW).issue("alice", 42);
+
+        assertThat(service.verify(token)).isEmpty();
+    }
+
+    @Test
+    void malformedTokensAreRejectedWithoutException() throws Exception {
+        String token = service.issue("alice", 42);
+
+        assertThat(service.verify(null)).isEmpty();
+        assertThat(service.verify("")).isEmpty();
+        assertThat(service.verify(".")).isEmpty();
+        assertThat(service.verify("abc.")).isEmpty();
+        assertThat(service.verify(".abc")).isEmpty();
+        assertThat(service.verify("not base64!.***")).isEmpty();
+        assertThat(service.verify(token.substring(0, token.indexOf('.') + 3))).isEmpty();
+        assertThat(service.verify(token.substring(0, token.indexOf('.') - 2))).isEmpty();
+        // Подпись верна, но содержимое не разбирается: проверка формата идет после подписи
+        assertThat(service.verify(signed("42:soon:YWxpY2U"))).isEmpty();
+        assertThat(service.verify(signed("42"))).isEmpty();
+    }
+
+    @Test
+    void tokenPastHalfOfItsLifetimeShouldBeRefreshed() {
+        TokenService.VerifiedToken verified = service.verify(service.issue("alice", 42)).orElseThrow();
+
+        assertThat(service(SECRET, NOW.plus(TTL.dividedBy(2)).plusSeconds(1)).shouldRefresh(verified)).isTrue();
+    }
+
+    private static TokenService service(String secret, Instant now) {
+        return new TokenService(secret, TTL, true, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private static String signed(String payload) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payloadBytes) + "." + encoder.encodeToString(mac.doFinal(payloadBytes));
+    }
+}
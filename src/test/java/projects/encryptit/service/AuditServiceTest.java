@@ -0,0 +1,117 @@
+package projects.encryptit.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import projects.encryptit.model.AuditEntry;
+import projects.encryptit.model.User;
+import projects.encryptit.repository.AuditLogRepository;
+import projects.encryptit.repository.UserRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * История действий по ключу: страницы идут от новых записей к старым без пропусков
+ * и повторов, в том числе при совпадающем времени записей, а поврежденный курсор отклоняется.
+ */
+class AuditServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 1, 10, 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private AuditService service;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:audit-" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE audit_log (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "user_id BIGINT, action VARCHAR(50) NOT NULL, description TEXT, ip_address VARCHAR(45), "
+                + "created_at TIMESTAMP NOT NULL)");
+
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user(1L)));
+        when(userRepository.findByUsername("bob")).thenReturn(Optional.of(user(2L)));
+        service = new AuditService(new AuditLogRepository(jdbcTemplate), userRepository, 100, 1000);
+    }
+
+    @Test
+    void pagesFollowNewestFirstWithoutGapsOrRepeats() {
+        List<AuditEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            // Пары записей с одним временем: порядок внутри пары задает идентификатор
+            entries.add(new AuditEntry(null, 1L, "encrypt-file", "файл " + i, "127.0.0.1",
+                    START.plusMinutes(i / 2)));
+            entries.add(new AuditEntry(null, 2L, "encrypt-file", "чужой " + i, "127.0.0.1", START.plusMinutes(i)));
+        }
+        new AuditLogRepository(jdbcTemplate).insertBatch(entries);
+
+        List<AuditEntry> seen = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        do {
+            AuditService.HistoryPage page = service.history("alice", cursor, 3);
+            seen.addAll(page.entries());
+            pageSizes.add(page.entries().size());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(pageSizes).containsExactly(3, 3, 2);
+        assertThat(seen).extracting(AuditEntry::userId).containsOnly(1L);
+        assertThat(seen).extracting(AuditEntry::id).doesNotHaveDuplicates().hasSize(8);
+        assertThat(seen).isSortedAccordingTo(Comparator.comparing(AuditEntry::createdAt)
+                .thenComparing(AuditEntry::id).reversed());
+        assertThat(seen.get(0).description()).isEqualTo("файл 7");
+        assertThat(seen.get(7).description()).isEqualTo("файл 0");
+    }
+
+    @Test
+    void lastFullPageEndsWithEmptyPage() {
+        List<AuditEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            entries.add(new AuditEntry(null, 1L, "decrypt-file", "файл " + i, "127.0.0.1", START.plusMinutes(i)));
+        }
+        new AuditLogRepository(jdbcTemplate).insertBatch(entries);
+
+        AuditService.HistoryPage first = service.history("alice", null, 2);
+        AuditService.HistoryPage second = service.history("alice", first.nextCursor(), 2);
+        AuditService.HistoryPage third = service.history("alice", second.nextCursor(), 2);
+
+        assertThat(third.entries()).isEmpty();
+        assertThat(third.nextCursor()).isNull();
+    }
+
+    @Test
+    void damagedCursorIsRejected() {
+        for (String cursor : List.of("не base64", encode("без разделителя"), encode("2026-03-01T10:00|abc"),
+                encode("вчера|42"))) {
+            assertThatThrownBy(() -> service.history("alice", cursor, 10))
+                    .as(cursor)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,176 @@
+package projects.encryptit.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+import projects.encryptit.model.StoredFile;
+import projects.encryptit.model.User;
+import projects.encryptit.repository.StoredChunkRepository;
+import projects.encryptit.repository.StoredFileRepository;
+import projects.encryptit.repository.UserRepository;
+import projects.encryptit.security.TokenPrincipal;
+import projects.encryptit.util.storage.ChunkDirectory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверки сохранения файлов в хранилище фрагментов: порядок захвата ссылок
+ * отмена загрузки, если фрагмент пропал до захвата, шифрование вне транзакции
+ * и владелец из токена без поиска по имени.
+ */
+class FileStorageServiceTest {
+
+    private Path root;
+    private StoredChunkRepository chunkRepository;
+    private StoredFileRepository fileRepository;
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = Files.createTempDirectory("storage-test");
+        chunkRepository = mock(StoredChunkRepository.class);
+        fileRepository = mock(StoredFileRepository.class);
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(new User("alice", "a@b.c", "x")));
+        when(fileRepository.save(any(StoredFile.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void referencesAreAcquiredOncePerChunkInHashOrder() throws IOException {
+        // Повторяющийся блок дает одинаковые фрагменты внутри одного файла
+        byte[] block = randomBytes(200_000, 1);
+        byte[] content = new byte[block.length * 3];
+        for (int i = 0; i < 3; i++) {
+            System.arraycopy(block, 0, content, i * block.length, block.length);
+        }
+        FileStorageService service = new FileStorageService(fileRepository, chunkRepository, userRepository,
+                new ChunkDirectory(root), TransactionOperations.withoutTransaction());
+
+        FileStorageService.StoredFileInfo info = service.store("alice", "data.bin", "AES",
+                target -> target.write(ByteBuffer.wrap(content)));
+
+        ArgumentCaptor<String> hashes = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Integer> counts = ArgumentCaptor.forClass(Integer.class);
+        verify(chunkRepository, atLeastOnce()).acquire(hashes.capture(), anyInt(), counts.capture());
+        assertThat(hashes.getAllValues()).isSorted().doesNotHaveDuplicates();
+
+        ArgumentCaptor<StoredFile> saved = ArgumentCaptor.forClass(StoredFile.class);
+        verify(fileRepository).save(saved.capture());
+        Map<String, Integer> expected = new HashMap<>();
+        saved.getValue().getChunkHashes().forEach(hash -> expected.merge(hash, 1, Integer::sum));
+        assertThat(hashes.getAllValues().size()).isEqualTo(expected.size());
+        for (int i = 0; i < hashes.getAllValues().size(); i++) {
+            assertThat(counts.getAllValues().get(i)).isEqualTo(expected.get(hashes.getAllValues().get(i)));
+        }
+        assertThat(info.chunkCount()).isGreaterThan(expected.size());
+        assertThat(info.size()).isEqualTo(content.length);
+    }
+
+    @Test
+    void uploadFailsIfChunkVanishesBeforeItIsReferenced() throws IOException {
+        ChunkDirectory collectedDirectory = new ChunkDirectory(root) {
+            @Override
+            public boolean exists(String hash) {
+                // Сборщик мусора удалил фрагмент между записью и захватом ссылки
+                return false;
+            }
+        };
+        FileStorageService service = new FileStorageService(fileRepository, chunkRepository, userRepository,
+                collectedDirectory, TransactionOperations.withoutTransaction());
+
+        assertThatThrownBy(() -> service.store("alice", "data.bin", "AES",
+                target -> target.write(ByteBuffer.wrap(randomBytes(50_000, 2)))))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("сборщиком мусора");
+        verify(fileRepository, never()).save(any(StoredFile.class));
+    }
+
+    @Test
+    void contentIsChunkedBeforeTheTransactionStarts() throws IOException {
+        AtomicBoolean inTransaction = new AtomicBoolean();
+        AtomicBoolean writtenInTransaction = new AtomicBoolean();
+        TransactionOperations transactions = new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                inTransaction.set(true);
+                try {
+                    return action.doInTransaction(new SimpleTransactionStatus());
+                } finally {
+                    inTransaction.set(false);
+                }
+            }
+        };
+        FileStorageService service = new FileStorageService(fileRepository, chunkRepository, userRepository,
+                new ChunkDirectory(root), transactions);
+
+        service.store("alice", "data.bin", "AES", target -> {
+            writtenInTransaction.set(inTransaction.get());
+            target.write(ByteBuffer.wrap(randomBytes(50_000, 3)));
+        });
+
+        assertThat(writtenInTransaction.get()).isFalse();
+        verify(chunkRepository, atLeastOnce()).acquire(any(), anyInt(), anyInt());
+        verify(fileRepository).save(any(StoredFile.class));
+    }
+
+    @Test
+    void tokenUserIsResolvedWithoutLookupByName() {
+        User owner = new User("alice", "a@b.c", "x");
+        when(userRepository.getReferenceById(42L)).thenReturn(owner);
+        when(fileRepository.findByOwnerOrderByCreatedAtDesc(owner)).thenReturn(List.of());
+        FileStorageService service = new FileStorageService(fileRepository, chunkRepository, userRepository,
+                new ChunkDirectory(root), TransactionOperations.withoutTransaction());
+        SecurityContextHolder.getContext().setAuthentication(UsernamePasswordAuthenticationToken.authenticated(
+                new TokenPrincipal("alice", 42L), null, List.of()));
+        try {
+            assertThat(service.listFiles("alice")).isEmpty();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+
+        verify(userRepository, never()).findByUsername("alice");
+        verify(fileRepository).findByOwnerOrderByCreatedAtDesc(owner);
+    }
+
+    private static byte[] randomBytes(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
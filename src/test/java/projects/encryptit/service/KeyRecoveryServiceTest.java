@@ -0,0 +1,85 @@
+package projects.encryptit.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+import projects.encryptit.util.encryption.CaesarCipher;
+import projects.encryptit.util.encryption.IntegrityTrailer;
+import projects.encryptit.util.encryption.VigenereCipher;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Подбор ключа: известные ключи Цезаря и Виженера восстанавливаются и из
+ * шифротекста без блока целостности, и из шифротекста с блоком, который
+ * не попадает в анализ.
+ */
+class KeyRecoveryServiceTest {
+
+    private static final String TEXT = "The quick brown fox jumps over the lazy dog while the farmer watches "
+            + "from the porch. Nobody expected the storm to arrive so early in the season, and the "
+            + "village had little time to prepare. Children ran home from school, shops closed their "
+            + "shutters, and the old bell in the tower rang twice before the wind grew too strong. ";
+
+    private final KeyRecoveryService service = new KeyRecoveryService(1, 32, 5, Duration.ofSeconds(30));
+    private final EncryptionService encryptionService = new EncryptionService(
+            new AlgorithmRegistry(List.of(new CaesarCipher(), new VigenereCipher()), List.of()));
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void recoversCaesarShiftFromShortText() {
+        byte[] plain = TEXT.getBytes(StandardCharsets.UTF_8);
+        byte[] unsealed = encryptionService.encrypt(plain, "CAESAR", "7");
+        byte[] sealed = encryptionService.encryptSealed(plain, "CAESAR", "7").data();
+
+        for (byte[] ciphertext : List.of(unsealed, sealed)) {
+            KeyRecoveryService.KeyRecoveryReport report = service.recover(ciphertext, "caesar");
+
+            assertThat(report.candidates().get(0).key()).isEqualTo("7");
+            assertThat(report.totalBytes()).isEqualTo(plain.length);
+            assertThat(report.candidates().get(0).preview()).startsWith("The quick brown fox");
+        }
+    }
+
+    @Test
+    void recoversVigenereKey() {
+        byte[] plain = TEXT.repeat(8).getBytes(StandardCharsets.UTF_8);
+        byte[] unsealed = encryptionService.encrypt(plain, "VIGENERE", "lemon");
+        byte[] sealed = encryptionService.encryptSealed(plain, "VIGENERE", "lemon").data();
+
+        for (byte[] ciphertext : List.of(unsealed, sealed)) {
+            KeyRecoveryService.KeyRecoveryReport report = service.recover(ciphertext, "VIGENERE");
+
+            assertThat(report.keyLength()).isEqualTo(5);
+            assertThat(report.candidates().get(0).key()).isEqualTo("lemon");
+            assertThat(report.totalBytes()).isEqualTo(plain.length);
+        }
+    }
+
+    @Test
+    void trailerWithForeignDigestIsAnalyzedAsCiphertext() {
+        byte[] plain = TEXT.getBytes(StandardCharsets.UTF_8);
+        byte[] sealed = encryptionService.encryptSealed(plain, "CAESAR", "7").data();
+        // Сигнатура блока на месте, но дайджест не от этих данных
+        sealed[0] ^= 1;
+
+        KeyRecoveryService.KeyRecoveryReport report = service.recover(sealed, "CAESAR");
+
+        assertThat(report.totalBytes()).isEqualTo(plain.length + IntegrityTrailer.LENGTH);
+    }
+
+    @Test
+    void otherAlgorithmsAreRejected() {
+        assertThatThrownBy(() -> service.recover(new byte[16], "AES"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
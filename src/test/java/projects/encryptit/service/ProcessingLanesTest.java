@@ -0,0 +1,101 @@
+package projects.encryptit.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверки изоляции полос: мелкие и средние запросы не ждут за занятой полосой
+ * крупных, вложенная работа в потоке полосы не встает в очередь, а ошибки задач
+ * доходят до вызывающего без обертки.
+ */
+class ProcessingLanesTest {
+
+    private static final long SMALL = 50;
+    private static final long MEDIUM = DataSize.ofKilobytes(512).toBytes();
+    private static final long LARGE = DataSize.ofMegabytes(10).toBytes();
+
+    private ProcessingLanes lanes;
+
+    @BeforeEach
+    void setUp() {
+        lanes = new ProcessingLanes(DataSize.ofKilobytes(64), DataSize.ofMegabytes(4), 1, 1, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        lanes.shutdown();
+    }
+
+    @Test
+    void smallAndMediumWorkDoesNotQueueBehindLargeWork() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch largeStarted = new CountDownLatch(1);
+        // Единственный поток крупной полосы занят, за ним в очереди еще задачи
+        for (int i = 0; i < 8; i++) {
+            CompletableFuture.runAsync(() -> {
+                largeStarted.countDown();
+                awaitQuietly(release);
+            }, lanes.executorFor(LARGE));
+        }
+        try {
+            assertThat(largeStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(lanes.execute(SMALL, () -> Thread.currentThread().getName())).startsWith("lane-small-");
+            String medium = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(),
+                    lanes.executorFor(MEDIUM)).get(5, TimeUnit.SECONDS);
+            assertThat(medium).startsWith("lane-medium-");
+            // Крупные задачи все еще ждут: мелкие и средние прошли мимо их очереди
+            assertThat(release.getCount()).isEqualTo(1L);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void nestedWorkOnLaneThreadRunsInline() throws Exception {
+        // В полосе один поток: вложенная задача в очереди той же полосы ждала бы сама себя
+        List<String> threads = CompletableFuture.supplyAsync(() -> {
+            try {
+                return List.of(Thread.currentThread().getName(),
+                        lanes.execute(LARGE, () -> Thread.currentThread().getName()),
+                        lanes.execute(SMALL, () -> Thread.currentThread().getName()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, lanes.executorFor(LARGE)).get(5, TimeUnit.SECONDS);
+
+        assertThat(threads).hasSize(3);
+        assertThat(threads.get(1)).isEqualTo(threads.get(0));
+        assertThat(threads.get(2)).isEqualTo(threads.get(0));
+    }
+
+    @Test
+    void executeRethrowsTaskExceptions() {
+        assertThatThrownBy(() -> lanes.execute(SMALL, () -> {
+            throw new IOException("сбой чтения");
+        })).isInstanceOf(IOException.class).hasMessageContaining("сбой чтения");
+        assertThatThrownBy(() -> lanes.execute(LARGE, () -> {
+            throw new IllegalArgumentException("неизвестный алгоритм");
+        })).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("неизвестный алгоритм");
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
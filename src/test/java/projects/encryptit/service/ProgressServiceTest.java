@@ -0,0 +1,168 @@
+package projects.encryptit.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import projects.encryptit.util.encryption.ProgressTracker;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверки рассылки хода обработки: ограничение потоков на пользователя,
+ * освобождение лимита записями без подписчика и запись событий вне потока
+ * планировщика, без повторных отправок медленному клиенту.
+ */
+class ProgressServiceTest {
+
+    private final Map<String, RecordingEmitter> emitters = new ConcurrentHashMap<>();
+    private volatile CountDownLatch nextRelease = new CountDownLatch(0);
+    private ProgressService service;
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void perUserCapRejectsExtraStreamsUntilOneFinishes() throws Exception {
+        service = service(2, 1);
+
+        service.subscribe("alice-0001", "alice");
+        service.subscribe("alice-0002", "alice");
+        assertThatThrownBy(() -> service.subscribe("alice-0003", "alice"))
+                .isInstanceOf(IllegalArgumentException.class);
+        // Ограничение у каждого пользователя свое
+        service.subscribe("bob-00001", "bob");
+
+        finish(service.start("alice-0001", "alice", 10));
+        service.publish();
+        assertThat(emitters.get("alice-0001").awaitCompleted()).isTrue();
+
+        service.subscribe("alice-0003", "alice");
+    }
+
+    @Test
+    void slowClientBlocksNeitherPublishNorOtherStreams() throws Exception {
+        service = service(5, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        nextRelease = release;
+        service.subscribe("slow-0001", "alice");
+        nextRelease = new CountDownLatch(0);
+        service.subscribe("fast-0001", "bob");
+        finish(service.start("slow-0001", "alice", 10));
+        finish(service.start("fast-0001", "bob", 10));
+
+        RecordingEmitter slow = emitters.get("slow-0001");
+        RecordingEmitter fast = emitters.get("fast-0001");
+        CompletableFuture.runAsync(service::publish).get(5, TimeUnit.SECONDS);
+        assertThat(slow.awaitSending()).isTrue();
+        assertThat(fast.awaitCompleted()).isTrue();
+
+        // Пока событие медленному клиенту не записано, новые такты его пропускают
+        for (int i = 0; i < 5; i++) {
+            CompletableFuture.runAsync(service::publish).get(5, TimeUnit.SECONDS);
+        }
+        assertThat(slow.sends.get()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(slow.awaitCompleted()).isTrue();
+        service.publish();
+        assertThat(slow.sends.get()).isEqualTo(1);
+        assertThat(fast.sends.get()).isEqualTo(1);
+    }
+
+    @Test
+    void finishedEntriesWithoutSubscriberFreeTheCap() throws Exception {
+        service = service(Duration.ZERO, 2, 1);
+
+        finish(service.start("alice-0001", "alice", 10));
+        finish(service.start("alice-0002", "alice", 10));
+        assertThatThrownBy(() -> service.subscribe("alice-0003", "alice"))
+                .isInstanceOf(IllegalArgumentException.class);
+        // Идущая обработка без подписчика запись сохраняет
+        service.start("bob-00001", "bob", 10);
+        service.start("bob-00002", "bob", 10);
+
+        service.publish();
+        service.subscribe("alice-0003", "alice");
+        assertThatThrownBy(() -> service.subscribe("bob-00003", "bob"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private ProgressService service(int maxStreamsPerUser, int sendThreads) {
+        return service(Duration.ofMinutes(1), maxStreamsPerUser, sendThreads);
+    }
+
+    private ProgressService service(Duration pendingTtl, int maxStreamsPerUser, int sendThreads) {
+        return new ProgressService(Duration.ofMinutes(1), pendingTtl, 100, maxStreamsPerUser, sendThreads) {
+            @Override
+            SseEmitter createEmitter(long timeout) {
+                return new RecordingEmitter(nextRelease);
+            }
+
+            @Override
+            public SseEmitter subscribe(String id, String owner) {
+                SseEmitter emitter = super.subscribe(id, owner);
+                emitters.put(id, (RecordingEmitter) emitter);
+                return emitter;
+            }
+        };
+    }
+
+    private static void finish(ProgressTracker tracker) throws Exception {
+        tracker.call(() -> {
+            tracker.advance(tracker.getTotal());
+            return null;
+        });
+    }
+
+    /**
+     * Поток событий, запоминающий отправки; запись ждет разрешения.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+        final AtomicInteger sends = new AtomicInteger();
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+        final CountDownLatch release;
+
+        RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sends.incrementAndGet();
+            sending.countDown();
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+            super.complete();
+        }
+
+        boolean awaitSending() throws InterruptedException {
+            return sending.await(5, TimeUnit.SECONDS);
+        }
+
+        boolean awaitCompleted() throws InterruptedException {
+            return completed.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package projects.encryptit.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.unit.DataSize;
+import projects.encryptit.util.encryption.AESEncryption;
+import projects.encryptit.util.encryption.AesCtrEncryption;
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+import projects.encryptit.util.encryption.ChaCha20Encryption;
+import projects.encryptit.util.encryption.VigenereCipher;
+import projects.encryptit.util.encryption.XORCipher;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Пакетное шифрование строк: результат каждого элемента дешифруется с проверкой
+ * целостности, порядок запроса сохраняется при перемешанных группах, ошибка группы
+ * видна только в ее элементах, названия алгоритмов группируются без учета регистра,
+ * время учитывается по группам, а группы в полосах видят пользователя запроса.
+ */
+class TextBatchServiceTest {
+
+    private static final String KEY = "batch-key-000001";
+    private static final Duration SLOW_GROUP = Duration.ofMillis(500);
+    private static final List<String> ALGORITHMS = List.of("AES", "AES-CTR", "CHACHA20", "VIGENERE+XOR+AES");
+
+    private final Map<String, Authentication> groupUsers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> groupCalls = new ConcurrentHashMap<>();
+    private volatile String slowAlgorithm;
+    private ProcessingLanes lanes;
+    private EncryptionService encryptionService;
+    private TextBatchService service;
+
+    @BeforeEach
+    void setUp() {
+        lanes = new ProcessingLanes(DataSize.ofKilobytes(64), DataSize.ofMegabytes(4), 1, 1, 1);
+        encryptionService = new EncryptionService(new AlgorithmRegistry(List.of(new AESEncryption(),
+                new AesCtrEncryption(), new ChaCha20Encryption(), new VigenereCipher(), new XORCipher()), List.of())) {
+            @Override
+            public List<byte[]> encryptSealedAll(List<byte[]> messages, String algorithmName, String key) {
+                groupCalls.computeIfAbsent(algorithmName, name -> new AtomicInteger()).incrementAndGet();
+                Authentication user = SecurityContextHolder.getContext().getAuthentication();
+                if (user != null) {
+                    groupUsers.put(algorithmName, user);
+                }
+                if (algorithmName.equals(slowAlgorithm)) {
+                    long deadline = System.nanoTime() + SLOW_GROUP.toNanos();
+                    while (System.nanoTime() < deadline) {
+                        LockSupport.parkNanos(deadline - System.nanoTime());
+                    }
+                }
+                return super.encryptSealedAll(messages, algorithmName, key);
+            }
+        };
+        service = new TextBatchService(encryptionService, lanes, 1000, 1024 * 1024);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        lanes.shutdown();
+    }
+
+    @Test
+    void resultsDecryptInRequestOrder() throws Exception {
+        List<TextBatchService.Item> items = new ArrayList<>();
+        // Группы перемешаны: элементы одной группы стоят не подряд
+        for (int i = 0; i < 12; i++) {
+            String algorithm = ALGORITHMS.get(i % ALGORITHMS.size());
+            items.add(new TextBatchService.Item("item-" + i, text(i), algorithm, KEY));
+        }
+
+        List<TextBatchService.Result> results = service.encrypt(items).get(5, TimeUnit.SECONDS).results();
+
+        assertThat(results).hasSize(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            TextBatchService.Item item = items.get(i);
+            TextBatchService.Result result = results.get(i);
+            assertThat(result.id()).isEqualTo(item.id());
+            assertThat(result.error()).isNull();
+            byte[] decrypted = encryptionService.decryptVerified(Base64.getDecoder().decode(result.data()),
+                    item.algorithm(), item.key()).data();
+            assertThat(new String(decrypted, StandardCharsets.UTF_8)).isEqualTo(item.text());
+        }
+    }
+
+    @Test
+    void groupErrorStaysInItsItems() throws Exception {
+        List<TextBatchService.Item> items = List.of(
+                new TextBatchService.Item("a", "first", "AES", KEY),
+                new TextBatchService.Item("b", "second", "UNKNOWN", KEY),
+                new TextBatchService.Item("c", "third", "CHACHA20", KEY),
+                new TextBatchService.Item("d", "fourth", "UNKNOWN", KEY),
+                new TextBatchService.Item("e", "fifth", "AES", ""));
+
+        TextBatchService.BatchOutcome outcome = service.encrypt(items).get(5, TimeUnit.SECONDS);
+        List<TextBatchService.Result> results = outcome.results();
+
+        assertThat(results).extracting(TextBatchService.Result::id).containsExactly("a", "b", "c", "d", "e");
+        assertThat(results.get(0).error()).isNull();
+        assertThat(results.get(2).error()).isNull();
+        assertThat(results.get(1).data()).isNull();
+        assertThat(results.get(1).error()).isNotNull();
+        assertThat(results.get(3).error()).isEqualTo(results.get(1).error());
+        assertThat(results.get(4).error()).isNotNull();
+        assertThat(new String(encryptionService.decryptVerified(Base64.getDecoder().decode(results.get(2).data()),
+                "CHACHA20", KEY).data(), StandardCharsets.UTF_8)).isEqualTo("third");
+        // Учитывается только объем успешно зашифрованных групп
+        assertThat(outcome.usageByAlgorithm()).containsOnlyKeys("AES", "CHACHA20");
+        assertThat(outcome.usageByAlgorithm().get("AES").bytes()).isEqualTo(5);
+        assertThat(outcome.usageByAlgorithm().get("CHACHA20").bytes()).isEqualTo(5);
+    }
+
+    @Test
+    void algorithmNamesAreGroupedRegardlessOfCase() throws Exception {
+        List<TextBatchService.Item> items = List.of(
+                new TextBatchService.Item("a", "first", "aes", KEY),
+                new TextBatchService.Item("b", "second", "AES", KEY),
+                new TextBatchService.Item("c", "third", "Aes", KEY),
+                new TextBatchService.Item("d", "fourth", "vigenere + xor + aes", KEY),
+                new TextBatchService.Item("e", "fifth", "VIGENERE+XOR+AES", KEY));
+
+        TextBatchService.BatchOutcome outcome = service.encrypt(items).get(5, TimeUnit.SECONDS);
+
+        assertThat(outcome.results()).allMatch(result -> result.error() == null);
+        // Одна группа на алгоритм: шифрование вызвано с каноническим названием
+        assertThat(groupCalls).containsOnlyKeys("AES", "VIGENERE+XOR+AES");
+        assertThat(groupCalls.get("AES")).hasValue(1);
+        assertThat(groupCalls.get("VIGENERE+XOR+AES")).hasValue(1);
+        assertThat(outcome.usageByAlgorithm().get("AES").bytes()).isEqualTo(16);
+    }
+
+    @Test
+    void usageTimeIsMeasuredPerGroup() throws Exception {
+        slowAlgorithm = "CHACHA20";
+        List<TextBatchService.Item> items = List.of(
+                new TextBatchService.Item("a", "first", "CHACHA20", KEY),
+                new TextBatchService.Item("b", "second", "AES", KEY));
+
+        TextBatchService.BatchOutcome outcome = service.encrypt(items).get(5, TimeUnit.SECONDS);
+
+        // Медленная группа не попадает во время другого алгоритма того же пакета
+        assertThat(outcome.usageByAlgorithm().get("CHACHA20").nanos()).isGreaterThanOrEqualTo(SLOW_GROUP.toNanos());
+        assertThat(outcome.usageByAlgorithm().get("AES").nanos()).isPositive().isLessThan(SLOW_GROUP.toNanos());
+    }
+
+    @Test
+    void groupsSeeRequestUser() throws Exception {
+        Authentication alice = new UsernamePasswordAuthenticationToken("alice", null, List.of());
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(alice);
+        SecurityContextHolder.setContext(context);
+
+        List<TextBatchService.Item> items = new ArrayList<>();
+        for (String algorithm : ALGORITHMS) {
+            items.add(new TextBatchService.Item(algorithm, "secret", algorithm, KEY));
+        }
+        service.encrypt(items).get(5, TimeUnit.SECONDS);
+
+        assertThat(groupUsers.values()).hasSize(ALGORITHMS.size()).allMatch(user -> user == alice);
+    }
+
+    private static String text(int i) {
+        return "значение-" + i + "-" + "x".repeat(i * 7);
+    }
+}
@@ -0,0 +1,100 @@
+package projects.encryptit.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import projects.encryptit.model.UsageTotals;
+import projects.encryptit.model.User;
+import projects.encryptit.repository.UsageTotalsRepository;
+import projects.encryptit.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Проверки сброса счетчиков использования: приращения, кэш идентификаторов
+ * пользователей и повтор после неудачного сброса.
+ */
+class UsageMeterServiceTest {
+
+    private UserRepository userRepository;
+    private RecordingRepository totalsRepository;
+    private UsageMeterService service;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        User alice = new User("alice", "alice@example.com", "x");
+        alice.setId(7L);
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+        totalsRepository = new RecordingRepository();
+        service = new UsageMeterService(totalsRepository, userRepository);
+    }
+
+    @Test
+    void flushWritesOnlyNewIncrementsAndResolvesUserOnce() {
+        service.record("alice", "aes", true, 100, 10);
+        service.record("alice", "AES", true, 200, 10);
+        service.flush();
+        service.record("alice", "AES", false, 50, 5);
+        service.flush();
+        service.flush();
+
+        assertThat(totalsRepository.batches).hasSize(2);
+        Map.Entry<Long, UsageTotals> first = totalsRepository.batches.get(0).get(0);
+        assertThat(first.getKey()).isEqualTo(7L);
+        assertThat(first.getValue()).isEqualTo(new UsageTotals("AES", 300, 0, 2, 0, 20));
+        assertThat(totalsRepository.batches.get(1).get(0).getValue())
+                .isEqualTo(new UsageTotals("AES", 0, 50, 0, 1, 5));
+        verify(userRepository, times(1)).findByUsername("alice");
+    }
+
+    @Test
+    void failedFlushIsRetriedWithAccumulatedIncrements() {
+        totalsRepository.failNext = true;
+        service.record("alice", "AES", true, 100, 10);
+        service.flush();
+        service.record("alice", "AES", true, 100, 10);
+        service.flush();
+
+        assertThat(totalsRepository.batches).hasSize(1);
+        assertThat(totalsRepository.batches.get(0).get(0).getValue())
+                .isEqualTo(new UsageTotals("AES", 200, 0, 2, 0, 20));
+    }
+
+    @Test
+    void unknownUserIsSkipped() {
+        service.record("ghost", "AES", true, 100, 10);
+        service.flush();
+
+        assertThat(totalsRepository.batches).isEmpty();
+    }
+
+    /**
+     * Репозиторий, запоминающий пакеты вместо записи в базу.
+     */
+    private static final class RecordingRepository extends UsageTotalsRepository {
+        final List<List<Map.Entry<Long, UsageTotals>>> batches = new ArrayList<>();
+        boolean failNext;
+
+        RecordingRepository() {
+            super(null);
+        }
+
+        @Override
+        public void addAll(List<Map.Entry<Long, UsageTotals>> deltas) {
+            if (failNext) {
+                failNext = false;
+                throw new IllegalStateException("база недоступна");
+            }
+            batches.add(List.copyOf(deltas));
+        }
+    }
+}
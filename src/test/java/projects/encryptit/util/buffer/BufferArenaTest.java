@@ -0,0 +1,99 @@
+package projects.encryptit.util.buffer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import projects.encryptit.util.encryption.AESEncryption;
+import projects.encryptit.util.encryption.EncryptionAlgorithm;
+import projects.encryptit.util.encryption.VigenereCipher;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверки пула буферов: переиспользование, освобождение и отсутствие утечек
+ * после потоковой обработки.
+ */
+class BufferArenaTest {
+
+    private BufferArena previous;
+    private BufferArena arena;
+
+    @BeforeEach
+    void installArena() {
+        previous = BufferArena.shared();
+        arena = new BufferArena(64L * 1024 * 1024, true);
+        BufferArena.installShared(arena);
+    }
+
+    @AfterEach
+    void restoreArena() {
+        BufferArena.installShared(previous);
+    }
+
+    @Test
+    void releasedBufferIsReused() {
+        ByteBuffer first;
+        try (BufferLease lease = arena.lease(10_000)) {
+            first = lease.buffer();
+            assertThat(first.isDirect()).isTrue();
+            assertThat(first.remaining()).isEqualTo(10_000);
+        }
+        try (BufferLease lease = arena.lease(12_000)) {
+            assertThat(lease.buffer()).isSameAs(first);
+        }
+        assertThat(arena.metrics().hits()).isEqualTo(1);
+        assertThat(arena.metrics().misses()).isEqualTo(1);
+        assertThat(arena.outstandingLeases()).isZero();
+    }
+
+    @Test
+    void closeIsIdempotent() {
+        BufferLease lease = arena.lease(4096);
+        lease.close();
+        lease.close();
+        assertThat(lease.isReleased()).isTrue();
+        assertThat(arena.outstandingLeases()).isZero();
+        assertThat(arena.metrics().leasedBytes()).isZero();
+    }
+
+    @Test
+    void oversizedRequestFallsBackToHeap() {
+        try (BufferLease lease = arena.lease(64 * 1024 * 1024)) {
+            assertThat(lease.buffer().isDirect()).isFalse();
+        }
+        assertThat(arena.metrics().fallbacks()).isEqualTo(1);
+        assertThat(arena.metrics().retainedBytes()).isZero();
+    }
+
+    @Test
+    void streamingRoundTripLeavesNoOutstandingLeases() throws Exception {
+        byte[] data = new byte[300_000];
+        new Random(7).nextBytes(data);
+
+        for (EncryptionAlgorithm algorithm : new EncryptionAlgorithm[] {
+                new AESEncryption(), new VigenereCipher()}) {
+            ArenaByteChannel encrypted = new ArenaByteChannel(arena, 1024);
+            algorithm.encrypt(Channels.newChannel(new ByteArrayInputStream(data)), encrypted, "secret");
+            BufferLease ciphertext = encrypted.detach();
+
+            LeasedBufferResource resource = new LeasedBufferResource(ciphertext);
+            ArenaByteChannel decrypted = new ArenaByteChannel(arena, 1024);
+            try (var input = resource.getInputStream()) {
+                algorithm.decrypt(Channels.newChannel(input), decrypted, "secret");
+            }
+            try (BufferLease plaintext = decrypted.detach()) {
+                byte[] result = new byte[plaintext.buffer().remaining()];
+                plaintext.buffer().get(result);
+                assertThat(result).isEqualTo(data);
+            }
+        }
+
+        assertThat(arena.outstandingLeases()).isZero();
+        assertThat(arena.outstandingLeaseSites()).isEmpty();
+    }
+}
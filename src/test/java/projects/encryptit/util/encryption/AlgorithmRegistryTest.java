@@ -0,0 +1,87 @@
+package projects.encryptit.util.encryption;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверки реестра: алгоритмы из META-INF/services находятся без Spring,
+ * бин вытесняет найденную реализацию с тем же именем, поиск по имени и
+ * идентификатору отдает возможности алгоритма, а совпадение идентификаторов
+ * обнаруживается при создании реестра.
+ */
+class AlgorithmRegistryTest {
+
+    @Test
+    void serviceLoaderDiscoversBundledAlgorithms() {
+        AlgorithmRegistry registry = AlgorithmRegistry.fromServiceLoader();
+
+        assertThat(registry.getNames()).contains("AES", "CAESAR", "XOR", "VIGENERE", "CHACHA20");
+        assertThat(registry.require("xor")).isInstanceOf(XORCipher.class);
+        assertThat(registry.require(4)).isInstanceOf(VigenereCipher.class);
+    }
+
+    @Test
+    void beanTakesPrecedenceOverDiscoveredAlgorithm() {
+        XORCipher bean = new XORCipher();
+        AlgorithmRegistry registry = new AlgorithmRegistry(List.of(bean),
+                List.of(new XORCipher(), new CaesarCipher()));
+
+        assertThat(registry.require("XOR")).isSameAs(bean);
+        assertThat(registry.require(3)).isSameAs(bean);
+        assertThat(registry.getNames()).containsExactly("XOR", "CAESAR");
+    }
+
+    @Test
+    void capabilitiesAreAvailableThroughLookup() {
+        AlgorithmRegistry registry = new AlgorithmRegistry(
+                List.of(new AESEncryption(), new AesCtrEncryption(), new VigenereCipher()), List.of());
+
+        assertThat(registry.require("vigenere").supports(AlgorithmCapability.LENGTH_PRESERVING)).isTrue();
+        assertThat(registry.require("AES-CTR").supports(AlgorithmCapability.SEEKABLE)).isTrue();
+        assertThat(registry.require(1).supports(AlgorithmCapability.STREAMING)).isTrue();
+        assertThat(registry.require("AES").supports(AlgorithmCapability.SEEKABLE)).isFalse();
+        assertThat(registry.getAll())
+                .filteredOn(algorithm -> algorithm.supports(AlgorithmCapability.PARALLELIZABLE))
+                .extracting(EncryptionAlgorithm::getName)
+                .containsExactly("VIGENERE");
+    }
+
+    @Test
+    void duplicateIdIsRejected() {
+        XORCipher impostor = new XORCipher() {
+            @Override
+            public String getName() {
+                return "XOR2";
+            }
+        };
+
+        assertThatThrownBy(() -> new AlgorithmRegistry(List.of(new XORCipher()), List.of(impostor)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("XOR2");
+    }
+
+    @Test
+    void unknownAlgorithmIsRejected() {
+        AlgorithmRegistry registry = new AlgorithmRegistry(List.of(new XORCipher()), List.of());
+
+        assertThatThrownBy(() -> registry.require("ROT13")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> registry.require(42)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void emptyKeyIsRejectedEvenForEmptyData() {
+        AlgorithmRegistry registry = new AlgorithmRegistry(List.of(new XORCipher(), new VigenereCipher()), List.of());
+
+        for (String name : List.of("XOR", "VIGENERE")) {
+            EncryptionAlgorithm algorithm = registry.require(name);
+            assertThatThrownBy(() -> algorithm.encrypt(new byte[0], ""))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> algorithm.decrypt(new byte[16], ""))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package projects.encryptit.util.encryption;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверки токена отмены: первая причина побеждает, завершение исключает отмену,
+ * срок истекает без явной отмены, а цикл обработки останавливается на границе фрагмента.
+ */
+class CancellationTokenTest {
+
+    @Test
+    void firstCancelReasonWins() {
+        CancellationToken token = CancellationToken.withDeadline(Duration.ofMinutes(1));
+
+        assertThat(token.cancel("Клиент отключился")).isTrue();
+        assertThat(token.cancel("Истек срок обработки запроса")).isFalse();
+
+        assertThat(token.isCancelled()).isTrue();
+        assertThat(token.complete()).isFalse();
+        assertThatThrownBy(token::throwIfCancelled)
+                .isInstanceOf(OperationCancelledException.class)
+                .hasMessageContaining("Клиент отключился");
+    }
+
+    @Test
+    void completedTokenIgnoresLaterCancel() {
+        CancellationToken token = CancellationToken.withDeadline(Duration.ofMinutes(1));
+
+        assertThat(token.complete()).isTrue();
+        assertThat(token.cancel("Запрос завершен")).isFalse();
+
+        assertThat(token.isCancelled()).isFalse();
+        assertThat(token.complete()).isTrue();
+    }
+
+    @Test
+    void deadlineCancelsWithoutExplicitCancel() throws InterruptedException {
+        CancellationToken token = CancellationToken.withDeadline(Duration.ofMillis(1));
+        Thread.sleep(20);
+
+        assertThat(token.isCancelled()).isTrue();
+        assertThatThrownBy(token::throwIfCancelled)
+                .isInstanceOf(OperationCancelledException.class)
+                .hasMessageContaining("Истек срок обработки запроса");
+    }
+
+    @Test
+    void noneIsNeverCancelled() {
+        assertThat(CancellationToken.NONE.cancel("Клиент отключился")).isFalse();
+        assertThat(CancellationToken.NONE.isCancelled()).isFalse();
+        assertThat(CancellationToken.NONE.complete()).isTrue();
+    }
+
+    @Test
+    void callBindsTokenToThreadAndRestoresPrevious() throws Exception {
+        CancellationToken outer = CancellationToken.withDeadline(Duration.ofMinutes(1));
+        CancellationToken inner = CancellationToken.withDeadline(Duration.ofMinutes(1));
+
+        outer.call(() -> {
+            assertThat(CancellationToken.current()).isSameAs(outer);
+            inner.call(() -> {
+                assertThat(CancellationToken.current()).isSameAs(inner);
+                return null;
+            });
+            assertThat(CancellationToken.current()).isSameAs(outer);
+            return null;
+        });
+
+        assertThat(CancellationToken.current()).isSameAs(CancellationToken.NONE);
+    }
+
+    @Test
+    void pumpStopsAtChunkBoundaryOnceCancelled() throws Exception {
+        byte[] data = new byte[ChunkPump.CHUNK_SIZE * 4];
+        CancellationToken token = CancellationToken.withDeadline(Duration.ofMinutes(1));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        assertThatThrownBy(() -> token.call(() -> ChunkPump.pump(
+                Channels.newChannel(new ByteArrayInputStream(data)), Channels.newChannel(output),
+                (chunk, position) -> token.cancel("Клиент отключился"))))
+                .isInstanceOf(OperationCancelledException.class)
+                .hasMessageContaining("Клиент отключился");
+        // Отмена во время первого фрагмента: он дописан, следующий уже не читается
+        assertThat(output.size()).isEqualTo(ChunkPump.CHUNK_SIZE);
+    }
+}
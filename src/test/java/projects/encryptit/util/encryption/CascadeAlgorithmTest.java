@@ -0,0 +1,189 @@
+package projects.encryptit.util.encryption;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверки каскада: массивы, шифрование на месте и каналы дают обратимый
+ * и совместимый между собой результат, а побайтовые ступени видят те же позиции,
+ * что и при последовательном применении алгоритмов, в том числе на границах
+ * блоков каскада и фрагментов {@link ChunkPump}.
+ */
+class CascadeAlgorithmTest {
+
+    // Длина ключа не делит размеры блока и фрагмента: ошибка в позиции ступени меняет результат
+    private static final String KEY = "cascade-key-00017";
+    private static final int BLOCK = 8 * 1024;
+    private static final int[] SIZES = {0, 1, BLOCK - 1, BLOCK, BLOCK + 1, 3 * BLOCK + 17,
+            ChunkPump.CHUNK_SIZE + BLOCK / 2 + 3};
+
+    private final VigenereCipher vigenere = new VigenereCipher();
+    private final XORCipher xor = new XORCipher();
+
+    private final List<CascadeAlgorithm> cascades = List.of(
+            CascadeAlgorithm.of(List.of(vigenere, xor, new AESEncryption())),
+            CascadeAlgorithm.of(List.of(xor, new AesCtrEncryption())),
+            CascadeAlgorithm.of(List.of(vigenere, new ChaCha20Encryption())),
+            CascadeAlgorithm.of(List.of(vigenere, xor)));
+
+    @Test
+    void arraysRoundTripAndMatchSequentialStages() {
+        AESEncryption aes = new AESEncryption();
+        CascadeAlgorithm cascade = CascadeAlgorithm.of(List.of(vigenere, xor, aes));
+        for (int size : SIZES) {
+            byte[] data = data(size);
+            byte[] encrypted = cascade.encrypt(data, KEY);
+
+            // Ступени шифруют копии блоков: вход не меняется
+            assertThat(data).isEqualTo(data(size));
+            assertThat(cascade.decrypt(encrypted, KEY)).isEqualTo(data);
+            assertThat(cascade.withKey(KEY).decrypt(cascade.withKey(KEY).encrypt(data))).isEqualTo(data);
+            // Ступени по блокам дают то же, что алгоритмы по очереди на всем массиве
+            assertThat(vigenere.decrypt(xor.decrypt(aes.decrypt(encrypted, KEY), KEY), KEY)).isEqualTo(data);
+        }
+    }
+
+    @Test
+    void registryCachesCascadeRegardlessOfSpelling() {
+        AlgorithmRegistry registry = new AlgorithmRegistry(List.of(vigenere, xor, new AESEncryption()), List.of());
+        EncryptionAlgorithm canonical = registry.require("VIGENERE+XOR+AES");
+
+        assertThat(registry.require("vigenere + xor+aes")).isSameAs(canonical);
+        assertThat(registry.require(" Vigenere+XOR +Aes")).isSameAs(canonical);
+        assertThat(registry.require(canonical.getId())).isSameAs(canonical);
+    }
+
+    @Test
+    void inPlaceMatchesArraysAtAnyPosition() {
+        CascadeAlgorithm cascade = CascadeAlgorithm.of(List.of(vigenere, xor));
+        byte[] data = data(3 * BLOCK + 17);
+        byte[] encrypted = cascade.encrypt(data, KEY);
+        // Окно внутри буфера начинается посреди блока каскада и пересекает две границы
+        int from = BLOCK / 2 + 5;
+        int to = from + 2 * BLOCK + 1;
+        int margin = 11;
+
+        ByteBuffer buffer = ByteBuffer.allocate(margin + data.length);
+        buffer.position(margin).put(data).position(margin + from).limit(margin + to);
+        cascade.encryptInPlace(buffer, from, KEY);
+
+        assertThat(buffer.position()).isEqualTo(margin + from);
+        assertThat(buffer.limit()).isEqualTo(margin + to);
+        assertThat(slice(buffer, margin + from, margin + to)).isEqualTo(slice(encrypted, from, to));
+        assertThat(slice(buffer, margin, margin + from)).isEqualTo(slice(data, 0, from));
+
+        cascade.decryptInPlace(buffer, from, KEY);
+        assertThat(slice(buffer, margin + from, margin + to)).isEqualTo(slice(data, from, to));
+    }
+
+    @Test
+    void channelsRoundTripAndInteroperateWithArrays() throws IOException {
+        for (CascadeAlgorithm cascade : cascades) {
+            for (int size : SIZES) {
+                byte[] data = data(size);
+
+                // Неровные чтения и записи пересекают границы блоков внутри одного вызова
+                byte[] streamed = encryptChannel(cascade, data);
+                assertThat(decryptChannel(cascade, streamed)).isEqualTo(data);
+                assertThat(cascade.decrypt(streamed, KEY)).isEqualTo(data);
+                assertThat(decryptChannel(cascade, cascade.encrypt(data, KEY))).isEqualTo(data);
+            }
+        }
+    }
+
+    private static byte[] encryptChannel(CascadeAlgorithm cascade, byte[] data) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        cascade.encrypt(trickle(data, 3001), partial(output, 5003), KEY);
+        return output.toByteArray();
+    }
+
+    private static byte[] decryptChannel(CascadeAlgorithm cascade, byte[] data) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        cascade.decrypt(trickle(data, 3001), partial(output, 5003), KEY);
+        return output.toByteArray();
+    }
+
+    /**
+     * Источник, отдающий не больше {@code step} байт за чтение.
+     */
+    private static ReadableByteChannel trickle(byte[] data, int step) {
+        ReadableByteChannel delegate = Channels.newChannel(new ByteArrayInputStream(data));
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                int limit = dst.limit();
+                dst.limit(Math.min(limit, dst.position() + step));
+                try {
+                    return delegate.read(dst);
+                } finally {
+                    dst.limit(limit);
+                }
+            }
+
+            @Override
+            public boolean isOpen() {
+                return delegate.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                delegate.close();
+            }
+        };
+    }
+
+    /**
+     * Приемник, записывающий не больше {@code step} байт за вызов.
+     */
+    private static WritableByteChannel partial(ByteArrayOutputStream output, int step) {
+        return new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) {
+                int count = Math.min(step, src.remaining());
+                byte[] chunk = new byte[count];
+                src.get(chunk);
+                output.write(chunk, 0, count);
+                return count;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static byte[] slice(ByteBuffer buffer, int from, int to) {
+        byte[] result = new byte[to - from];
+        buffer.duplicate().limit(to).position(from).get(result);
+        return result;
+    }
+
+    private static byte[] slice(byte[] data, int from, int to) {
+        byte[] result = new byte[to - from];
+        System.arraycopy(data, from, result, 0, result.length);
+        return result;
+    }
+
+    private static byte[] data(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 131 + i / 7);
+        }
+        return data;
+    }
+}
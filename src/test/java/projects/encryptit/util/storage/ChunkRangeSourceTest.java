@@ -0,0 +1,144 @@
+package projects.encryptit.util.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import projects.encryptit.service.EncryptionService;
+import projects.encryptit.util.encryption.AesCtrEncryption;
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+import projects.encryptit.util.encryption.IntegrityTrailer;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Дешифрование диапазона сохраненного файла AES-CTR: байты совпадают с открытым
+ * текстом на границах фрагментов, при смещении внутри блока, при переносе счетчика
+ * через 2^64 и у конца файла, где блок целостности отрезается.
+ */
+class ChunkRangeSourceTest {
+
+    private static final String KEY = "range-key-000001";
+    private static final int PLAINTEXT_SIZE = 5000;
+    // Шифротекст: IV (16) + данные + блок целостности (72) = 5088 байт
+    private static final List<Integer> CHUNK_SIZES = List.of(7, 30, 4096, 900, 55);
+
+    private Path root;
+    private ChunkDirectory directory;
+    private EncryptionService encryptionService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = Files.createTempDirectory("range-test");
+        directory = new ChunkDirectory(root);
+        encryptionService = new EncryptionService(new AlgorithmRegistry(List.of(new AesCtrEncryption()), List.of()));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void decryptedRangesMatchPlaintext() throws Exception {
+        byte[] plaintext = plaintext();
+        // Младшие 64 бита счетчика: ...FE, ...FF, затем перенос в старшую половину на блоке 2
+        byte[] iv = {0x11, 0x22, 0x33, 0x44, 0x55, 0x66, 0x77, 0x7F,
+                -1, -1, -1, -1, -1, -1, -1, -2};
+        ChunkRangeSource source = store(seal(iv, plaintext));
+
+        // Весь файл
+        assertRange(source, plaintext, 0, PLAINTEXT_SIZE);
+        // Смещение внутри блока 1, граница фрагментов на 21, перенос счетчика на 32
+        assertRange(source, plaintext, 19, 40);
+        // Только блок после переноса, с середины
+        assertRange(source, plaintext, 37, 9);
+        // Граница большого фрагмента (4117 в открытом тексте)
+        assertRange(source, plaintext, 4110, 20);
+        // Диапазон за концом: результат обрезан по данным, блок целостности не попадает
+        assertRange(source, plaintext, 4990, 100);
+    }
+
+    @Test
+    void rawReadsCrossChunkBoundaries() throws Exception {
+        byte[] sealed = seal(new byte[16], plaintext());
+        ChunkRangeSource source = store(sealed);
+
+        assertThat(source.size()).isEqualTo(sealed.length);
+        assertThat(source.readRange(3, sealed.length)).isEqualTo(Arrays.copyOfRange(sealed, 3, sealed.length));
+        assertThat(source.readRange(36, 2)).isEqualTo(Arrays.copyOfRange(sealed, 36, 38));
+        assertThat(source.readRange(sealed.length, 10)).hasSize(0);
+    }
+
+    @Test
+    void sizesMustMatchHashes() {
+        assertThatThrownBy(() -> new ChunkRangeSource(directory, List.of("a", "b"), List.of(1), 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void assertRange(ChunkRangeSource source, byte[] plaintext, int offset, int length) throws IOException {
+        byte[] expected = Arrays.copyOfRange(plaintext, offset, Math.min(plaintext.length, offset + length));
+        assertThat(encryptionService.decryptRange(source, "AES-CTR", KEY, offset, length)).isEqualTo(expected);
+    }
+
+    /**
+     * Раскладывает шифротекст по фрагментам {@link #CHUNK_SIZES}.
+     */
+    private ChunkRangeSource store(byte[] sealed) throws IOException {
+        List<String> hashes = new ArrayList<>();
+        int offset = 0;
+        for (int size : CHUNK_SIZES) {
+            byte[] chunk = Arrays.copyOfRange(sealed, offset, offset + size);
+            String hash = ChunkDirectory.hash(chunk, size);
+            directory.write(hash, chunk, size);
+            hashes.add(hash);
+            offset += size;
+        }
+        assertThat(offset).isEqualTo(sealed.length);
+        return new ChunkRangeSource(directory, hashes, CHUNK_SIZES, sealed.length);
+    }
+
+    /**
+     * Шифрует в формате AES-CTR (IV, затем шифротекст) с заданным IV и дописывает блок целостности.
+     * Шифр JCE увеличивает счетчик как 128-битное число и служит эталоном для переноса.
+     */
+    private static byte[] seal(byte[] iv, byte[] plaintext) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(KEY.getBytes(StandardCharsets.US_ASCII), "AES"),
+                new IvParameterSpec(iv));
+        byte[] encrypted = new byte[iv.length + plaintext.length];
+        System.arraycopy(iv, 0, encrypted, 0, iv.length);
+        cipher.doFinal(plaintext, 0, plaintext.length, encrypted, iv.length);
+
+        byte[] trailer = IntegrityTrailer.encode(MessageDigest.getInstance("SHA-256").digest(encrypted), null);
+        byte[] sealed = Arrays.copyOf(encrypted, encrypted.length + trailer.length);
+        System.arraycopy(trailer, 0, sealed, encrypted.length, trailer.length);
+        return sealed;
+    }
+
+    private static byte[] plaintext() {
+        byte[] data = new byte[PLAINTEXT_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 17 + i / 251);
+        }
+        return data;
+    }
+}
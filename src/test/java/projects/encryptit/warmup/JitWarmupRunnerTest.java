@@ -0,0 +1,79 @@
+package projects.encryptit.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import projects.encryptit.controller.EncryptionController;
+import projects.encryptit.service.AlgorithmCalibrationService;
+import projects.encryptit.service.EncryptionService;
+import projects.encryptit.service.FileStorageService;
+import projects.encryptit.service.ProcessingLanes;
+import projects.encryptit.service.ProgressService;
+import projects.encryptit.service.TextBatchService;
+import projects.encryptit.service.UsageMeterService;
+import projects.encryptit.util.buffer.BufferArena;
+import projects.encryptit.util.encryption.AESEncryption;
+import projects.encryptit.util.encryption.AlgorithmRegistry;
+import projects.encryptit.util.encryption.ChaCha20Encryption;
+import projects.encryptit.util.encryption.XORCipher;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Проверка прогрева: все алгоритмы и пути эндпоинтов выполняются без ошибок,
+ * а арендованные буферы ответов возвращаются в пул.
+ */
+class JitWarmupRunnerTest {
+
+    private BufferArena previousArena;
+    private BufferArena arena;
+    private ProcessingLanes lanes;
+    private JitWarmupRunner runner;
+
+    @BeforeEach
+    void setUp() {
+        previousArena = BufferArena.shared();
+        arena = new BufferArena(16L * 1024 * 1024, false);
+        BufferArena.installShared(arena);
+        lanes = new ProcessingLanes(DataSize.ofKilobytes(64), DataSize.ofMegabytes(4), 1, 1, 1);
+        AlgorithmRegistry registry = new AlgorithmRegistry(List.of(new AESEncryption(), new XORCipher(),
+                new ChaCha20Encryption()), List.of());
+        EncryptionService encryptionService = new EncryptionService(registry, true, false, List.of("XOR+AES"));
+        EncryptionController controller = new EncryptionController(encryptionService,
+                mock(AlgorithmCalibrationService.class), arena, mock(FileStorageService.class),
+                mock(UsageMeterService.class), lanes, new ProgressService(Duration.ofMinutes(1), 10, 5, 1),
+                new TextBatchService(encryptionService, lanes, 1000, 1024 * 1024), Duration.ofMinutes(1));
+        runner = new JitWarmupRunner(encryptionService, controller, new ObjectMapper(), true,
+                Duration.ofSeconds(30), Duration.ofSeconds(10), 50, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        lanes.shutdown();
+        BufferArena.installShared(previousArena);
+    }
+
+    @Test
+    void warmsEveryAlgorithmAndEndpoint() throws Exception {
+        assertThat(runner.getReport().state()).isEqualTo(JitWarmupRunner.State.PENDING);
+
+        JitWarmupRunner.WarmupReport report = runner.warmUp();
+
+        assertThat(report.state()).isEqualTo(JitWarmupRunner.State.DONE);
+        assertThat(report.targets().stream().map(JitWarmupRunner.TargetReport::target).toList())
+                .containsExactly("algorithm.AES", "algorithm.XOR", "algorithm.CHACHA20", "algorithm.XOR+AES",
+                        "file-signatures", "endpoint.encrypt-text", "endpoint.encrypt-file",
+                        "endpoint.encrypt-batch");
+        for (JitWarmupRunner.TargetReport target : report.targets()) {
+            assertThat(target.error()).isNull();
+            assertThat(target.iterations()).isEqualTo(50);
+        }
+        assertThat(arena.outstandingLeases()).isZero();
+    }
+}